@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.joml.Vector3f;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Overhead of {@link FrameStats} recording. "phase" is the cost of timing one phase on Java side,
+ * which is compared to a 16.7 ms frame with all phases recorded. "frame" alternates frames with
+ * recording on and off while rendering 1k quads offscreen, so native phases are included.
+ * Run with {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FrameStatsBenchmark {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final String TAG = "FrameStatsBenchmark";
+    private static final int PHASE_ITERATIONS = 1000000;
+    private static final double FRAME_MILLIS = 1000.0 / 60;
+    private static final int GRID = 32;
+    private static final int SURFACE_SIZE = 1024;
+    private static final int WARM_UP_FRAMES = 20;
+    private static final int FRAMES = 500;
+
+    private OffscreenGLContext mContext;
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+        assumeTrue(BuildConfig.FRAME_STATS);
+
+        mContext = new OffscreenGLContext(SURFACE_SIZE, SURFACE_SIZE);
+        FrameStats.reset();
+    }
+
+    @After
+    public void tearDown() {
+        if (mContext == null) return;
+
+        FrameStats.setEnabled(false);
+        FrameStats.reset();
+        mContext.release();
+    }
+
+    @Test
+    public void phase() {
+        // Warm up
+        recordPhases(true);
+        recordPhases(false);
+
+        final long on = recordPhases(true);
+        final long off = recordPhases(false);
+        assertEquals(2L * PHASE_ITERATIONS, FrameStats.getCount(FrameStats.Phase.SCENE_UPDATE));
+
+        final double nanosPerPhase = (double) (on - off) / PHASE_ITERATIONS;
+        final double perFrameMillis = nanosPerPhase * FrameStats.Phase.values().length / 1e6;
+        Log.i(TAG, String.format("phase: on %.1f ns, off %.1f ns, %d phases %.4f ms = %.3f%% of %.1f ms frame",
+                (double) on / PHASE_ITERATIONS, (double) off / PHASE_ITERATIONS, FrameStats.Phase.values().length,
+                perFrameMillis, perFrameMillis / FRAME_MILLIS * 100, FRAME_MILLIS));
+    }
+
+    private static long recordPhases(boolean enabled) {
+        FrameStats.setEnabled(enabled);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < PHASE_ITERATIONS; ++i) {
+            FrameStats.end(FrameStats.Phase.SCENE_UPDATE, FrameStats.begin());
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void frame() {
+        final Scene scene = createScene();
+
+        for (int frame = 0; frame < WARM_UP_FRAMES; ++frame) {
+            FrameStats.setEnabled(frame % 2 == 0);
+            OffscreenGLContext.renderFrame(scene);
+        }
+
+        // Alternate so that both see same thermal state and background load
+        long on = 0;
+        long off = 0;
+        for (int frame = 0; frame < FRAMES * 2; ++frame) {
+            final boolean enabled = frame % 2 == 0;
+            FrameStats.setEnabled(enabled);
+
+            final long start = System.nanoTime();
+            OffscreenGLContext.renderFrame(scene);
+            final long time = System.nanoTime() - start;
+
+            if (enabled) {
+                on += time;
+            } else {
+                off += time;
+            }
+        }
+
+        final double onMillis = on / 1e6 / FRAMES;
+        final double offMillis = off / 1e6 / FRAMES;
+        Log.i(TAG, String.format("frame: on %.3f ms, off %.3f ms, overhead %.3f%%",
+                onMillis, offMillis, (onMillis - offMillis) / offMillis * 100));
+    }
+
+    // Grid of quads in front of the viewer, all in view
+    private static Scene createScene() {
+        final Scene scene = new Scene();
+        scene.setViewMatrix(OffscreenGLContext.IDENTITY);
+        scene.setProjectionMatrix(OffscreenGLContext.PROJECTION);
+
+        final Mesh mesh = Mesh.createQuad(0.2f, 0.2f);
+        final Vector3f position = new Vector3f();
+
+        for (int y = 0; y < GRID; ++y) {
+            for (int x = 0; x < GRID; ++x) {
+                final SceneObject object = new SceneObject();
+                object.mesh(mesh);
+                object.material(new Material());
+                object.position(position.set((x - GRID / 2) * 0.25f, (y - GRID / 2) * 0.25f, -6));
+                scene.addChildObject(object);
+            }
+        }
+        return scene;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.joml.Vector3f;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Frame time of 10k quads which share mesh and material, with {@link Scene#setInstancing(boolean) instancing}
+ * on and off. Both eyes are rendered into an offscreen surface without VR frame loop, and
+ * {@code glFinish} is included so that GPU time is measured too. Best frame time of each is reported.
+ * Run with {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InstancingBenchmark {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final String TAG = "InstancingBenchmark";
+    private static final int GRID = 100;
+    private static final int COUNT = GRID * GRID;
+    private static final int SURFACE_SIZE = 1024;
+    private static final int WARM_UP_FRAMES = 20;
+    private static final int FRAMES = 100;
+
+    private OffscreenGLContext mContext;
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        mContext = new OffscreenGLContext(SURFACE_SIZE, SURFACE_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        if (mContext != null) mContext.release();
+    }
+
+    @Test
+    public void tenThousandInstances() {
+        final Scene scene = createScene();
+
+        final long off = bestFrameNanos(scene, false);
+        final int offDrawCalls = scene.getDrawCallCount();
+
+        final long on = bestFrameNanos(scene, true);
+        final int onDrawCalls = scene.getDrawCallCount();
+
+        Log.i(TAG, String.format("%d quads, instancing off: %.3f ms/frame, %d draw calls",
+                COUNT, off / 1e6, offDrawCalls));
+        Log.i(TAG, String.format("%d quads, instancing on: %.3f ms/frame, %d draw calls, %.1fx",
+                COUNT, on / 1e6, onDrawCalls, (double) off / on));
+
+        // Both eyes
+        assertEquals(COUNT * 2, offDrawCalls);
+        assertEquals(COUNT * 2, scene.getUnbatchedDrawCallCount());
+        assertTrue(onDrawCalls < offDrawCalls);
+    }
+
+    // Grid of quads in front of the viewer, all in view
+    private static Scene createScene() {
+        final Scene scene = new Scene();
+        scene.setViewMatrix(OffscreenGLContext.IDENTITY);
+        scene.setProjectionMatrix(OffscreenGLContext.PROJECTION);
+
+        final Mesh mesh = Mesh.createQuad(0.08f, 0.08f);
+        final Material material = new Material();
+        final Vector3f position = new Vector3f();
+
+        for (int y = 0; y < GRID; ++y) {
+            for (int x = 0; x < GRID; ++x) {
+                final SceneObject object = new SceneObject();
+                object.mesh(mesh);
+                object.material(material);
+                object.position(position.set((x - GRID / 2) * 0.1f, (y - GRID / 2) * 0.1f, -6));
+                scene.addChildObject(object);
+            }
+        }
+        return scene;
+    }
+
+    /**
+     * Statistics of the last frame can be read from scene after this returns.
+     */
+    private static long bestFrameNanos(Scene scene, boolean instancing) {
+        scene.setInstancing(instancing);
+
+        for (int frame = 0; frame < WARM_UP_FRAMES; ++frame) {
+            OffscreenGLContext.renderFrame(scene);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int frame = 0; frame < FRAMES; ++frame) {
+            final long start = System.nanoTime();
+            OffscreenGLContext.renderFrame(scene);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        // Publish statistics of the last frame
+        scene.prepareForRendering();
+        return best;
+    }
+}
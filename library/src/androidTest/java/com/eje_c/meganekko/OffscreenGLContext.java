@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES30;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OpenGL ES 3 context with offscreen surface, current on the thread which created it. For rendering
+ * {@link Scene} in benchmarks without VR frame loop.
+ */
+class OffscreenGLContext {
+
+    private static final float NEAR = 0.1f;
+    private static final float FAR = 100.0f;
+
+    // 90 degrees perspective in row major order
+    static final float[] PROJECTION = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, (FAR + NEAR) / (NEAR - FAR), 2 * FAR * NEAR / (NEAR - FAR),
+            0, 0, -1, 0
+    };
+
+    static final float[] IDENTITY = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1
+    };
+
+    private final EGLDisplay mDisplay;
+    private final EGLContext mContext;
+    private final EGLSurface mSurface;
+
+    OffscreenGLContext(int width, int height) {
+        mDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        final int[] version = new int[2];
+        assertTrue(EGL14.eglInitialize(mDisplay, version, 0, version, 1));
+
+        final int[] configAttribs = {
+                EGL14.EGL_RENDERABLE_TYPE, EGLExt.EGL_OPENGL_ES3_BIT_KHR,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_DEPTH_SIZE, 24,
+                EGL14.EGL_NONE
+        };
+        final EGLConfig[] configs = new EGLConfig[1];
+        final int[] configCount = new int[1];
+        assertTrue(EGL14.eglChooseConfig(mDisplay, configAttribs, 0, configs, 0, 1, configCount, 0));
+        assertEquals(1, configCount[0]);
+
+        mContext = EGL14.eglCreateContext(mDisplay, configs[0], EGL14.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 3, EGL14.EGL_NONE}, 0);
+        mSurface = EGL14.eglCreatePbufferSurface(mDisplay, configs[0],
+                new int[]{EGL14.EGL_WIDTH, width, EGL14.EGL_HEIGHT, height, EGL14.EGL_NONE}, 0);
+        assertTrue(EGL14.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext));
+        GLES30.glViewport(0, 0, width, height);
+    }
+
+    /**
+     * Render both eyes of a new frame and wait for GPU.
+     */
+    static void renderFrame(Scene scene) {
+        scene.prepareForRendering();
+        GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT);
+        scene.render(0);
+        scene.render(1);
+        GLES30.glFinish();
+    }
+
+    void release() {
+        EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(mDisplay, mSurface);
+        EGL14.eglDestroyContext(mDisplay, mContext);
+        EGL14.eglTerminate(mDisplay);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Lookups by ID and by name in 20k nodes scene. "before" is the recursive search which
+ * {@link SceneObject#findObjectById(int)} and {@link SceneObject#findObjectByName(String)} still do for
+ * objects not in a {@link Scene}, "after" is {@link SceneIndex} used for objects in a scene. Run with
+ * {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SceneIndexBenchmark {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final String TAG = "SceneIndexBenchmark";
+    private static final int GROUPS = 200;
+    private static final int CHILDREN = 99;
+    private static final int NODES = GROUPS * (CHILDREN + 1);
+    private static final int LOOKUPS = 1000;
+    private static final int RUNS = 5;
+
+    private SceneObject[] mObjects;
+    private int[] mTargets;
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        mTargets = new int[LOOKUPS];
+        final Random random = new Random(0);
+        for (int i = 0; i < LOOKUPS; ++i) {
+            mTargets[i] = random.nextInt(NODES);
+        }
+    }
+
+    // Groups of children, each with unique ID and name
+    private SceneObject createTree() {
+        final SceneObject root = new SceneObject();
+        mObjects = new SceneObject[NODES];
+
+        int node = 0;
+        for (int g = 0; g < GROUPS; ++g) {
+            final SceneObject group = createNode(node++);
+            root.addChildObject(group);
+            for (int c = 0; c < CHILDREN; ++c) {
+                group.addChildObject(createNode(node++));
+            }
+        }
+        return root;
+    }
+
+    private SceneObject createNode(int index) {
+        final SceneObject object = new SceneObject();
+        object.setId(index + 1);
+        object.setName("node" + index);
+        mObjects[index] = object;
+        return object;
+    }
+
+    @Test
+    public void twentyThousandNodes() {
+        final SceneObject root = createTree();
+        final long[] before = lookUp(root);
+
+        final Scene scene = new Scene();
+        scene.addChildObject(root);
+        final long[] after = lookUp(root);
+
+        Log.i(TAG, String.format("%d lookups by ID in %d nodes: before %.2f ms, after %.2f ms, %.0fx",
+                LOOKUPS, NODES, before[0] / 1e6, after[0] / 1e6, (double) before[0] / after[0]));
+        Log.i(TAG, String.format("%d lookups by name in %d nodes: before %.2f ms, after %.2f ms, %.0fx",
+                LOOKUPS, NODES, before[1] / 1e6, after[1] / 1e6, (double) before[1] / after[1]));
+    }
+
+    /**
+     * @return Best time of lookups by ID and by name in nanoseconds.
+     */
+    private long[] lookUp(SceneObject root) {
+        final String[] names = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; ++i) {
+            names[i] = "node" + mTargets[i];
+        }
+
+        // Warm up and check results
+        for (int i = 0; i < LOOKUPS; ++i) {
+            assertSame(mObjects[mTargets[i]], root.findObjectById(mTargets[i] + 1));
+            assertSame(mObjects[mTargets[i]], root.findObjectByName(names[i]));
+        }
+
+        long byId = Long.MAX_VALUE;
+        long byName = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; ++i) {
+                root.findObjectById(mTargets[i] + 1);
+            }
+            byId = Math.min(byId, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; ++i) {
+                root.findObjectByName(names[i]);
+            }
+            byName = Math.min(byName, System.nanoTime() - start);
+        }
+        return new long[]{byId, byName};
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Transform getters with destination object must not allocate.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SceneObjectAllocationTest {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final int CALLS = 1000;
+
+    private final Vector3f mPosition = new Vector3f();
+    private final Vector3f mScale = new Vector3f();
+    private final Quaternionf mRotation = new Quaternionf();
+    private final Matrix4f mMatrix = new Matrix4f();
+    private final Matrix4f mMatrixWorld = new Matrix4f();
+
+    @Test
+    public void gettersReturnValues() {
+        SceneObject object = new SceneObject();
+        object.position(new Vector3f(1, 2, 3));
+        object.scale(new Vector3f(4, 5, 6));
+        Quaternionf rotation = new Quaternionf().rotateY((float) Math.PI / 2);
+        object.rotation(rotation);
+
+        assertEquals(new Vector3f(1, 2, 3), object.getPosition(mPosition));
+        assertEquals(new Vector3f(4, 5, 6), object.getScale(mScale));
+        assertEquals(rotation, object.getRotation(mRotation));
+        assertEquals(object.matrix(), object.getMatrix(mMatrix));
+        assertEquals(object.matrixWorld(), object.getMatrixWorld(mMatrixWorld));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void gettersDoNotAllocate() {
+        SceneObject parent = new SceneObject();
+        SceneObject object = new SceneObject();
+        parent.addChildObject(object);
+
+        // First call on a thread creates its scratch array
+        callGetters(object);
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        for (int i = 0; i < CALLS; ++i) {
+            callGetters(object);
+        }
+        Debug.stopAllocCounting();
+
+        assertEquals("bytes allocated", 0, Debug.getThreadAllocSize());
+        assertEquals("objects allocated", 0, Debug.getThreadAllocCount());
+    }
+
+    private void callGetters(SceneObject object) {
+        object.getPosition(mPosition);
+        object.getScale(mScale);
+        object.getRotation(mRotation);
+        object.getMatrix(mMatrix);
+        object.getMatrixWorld(mMatrixWorld);
+    }
+}
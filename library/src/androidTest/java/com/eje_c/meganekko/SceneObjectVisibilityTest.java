@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cached visibility and opacity must match their recursive definitions after any hierarchy edit.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SceneObjectVisibilityTest {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final int OBJECT_COUNT = 100;
+    private static final int EDIT_COUNT = 5000;
+
+    @Test
+    public void cachedValuesMatchRecursiveDefinition() {
+        final Random random = new Random(7);
+        final List<SceneObject> objects = new ArrayList<>();
+        for (int i = 0; i < OBJECT_COUNT; ++i) {
+            objects.add(new SceneObject());
+        }
+
+        for (int edit = 0; edit < EDIT_COUNT; ++edit) {
+            final SceneObject object = objects.get(random.nextInt(OBJECT_COUNT));
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    final SceneObject parent = objects.get(random.nextInt(OBJECT_COUNT));
+                    if (!isInSubtree(parent, object)) {
+                        detach(object);
+                        parent.addChildObject(object);
+                    }
+                    break;
+                case 1:
+                    detach(object);
+                    break;
+                case 2:
+                    object.setVisible(random.nextInt(4) != 0);
+                    break;
+                default:
+                    object.setOpacity(random.nextFloat());
+                    break;
+            }
+
+            for (SceneObject o : objects) {
+                assertEquals("edit " + edit, isShown(o), o.isShown());
+                assertEquals("edit " + edit, internalOpacity(o), o.getInternalOpacity(), 0.0f);
+            }
+        }
+    }
+
+    private static void detach(SceneObject object) {
+        if (object.getParent() != null) {
+            object.getParent().removeChildObject(object);
+        }
+    }
+
+    private static boolean isInSubtree(SceneObject object, SceneObject root) {
+        for (SceneObject o = object; o != null; o = o.getParent()) {
+            if (o == root) return true;
+        }
+        return false;
+    }
+
+    // Definitions which walked to root on every call
+    private static boolean isShown(SceneObject object) {
+        return object.isVisible() && (object.getParent() == null || isShown(object.getParent()));
+    }
+
+    private static float internalOpacity(SceneObject object) {
+        final float parentOpacity = object.getParent() != null ? internalOpacity(object.getParent()) : 1.0f;
+        return object.getOpacity() * parentOpacity;
+    }
+}
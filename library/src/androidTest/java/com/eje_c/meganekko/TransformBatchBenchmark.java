@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Time to set position, rotation and scale of many objects per frame. "per object" is three
+ * JNI calls per object through {@link SceneObject} setters, "batched" is one
+ * {@link TransformBatch#apply()}. Each is warmed up, then the best of several runs is reported.
+ * Run with {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransformBatchBenchmark {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final String TAG = "TransformBatchBenchmark";
+    private static final int[] SIZES = {1000, 10000};
+    private static final int WARM_UP_FRAMES = 20;
+    private static final int FRAMES = 100;
+
+    private final Vector3f mPosition = new Vector3f();
+    private final Quaternionf mRotation = new Quaternionf();
+    private final Vector3f mScale = new Vector3f();
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+    }
+
+    @Test
+    public void perObjectAndBatched() {
+        for (int size : SIZES) {
+            final SceneObject[] objects = new SceneObject[size];
+            for (int i = 0; i < size; ++i) {
+                objects[i] = new SceneObject();
+            }
+            final TransformBatch batch = new TransformBatch(size);
+
+            for (int frame = 0; frame < WARM_UP_FRAMES; ++frame) {
+                perObject(objects, frame);
+                batched(objects, batch, frame);
+            }
+
+            long perObject = Long.MAX_VALUE;
+            long batched = Long.MAX_VALUE;
+            for (int frame = 0; frame < FRAMES; ++frame) {
+                long start = System.nanoTime();
+                perObject(objects, frame);
+                perObject = Math.min(perObject, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                batched(objects, batch, frame);
+                batched = Math.min(batched, System.nanoTime() - start);
+            }
+
+            // Both paths must have set same transform
+            objects[size - 1].getPosition(mPosition);
+            assertEquals(size - 1, mPosition.x, 0);
+            assertEquals(FRAMES - 1, mPosition.y, 0);
+
+            Log.i(TAG, String.format("%d objects: per object %.3f ms/frame, batched %.3f ms/frame, %.1fx",
+                    size, perObject / 1e6, batched / 1e6, (double) perObject / batched));
+        }
+    }
+
+    private void perObject(SceneObject[] objects, int frame) {
+        for (int i = 0; i < objects.length; ++i) {
+            mPosition.set(i, frame, -1);
+            mRotation.identity().rotateY(frame * 0.01f);
+            mScale.set(1 + frame * 0.001f);
+
+            final SceneObject object = objects[i];
+            object.position(mPosition);
+            object.rotation(mRotation);
+            object.scale(mScale);
+        }
+    }
+
+    private void batched(SceneObject[] objects, TransformBatch batch, int frame) {
+        batch.clear();
+        for (int i = 0; i < objects.length; ++i) {
+            mPosition.set(i, frame, -1);
+            mRotation.identity().rotateY(frame * 0.01f);
+            mScale.set(1 + frame * 0.001f);
+            batch.add(objects[i], mPosition, mRotation, mScale);
+        }
+        batch.apply();
+    }
+}
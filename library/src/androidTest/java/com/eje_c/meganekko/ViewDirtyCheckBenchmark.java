@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Per frame cost of {@link Texture.ViewRenderer#isDirty()} for a view tree of 5k views in which one view
+ * changes every 10 frames. "walk" is the default recursive check of the hierarchy, "invalidate" is
+ * {@link Texture.ViewRenderer#setDirtyCheckEnabled(boolean) setDirtyCheckEnabled(false)} with
+ * {@link Texture.ViewRenderer#invalidate()} called on change. Only dirty checks are timed, not drawing.
+ * Run with {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewDirtyCheckBenchmark {
+
+    private static final String TAG = "ViewDirtyCheckBenchmark";
+    private static final int ROWS = 100;
+    private static final int COLUMNS = 50;
+    private static final int CELL_SIZE = 8;
+    private static final int FRAMES = 1000;
+    private static final int CHANGE_INTERVAL = 10;
+
+    private final List<View> mCells = new ArrayList<>();
+    private Texture.ViewRenderer mRenderer;
+    private Canvas mCanvas;
+    private int mChanges;
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        LinearLayout layout = new LinearLayout(context);
+        layout.setOrientation(LinearLayout.VERTICAL);
+
+        for (int r = 0; r < ROWS; ++r) {
+            LinearLayout row = new LinearLayout(context);
+            row.setOrientation(LinearLayout.HORIZONTAL);
+            for (int c = 0; c < COLUMNS; ++c) {
+                View cell = new View(context);
+                row.addView(cell, new ViewGroup.LayoutParams(CELL_SIZE, CELL_SIZE));
+                mCells.add(cell);
+            }
+            layout.addView(row);
+        }
+
+        mRenderer = new Texture.ViewRenderer(layout);
+        mCanvas = new Canvas(Bitmap.createBitmap(mRenderer.getWidth(), mRenderer.getHeight(), Bitmap.Config.ARGB_8888));
+
+        // Views are marked dirty by invalidation only after they were drawn once
+        mRenderer.render(mCanvas, null);
+    }
+
+    @Test
+    public void walkVersusInvalidate() {
+        final int views = 1 + ROWS * (1 + COLUMNS);
+
+        // Warm up
+        run(true);
+        run(false);
+
+        final long[] walk = run(true);
+        final long[] invalidate = run(false);
+
+        Log.i(TAG, String.format("%d views, walk: %.4f ms/frame, %d redraws", views, walk[0] / 1e6 / FRAMES, walk[1]));
+        Log.i(TAG, String.format("%d views, invalidate: %.4f ms/frame, %d redraws", views, invalidate[0] / 1e6 / FRAMES, invalidate[1]));
+
+        assertEquals(walk[1], invalidate[1]);
+    }
+
+    /**
+     * @return Nanoseconds spent in dirty checks and number of redraws.
+     */
+    private long[] run(boolean dirtyCheck) {
+        mRenderer.setDirtyCheckEnabled(dirtyCheck);
+
+        long nanos = 0;
+        long redraws = 0;
+        for (int frame = 0; frame < FRAMES; ++frame) {
+            if (frame % CHANGE_INTERVAL == 0) {
+                View cell = mCells.get((frame / CHANGE_INTERVAL * 97) % mCells.size());
+                // Color differs from previous one, so that every change invalidates
+                cell.setBackgroundColor(Color.rgb(0, 0, ++mChanges % 256));
+                if (!dirtyCheck) mRenderer.invalidate();
+            }
+
+            final long start = System.nanoTime();
+            final boolean dirty = mRenderer.isDirty();
+            nanos += System.nanoTime() - start;
+
+            if (dirty) {
+                mRenderer.render(mCanvas, null);
+                ++redraws;
+            }
+        }
+        return new long[]{nanos, redraws};
+    }
+}
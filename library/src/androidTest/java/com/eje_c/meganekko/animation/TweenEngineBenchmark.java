@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.animation;
+
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.eje_c.meganekko.SceneObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Update time of {@link TweenEngine} with 10k simultaneous tweens, which are position, rotation,
+ * scale and opacity of 2,500 objects. Run with
+ * {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TweenEngineBenchmark {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final String TAG = "TweenEngineBenchmark";
+    private static final int OBJECTS = 2500;
+    private static final int FRAMES = 300;
+    private static final float DELTA_SECONDS = 1.0f / 60.0f;
+
+    private final TweenEngine mEngine = new TweenEngine();
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        // Long enough not to end during measurement
+        final float duration = FRAMES * DELTA_SECONDS * 2;
+
+        for (int i = 0; i < OBJECTS; ++i) {
+            SceneObject object = new SceneObject();
+            long animation = mEngine.begin(null);
+            mEngine.add(animation, object, TweenEngine.POSITION, 0, 0, 0, 0, i, 1, -1, 0, 0, duration, null);
+            mEngine.add(animation, object, TweenEngine.ROTATION, 0, 0, 0, 1, 0, 1, 0, 0, 0, duration, null);
+            mEngine.add(animation, object, TweenEngine.SCALE, 1, 1, 1, 0, 2, 2, 2, 0, 0, duration, null);
+            mEngine.add(animation, object, TweenEngine.OPACITY, 1, 0, 0, 0, 0, 0, 0, 0, 0, duration, null);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void tenThousandTweens() {
+
+        // First frame starts tweens
+        mEngine.update(DELTA_SECONDS);
+        assertEquals(OBJECTS * 4, mEngine.getTweenCount());
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        final long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; ++frame) {
+            mEngine.update(DELTA_SECONDS);
+        }
+        final long elapsed = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+
+        Log.i(TAG, String.format("%d tweens: %.3f ms/frame, %d allocations",
+                mEngine.getTweenCount(), elapsed / 1e6 / FRAMES, Debug.getThreadAllocCount()));
+
+        assertEquals(OBJECTS * 4, mEngine.getTweenCount());
+        assertEquals("objects allocated", 0, Debug.getThreadAllocCount());
+    }
+}
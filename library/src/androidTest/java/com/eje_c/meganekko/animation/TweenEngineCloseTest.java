@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko.animation;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.eje_c.meganekko.SceneObject;
+
+import org.joml.Vector3f;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Closing an animated object must remove its tweens before its native object is used again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TweenEngineCloseTest {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final float DELTA_SECONDS = 1.0f / 60.0f;
+
+    @Test
+    public void tweensOfClosedObjectAreRemoved() {
+        final TweenEngine engine = new TweenEngine();
+        final SceneObject closed = new SceneObject();
+        final SceneObject other = new SceneObject();
+
+        final long animation = engine.begin(null);
+        engine.add(animation, closed, TweenEngine.POSITION, 0, 0, 0, 0, 1, 1, 1, 0, 0, 1, null);
+        engine.add(animation, closed, TweenEngine.OPACITY, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, null);
+        engine.add(animation, other, TweenEngine.POSITION, 0, 0, 0, 0, 1, 1, 1, 0, 0, 1, null);
+        engine.update(DELTA_SECONDS);
+        assertEquals(3, engine.getTweenCount());
+
+        closed.close();
+        engine.update(DELTA_SECONDS);
+
+        assertEquals(1, engine.getTweenCount());
+        assertEquals(1, engine.getTargetCount());
+        assertTrue(engine.isRunning(animation));
+        assertTrue(other.getPosition(new Vector3f()).x > 0);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.scene_objects;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.eje_c.meganekko.Texture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares redrawing all tiles with redrawing only tiles which intersect dirty views,
+ * as {@link TiledViewSceneObject} does. Each frame one row of a 1024x2048 view is changed.
+ * Run with {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TiledViewRedrawBenchmark {
+
+    private static final String TAG = "TiledViewRedrawBenchmark";
+    private static final int WIDTH = 1024;
+    private static final int ROWS = 64;
+    private static final int ROW_HEIGHT = 32;
+    private static final int TILE_SIZE = 256;
+    private static final int FRAMES = 200;
+
+    private View mView;
+    private final List<View> mRows = new ArrayList<>();
+    private final List<Rect> mTileBounds = new ArrayList<>();
+    private final List<Canvas> mTileCanvases = new ArrayList<>();
+    private final Rect mDirtyRect = new Rect();
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        LinearLayout layout = new LinearLayout(context);
+        layout.setOrientation(LinearLayout.VERTICAL);
+
+        for (int i = 0; i < ROWS; ++i) {
+            TextView row = new TextView(context);
+            row.setText("Row " + i);
+            row.setTextSize(20);
+            layout.addView(row, new ViewGroup.LayoutParams(WIDTH, ROW_HEIGHT));
+            mRows.add(row);
+        }
+
+        layout.measure(0, 0);
+        layout.layout(0, 0, layout.getMeasuredWidth(), layout.getMeasuredHeight());
+        mView = layout;
+
+        for (int top = 0; top < layout.getHeight(); top += TILE_SIZE) {
+            for (int left = 0; left < layout.getWidth(); left += TILE_SIZE) {
+                mTileBounds.add(new Rect(left, top, left + TILE_SIZE, top + TILE_SIZE));
+                mTileCanvases.add(new Canvas(Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888)));
+            }
+        }
+
+        // Views are marked dirty by invalidation only after they were drawn once
+        redrawAll();
+    }
+
+    @Test
+    public void fullVersusPartialRedraw() {
+        int fullTiles = 0;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; ++frame) {
+            changeRow(frame);
+            fullTiles += redrawAll();
+        }
+        long fullNanos = System.nanoTime() - start;
+
+        int partialTiles = 0;
+        start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; ++frame) {
+            changeRow(frame);
+            partialTiles += redrawDirty();
+        }
+        long partialNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("full: %.3f ms/frame, %d tiles/frame", fullNanos / 1e6 / FRAMES, fullTiles / FRAMES));
+        Log.i(TAG, String.format("partial: %.3f ms/frame, %d tiles/frame", partialNanos / 1e6 / FRAMES, partialTiles / FRAMES));
+
+        assertTrue(partialTiles < fullTiles);
+    }
+
+    private void changeRow(int frame) {
+        mRows.get(frame % ROWS).setBackgroundColor(frame % 2 == 0 ? Color.DKGRAY : Color.TRANSPARENT);
+    }
+
+    private int redrawAll() {
+        for (int i = 0; i < mTileBounds.size(); ++i) {
+            drawTile(i);
+        }
+        return mTileBounds.size();
+    }
+
+    private int redrawDirty() {
+        mDirtyRect.setEmpty();
+        Texture.ViewRenderer.computeDirtyRect(mView, mDirtyRect);
+
+        int count = 0;
+        for (int i = 0; i < mTileBounds.size(); ++i) {
+            if (Rect.intersects(mTileBounds.get(i), mDirtyRect)) {
+                drawTile(i);
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private void drawTile(int index) {
+        Canvas canvas = mTileCanvases.get(index);
+        Rect bounds = mTileBounds.get(index);
+        canvas.save();
+        canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+        canvas.translate(-bounds.left, -bounds.top);
+        mView.draw(canvas);
+        canvas.restore();
+    }
+}
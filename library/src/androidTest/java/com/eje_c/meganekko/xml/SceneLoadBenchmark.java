@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko.xml;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.eje_c.meganekko.Scene;
+import com.eje_c.meganekko.SceneObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static com.eje_c.meganekko.xml.BinarySceneLoader.HEADER_SIZE;
+import static com.eje_c.meganekko.xml.BinarySceneLoader.NODE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Time to first frame of 5k nodes scene, from source to {@link Scene} ready to render, with
+ * {@link XmlSceneParser} and {@link BinarySceneLoader}. XML is parsed from text here, not from
+ * binary XML compiled by aapt, and rendering is not included. Run with
+ * {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SceneLoadBenchmark {
+
+    static {
+        System.loadLibrary("meganekko");
+    }
+
+    private static final String TAG = "SceneLoadBenchmark";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int GROUPS = 100;
+    private static final int CHILDREN = 49;
+    private static final int NODES = GROUPS * (CHILDREN + 1);
+    private static final int RUNS = 5;
+
+    private Context mContext;
+    private byte[] mXml;
+    private ByteBuffer mCompiled;
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        mContext = InstrumentationRegistry.getTargetContext();
+        mXml = createXml();
+        mCompiled = createCompiledScene();
+    }
+
+    // Groups with scale, and children with position only
+    private static byte[] createXml() {
+        final StringBuilder xml = new StringBuilder("<scene>\n");
+        for (int g = 0; g < GROUPS; ++g) {
+            xml.append("<object name=\"group").append(g).append("\" position=\"")
+                    .append(g).append(" 0 -5\" scale=\"0.5 0.5 0.5\">\n");
+            for (int c = 0; c < CHILDREN; ++c) {
+                xml.append("<object name=\"child").append(c).append("\" position=\"")
+                        .append(c * 0.25f).append(' ').append(c * -0.5f).append(" 1.5\" />\n");
+            }
+            xml.append("</object>\n");
+        }
+        return xml.append("</scene>\n").toString().getBytes(UTF_8);
+    }
+
+    // Same scene as createXml() in the layout described in BinarySceneLoader
+    private static ByteBuffer createCompiledScene() {
+        final byte[][] names = new byte[GROUPS + CHILDREN][];
+        int stringsSize = 0;
+        for (int i = 0; i < names.length; ++i) {
+            names[i] = (i < GROUPS ? "group" + i : "child" + (i - GROUPS)).getBytes(UTF_8);
+            stringsSize += 4 + names[i].length;
+        }
+        final int nodesOffset = HEADER_SIZE + stringsSize;
+        final ByteBuffer data = ByteBuffer.allocate(nodesOffset + NODES * NODE_SIZE);
+
+        data.putInt(BinarySceneLoader.MAGIC).putInt(BinarySceneLoader.VERSION)
+                .putInt(names.length).putInt(0).putInt(NODES).putInt(-1)
+                .putInt(HEADER_SIZE).putInt(nodesOffset);
+        for (byte[] name : names) {
+            data.putInt(name.length).put(name);
+        }
+
+        int node = 0;
+        for (int g = 0; g < GROUPS; ++g) {
+            final int group = node;
+            putNode(data, nodesOffset + node++ * NODE_SIZE, -1, BinarySceneLoader.FLAG_SCALE, g, g, 0, -5, 0.5f);
+            for (int c = 0; c < CHILDREN; ++c) {
+                putNode(data, nodesOffset + node++ * NODE_SIZE, group, 0, GROUPS + c, c * 0.25f, c * -0.5f, 1.5f, 1);
+            }
+        }
+
+        data.rewind();
+        return data;
+    }
+
+    private static void putNode(ByteBuffer data, int o, int parent, int flags, int name,
+                                float x, float y, float z, float scale) {
+        data.putInt(o, parent);
+        data.putShort(o + 4, (short) BinarySceneLoader.CLASS_OBJECT);
+        data.putShort(o + 6, (short) flags);
+        data.putInt(o + 8, -1);
+        data.putInt(o + 12, name);
+        data.putFloat(o + 16, x).putFloat(o + 20, y).putFloat(o + 24, z);
+        data.putFloat(o + 28, 0).putFloat(o + 32, 0).putFloat(o + 36, 0).putFloat(o + 40, 1);
+        data.putFloat(o + 44, scale).putFloat(o + 48, scale).putFloat(o + 52, scale);
+        data.putFloat(o + 56, 1);
+        data.putInt(o + 60, -1);
+        data.putInt(o + 72, -1);
+        data.putInt(o + 76, -1);
+    }
+
+    private static int countNodes(SceneObject object) {
+        int count = 0;
+        for (int i = 0; i < object.getChildrenCount(); ++i) {
+            count += 1 + countNodes(object.getChildByIndex(i));
+        }
+        return count;
+    }
+
+    @Test
+    public void fiveThousandNodes() throws Exception {
+        final XmlSceneParser parser = new XmlSceneParser(mContext);
+        final BinarySceneLoader loader = new BinarySceneLoader(mContext);
+        final String resourcePackage = mContext.getPackageName();
+
+        // Warm up and check both produce same tree
+        assertEquals(NODES, countNodes(parser.parse(new ByteArrayInputStream(mXml), null)));
+        assertEquals(NODES, countNodes(loader.load(mCompiled, resourcePackage, null)));
+
+        long xmlNanos = Long.MAX_VALUE;
+        long binaryNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            long start = System.nanoTime();
+            parser.parse(new ByteArrayInputStream(mXml), null);
+            xmlNanos = Math.min(xmlNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            loader.load(mCompiled, resourcePackage, null);
+            binaryNanos = Math.min(binaryNanos, System.nanoTime() - start);
+        }
+
+        Log.i(TAG, String.format("%d nodes: XML %.2f ms (%d bytes), binary %.2f ms (%d bytes), %.1fx",
+                NODES, xmlNanos / 1e6, mXml.length, binaryNanos / 1e6, mCompiled.remaining(),
+                (double) xmlNanos / binaryNanos));
+    }
+}
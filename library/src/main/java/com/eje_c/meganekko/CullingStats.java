@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+/**
+ * Frustum culling statistics of a frame. Obtained by {@link Scene#getCullingStats(CullingStats)}.
+ * Instance can be reused to avoid allocation.
+ */
+public class CullingStats {
+
+    final long[] mValues = new long[4];
+
+    /**
+     * @return Number of bounding box tests against frustum.
+     */
+    public int getTestedCount() {
+        return (int) mValues[0];
+    }
+
+    /**
+     * @return Number of objects outside of frustum.
+     */
+    public int getCulledCount() {
+        return (int) mValues[1];
+    }
+
+    /**
+     * @return Number of objects inside of frustum.
+     */
+    public int getAcceptedCount() {
+        return (int) mValues[2];
+    }
+
+    /**
+     * @return Time spent for culling in nanoseconds.
+     */
+    public long getTimeNanos() {
+        return mValues[3];
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.support.annotation.NonNull;
+
+import com.eje_c.meganekko.utility.Exceptions;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Mesh with fixed capacity whose vertices and indices can be rewritten every frame.
+ * Updated ranges are copied to native memory and uploaded to one of three GPU buffers on next
+ * draw, so writing never waits for GPU reading previous frames. Bounding box is refit only
+ * around updated vertices.
+ * <pre>
+ * DynamicMesh mesh = new DynamicMesh(layout, 100000, 150000);
+ * mesh.updateIndices(0, indices);
+ * mesh.setCounts(100000, 150000);
+ *
+ * // every frame
+ * mesh.updateVertices(0, vertices);
+ * </pre>
+ * Methods must be called on GL thread. Vertices are not kept for static batching.
+ * Calling {@code build} methods of {@link Mesh} turns this mesh back into static one and
+ * further updates throw {@link IllegalStateException}.
+ */
+public class DynamicMesh extends Mesh {
+
+    private final VertexLayout mLayout;
+    private final int mVertexCapacity;
+    private final int mIndexCapacity;
+    private int mVertexCount;
+    private int mIndexCount;
+
+    private static native void allocate(long mesh, int[] layout, int stride, int vertexCapacity, int indexCapacity);
+
+    private static native boolean updateVertices(long mesh, ByteBuffer vertices, int offset, int firstVertex, int vertexCount);
+
+    private static native boolean updateIndices(long mesh, Buffer indices, int offset, int firstIndex, int indexCount);
+
+    private static native int getMaxIndex(long mesh, int indexCount);
+
+    private static native boolean setCounts(long mesh, int vertexCount, int indexCount);
+
+    /**
+     * @param layout         Layout of a vertex. It must contain {@link VertexLayout.Attribute#POSITION}.
+     * @param vertexCapacity Maximum number of vertices. Up to 65536 because indices are 16 bit.
+     * @param indexCapacity  Maximum number of indices.
+     */
+    public DynamicMesh(@NonNull VertexLayout layout, int vertexCapacity, int indexCapacity) {
+
+        if (!layout.hasPosition()) {
+            throw Exceptions.IllegalArgument("layout must contain POSITION.");
+        } else if (vertexCapacity <= 0 || vertexCapacity > 65536) {
+            throw Exceptions.IllegalArgument("vertexCapacity must be between 1 and 65536: %d", vertexCapacity);
+        } else if (indexCapacity <= 0) {
+            throw Exceptions.IllegalArgument("indexCapacity must be positive: %d", indexCapacity);
+        }
+
+        mLayout = layout;
+        mVertexCapacity = vertexCapacity;
+        mIndexCapacity = indexCapacity;
+        allocate(getNative(), layout.getValues(), layout.getStride(), vertexCapacity, indexCapacity);
+    }
+
+    /**
+     * Overwrite vertices starting at {@code firstVertex} with remaining elements of {@code vertices}.
+     * Position of the buffer is not changed, so it can be refilled and passed again.
+     *
+     * @param firstVertex Index of first vertex to be overwritten.
+     * @param vertices    Direct buffer of vertices laid out as layout passed to constructor, in native byte order.
+     */
+    public void updateVertices(int firstVertex, @NonNull ByteBuffer vertices) {
+
+        if (!vertices.isDirect()) {
+            throw Exceptions.IllegalArgument("vertices must be a direct buffer.");
+        } else if (vertices.order() != ByteOrder.nativeOrder()) {
+            throw Exceptions.IllegalArgument("vertices must be in native byte order.");
+        }
+
+        final int stride = mLayout.getStride();
+        if (vertices.remaining() % stride != 0) {
+            throw Exceptions.IllegalArgument("vertices size %d is not multiple of stride %d.", vertices.remaining(), stride);
+        }
+
+        final int count = vertices.remaining() / stride;
+        checkRange(firstVertex, count, mVertexCapacity);
+
+        if (!updateVertices(getNative(), vertices, vertices.position(), firstVertex, count)) {
+            throw new IllegalStateException("Mesh is no longer dynamic.");
+        }
+    }
+
+    /**
+     * Overwrite indices starting at {@code firstIndex} with remaining elements of {@code indices}.
+     * Indices which are drawn with current counts must be less than vertex count, others must be
+     * less than vertex capacity.
+     *
+     * @param firstIndex Index of first index to be overwritten.
+     * @param indices    Direct {@link ShortBuffer} or {@link ByteBuffer} of 16 bit unsigned indices of triangles,
+     *                   in native byte order.
+     */
+    public void updateIndices(int firstIndex, @NonNull Buffer indices) {
+
+        if (!indices.isDirect()) {
+            throw Exceptions.IllegalArgument("indices must be a direct buffer.");
+        }
+
+        final int offset;
+        final int count;
+        if (indices instanceof ShortBuffer) {
+            if (((ShortBuffer) indices).order() != ByteOrder.nativeOrder()) {
+                throw Exceptions.IllegalArgument("indices must be in native byte order.");
+            }
+            offset = indices.position() * 2;
+            count = indices.remaining();
+        } else if (indices instanceof ByteBuffer) {
+            if (((ByteBuffer) indices).order() != ByteOrder.nativeOrder()) {
+                throw Exceptions.IllegalArgument("indices must be in native byte order.");
+            } else if (indices.remaining() % 2 != 0) {
+                throw Exceptions.IllegalArgument("indices size must be multiple of 2.");
+            }
+            offset = indices.position();
+            count = indices.remaining() / 2;
+        } else {
+            throw Exceptions.IllegalArgument("indices must be ShortBuffer or ByteBuffer.");
+        }
+
+        checkRange(firstIndex, count, mIndexCapacity);
+
+        // Indices in drawn range are checked now, others when counts are changed
+        final int drawn = Math.max(0, Math.min(mIndexCount - firstIndex, count));
+        checkIndices(indices, 0, drawn, mVertexCount);
+        checkIndices(indices, drawn, count, mVertexCapacity);
+
+        if (!updateIndices(getNative(), indices, offset, firstIndex, count)) {
+            throw new IllegalStateException("Mesh is no longer dynamic.");
+        }
+    }
+
+    /**
+     * Set number of vertices in use and number of indices to draw. Vertices beyond
+     * {@code vertexCount} are excluded from bounding box.
+     *
+     * @param vertexCount Number of vertices from the beginning.
+     * @param indexCount  Number of indices from the beginning. Must be multiple of 3 and
+     *                    these indices must be less than {@code vertexCount}.
+     */
+    public void setCounts(int vertexCount, int indexCount) {
+
+        checkRange(0, vertexCount, mVertexCapacity);
+        checkRange(0, indexCount, mIndexCapacity);
+        if (indexCount % 3 != 0) {
+            throw Exceptions.IllegalArgument("index count must be multiple of 3: %d", indexCount);
+        }
+
+        final int maxIndex = getMaxIndex(getNative(), indexCount);
+        if (maxIndex >= vertexCount) {
+            throw Exceptions.IllegalArgument("index %d is out of vertex count %d.", maxIndex, vertexCount);
+        }
+
+        if (!setCounts(getNative(), vertexCount, indexCount)) {
+            throw new IllegalStateException("Mesh is no longer dynamic.");
+        }
+        mVertexCount = vertexCount;
+        mIndexCount = indexCount;
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public int getIndexCount() {
+        return mIndexCount;
+    }
+
+    public int getVertexCapacity() {
+        return mVertexCapacity;
+    }
+
+    public int getIndexCapacity() {
+        return mIndexCapacity;
+    }
+
+    public VertexLayout getLayout() {
+        return mLayout;
+    }
+
+    private static void checkRange(int first, int count, int capacity) {
+        if (first < 0 || count < 0 || first + count > capacity) {
+            throw Exceptions.IllegalArgument("range [%d, %d) exceeds capacity %d.", first, first + count, capacity);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Locale;
+
+/**
+ * Timing histograms of frame phases in Java and native code.
+ * <p>
+ * Both sides record into one direct buffer without allocation, so recording costs two clock reads
+ * per phase. Recording is off until {@link #setEnabled(boolean)} is called. Build with
+ * {@code -PframeStats=false} to compile recording out. Histograms have a bucket for each
+ * microsecond below 16 &micro;s and 8 buckets per power of 2 above that, so percentiles are
+ * within 12.5%.
+ * <p>
+ * Values are written by GL thread without locking. Getters and {@link #dump(File)} can be called
+ * from any thread. They compute from one copy of a phase, or of all phases for {@code dump}, so
+ * values don't change during computation. A phase recorded while copying may be partly included,
+ * for example counted but not yet in a bucket. Call on GL thread for exact values.
+ * <pre>
+ * FrameStats.setEnabled(true);
+ * ...
+ * double p95 = FrameStats.getPercentileMillis(FrameStats.Phase.CULL, 0.95);
+ * FrameStats.dump(new File(context.getExternalFilesDir(null), "frame_stats.csv"));
+ * </pre>
+ */
+public final class FrameStats {
+
+    /**
+     * Phases of a frame. Phases nest, for example {@link #GL_TASKS} is a part of {@link #JAVA_UPDATE},
+     * which is a part of {@link #FRAME}.
+     */
+    public enum Phase {
+        /**
+         * Native frame including Java update. Does not include drawing eyes.
+         */
+        FRAME,
+        /**
+         * {@link MeganekkoApp#update()} and other Java callbacks.
+         */
+        JAVA_UPDATE,
+        /**
+         * Tasks posted by {@link MeganekkoApp#runOnGlThread(Runnable)}.
+         */
+        GL_TASKS,
+        /**
+         * Tweens started by {@link SceneObject#animate()}.
+         */
+        ANIMATION,
+        /**
+         * {@link Scene#update(Frame)}.
+         */
+        SCENE_UPDATE,
+        /**
+         * Deleting native objects of garbage collected Java objects.
+         */
+        REFERENCE_CLEANUP,
+        /**
+         * Publishing statistics of native scene.
+         */
+        PREPARE_FOR_RENDERING,
+        /**
+         * Updating static batches and rebuilding render queue.
+         */
+        QUEUE_REBUILD,
+        /**
+         * Occlusion and frustum culling.
+         */
+        CULL,
+        /**
+         * Sorting transparent objects and grouping instances.
+         */
+        SORT,
+        DRAW_LEFT_EYE,
+        DRAW_RIGHT_EYE
+    }
+
+    // Must match FrameStats.h
+    private static final int BUCKET_COUNT = 128;
+    private static final int VALUES_PER_PHASE = 3 + BUCKET_COUNT;
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MAX = 2;
+    private static final int BUCKETS = 3;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    // Shared with native. Never freed, so native side never writes to released memory.
+    private static final ByteBuffer sBytes = ByteBuffer
+            .allocateDirect(PHASES.length * VALUES_PER_PHASE * 8)
+            .order(ByteOrder.nativeOrder());
+    private static final LongBuffer sValues = sBytes.asLongBuffer();
+    private static volatile boolean sEnabled;
+
+    private static native void nativeAttach(ByteBuffer values);
+
+    private FrameStats() {
+    }
+
+    /**
+     * Start or stop recording. Recorded values are kept. Call on GL thread.
+     */
+    public static void setEnabled(boolean enabled) {
+        if (!BuildConfig.FRAME_STATS) return;
+
+        sEnabled = enabled;
+        nativeAttach(enabled ? sBytes : null);
+    }
+
+    public static boolean isEnabled() {
+        return BuildConfig.FRAME_STATS && sEnabled;
+    }
+
+    /**
+     * Start timing a phase on Java side.
+     *
+     * @return Start time to be passed to {@link #end(Phase, long)}. 0 if not recording.
+     */
+    public static long begin() {
+        return BuildConfig.FRAME_STATS && sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record time of a phase from {@code start}.
+     *
+     * @param start Value returned by {@link #begin()} or previous {@code end}.
+     * @return End time, which can be used as start of next phase. 0 if not recording.
+     */
+    public static long end(@NonNull Phase phase, long start) {
+        if (!BuildConfig.FRAME_STATS || start == 0 || !sEnabled) return 0;
+
+        final long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Record time of a phase measured by caller. Call on GL thread.
+     */
+    public static void record(@NonNull Phase phase, long nanos) {
+        if (!BuildConfig.FRAME_STATS || !sEnabled) return;
+
+        final int base = phase.ordinal() * VALUES_PER_PHASE;
+        sValues.put(base + COUNT, sValues.get(base + COUNT) + 1);
+        sValues.put(base + SUM, sValues.get(base + SUM) + nanos);
+        if (nanos > sValues.get(base + MAX)) {
+            sValues.put(base + MAX, nanos);
+        }
+        final int bucket = base + BUCKETS + bucketOf(nanos);
+        sValues.put(bucket, sValues.get(bucket) + 1);
+    }
+
+    // Same as FrameStats::BucketOf in native
+    static int bucketOf(long nanos) {
+        final long micros = Math.max(nanos, 0) / 1000;
+        if (micros < 16) return (int) micros;
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int bucket = 16 + (exponent - 4) * 8 + (int) ((micros >> (exponent - 3)) & 7);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    // Lower bound of bucket in microseconds
+    static long bucketLowerMicros(int bucket) {
+        if (bucket < 16) return bucket;
+
+        final int exponent = (bucket - 16) / 8 + 4;
+        final int sub = (bucket - 16) % 8;
+        return (long) (8 + sub) << (exponent - 3);
+    }
+
+    /**
+     * @return Number of recorded frames of phase.
+     */
+    public static long getCount(@NonNull Phase phase) {
+        return sValues.get(phase.ordinal() * VALUES_PER_PHASE + COUNT);
+    }
+
+    public static double getMeanMillis(@NonNull Phase phase) {
+        return meanMillis(snapshot(phase), 0);
+    }
+
+    public static double getMaxMillis(@NonNull Phase phase) {
+        return maxMillis(snapshot(phase), 0);
+    }
+
+    /**
+     * @param percentile Between 0 and 1. For example 0.95 for p95.
+     * @return Estimated time in milliseconds. Middle of the bucket containing the percentile.
+     */
+    public static double getPercentileMillis(@NonNull Phase phase, double percentile) {
+        return percentileMillis(snapshot(phase), 0, percentile);
+    }
+
+    // Copy values of phase. Duplicate has its own position, so GL thread is not affected.
+    private static long[] snapshot(Phase phase) {
+        final long[] values = new long[VALUES_PER_PHASE];
+        final LongBuffer buffer = sValues.duplicate();
+        buffer.position(phase.ordinal() * VALUES_PER_PHASE);
+        buffer.get(values);
+        return values;
+    }
+
+    private static long[] snapshot() {
+        final long[] values = new long[sValues.capacity()];
+        sValues.duplicate().get(values);
+        return values;
+    }
+
+    private static double meanMillis(long[] values, int base) {
+        final long count = values[base + COUNT];
+        return count > 0 ? values[base + SUM] / 1e6 / count : 0.0;
+    }
+
+    private static double maxMillis(long[] values, int base) {
+        return values[base + MAX] / 1e6;
+    }
+
+    private static double percentileMillis(long[] values, int base, double percentile) {
+        final long count = values[base + COUNT];
+        if (count == 0) return 0.0;
+
+        final long rank = Math.max((long) Math.ceil(percentile * count), 1);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            cumulative += values[base + BUCKETS + i];
+            if (cumulative >= rank) {
+                if (i == BUCKET_COUNT - 1) {
+                    return maxMillis(values, base);
+                }
+                return (bucketLowerMicros(i) + bucketLowerMicros(i + 1)) * 0.5 / 1000.0;
+            }
+        }
+        return maxMillis(values, base);
+    }
+
+    public static double getP50Millis(@NonNull Phase phase) {
+        return getPercentileMillis(phase, 0.50);
+    }
+
+    public static double getP95Millis(@NonNull Phase phase) {
+        return getPercentileMillis(phase, 0.95);
+    }
+
+    public static double getP99Millis(@NonNull Phase phase) {
+        return getPercentileMillis(phase, 0.99);
+    }
+
+    /**
+     * Clear all recorded values. Call on GL thread.
+     */
+    public static void reset() {
+        for (int i = 0; i < sValues.capacity(); ++i) {
+            sValues.put(i, 0);
+        }
+    }
+
+    /**
+     * Write summary and non-empty buckets of all phases as CSV. All rows are from one copy of values.
+     */
+    public static void dump(@NonNull File file) throws IOException {
+        final long[] values = snapshot();
+
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println("phase,count,mean_ms,p50_ms,p95_ms,p99_ms,max_ms");
+            for (Phase phase : PHASES) {
+                final int base = phase.ordinal() * VALUES_PER_PHASE;
+                writer.println(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        phase, values[base + COUNT], meanMillis(values, base),
+                        percentileMillis(values, base, 0.50), percentileMillis(values, base, 0.95),
+                        percentileMillis(values, base, 0.99), maxMillis(values, base)));
+            }
+
+            writer.println();
+            writer.println("phase,bucket_lower_us,count");
+            for (Phase phase : PHASES) {
+                final int base = phase.ordinal() * VALUES_PER_PHASE + BUCKETS;
+                for (int i = 0; i < BUCKET_COUNT; ++i) {
+                    final long count = values[base + i];
+                    if (count > 0) {
+                        writer.println(String.format(Locale.US, "%s,%d,%d", phase, bucketLowerMicros(i), count));
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (writer.checkError()) {
+            throw new IOException("Failed to write " + file);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+/**
+ * Statistics and switch of the cache which lets meshes built with same built-in shape and
+ * parameters, such as {@link Mesh#createQuad(float, float)} of same size, share one GPU geometry.
+ * Geometry is reference counted and freed when the last mesh using it is garbage collected or
+ * rebuilt. Methods must be called on GL thread.
+ */
+public final class GeometryCache {
+
+    private static native void nativeSetEnabled(boolean enabled);
+
+    private static native boolean nativeIsEnabled();
+
+    private static native int nativeGetHitCount();
+
+    private static native int nativeGetMissCount();
+
+    private static native int nativeGetEntryCount();
+
+    private static native long nativeGetBytesSaved();
+
+    private static native void nativeResetCounters();
+
+    private GeometryCache() {
+    }
+
+    /**
+     * When disabled, meshes built afterwards get their own geometry. Default is enabled.
+     */
+    public static void setEnabled(boolean enabled) {
+        nativeSetEnabled(enabled);
+    }
+
+    public static boolean isEnabled() {
+        return nativeIsEnabled();
+    }
+
+    /**
+     * @return Number of builds which reused existing geometry since last {@link #resetCounters()}.
+     */
+    public static int getHitCount() {
+        return nativeGetHitCount();
+    }
+
+    /**
+     * @return Number of builds which created new geometry since last {@link #resetCounters()}.
+     */
+    public static int getMissCount() {
+        return nativeGetMissCount();
+    }
+
+    /**
+     * @return Ratio of hits in all builds. 0 if nothing is built.
+     */
+    public static float getHitRate() {
+        final int hits = getHitCount();
+        final int total = hits + getMissCount();
+        return total > 0 ? (float) hits / total : 0.0f;
+    }
+
+    /**
+     * @return Size of vertex and index buffers in bytes which would have been allocated on GPU
+     * without cache since last {@link #resetCounters()}.
+     */
+    public static long getBytesSaved() {
+        return nativeGetBytesSaved();
+    }
+
+    /**
+     * @return Number of distinct geometries currently alive in cache.
+     */
+    public static int getEntryCount() {
+        return nativeGetEntryCount();
+    }
+
+    public static void resetCounters() {
+        nativeResetCounters();
+    }
+}
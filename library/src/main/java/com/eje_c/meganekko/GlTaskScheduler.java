@@ -0,0 +1,408 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.support.annotation.NonNull;
+
+import com.eje_c.meganekko.utility.Exceptions;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks on GL thread within a time budget per frame.
+ * <p>
+ * Tasks can be posted from any thread. {@link #run(Frame)} is called once per frame on GL thread
+ * and runs ready tasks from higher priority while spent time is within the budget, which is a
+ * fraction of display period. Tasks left over wait for next frame. At least one task runs every
+ * frame, and tasks which have waited too long are promoted to higher priority, so nothing starves.
+ * Tasks with deadline run regardless of the budget on the last frame displayed before the deadline.
+ * <p>
+ * Time is read from {@link Clock}, so the scheduler can be driven by a fake clock and fake frames.
+ */
+public class GlTaskScheduler {
+
+    /**
+     * Source of monotonic time.
+     */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    public enum Priority {
+        /**
+         * For tasks which affect what user sees in next frame, such as responses to input.
+         */
+        HIGH,
+        NORMAL,
+        /**
+         * For heavy background work such as building meshes or swapping textures.
+         */
+        LOW
+    }
+
+    private static final double DEFAULT_DISPLAY_PERIOD = 1.0 / 60.0;
+    private static final float DEFAULT_BUDGET_FRACTION = 0.2f;
+    private static final int DEFAULT_PROMOTION_FRAMES = 30;
+
+    private static final Comparator<Task> BY_DUE_FRAME = new Comparator<Task>() {
+        @Override
+        public int compare(Task lhs, Task rhs) {
+            return lhs.dueFrame != rhs.dueFrame ? (lhs.dueFrame < rhs.dueFrame ? -1 : 1) : compareSequence(lhs, rhs);
+        }
+    };
+
+    private static final Comparator<Task> BY_DUE_NANOS = new Comparator<Task>() {
+        @Override
+        public int compare(Task lhs, Task rhs) {
+            return lhs.dueNanos != rhs.dueNanos ? (lhs.dueNanos < rhs.dueNanos ? -1 : 1) : compareSequence(lhs, rhs);
+        }
+    };
+
+    private static final Comparator<Task> BY_DEADLINE = new Comparator<Task>() {
+        @Override
+        public int compare(Task lhs, Task rhs) {
+            return lhs.deadline != rhs.deadline ? (lhs.deadline < rhs.deadline ? -1 : 1) : compareSequence(lhs, rhs);
+        }
+    };
+
+    private final Clock mClock;
+
+    // Posted from any thread
+    private final Queue<Task> mIncoming = new ConcurrentLinkedQueue<>();
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+
+    // Used only on GL thread
+    private final ArrayDeque<Task>[] mReady;
+    private final PriorityQueue<Task> mFrameDelayed = new PriorityQueue<>(11, BY_DUE_FRAME);
+    private final PriorityQueue<Task> mTimeDelayed = new PriorityQueue<>(11, BY_DUE_NANOS);
+    private final PriorityQueue<Task> mDeadlines = new PriorityQueue<>(11, BY_DEADLINE);
+    private double mLastDisplayTime;
+    private double mDisplayPeriod = DEFAULT_DISPLAY_PERIOD;
+    private float mBudgetFraction = DEFAULT_BUDGET_FRACTION;
+    private int mPromotionFrames = DEFAULT_PROMOTION_FRAMES;
+
+    // Metrics
+    private volatile int mLastRunCount;
+    private volatile long mLastRunNanos;
+    private volatile long mMaxLatencyNanos;
+    private volatile double mAverageLatencyNanos;
+    private volatile int mOverBudgetFrames;
+
+    public GlTaskScheduler() {
+        this(SYSTEM_CLOCK);
+    }
+
+    @SuppressWarnings("unchecked")
+    public GlTaskScheduler(@NonNull Clock clock) {
+        mClock = clock;
+        mReady = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < mReady.length; ++i) {
+            mReady[i] = new ArrayDeque<>();
+        }
+    }
+
+    private static int compareSequence(Task lhs, Task rhs) {
+        return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+    }
+
+    /**
+     * Run task on next frame with {@link Priority#NORMAL}. Can be called from any thread.
+     */
+    public void post(@NonNull Runnable action) {
+        post(action, Priority.NORMAL);
+    }
+
+    /**
+     * Run task on next frame or later if budget is exhausted. Can be called from any thread.
+     */
+    public void post(@NonNull Runnable action, @NonNull Priority priority) {
+        enqueue(new Task(action, priority));
+    }
+
+    /**
+     * Run task after {@code frames} frames. Can be called from any thread.
+     *
+     * @param frames 0 means next frame.
+     */
+    public void postDelayedFrames(@NonNull Runnable action, int frames, @NonNull Priority priority) {
+        if (frames < 0) {
+            throw Exceptions.IllegalArgument("frames must not be negative: %d", frames);
+        }
+        Task task = new Task(action, priority);
+        task.delayFrames = frames;
+        enqueue(task);
+    }
+
+    /**
+     * Run task on first frame after {@code delayMillis} has passed. Can be called from any thread.
+     */
+    public void postDelayed(@NonNull Runnable action, long delayMillis, @NonNull Priority priority) {
+        Task task = new Task(action, priority);
+        task.dueNanos = mClock.nanoTime() + Math.max(delayMillis, 0) * 1000000L;
+        enqueue(task);
+    }
+
+    /**
+     * Run task within budget, but no later than the last frame which is displayed before
+     * {@code deadline}. Can be called from any thread.
+     *
+     * @param deadline Time comparable with {@link Frame#getPredictedDisplayTimeInSeconds()}.
+     */
+    public void postWithDeadline(@NonNull Runnable action, double deadline, @NonNull Priority priority) {
+        Task task = new Task(action, priority);
+        task.deadline = deadline;
+        enqueue(task);
+    }
+
+    private void enqueue(Task task) {
+        task.sequence = mSequence.getAndIncrement();
+        mPendingCount.incrementAndGet();
+        mIncoming.add(task);
+    }
+
+    /**
+     * Run tasks for this frame. Must be called once per frame on GL thread.
+     */
+    public void run(@NonNull Frame frame) {
+        final long start = mClock.nanoTime();
+        final int frameNumber = frame.getFrameNumber();
+        final double displayTime = frame.getPredictedDisplayTimeInSeconds();
+
+        updateDisplayPeriod(displayTime);
+        acceptIncoming(frameNumber, start);
+        releaseDelayed(frameNumber, start);
+        promoteWaiting(frameNumber);
+
+        final long budget = getBudgetNanos();
+        int count = 0;
+
+        // Deadline would be missed if this frame didn't run them
+        final double nextDisplayTime = displayTime + mDisplayPeriod;
+        while (!mDeadlines.isEmpty() && mDeadlines.peek().deadline < nextDisplayTime) {
+            execute(mDeadlines.poll(), start);
+            ++count;
+        }
+
+        for (ArrayDeque<Task> ready : mReady) {
+            while (!ready.isEmpty() && (count == 0 || mClock.nanoTime() - start < budget)) {
+                execute(ready.poll(), start);
+                ++count;
+            }
+        }
+
+        // Deadline tasks are ordinary work while budget remains
+        while (!mDeadlines.isEmpty() && (count == 0 || mClock.nanoTime() - start < budget)) {
+            execute(mDeadlines.poll(), start);
+            ++count;
+        }
+
+        final long spent = mClock.nanoTime() - start;
+        if (spent > budget) {
+            ++mOverBudgetFrames;
+        }
+        mLastRunCount = count;
+        mLastRunNanos = spent;
+    }
+
+    private void updateDisplayPeriod(double displayTime) {
+        final double period = displayTime - mLastDisplayTime;
+        mLastDisplayTime = displayTime;
+
+        // Ignore first frame and pauses
+        if (period > 0.0 && period < 0.1) {
+            mDisplayPeriod += (period - mDisplayPeriod) * 0.1;
+        }
+    }
+
+    private void acceptIncoming(int frameNumber, long now) {
+        Task task;
+        while ((task = mIncoming.poll()) != null) {
+            if (task.delayFrames > 0) {
+                task.dueFrame = frameNumber + task.delayFrames;
+                mFrameDelayed.add(task);
+            } else if (task.dueNanos > now) {
+                mTimeDelayed.add(task);
+            } else if (!Double.isNaN(task.deadline)) {
+                task.readyNanos = now;
+                mDeadlines.add(task);
+            } else {
+                makeReady(task, frameNumber, now);
+            }
+        }
+    }
+
+    private void releaseDelayed(int frameNumber, long now) {
+        while (!mFrameDelayed.isEmpty() && mFrameDelayed.peek().dueFrame <= frameNumber) {
+            makeReady(mFrameDelayed.poll(), frameNumber, now);
+        }
+        while (!mTimeDelayed.isEmpty() && mTimeDelayed.peek().dueNanos <= now) {
+            makeReady(mTimeDelayed.poll(), frameNumber, now);
+        }
+    }
+
+    private void makeReady(Task task, int frameNumber, long now) {
+        task.readyFrame = frameNumber;
+        task.readyNanos = now;
+        mReady[task.priority.ordinal()].add(task);
+    }
+
+    private void promoteWaiting(int frameNumber) {
+        for (int p = 1; p < mReady.length; ++p) {
+            final ArrayDeque<Task> ready = mReady[p];
+            while (!ready.isEmpty() && frameNumber - ready.peek().readyFrame >= mPromotionFrames) {
+                final Task task = ready.poll();
+                task.readyFrame = frameNumber;
+                mReady[p - 1].add(task);
+            }
+        }
+    }
+
+    private void execute(Task task, long frameStart) {
+        mPendingCount.decrementAndGet();
+
+        // Latency is measured from the time task became runnable to the frame running it
+        final long latency = Math.max(frameStart - task.readyNanos, 0);
+        mMaxLatencyNanos = Math.max(mMaxLatencyNanos, latency);
+        mAverageLatencyNanos += (latency - mAverageLatencyNanos) * 0.05;
+
+        task.action.run();
+    }
+
+    /**
+     * @return Time budget for tasks in a frame in nanoseconds.
+     */
+    public long getBudgetNanos() {
+        return (long) (mDisplayPeriod * mBudgetFraction * 1e9);
+    }
+
+    /**
+     * @param fraction Fraction of display period spent for tasks in a frame. Default is 0.2.
+     */
+    public void setBudgetFraction(float fraction) {
+        if (fraction <= 0.0f || fraction > 1.0f) {
+            throw Exceptions.IllegalArgument("fraction must be in (0, 1]: %f", fraction);
+        }
+        mBudgetFraction = fraction;
+    }
+
+    public float getBudgetFraction() {
+        return mBudgetFraction;
+    }
+
+    /**
+     * @param frames Number of frames a ready task waits before it is moved to higher priority. Default is 30.
+     */
+    public void setPromotionFrames(int frames) {
+        if (frames <= 0) {
+            throw Exceptions.IllegalArgument("frames must be positive: %d", frames);
+        }
+        mPromotionFrames = frames;
+    }
+
+    /**
+     * @return Display period in seconds estimated from predicted display times.
+     */
+    public double getDisplayPeriod() {
+        return mDisplayPeriod;
+    }
+
+    /**
+     * @return Number of tasks posted but not run yet, including delayed ones.
+     */
+    public int getQueueDepth() {
+        return mPendingCount.get();
+    }
+
+    /**
+     * @return Number of ready tasks of priority waiting for budget. Must be called on GL thread.
+     */
+    public int getReadyCount(@NonNull Priority priority) {
+        return mReady[priority.ordinal()].size();
+    }
+
+    /**
+     * @return Number of tasks run in last frame.
+     */
+    public int getLastRunCount() {
+        return mLastRunCount;
+    }
+
+    /**
+     * @return Time spent for tasks in last frame in nanoseconds.
+     */
+    public long getLastRunNanos() {
+        return mLastRunNanos;
+    }
+
+    /**
+     * @return Moving average of time from a task became runnable to it was run, in nanoseconds.
+     */
+    public double getAverageLatencyNanos() {
+        return mAverageLatencyNanos;
+    }
+
+    /**
+     * @return Maximum latency since last {@link #resetMetrics()} in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return mMaxLatencyNanos;
+    }
+
+    /**
+     * @return Number of frames which exceeded budget since last {@link #resetMetrics()}.
+     */
+    public int getOverBudgetFrames() {
+        return mOverBudgetFrames;
+    }
+
+    public void resetMetrics() {
+        mMaxLatencyNanos = 0;
+        mAverageLatencyNanos = 0;
+        mOverBudgetFrames = 0;
+    }
+
+    private static class Task {
+        final Runnable action;
+        final Priority priority;
+        long sequence;
+        int delayFrames;
+        int dueFrame;
+        long dueNanos = Long.MIN_VALUE;
+        double deadline = Double.NaN;
+        int readyFrame;
+        long readyNanos;
+
+        Task(Runnable action, Priority priority) {
+            this.action = action;
+            this.priority = priority;
+        }
+    }
+}
@@ -21,8 +21,11 @@ import com.eje_c.meganekko.utility.Log;
  * Root of the Meganekko object hierarchy.
  * Descendant classes all have native (JNI) implementations; this base class
  * manages the native life cycles.
+ * <p>
+ * Native object is deleted on GL thread some frames after this object is garbage collected.
+ * Call {@link #close()} to release it without waiting for garbage collection.
  */
-public abstract class HybridObject {
+public abstract class HybridObject implements AutoCloseable {
 
     private static final String TAG = Log.tag(HybridObject.class);
     private final NativeReference mNativeReference;
@@ -69,6 +72,17 @@ public abstract class HybridObject {
         return mNativeReference.getNativePointer();
     }
 
+    /**
+     * Release native object. It is deleted on GL thread in next frame. Can be called from any
+     * thread and more than once. This object must not be used after closed, and must not be
+     * closed while other objects, such as {@link RenderData} using this {@link Mesh}, still refer to it.
+     * {@link SceneObject} overrides this to detach itself from scene first.
+     */
+    @Override
+    public void close() {
+        NativeCleaner.release(mNativeReference);
+    }
+
     @Override
     public boolean equals(Object o) {
         // FIXME Since there is a 1:1 relationship between wrappers and native
@@ -15,9 +15,11 @@
 
 package com.eje_c.meganekko;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.SurfaceTexture;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.MediaPlayer;
 import android.view.View;
@@ -31,6 +33,13 @@ public class Material extends HybridObject {
 
     private Texture mTexture;
     private CullFace mCullFace;
+    private volatile TextureAtlas.Region mAtlasRegion;
+
+    // Texture source set by TextureAtlas in any thread, applied to native in GL thread
+    private final Object mTextureSourceLock = new Object();
+    private final float[] mPendingUvRect = new float[4];
+    private Material mPendingSource;
+    private volatile boolean mTextureSourceChanged;
 
     /**
      * Create {@link Material} from {@code View}.
@@ -68,6 +77,34 @@ public class Material extends HybridObject {
         return material;
     }
 
+    /**
+     * Create {@link Material} from small {@code Drawable} packed in {@link TextureAtlas}.
+     * If {@code drawable} can't be added to atlas, material uses its own texture.
+     *
+     * @param drawable Textured {@code Drawable}.
+     * @param atlas    Atlas.
+     * @return New {@link Material}.
+     */
+    public static Material from(Drawable drawable, TextureAtlas atlas) {
+        Material material = new Material();
+        if (!atlas.add(material, drawable)) {
+            material.texture().set(drawable);
+        }
+        return material;
+    }
+
+    /**
+     * Create {@link Material} from small {@code Bitmap} packed in {@link TextureAtlas}.
+     * If {@code bitmap} can't be added to atlas, material uses its own texture.
+     *
+     * @param bitmap Textured {@code Bitmap}.
+     * @param atlas  Atlas.
+     * @return New {@link Material}.
+     */
+    public static Material from(Bitmap bitmap, TextureAtlas atlas) {
+        return from(new BitmapDrawable(Resources.getSystem(), bitmap), atlas);
+    }
+
     /**
      * Create {@link Material} from {@code MediaPlayer}.
      *
@@ -92,6 +129,10 @@ public class Material extends HybridObject {
 
     private static native void setSide(long material, int side);
 
+    private static native void setTextureSource(long material, long sourceMaterial);
+
+    private static native void setUvRect(long material, float x, float y, float width, float height);
+
     @Override
     protected native long initNativeInstance();
 
@@ -177,19 +218,91 @@ public class Material extends HybridObject {
         return texture();
     }
 
+    /**
+     * Get own texture. If this material is in {@link TextureAtlas}, own texture is not shown until
+     * an image is set to it or {@link #detachFromAtlas()} is called.
+     *
+     * @return Texture.
+     */
     public Texture texture() {
         if (mTexture == null) {
-            mTexture = new Texture(getSurfaceTexture());
+            mTexture = new Texture(this, getSurfaceTexture());
         }
         return mTexture;
     }
 
+    /**
+     * Stop using {@link TextureAtlas} and use own texture. Does nothing if this material is not in atlas.
+     */
+    public void detachFromAtlas() {
+        final TextureAtlas.Region region = mAtlasRegion;
+        if (region != null) {
+            region.getAtlas().remove(this);
+        }
+    }
+
     public void update(Frame vrFrame) {
-        if (mTexture != null) {
+        if (mTextureSourceChanged) {
+            applyTextureSource();
+        }
+
+        final TextureAtlas.Region region = mAtlasRegion;
+        if (region != null) {
+            region.update(vrFrame);
+        } else if (mTexture != null) {
             mTexture.update(vrFrame);
         }
     }
 
+    /**
+     * @return true if this material uses {@link TextureAtlas} instead of own texture.
+     */
+    public boolean isInAtlas() {
+        return mAtlasRegion != null;
+    }
+
+    TextureAtlas.Region getAtlasRegion() {
+        return mAtlasRegion;
+    }
+
+    /**
+     * Use sub-rectangle of texture of atlas page. Called by {@link TextureAtlas}.
+     */
+    void setAtlasRegion(TextureAtlas.Region region, Material page, float x, float y, float width, float height) {
+        mAtlasRegion = region;
+        setPendingTextureSource(page, x, y, width, height);
+    }
+
+    /**
+     * Use own texture again. Called by {@link TextureAtlas}.
+     */
+    void clearAtlasRegion() {
+        mAtlasRegion = null;
+        setPendingTextureSource(null, 0, 0, 1, 1);
+    }
+
+    // Atlas can be changed in any thread while native material is rendered, so native texture source
+    // is changed in next update() on GL thread.
+    private void setPendingTextureSource(Material source, float x, float y, float width, float height) {
+        synchronized (mTextureSourceLock) {
+            mPendingSource = source;
+            mPendingUvRect[0] = x;
+            mPendingUvRect[1] = y;
+            mPendingUvRect[2] = width;
+            mPendingUvRect[3] = height;
+            mTextureSourceChanged = true;
+        }
+    }
+
+    private void applyTextureSource() {
+        synchronized (mTextureSourceLock) {
+            mTextureSourceChanged = false;
+            final float[] uv = mPendingUvRect;
+            setTextureSource(getNative(), mPendingSource != null ? mPendingSource.getNative() : 0);
+            setUvRect(getNative(), uv[0], uv[1], uv[2], uv[3]);
+        }
+    }
+
     public void setSide(Side side) {
         setSide(getNative(), side.ordinal());
     }
@@ -9,28 +9,26 @@ import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.eje_c.meganekko.animation.TweenEngine;
 import com.eje_c.meganekko.xml.XmlSceneParser;
 import com.eje_c.meganekko.xml.XmlSceneParserFactory;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.lang.ref.Reference;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * The interface for your application.
  */
 public abstract class MeganekkoApp {
 
-    private static final int MAX_EVENTS_PER_FRAME = 16;
-
     private final Meganekko meganekko;
-    private final Queue<Runnable> mRunnables = new LinkedBlockingQueue<>();
+    private final GlTaskScheduler mScheduler = new GlTaskScheduler();
+    private final TweenEngine mTweenEngine = new TweenEngine();
     private final Handler handler = new Handler(Looper.getMainLooper());
     private Scene mScene;
     private Frame frame;
+    private volatile Thread mGlThread;
 
     protected MeganekkoApp(Meganekko meganekko) {
         this.meganekko = meganekko;
@@ -55,21 +53,22 @@ public abstract class MeganekkoApp {
      */
     public void update() {
 
+        mGlThread = Thread.currentThread();
+        long time = FrameStats.begin();
+
         // runOnGlThread handling
-        for (int i = 0; !mRunnables.isEmpty() && i < MAX_EVENTS_PER_FRAME; ++i) {
-            Runnable event = mRunnables.poll();
-            event.run();
-        }
+        mScheduler.run(frame);
+        time = FrameStats.end(FrameStats.Phase.GL_TASKS, time);
+
+        mTweenEngine.update(frame.getDeltaSeconds());
+        time = FrameStats.end(FrameStats.Phase.ANIMATION, time);
 
         mScene.update(frame);
+        time = FrameStats.end(FrameStats.Phase.SCENE_UPDATE, time);
 
-        // Delete native resources related with Garbage Collected objects
-        Reference<? extends HybridObject> ref;
-        while ((ref = NativeReference.sReferenceQueue.poll()) != null) {
-            if (ref instanceof NativeReference) {
-                ((NativeReference) ref).delete();
-            }
-        }
+        // Delete native resources related with Garbage Collected or closed objects
+        NativeCleaner.run();
+        FrameStats.end(FrameStats.Phase.REFERENCE_CLEANUP, time);
     }
 
     /**
@@ -120,7 +119,18 @@ public abstract class MeganekkoApp {
      * @param action A bit of code that must run on the GL thread
      */
     public final void runOnGlThread(@NonNull Runnable action) {
-        mRunnables.add(action);
+        mScheduler.post(action);
+    }
+
+    /**
+     * Version of {@link #runOnGlThread(Runnable)} with priority. Use {@link GlTaskScheduler.Priority#LOW}
+     * for heavy tasks such as building meshes so that they are spread over frames.
+     *
+     * @param action   A bit of code that must run on the GL thread
+     * @param priority Priority of action.
+     */
+    public final void runOnGlThread(@NonNull Runnable action, @NonNull GlTaskScheduler.Priority priority) {
+        mScheduler.post(action, priority);
     }
 
     /**
@@ -129,13 +139,36 @@ public abstract class MeganekkoApp {
      * @param action      A bit of code that must run on the GL thread
      * @param delayMillis Milli seconds delay before executing action.
      */
-    public final void runOnGlThread(@NonNull final Runnable action, long delayMillis) {
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                runOnGlThread(action);
-            }
-        }, delayMillis);
+    public final void runOnGlThread(@NonNull Runnable action, long delayMillis) {
+        mScheduler.postDelayed(action, delayMillis, GlTaskScheduler.Priority.NORMAL);
+    }
+
+    /**
+     * @return true if called on GL thread. It is known after first {@link #update()}, so this
+     * returns false before that.
+     */
+    public final boolean isGlThread() {
+        return Thread.currentThread() == mGlThread;
+    }
+
+    /**
+     * Scheduler running actions passed to {@code runOnGlThread}. Use it for frame based delays,
+     * deadlines and metrics.
+     *
+     * @return Scheduler of GL thread tasks.
+     */
+    public final GlTaskScheduler getGlTaskScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * Engine running animations started by {@link SceneObject#animate()}. Use it directly to
+     * animate many objects without building {@link SceneObject.SceneObjectAnimator}s.
+     *
+     * @return Engine of tweens updated every frame on GL thread.
+     */
+    public final TweenEngine getTweenEngine() {
+        return mTweenEngine;
     }
 
     /**
@@ -295,6 +328,7 @@ public abstract class MeganekkoApp {
 
     /**
      * Create {@link Scene} from XML resource and set it to current scene.
+     * Scene compiled by {@code scene-compiler.gradle} is loaded without parsing XML.
      *
      * @param xmlRes Scene graph XML resource.
      * @param args   Arguments passed to scene.
@@ -304,7 +338,7 @@ public abstract class MeganekkoApp {
         XmlSceneParser parser = XmlSceneParserFactory.getInstance(meganekko.getContext()).getSceneParser();
 
         try {
-            Scene scene = parser.parse(meganekko.getContext().getResources().getXml(xmlRes), null);
+            Scene scene = parser.parse(xmlRes, null);
             scene.setArguments(args);
             setScene(scene);
         } catch (XmlPullParserException | IOException e) {
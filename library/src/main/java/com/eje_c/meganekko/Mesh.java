@@ -21,9 +21,18 @@ import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.view.View;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
 /**
  * This is one of the key Meganekko classes: It holds GL meshes.
  * A GL mesh is a net of triangles that define an object's surface geometry.
+ * <p>
+ * Meshes built by {@code buildQuad}, {@code buildGlobe} and other built-in shape methods with
+ * same parameters share one GPU geometry through {@link GeometryCache}. Rebuilding a mesh only
+ * affects that mesh.
  */
 public class Mesh extends HybridObject {
 
@@ -31,7 +40,10 @@ public class Mesh extends HybridObject {
 
     private static native void build(long renderData, float[] positions, float[] colors, float[] uvs, int[] triangles);
 
-    private static native void buildQuad(long renderData, float width, float heigh);
+    private static native void buildFromBuffers(long mesh, ByteBuffer vertices, int vertexOffset, int vertexCount,
+                                                int[] layout, int stride, Buffer indices, int indexOffset, int indexCount);
+
+    private static native void buildQuad(long renderData, float width, float height);
 
     private static native void buildTesselatedQuad(long renderData, int horizontal, int vertical, boolean twoSided);
 
@@ -117,7 +129,94 @@ public class Mesh extends HybridObject {
     }
 
     /**
-     * Build quad mesh
+     * Build mesh from interleaved vertices in direct buffer. Data is uploaded to GPU directly
+     * from the buffers without copying to Java arrays or native heap, so buffers can be reused
+     * or discarded after this call. Remaining elements between position and limit are used.
+     * <p>
+     * Vertices are not kept in memory. This mesh can be merged by
+     * {@link SceneObject#setStaticBatching(boolean) static batching} only if position is 3
+     * {@link VertexLayout.Type#FLOAT}s and UV, if any, is 2 {@code FLOAT}s.
+     *
+     * @param vertices Direct buffer of vertices laid out as {@code layout}, in native byte order.
+     * @param layout   Layout of a vertex. It must contain {@link VertexLayout.Attribute#POSITION}.
+     * @param indices  Direct {@link ShortBuffer} or {@link ByteBuffer} of 16 bit unsigned indices of triangles,
+     *                 in native byte order. Each index must be less than number of vertices.
+     */
+    public void build(@NonNull ByteBuffer vertices, @NonNull VertexLayout layout, @NonNull Buffer indices) {
+
+        if (!vertices.isDirect()) {
+            throw new IllegalArgumentException("vertices must be a direct buffer.");
+        } else if (!indices.isDirect()) {
+            throw new IllegalArgumentException("indices must be a direct buffer.");
+        } else if (!layout.hasPosition()) {
+            throw new IllegalArgumentException("layout must contain POSITION.");
+        } else if (vertices.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("vertices must be in native byte order.");
+        }
+
+        final int stride = layout.getStride();
+        if (vertices.remaining() % stride != 0) {
+            throw new IllegalArgumentException("vertices size " + vertices.remaining() + " is not multiple of stride " + stride + ".");
+        }
+
+        final int indexOffset;
+        final int indexCount;
+        if (indices instanceof ShortBuffer) {
+            if (((ShortBuffer) indices).order() != ByteOrder.nativeOrder()) {
+                throw new IllegalArgumentException("indices must be in native byte order.");
+            }
+            indexOffset = indices.position() * 2;
+            indexCount = indices.remaining();
+        } else if (indices instanceof ByteBuffer) {
+            if (((ByteBuffer) indices).order() != ByteOrder.nativeOrder()) {
+                throw new IllegalArgumentException("indices must be in native byte order.");
+            } else if (indices.remaining() % 2 != 0) {
+                throw new IllegalArgumentException("indices size must be multiple of 2.");
+            }
+            indexOffset = indices.position();
+            indexCount = indices.remaining() / 2;
+        } else {
+            throw new IllegalArgumentException("indices must be ShortBuffer or ByteBuffer.");
+        }
+
+        if (indexCount % 3 != 0) {
+            throw new IllegalArgumentException("index count must be multiple of 3.");
+        }
+
+        final int vertexCount = vertices.remaining() / stride;
+        if (vertexCount > 65536) {
+            throw new IllegalArgumentException("vertex count " + vertexCount + " exceeds range of 16 bit index.");
+        }
+        checkIndices(indices, 0, indexCount, vertexCount);
+
+        buildFromBuffers(getNative(), vertices, vertices.position(), vertexCount,
+                layout.getValues(), stride, indices, indexOffset, indexCount);
+        mQuad = null;
+    }
+
+    /**
+     * Check that indices are in range before they are drawn. Out of range index makes GPU read
+     * outside of vertex buffer.
+     *
+     * @param indices     {@link ShortBuffer} or {@link ByteBuffer} of 16 bit unsigned indices.
+     * @param from        First checked element, relative to position of {@code indices}.
+     * @param to          End of checked elements, relative to position of {@code indices}.
+     * @param vertexCount Each index must be less than this.
+     */
+    static void checkIndices(Buffer indices, int from, int to, int vertexCount) {
+        final int position = indices.position();
+        for (int i = from; i < to; ++i) {
+            final int index = indices instanceof ShortBuffer
+                    ? ((ShortBuffer) indices).get(position + i) & 0xffff
+                    : ((ByteBuffer) indices).getShort(position + i * 2) & 0xffff;
+            if (index >= vertexCount) {
+                throw new IllegalArgumentException("index " + index + " at " + i + " is out of vertex count " + vertexCount + ".");
+            }
+        }
+    }
+
+    /**
+     * Build quad mesh. Quads of same size share one GPU geometry through {@link GeometryCache}.
      *
      * @param width
      * @param height
@@ -133,33 +232,7 @@ public class Mesh extends HybridObject {
          * 1    3
          */
 
-        float[] positions = {
-                width * -0.5f, height * 0.5f, 0.0f,  // Left Top
-                width * -0.5f, height * -0.5f, 0.0f, // Left Bottom
-                width * 0.5f, height * 0.5f, 0.0f,   // Right Top
-                width * 0.5f, height * -0.5f, 0.0f   // Right Bottom
-        };
-
-        float[] colors = {
-                1.0f, 1.0f, 1.0f, 1.0f,
-                1.0f, 1.0f, 1.0f, 1.0f,
-                1.0f, 1.0f, 1.0f, 1.0f,
-                1.0f, 1.0f, 1.0f, 1.0f
-        };
-
-        float[] uvs = {
-                0.0f, 0.0f,
-                0.0f, 1.0f,
-                1.0f, 0.0f,
-                1.0f, 1.0f
-        };
-
-        int[] triangles = {
-                0, 1, 2,
-                1, 3, 2
-        };
-
-        build(positions, colors, uvs, triangles);
+        buildQuad(getNative(), width, height);
 
         // RectF's Y coordinate is inverted from OpenGL
         // top is -Y, bottom is +Y
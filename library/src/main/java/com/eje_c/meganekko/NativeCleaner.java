@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import com.eje_c.meganekko.utility.Exceptions;
+
+import java.lang.ref.Reference;
+
+/**
+ * Frees native objects of {@link HybridObject}s which were garbage collected or closed.
+ * <p>
+ * Native pointers are claimed from their {@link NativeReference}s into a primitive queue and
+ * deleted in batches with one JNI call per batch. {@link #run()} is called once per frame on GL
+ * thread and stops when a time budget is spent, so a burst of collected objects, for example
+ * after switching scenes, is freed over several frames instead of stalling one frame. At least
+ * one batch is freed every frame.
+ */
+public final class NativeCleaner {
+
+    /**
+     * Number of native objects deleted with one JNI call.
+     */
+    public static final int BATCH_SIZE = 64;
+
+    /**
+     * Default time spent for deleting native objects per frame.
+     */
+    public static final long DEFAULT_BUDGET_NANOS = 1000000L;
+
+    private static final Object sLock = new Object();
+
+    // FIFO of claimed pointers in range [sHead, sTail). Guarded by sLock.
+    private static long[] sPending = new long[1024];
+    private static int sHead;
+    private static int sTail;
+
+    // Used only on GL thread
+    private static final long[] sBatch = new long[BATCH_SIZE];
+
+    private static volatile long sBudgetNanos = DEFAULT_BUDGET_NANOS;
+    private static volatile long sFreedCount;
+
+    private static native void nativeDeleteAll(long[] nativePointers, int count);
+
+    private NativeCleaner() {
+    }
+
+    /**
+     * Claim native pointer of {@link HybridObject} and queue it for deletion. Can be called from
+     * any thread. Nothing happens if it is already claimed.
+     */
+    static void release(NativeReference ref) {
+        final long nativePointer = ref.release();
+        if (nativePointer == 0) return;
+
+        synchronized (sLock) {
+            if (sTail == sPending.length) {
+                final int size = sTail - sHead;
+                if (size * 2 > sPending.length) {
+                    final long[] pending = new long[sPending.length * 2];
+                    System.arraycopy(sPending, sHead, pending, 0, size);
+                    sPending = pending;
+                } else {
+                    System.arraycopy(sPending, sHead, sPending, 0, size);
+                }
+                sHead = 0;
+                sTail = size;
+            }
+            sPending[sTail++] = nativePointer;
+        }
+    }
+
+    private static int takeBatch() {
+        synchronized (sLock) {
+            final int count = Math.min(BATCH_SIZE, sTail - sHead);
+            System.arraycopy(sPending, sHead, sBatch, 0, count);
+            sHead += count;
+            if (sHead == sTail) {
+                sHead = sTail = 0;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Called from {@link MeganekkoApp#update()} on GL thread.
+     */
+    static void run() {
+
+        // Claiming is cheap compared to deleting, so all collected objects are claimed every frame
+        Reference<? extends HybridObject> ref;
+        while ((ref = NativeReference.sReferenceQueue.poll()) != null) {
+            if (ref instanceof NativeReference) {
+                release((NativeReference) ref);
+            }
+        }
+
+        final long start = System.nanoTime();
+        final long budget = sBudgetNanos;
+        do {
+            final int count = takeBatch();
+            if (count == 0) break;
+
+            nativeDeleteAll(sBatch, count);
+            sFreedCount += count;
+        } while (System.nanoTime() - start < budget);
+    }
+
+    /**
+     * Set time spent for deleting native objects per frame. Default is {@link #DEFAULT_BUDGET_NANOS}.
+     *
+     * @param budgetNanos Time in nanoseconds.
+     */
+    public static void setBudgetNanos(long budgetNanos) {
+        if (budgetNanos < 0) {
+            throw Exceptions.IllegalArgument("budgetNanos must not be negative: %d", budgetNanos);
+        }
+        sBudgetNanos = budgetNanos;
+    }
+
+    public static long getBudgetNanos() {
+        return sBudgetNanos;
+    }
+
+    /**
+     * @return Number of native objects waiting for deletion. Objects which are collected but not
+     * yet enqueued by garbage collector are not counted.
+     */
+    public static int getPendingCount() {
+        synchronized (sLock) {
+            return sTail - sHead;
+        }
+    }
+
+    /**
+     * @return Total number of native objects deleted.
+     */
+    public static long getFreedCount() {
+        return sFreedCount;
+    }
+}
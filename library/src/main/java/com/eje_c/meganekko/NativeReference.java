@@ -1,15 +1,16 @@
 package com.eje_c.meganekko;
 
+import com.eje_c.meganekko.utility.LongObjectHashMap;
+
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashSet;
-import java.util.Set;
 
 public class NativeReference extends WeakReference<HybridObject> {
 
     static final ReferenceQueue<HybridObject> sReferenceQueue = new ReferenceQueue<>();
 
-    private static final Set<NativeReference> sNativeReferences = new HashSet<>();
+    // Keyed by native pointer. Guarded by itself because HybridObjects are created on GL thread and loader threads.
+    private static final LongObjectHashMap<NativeReference> sNativeReferences = new LongObjectHashMap<>(1024);
     private long mNativePointer;
 
     private NativeReference(HybridObject r, long nativePointer, ReferenceQueue<? super HybridObject> q) {
@@ -17,8 +18,6 @@ public class NativeReference extends WeakReference<HybridObject> {
         this.mNativePointer = nativePointer;
     }
 
-    private static native void delete(long nativePointer);
-
     /**
      * Get {@link NativeReference} from nativePointer.
      *
@@ -28,27 +27,34 @@ public class NativeReference extends WeakReference<HybridObject> {
      */
     public static NativeReference get(HybridObject hybridObject, long nativePointer) {
 
-        for (NativeReference ref : sNativeReferences) {
-            if (ref.mNativePointer == nativePointer) {
+        synchronized (sNativeReferences) {
+            NativeReference ref = sNativeReferences.get(nativePointer);
+            if (ref != null) {
                 return ref;
             }
-        }
 
-        NativeReference ref = new NativeReference(hybridObject, nativePointer, sReferenceQueue);
-        sNativeReferences.add(ref);
+            ref = new NativeReference(hybridObject, nativePointer, sReferenceQueue);
+            sNativeReferences.put(nativePointer, ref);
 
-        return ref;
+            return ref;
+        }
     }
 
     /**
-     * Called from {@link MeganekkoApp#update()} when {@link HybridObject} was Garbage Collected.
+     * Take ownership of native pointer. Called by {@link NativeCleaner} when {@link HybridObject}
+     * was Garbage Collected or closed. Caller is responsible for deleting native object.
+     *
+     * @return Native pointer, or 0 if already released.
      */
-    synchronized void delete() {
-        if (mNativePointer != 0) {
-            delete(mNativePointer);
+    synchronized long release() {
+        final long nativePointer = mNativePointer;
+        if (nativePointer != 0) {
+            synchronized (sNativeReferences) {
+                sNativeReferences.remove(nativePointer, this);
+            }
             mNativePointer = 0;
         }
-        sNativeReferences.remove(this);
+        return nativePointer;
     }
 
     /**
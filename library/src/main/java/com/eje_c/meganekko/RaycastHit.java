@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import org.joml.Vector3f;
+
+/**
+ * Result of {@link Scene#raycast(int)}.
+ */
+public class RaycastHit {
+
+    private final SceneObject mObject;
+    private final float mDistance;
+    private final Vector3f mPoint;
+
+    RaycastHit(SceneObject object, float distance, Vector3f point) {
+        this.mObject = object;
+        this.mDistance = distance;
+        this.mPoint = point;
+    }
+
+    /**
+     * @return Hit object.
+     */
+    public SceneObject getObject() {
+        return mObject;
+    }
+
+    /**
+     * @return Distance from center eye to hit point.
+     */
+    public float getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * @return Hit point in world coordinates.
+     */
+    public Vector3f getPoint() {
+        return mPoint;
+    }
+}
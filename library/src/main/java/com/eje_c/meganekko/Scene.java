@@ -25,6 +25,10 @@ import android.view.View;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import ovr.JoyButton;
 
 /**
@@ -36,11 +40,20 @@ public class Scene extends SceneObject {
     private MeganekkoApp mApp;
     private float simulateTouchAdditionalY;
     private Bundle mArguments;
+    private final SceneIndex mIndex = new SceneIndex();
+
+    {
+        setScene(this);
+    }
 
     private static native void setFrustumCulling(long scene, boolean flag);
 
     private static native void setOcclusionQuery(long scene, boolean flag);
 
+    private static native void setInstancing(long scene, boolean flag);
+
+    private static native boolean getInstancing(long scene);
+
     private static native boolean isLookingAt(long scene, long sceneObject);
 
     private static native void getLookingPoint(long scene, long sceneObject, boolean axisInWorld, float[] val);
@@ -51,12 +64,28 @@ public class Scene extends SceneObject {
 
     private static native void render(long scene, int eye);
 
+    private static native void prepareForRendering(long scene);
+
     private static native void setViewPosition(long scene, float x, float y, float z);
 
     private static native void getViewPosition(long scene, float[] val);
 
     private static native void getViewOrientation(long scene, float[] val);
 
+    private static native int getTouchedNodeCount(long scene);
+
+    private static native void getCullingStats(long scene, long[] values);
+
+    private static native int raycast(long scene, int maxHits, long[] objects, float[] values);
+
+    private static native int getGLStateIssuedCount(long scene);
+
+    private static native int getGLStateSkippedCount(long scene);
+
+    private static native int getDrawCallCount(long scene);
+
+    private static native int getUnbatchedDrawCallCount(long scene);
+
     private static int getEventType(Frame frame) {
         if (JoyButton.contains(frame.getButtonPressed(), JoyButton.BUTTON_TOUCH)) {
             return MotionEvent.ACTION_DOWN;
@@ -104,6 +133,34 @@ public class Scene extends SceneObject {
         setFrustumCulling(getNative(), flag);
     }
 
+    /**
+     * Enable or disable instanced drawing. When enabled, consecutive objects in rendering order
+     * which share the same {@link Mesh}, texture and render state are drawn with one draw call.
+     * Their world matrices, colors and opacities are passed as per instance data. Enabled by default.
+     *
+     * @param flag false to draw every object with its own draw call.
+     * @see #getDrawCallCount()
+     */
+    public void setInstancing(boolean flag) {
+        setInstancing(getNative(), flag);
+    }
+
+    public boolean isInstancing() {
+        return getInstancing(getNative());
+    }
+
+    /**
+     * Get frustum culling statistics of the last frame. All values are 0 if frustum culling is disabled.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public CullingStats getCullingStats(CullingStats dest) {
+        final long[] values = dest.mValues;
+        getCullingStats(getNative(), values);
+        return dest;
+    }
+
     /**
      * Sets the occlusion query for the {@link Scene}.
      */
@@ -146,6 +203,62 @@ public class Scene extends SceneObject {
     public void onPause() {
     }
 
+    /**
+     * Get how many nodes were touched by structural changes such as adding or removing children
+     * or attaching {@link RenderData} in the last frame. Rendering cost for keeping scene graph
+     * up to date is proportional to this value.
+     *
+     * @return Number of touched nodes.
+     */
+    public int getTouchedNodeCount() {
+        return getTouchedNodeCount(getNative());
+    }
+
+    /**
+     * Get how many OpenGL state changes were actually issued while rendering the last frame.
+     *
+     * @return Number of issued state changes.
+     * @see #getGLStateSkippedCount()
+     */
+    public int getGLStateIssuedCount() {
+        return getGLStateIssuedCount(getNative());
+    }
+
+    /**
+     * Get how many OpenGL state changes were skipped in the last frame because they did not
+     * change anything.
+     *
+     * @return Number of skipped state changes.
+     */
+    public int getGLStateSkippedCount() {
+        return getGLStateSkippedCount(getNative());
+    }
+
+    /**
+     * Get how many draw calls were issued for both eyes in the last frame.
+     *
+     * @return Number of draw calls.
+     * @see #getUnbatchedDrawCallCount()
+     * @see SceneObject#setStaticBatching(boolean)
+     */
+    public int getDrawCallCount() {
+        return getDrawCallCount(getNative());
+    }
+
+    /**
+     * Get how many draw calls would have been issued in the last frame without static batching
+     * and instancing.
+     *
+     * @return Number of draw calls counting each member of static batches and each instance.
+     */
+    public int getUnbatchedDrawCallCount() {
+        return getUnbatchedDrawCallCount(getNative());
+    }
+
+    SceneIndex getIndex() {
+        return mIndex;
+    }
+
     public boolean isLookingAt(SceneObject target) {
 
         // cannot look at target has no mesh
@@ -154,11 +267,53 @@ public class Scene extends SceneObject {
         return isLookingAt(getNative(), target.getNative());
     }
 
-    public Vector3f getLookingPoint(SceneObject target, boolean axisInWorld) {
-        synchronized (sTempValuesForJni) {
-            getLookingPoint(getNative(), target.getNative(), axisInWorld, sTempValuesForJni);
-            return new Vector3f(sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2]);
+    /**
+     * Find objects which the user is looking at in one call. Only visible objects which have
+     * {@link Mesh} are tested.
+     * <p>
+     * Must be called on GL thread, for example from {@link MeganekkoApp#update()} or
+     * {@link SceneObject#update(Frame)}. Raycasting brings the bounding volume hierarchy used for
+     * culling up to date and computes world matrices, so calling it from other threads races with rendering.
+     *
+     * @param maxHits Maximum number of results.
+     * @return Hits sorted from near to far.
+     */
+    public List<RaycastHit> raycast(int maxHits) {
+        if (maxHits <= 0) {
+            return Collections.emptyList();
+        }
+
+        final long[] objects = new long[maxHits];
+        final float[] values = new float[maxHits * 4];
+        final int count = raycast(getNative(), maxHits, objects, values);
+
+        final List<RaycastHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            SceneObject object = mIndex.findByNative(objects[i]);
+            if (object != null) {
+                hits.add(new RaycastHit(object, values[i * 4],
+                        new Vector3f(values[i * 4 + 1], values[i * 4 + 2], values[i * 4 + 3])));
+            }
         }
+        return hits;
+    }
+
+    public Vector3f getLookingPoint(SceneObject target, boolean axisInWorld) {
+        return getLookingPoint(target, axisInWorld, new Vector3f());
+    }
+
+    /**
+     * Get looking point without allocating new object.
+     *
+     * @param target      Target object.
+     * @param axisInWorld Whether result is in world coordinates.
+     * @param dest        Will hold the result.
+     * @return dest
+     */
+    public Vector3f getLookingPoint(SceneObject target, boolean axisInWorld, Vector3f dest) {
+        final float[] values = tempValuesForJni();
+        getLookingPoint(getNative(), target.getNative(), axisInWorld, values);
+        return dest.set(values[0], values[1], values[2]);
     }
 
     public void setViewMatrix(float[] viewM) {
@@ -173,15 +328,33 @@ public class Scene extends SceneObject {
         render(getNative(), eye);
     }
 
+    /**
+     * Start new frame, so that next {@link #render(int)} culls and sorts again and statistics of the
+     * previous frame are published. Native frame loop does this every frame. This is for rendering
+     * without it, such as in benchmarks.
+     */
+    void prepareForRendering() {
+        prepareForRendering(getNative());
+    }
+
     public void setViewPosition(float x, float y, float z) {
         setViewPosition(getNative(), x, y, z);
     }
 
     public Vector3f getViewPosition() {
-        synchronized (sTempValuesForJni) {
-            getViewPosition(getNative(), sTempValuesForJni);
-            return new Vector3f(sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2]);
-        }
+        return getViewPosition(new Vector3f());
+    }
+
+    /**
+     * Get view position without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Vector3f getViewPosition(Vector3f dest) {
+        final float[] values = tempValuesForJni();
+        getViewPosition(getNative(), values);
+        return dest.set(values[0], values[1], values[2]);
     }
 
     public void setViewPosition(Vector3f pos) {
@@ -189,10 +362,19 @@ public class Scene extends SceneObject {
     }
 
     public Quaternionf getViewOrientation() {
-        synchronized (sTempValuesForJni) {
-            getViewOrientation(getNative(), sTempValuesForJni);
-            return new Quaternionf(sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2], sTempValuesForJni[3]);
-        }
+        return getViewOrientation(new Quaternionf());
+    }
+
+    /**
+     * Get view orientation without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Quaternionf getViewOrientation(Quaternionf dest) {
+        final float[] values = tempValuesForJni();
+        getViewOrientation(getNative(), values);
+        return dest.set(values[0], values[1], values[2], values[3]);
     }
 
     /**
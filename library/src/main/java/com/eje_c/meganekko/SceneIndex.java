@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import com.eje_c.meganekko.utility.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash indexes of {@link SceneObject}s in a {@link Scene} by ID, by name and by native pointer.
+ * Objects with ID 0 or {@code null} name are not indexed because these are the default values.
+ * Kept up to date by {@link SceneObject}.
+ */
+final class SceneIndex {
+
+    private final LongObjectHashMap<List<SceneObject>> mById = new LongObjectHashMap<>();
+    private final Map<String, List<SceneObject>> mByName = new HashMap<>();
+    private final LongObjectHashMap<SceneObject> mByNative = new LongObjectHashMap<>();
+
+    void add(SceneObject object) {
+        addId(object, object.getId());
+        addName(object, object.getName());
+        mByNative.put(object.getNative(), object);
+    }
+
+    void remove(SceneObject object) {
+        removeId(object, object.getId());
+        removeName(object, object.getName());
+        mByNative.remove(object.getNative(), object);
+    }
+
+    /**
+     * @param nativePointer Value of {@link SceneObject#getNative()}.
+     * @return Object in scene or {@code null}.
+     */
+    SceneObject findByNative(long nativePointer) {
+        return mByNative.get(nativePointer);
+    }
+
+    void addId(SceneObject object, int id) {
+        if (id == 0) return;
+
+        List<SceneObject> objects = mById.get(id);
+        if (objects == null) {
+            objects = new ArrayList<>(1);
+            mById.put(id, objects);
+        }
+        objects.add(object);
+    }
+
+    void removeId(SceneObject object, int id) {
+        if (id == 0) return;
+
+        List<SceneObject> objects = mById.get(id);
+        if (objects != null && objects.remove(object) && objects.isEmpty()) {
+            mById.remove(id);
+        }
+    }
+
+    void addName(SceneObject object, String name) {
+        if (name == null) return;
+
+        List<SceneObject> objects = mByName.get(name);
+        if (objects == null) {
+            objects = new ArrayList<>(1);
+            mByName.put(name, objects);
+        }
+        objects.add(object);
+    }
+
+    void removeName(SceneObject object, String name) {
+        if (name == null) return;
+
+        List<SceneObject> objects = mByName.get(name);
+        if (objects != null && objects.remove(object) && objects.isEmpty()) {
+            mByName.remove(name);
+        }
+    }
+
+    /**
+     * @param root Root of subtree to search in.
+     * @param id   ID. Must not be 0.
+     * @return First object in traversal order of {@code root} or {@code null}.
+     */
+    SceneObject findById(SceneObject root, int id) {
+        return first(root, mById.get(id));
+    }
+
+    /**
+     * @param root Root of subtree to search in.
+     * @param name Name. Must not be null.
+     * @return First object in traversal order of {@code root} or {@code null}.
+     */
+    SceneObject findByName(SceneObject root, String name) {
+        return first(root, mByName.get(name));
+    }
+
+    private static SceneObject first(SceneObject root, List<SceneObject> candidates) {
+        if (candidates == null) return null;
+
+        SceneObject result = null;
+        for (int i = 0, size = candidates.size(); i < size; ++i) {
+            SceneObject candidate = candidates.get(i);
+            if (isInSubtree(root, candidate) && (result == null || precedes(candidate, result))) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isInSubtree(SceneObject root, SceneObject object) {
+        for (SceneObject o = object; o != null; o = o.getParent()) {
+            if (o == root) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if {@code a} comes before {@code b} in depth first pre-order traversal.
+     */
+    private static boolean precedes(SceneObject a, SceneObject b) {
+        List<SceneObject> pathA = pathFromRoot(a);
+        List<SceneObject> pathB = pathFromRoot(b);
+
+        int i = 0;
+        while (i < pathA.size() && i < pathB.size() && pathA.get(i) == pathB.get(i)) {
+            ++i;
+        }
+
+        // One is ancestor of the other
+        if (i == pathA.size()) return true;
+        if (i == pathB.size()) return false;
+
+        List<SceneObject> siblings = pathA.get(i - 1).getChildren();
+        return siblings.indexOf(pathA.get(i)) < siblings.indexOf(pathB.get(i));
+    }
+
+    private static List<SceneObject> pathFromRoot(SceneObject object) {
+        List<SceneObject> path = new ArrayList<>();
+        for (SceneObject o = object; o != null; o = o.getParent()) {
+            path.add(0, o);
+        }
+        return path;
+    }
+}
@@ -37,6 +37,7 @@ import com.eje_c.meganekko.animation.PositionUpdateListener;
 import com.eje_c.meganekko.animation.QuaternionEvaluator;
 import com.eje_c.meganekko.animation.RotationUpdateListener;
 import com.eje_c.meganekko.animation.ScaleUpdateListener;
+import com.eje_c.meganekko.animation.TweenEngine;
 import com.eje_c.meganekko.animation.VectorEvaluator;
 import com.eje_c.meganekko.utility.Log;
 import com.eje_c.meganekko.xml.XmlSceneObjectParser;
@@ -68,18 +69,35 @@ public class SceneObject extends HybridObject {
     // Temp array for get values from JNI.
     // You have to surround with
     // synchronized (sTempValuesForJni) { ... } block to prevent
+    // Deprecated: Use tempValuesForJni() which does not need synchronization.
+    @Deprecated
     protected static final float[] sTempValuesForJni = new float[16];
 
+    // Per thread temp array for get values from JNI.
+    private static final ThreadLocal<float[]> sTempValues = new ThreadLocal<float[]>() {
+        @Override
+        protected float[] initialValue() {
+            return new float[16];
+        }
+    };
+
     private static final String TAG = SceneObject.class.getSimpleName();
+    // Same as default of Android animation framework
+    private static final long DEFAULT_ANIMATION_DURATION = 300;
     private final List<SceneObject> mChildren = new ArrayList<>();
     private final Set<KeyEventListener> mKeyEventListeners = new HashSet<>();
     private int mId;
     private String mName;
     private RenderData mRenderData;
     private SceneObject mParent;
+    private Scene mScene;
     private float mOpacity = 1.0f;
     private boolean mVisible = true;
 
+    // Effective values including ancestors. Updated top-down when they can change.
+    private float mInternalOpacity = 1.0f;
+    private boolean mShown = true;
+
     /**
      * Create {@link SceneObject} from {@code View}.
      *
@@ -161,6 +179,10 @@ public class SceneObject extends HybridObject {
 
     private static native float getLODMaxRange(long sceneObject);
 
+    private static native void setStaticBatching(long sceneObject, boolean staticBatching);
+
+    private static native boolean isStaticBatching(long sceneObject);
+
     private static native void setPosition(long sceneObject, float x, float y, float z);
 
     private static native void setScale(long sceneObject, float x, float y, float z);
@@ -203,6 +225,10 @@ public class SceneObject extends HybridObject {
      * @param id ID of the object.
      */
     public void setId(int id) {
+        if (mScene != null) {
+            mScene.getIndex().removeId(this, mId);
+            mScene.getIndex().addId(this, id);
+        }
         this.mId = id;
     }
 
@@ -224,6 +250,10 @@ public class SceneObject extends HybridObject {
      * @param name Name of the object.
      */
     public void setName(String name) {
+        if (mScene != null) {
+            mScene.getIndex().removeName(this, mName);
+            mScene.getIndex().addName(this, name);
+        }
         mName = name;
     }
 
@@ -283,7 +313,9 @@ public class SceneObject extends HybridObject {
     public void addChildObject(SceneObject child) {
         mChildren.add(child);
         child.mParent = this;
-        child.updateOpacity();
+        child.updateVisibility(false);
+        child.updateOpacity(true);
+        child.setScene(mScene);
         addChildObject(getNative(), child.getNative());
     }
 
@@ -314,10 +346,47 @@ public class SceneObject extends HybridObject {
         SceneObject removed = mChildren.remove(index);
         if (removed != null) {
             removed.mParent = null;
+            removed.updateVisibility(false);
+            removed.updateOpacity(false);
+            removed.setScene(null);
             removeChildAt(getNative(), index);
         }
     }
 
+    /**
+     * Detach this object from its parent, scene, children and {@link RenderData}, then release
+     * native object. Native scene, its render queue, bounding volume hierarchy and static batches
+     * must not keep pointers to the object after it is deleted. Children are not closed and can
+     * be added to other objects. Like {@link #addChildObject(SceneObject)}, this changes
+     * structure of scene, so if this object is in a scene and called from other than GL thread,
+     * it is closed on GL thread by {@link MeganekkoApp#runOnGlThread(Runnable)} instead. Tweens
+     * of this object in {@link TweenEngine} are removed in its next update.
+     */
+    @Override
+    public void close() {
+        final MeganekkoApp app = mScene != null ? mScene.getApp() : null;
+        if (app != null && !app.isGlThread()) {
+            app.runOnGlThread(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            });
+            return;
+        }
+
+        if (mParent != null) {
+            mParent.removeChildObject(this);
+        }
+        for (int i = mChildren.size() - 1; i >= 0; --i) {
+            removeChildAt(i);
+        }
+        if (mRenderData != null) {
+            detachRenderData();
+        }
+        super.close();
+    }
+
     /**
      * Check if {@code otherObject} is colliding with this object.
      *
@@ -372,6 +441,28 @@ public class SceneObject extends HybridObject {
         return getLODMaxRange(getNative());
     }
 
+    /**
+     * Mark this object as static so that it is merged with other static objects which share the
+     * same {@link Material} and render state into one geometry, which is drawn with one draw call.
+     * Vertices of mesh are read back from GPU when the object is merged first, and kept in memory
+     * while the mesh lives. Meshes of other objects don't keep copies of their vertices.
+     * {@link DynamicMesh}es and objects with LOD range are not merged.
+     * <p>
+     * Merged geometry is rebuilt when transform or visibility of a member is changed, so use this
+     * for objects which rarely move. Changing geometry of a {@link Mesh} in place is not detected;
+     * set the mesh again to reflect it.
+     *
+     * @param staticBatching true to merge this object.
+     * @see Scene#getDrawCallCount()
+     */
+    public void setStaticBatching(boolean staticBatching) {
+        setStaticBatching(getNative(), staticBatching);
+    }
+
+    public boolean isStaticBatching() {
+        return isStaticBatching(getNative());
+    }
+
     /**
      * Get the number of child objects.
      *
@@ -418,7 +509,7 @@ public class SceneObject extends HybridObject {
      */
     public void setVisible(boolean visible) {
         this.mVisible = visible;
-        updateVisibility();
+        updateVisibility(true);
     }
 
     /**
@@ -428,25 +519,26 @@ public class SceneObject extends HybridObject {
      * return false if this parent.isVisible() == false.
      */
     public boolean isShown() {
-
-        if (!mVisible)
-            return mVisible;
-
-        if (getParent() == null)
-            return mVisible;
-
-        return mVisible && getParent().isShown();
+        return mShown;
     }
 
-    private void updateVisibility() {
-        RenderData renderData = getRenderData();
-        if (renderData != null) {
-            boolean visible = isShown();
-            renderData.setVisible(visible);
+    /**
+     * Recompute cached visibility of this object and its descendants.
+     *
+     * @param applyToRenderData {@code true} to also apply it to {@link RenderData}.
+     */
+    private void updateVisibility(boolean applyToRenderData) {
+        mShown = mVisible && (mParent == null || mParent.mShown);
+
+        if (applyToRenderData) {
+            RenderData renderData = getRenderData();
+            if (renderData != null) {
+                renderData.setVisible(mShown);
+            }
         }
 
         for (SceneObject child : mChildren) {
-            child.updateVisibility();
+            child.updateVisibility(applyToRenderData);
         }
     }
 
@@ -467,34 +559,76 @@ public class SceneObject extends HybridObject {
      */
     public void setOpacity(float opacity) {
         this.mOpacity = opacity;
-        updateOpacity();
+        updateOpacity(true);
     }
 
-    private float getInternalOpacity() {
-        float parentOpacity = getParent() != null ? getParent().getInternalOpacity() : 1.0f;
-        return mOpacity * parentOpacity;
+    /**
+     * @return Opacity multiplied by opacity of all ancestors.
+     */
+    float getInternalOpacity() {
+        return mInternalOpacity;
     }
 
-    private void updateOpacity() {
-        RenderData renderData = getRenderData();
-        if (renderData != null) {
-            Material material = renderData.getMaterial();
-            if (material != null) {
-                float opacity = getInternalOpacity();
-                material.setOpacity(opacity);
+    /**
+     * Recompute cached opacity of this object and its descendants.
+     *
+     * @param applyToMaterial {@code true} to also apply it to {@link Material}.
+     */
+    private void updateOpacity(boolean applyToMaterial) {
+        mInternalOpacity = mParent != null ? mOpacity * mParent.mInternalOpacity : mOpacity;
+
+        if (applyToMaterial) {
+            RenderData renderData = getRenderData();
+            if (renderData != null) {
+                Material material = renderData.getMaterial();
+                if (material != null) {
+                    material.setOpacity(mInternalOpacity);
+                }
             }
         }
 
         for (SceneObject child : mChildren) {
-            child.updateOpacity();
+            child.updateOpacity(applyToMaterial);
+        }
+    }
+
+    /**
+     * Move this object and its descendants to {@code scene} and update indexes.
+     */
+    void setScene(Scene scene) {
+        if (mScene == scene) return;
+
+        if (mScene != null) {
+            mScene.getIndex().remove(this);
+        }
+
+        mScene = scene;
+
+        if (scene != null) {
+            scene.getIndex().add(this);
+        }
+
+        for (SceneObject child : mChildren) {
+            child.setScene(scene);
         }
     }
 
+    /**
+     * Find object by ID in this object and its descendants.
+     * If this object belongs to a {@link Scene}, it is looked up from the index of the scene.
+     *
+     * @param id ID.
+     * @return First found object in depth first order or {@code null}.
+     */
     public SceneObject findObjectById(int id) {
         if (mId == id) {
             return this;
         }
 
+        if (mScene != null && id != 0) {
+            return mScene.getIndex().findById(this, id);
+        }
+
         for (SceneObject child : mChildren) {
             SceneObject result = child.findObjectById(id);
             if (result != null) {
@@ -509,11 +643,22 @@ public class SceneObject extends HybridObject {
         return findObjectById(id.hashCode());
     }
 
+    /**
+     * Find object by name in this object and its descendants.
+     * If this object belongs to a {@link Scene}, it is looked up from the index of the scene.
+     *
+     * @param name Name.
+     * @return First found object in depth first order or {@code null}.
+     */
     public SceneObject findObjectByName(String name) {
         if (name.equals(getName())) {
             return this;
         }
 
+        if (mScene != null) {
+            return mScene.getIndex().findByName(this, name);
+        }
+
         for (SceneObject child : mChildren) {
             SceneObject result = child.findObjectByName(name);
             if (result != null) {
@@ -541,22 +686,11 @@ public class SceneObject extends HybridObject {
 
     /**
      * Get {@link Scene}. If this object is not in scene, return null.
-     * This method uses recursive call. So you should not call it in render loop.
      *
      * @return {@link Scene}.
      */
     public Scene getScene() {
-
-        if (this instanceof Scene) {
-            return (Scene) this;
-        }
-
-        SceneObject parent = getParent();
-        if (parent == null) {
-            return null;
-        }
-
-        return parent.getScene();
+        return mScene;
     }
 
     public boolean onKeyShortPress(int keyCode, int repeatCount) {
@@ -678,10 +812,19 @@ public class SceneObject extends HybridObject {
     }
 
     public Vector3f position() {
-        synchronized (sTempValuesForJni) {
-            getPosition(getNative(), sTempValuesForJni);
-            return new Vector3f(sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2]);
-        }
+        return getPosition(new Vector3f());
+    }
+
+    /**
+     * Get local position without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Vector3f getPosition(Vector3f dest) {
+        final float[] values = tempValuesForJni();
+        getPosition(getNative(), values);
+        return dest.set(values[0], values[1], values[2]);
     }
 
     public void scale(Vector3f scale) {
@@ -689,10 +832,19 @@ public class SceneObject extends HybridObject {
     }
 
     public Vector3f scale() {
-        synchronized (sTempValuesForJni) {
-            getScale(getNative(), sTempValuesForJni);
-            return new Vector3f(sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2]);
-        }
+        return getScale(new Vector3f());
+    }
+
+    /**
+     * Get local scale without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Vector3f getScale(Vector3f dest) {
+        final float[] values = tempValuesForJni();
+        getScale(getNative(), values);
+        return dest.set(values[0], values[1], values[2]);
     }
 
     public void rotation(Quaternionf rotation) {
@@ -700,10 +852,19 @@ public class SceneObject extends HybridObject {
     }
 
     public Quaternionf rotation() {
-        synchronized (sTempValuesForJni) {
-            getRotation(getNative(), sTempValuesForJni);
-            return new Quaternionf(sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2], sTempValuesForJni[3]);
-        }
+        return getRotation(new Quaternionf());
+    }
+
+    /**
+     * Get local rotation without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Quaternionf getRotation(Quaternionf dest) {
+        final float[] values = tempValuesForJni();
+        getRotation(getNative(), values);
+        return dest.set(values[0], values[1], values[2], values[3]);
     }
 
     @Deprecated
@@ -726,25 +887,53 @@ public class SceneObject extends HybridObject {
     }
 
     public Matrix4f matrixWorld() {
-        synchronized (sTempValuesForJni) {
-            getMatrixWorld(getNative(), sTempValuesForJni);
-            return new Matrix4f(
-                    sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2], sTempValuesForJni[3],
-                    sTempValuesForJni[4], sTempValuesForJni[5], sTempValuesForJni[6], sTempValuesForJni[7],
-                    sTempValuesForJni[8], sTempValuesForJni[9], sTempValuesForJni[10], sTempValuesForJni[11],
-                    sTempValuesForJni[12], sTempValuesForJni[13], sTempValuesForJni[14], sTempValuesForJni[15]);
-        }
+        return getMatrixWorld(new Matrix4f());
+    }
+
+    /**
+     * Get world matrix without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Matrix4f getMatrixWorld(Matrix4f dest) {
+        final float[] values = tempValuesForJni();
+        getMatrixWorld(getNative(), values);
+        return set(dest, values);
     }
 
     public Matrix4f matrix() {
-        synchronized (sTempValuesForJni) {
-            getMatrix(getNative(), sTempValuesForJni);
-            return new Matrix4f(
-                    sTempValuesForJni[0], sTempValuesForJni[1], sTempValuesForJni[2], sTempValuesForJni[3],
-                    sTempValuesForJni[4], sTempValuesForJni[5], sTempValuesForJni[6], sTempValuesForJni[7],
-                    sTempValuesForJni[8], sTempValuesForJni[9], sTempValuesForJni[10], sTempValuesForJni[11],
-                    sTempValuesForJni[12], sTempValuesForJni[13], sTempValuesForJni[14], sTempValuesForJni[15]);
-        }
+        return getMatrix(new Matrix4f());
+    }
+
+    /**
+     * Get local matrix without allocating new object.
+     *
+     * @param dest Will hold the result.
+     * @return dest
+     */
+    public Matrix4f getMatrix(Matrix4f dest) {
+        final float[] values = tempValuesForJni();
+        getMatrix(getNative(), values);
+        return set(dest, values);
+    }
+
+    private static Matrix4f set(Matrix4f dest, float[] values) {
+        return dest.set(
+                values[0], values[1], values[2], values[3],
+                values[4], values[5], values[6], values[7],
+                values[8], values[9], values[10], values[11],
+                values[12], values[13], values[14], values[15]);
+    }
+
+    /**
+     * Temp array for get values from JNI. Each thread has its own array so no synchronization
+     * is needed. Do not keep reference to returned array.
+     *
+     * @return Array which can hold 16 floats.
+     */
+    protected static float[] tempValuesForJni() {
+        return sTempValues.get();
     }
 
     public Material material() {
@@ -873,13 +1062,19 @@ public class SceneObject extends HybridObject {
         return view.dispatchTouchEvent(motionEvent);
     }
 
+    /**
+     * Builds animation of this object. Animation runs on GL thread in {@link TweenEngine} of
+     * {@link MeganekkoApp}, and values are applied to this object every frame.
+     */
     public class SceneObjectAnimator {
+        private final List<AnimationStep> steps = new ArrayList<>();
         private Runnable callback;
-        private List<Animator> animators = new ArrayList<>();
         private long duration = -1;
         private TimeInterpolator interpolator;
         private boolean sequential;
         private long delay;
+        private TweenEngine engine;
+        private long animation;
         private AnimatorSet animator;
 
         // For sequential animation
@@ -889,10 +1084,8 @@ public class SceneObject extends HybridObject {
 
         public SceneObjectAnimator moveTo(Vector3f position) {
             Vector3f fromPos = lastPos != null ? lastPos : position();
-            ValueAnimator animator = ValueAnimator.ofObject(new VectorEvaluator(), fromPos, position);
-            animator.addUpdateListener(new PositionUpdateListener(SceneObject.this));
-            animators.add(animator);
-            lastPos = position;
+            steps.add(new AnimationStep(TweenEngine.POSITION, fromPos.x, fromPos.y, fromPos.z, 0, position.x, position.y, position.z, 0));
+            lastPos = new Vector3f(position);
             return this;
         }
 
@@ -904,10 +1097,8 @@ public class SceneObject extends HybridObject {
 
         public SceneObjectAnimator scaleTo(Vector3f scale) {
             Vector3f fromScale = lastScale != null ? lastScale : scale();
-            ValueAnimator animator = ValueAnimator.ofObject(new VectorEvaluator(), fromScale, scale);
-            animator.addUpdateListener(new ScaleUpdateListener(SceneObject.this));
-            animators.add(animator);
-            lastScale = scale;
+            steps.add(new AnimationStep(TweenEngine.SCALE, fromScale.x, fromScale.y, fromScale.z, 0, scale.x, scale.y, scale.z, 0));
+            lastScale = new Vector3f(scale);
             return this;
         }
 
@@ -919,10 +1110,10 @@ public class SceneObject extends HybridObject {
 
         public SceneObjectAnimator rotateTo(Quaternionf rotation) {
             Quaternionf fromRotation = lastRotation != null ? lastRotation : rotation();
-            ValueAnimator animator = ValueAnimator.ofObject(new QuaternionEvaluator(), fromRotation, rotation);
-            animator.addUpdateListener(new RotationUpdateListener(SceneObject.this));
-            animators.add(animator);
-            lastRotation = rotation;
+            steps.add(new AnimationStep(TweenEngine.ROTATION,
+                    fromRotation.x, fromRotation.y, fromRotation.z, fromRotation.w,
+                    rotation.x, rotation.y, rotation.z, rotation.w));
+            lastRotation = new Quaternionf(rotation);
             return this;
         }
 
@@ -945,8 +1136,7 @@ public class SceneObject extends HybridObject {
         }
 
         public SceneObjectAnimator opacity(float opacity) {
-            ObjectAnimator animator = ObjectAnimator.ofFloat(SceneObject.this, "opacity", lastOpacity, opacity);
-            animators.add(animator);
+            steps.add(new AnimationStep(TweenEngine.OPACITY, lastOpacity, 0, 0, 0, opacity, 0, 0, 0));
             lastOpacity = opacity;
             return this;
         }
@@ -976,17 +1166,77 @@ public class SceneObject extends HybridObject {
             return this;
         }
 
-        public SceneObjectAnimator start(MeganekkoApp app) {
+        /**
+         * Start animation from next frame. If this animation is running, it restarts.
+         * If called on other than GL thread, it is started on GL thread with
+         * {@link MeganekkoApp#runOnGlThread(Runnable)}, so {@link #isRunning()} is false until then.
+         *
+         * @param app {@link MeganekkoApp} whose {@link TweenEngine} runs animation.
+         * @return this
+         */
+        public SceneObjectAnimator start(final MeganekkoApp app) {
+            if (!app.isGlThread()) {
+                app.runOnGlThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        start(app);
+                    }
+                });
+                return this;
+            }
+
+            cancel();
 
-            if (animator == null) {
-                setupAnimator();
+            engine = app.getTweenEngine();
+            animation = engine.begin(callback);
+
+            final float durationSeconds = (duration >= 0 ? duration : DEFAULT_ANIMATION_DURATION) / 1000.0f;
+            float delaySeconds = delay / 1000.0f;
+
+            for (AnimationStep step : steps) {
+                final float[] from = step.from;
+                final float[] to = step.to;
+                engine.add(animation, SceneObject.this, step.property,
+                        from[0], from[1], from[2], from[3],
+                        to[0], to[1], to[2], to[3],
+                        delaySeconds, durationSeconds, interpolator);
+
+                if (sequential) {
+                    delaySeconds += durationSeconds;
+                }
             }
 
-            app.animate(animator, callback);
             return this;
         }
 
+        /**
+         * Stop animation where it is. End callback is not called. Must be called on GL thread.
+         */
+        public void cancel() {
+            if (engine != null) {
+                engine.cancel(animation);
+            }
+        }
+
+        /**
+         * @return true if animation was started and has not ended nor been canceled.
+         */
+        public boolean isRunning() {
+            return engine != null && engine.isRunning(animation);
+        }
+
+        /**
+         * Build {@code Animator} which runs this animation with Android animation framework on UI thread.
+         *
+         * @deprecated Use {@link #start(MeganekkoApp)} which runs on GL thread without racing with rendering.
+         */
+        @Deprecated
         public SceneObjectAnimator setupAnimator() {
+            List<Animator> animators = new ArrayList<>(steps.size());
+            for (AnimationStep step : steps) {
+                animators.add(step.toAnimator(SceneObject.this));
+            }
+
             this.animator = new AnimatorSet();
 
             if (sequential) {
@@ -1012,13 +1262,52 @@ public class SceneObject extends HybridObject {
 
         /**
          * Get {@code Animator} of this.
-         * Until {@link #start(MeganekkoApp)} or {@link #setupAnimator()} was called,
-         * this method always return null.
+         * Until {@link #setupAnimator()} was called, this method always return null.
          *
          * @return
+         * @deprecated Use {@link #start(MeganekkoApp)} which runs on GL thread without racing with rendering.
          */
+        @Deprecated
         public Animator getAnimator() {
             return animator;
         }
     }
+
+    /**
+     * Values of one property animated by {@link SceneObjectAnimator}.
+     */
+    private static class AnimationStep {
+        final int property;
+        final float[] from;
+        final float[] to;
+
+        AnimationStep(int property, float fromX, float fromY, float fromZ, float fromW, float toX, float toY, float toZ, float toW) {
+            this.property = property;
+            this.from = new float[]{fromX, fromY, fromZ, fromW};
+            this.to = new float[]{toX, toY, toZ, toW};
+        }
+
+        Animator toAnimator(SceneObject target) {
+            ValueAnimator animator;
+            switch (property) {
+                case TweenEngine.POSITION:
+                    animator = ValueAnimator.ofObject(new VectorEvaluator(),
+                            new Vector3f(from[0], from[1], from[2]), new Vector3f(to[0], to[1], to[2]));
+                    animator.addUpdateListener(new PositionUpdateListener(target));
+                    return animator;
+                case TweenEngine.SCALE:
+                    animator = ValueAnimator.ofObject(new VectorEvaluator(),
+                            new Vector3f(from[0], from[1], from[2]), new Vector3f(to[0], to[1], to[2]));
+                    animator.addUpdateListener(new ScaleUpdateListener(target));
+                    return animator;
+                case TweenEngine.ROTATION:
+                    animator = ValueAnimator.ofObject(new QuaternionEvaluator(),
+                            new Quaternionf(from[0], from[1], from[2], from[3]), new Quaternionf(to[0], to[1], to[2], to[3]));
+                    animator.addUpdateListener(new RotationUpdateListener(target));
+                    return animator;
+                default:
+                    return ObjectAnimator.ofFloat(target, "opacity", from[0], to[0]);
+            }
+        }
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rectangle packer with skyline bottom-left heuristic. The top edge of packed
+ * rectangles is kept as a list of horizontal segments and a new rectangle is
+ * placed where its top becomes lowest.
+ */
+final class SkylinePacker {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final List<Segment> mSkyline = new ArrayList<>();
+    private int mUsedArea;
+
+    SkylinePacker(int width, int height) {
+        this.mWidth = width;
+        this.mHeight = height;
+        clear();
+    }
+
+    /**
+     * Remove all rectangles.
+     */
+    void clear() {
+        mSkyline.clear();
+        mSkyline.add(new Segment(0, 0, mWidth));
+        mUsedArea = 0;
+    }
+
+    /**
+     * Find place for rectangle and mark it as used.
+     *
+     * @param width   Width of rectangle.
+     * @param height  Height of rectangle.
+     * @param outRect Will hold the placed rectangle.
+     * @return false if rectangle doesn't fit.
+     */
+    boolean insert(int width, int height, Rect outRect) {
+        int bestIndex = -1;
+        int bestTop = Integer.MAX_VALUE;
+        int bestSegmentWidth = Integer.MAX_VALUE;
+        int bestX = 0;
+        int bestY = 0;
+
+        for (int i = 0, size = mSkyline.size(); i < size; ++i) {
+            final int y = fit(i, width, height);
+            if (y < 0) continue;
+
+            final int top = y + height;
+            final int segmentWidth = mSkyline.get(i).width;
+            if (top < bestTop || (top == bestTop && segmentWidth < bestSegmentWidth)) {
+                bestIndex = i;
+                bestTop = top;
+                bestSegmentWidth = segmentWidth;
+                bestX = mSkyline.get(i).x;
+                bestY = y;
+            }
+        }
+
+        if (bestIndex < 0) return false;
+
+        addSegment(bestIndex, bestX, bestY + height, width);
+        mUsedArea += width * height;
+        outRect.set(bestX, bestY, bestX + width, bestY + height);
+        return true;
+    }
+
+    /**
+     * @return Sum of area of inserted rectangles.
+     */
+    int getAllocatedArea() {
+        return mUsedArea;
+    }
+
+    /**
+     * @return Ratio of used area to whole area.
+     */
+    float getOccupancy() {
+        return (float) mUsedArea / (mWidth * mHeight);
+    }
+
+    /**
+     * @return y where rectangle can be placed from left edge of segment at index, or -1.
+     */
+    private int fit(int index, int width, int height) {
+        final int x = mSkyline.get(index).x;
+        if (x + width > mWidth) return -1;
+
+        int y = 0;
+        int remaining = width;
+        for (int i = index; remaining > 0; ++i) {
+            final Segment segment = mSkyline.get(i);
+            y = Math.max(y, segment.y);
+            if (y + height > mHeight) return -1;
+            remaining -= segment.width;
+        }
+        return y;
+    }
+
+    private void addSegment(int index, int x, int y, int width) {
+        mSkyline.add(index, new Segment(x, y, width));
+
+        // Shrink or remove segments under the new one
+        final int right = x + width;
+        for (int i = index + 1; i < mSkyline.size(); ) {
+            final Segment segment = mSkyline.get(i);
+            if (segment.x >= right) break;
+
+            final int shrink = right - segment.x;
+            if (segment.width <= shrink) {
+                mSkyline.remove(i);
+            } else {
+                segment.x += shrink;
+                segment.width -= shrink;
+                break;
+            }
+        }
+
+        // Merge neighbors at same height
+        for (int i = 0; i < mSkyline.size() - 1; ) {
+            final Segment segment = mSkyline.get(i);
+            final Segment next = mSkyline.get(i + 1);
+            if (segment.y == next.y) {
+                segment.width += next.width;
+                mSkyline.remove(i + 1);
+            } else {
+                ++i;
+            }
+        }
+    }
+
+    private static final class Segment {
+        int x;
+        int y;
+        int width;
+
+        Segment(int x, int y, int width) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
@@ -28,17 +29,56 @@ import android.view.Surface;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.eje_c.meganekko.utility.Threads;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Texture {
 
+    private final Material mMaterial;
     private final SurfaceTexture mSurfaceTexture;
+    private final AtomicInteger mPendingFrames = new AtomicInteger();
+    private final AtomicBoolean mRendering = new AtomicBoolean();
+    private final Object mSurfaceLock = new Object();
+    private final Rect mDirtyRect = new Rect();
+    private Surface mSurface;
+    private volatile boolean mReleased;
+    private int mBufferWidth;
+    private int mBufferHeight;
+    private boolean mHasContent;
     private CanvasRenderer mRenderer;
     private boolean mContinuesUpdate;
 
-    Texture(SurfaceTexture surfaceTexture) {
+    Texture(Material material, SurfaceTexture surfaceTexture) {
+        this.mMaterial = material;
         this.mSurfaceTexture = surfaceTexture;
+        surfaceTexture.setOnFrameAvailableListener(new SurfaceTexture.OnFrameAvailableListener() {
+            @Override
+            public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+                mPendingFrames.incrementAndGet();
+            }
+        });
     }
 
+    /**
+     * Release surfaces. Never waits for drawing: if drawing is in progress in worker thread, the
+     * worker releases them when it is done.
+     */
     void release() {
+        synchronized (mSurfaceLock) {
+            if (mReleased) return;
+            mReleased = true;
+            if (mRendering.get()) return;
+        }
+        releaseSurfaces();
+    }
+
+    private void releaseSurfaces() {
+        if (mSurface != null) {
+            mSurface.release();
+            mSurface = null;
+        }
         mSurfaceTexture.release();
     }
 
@@ -71,20 +111,24 @@ public class Texture {
 
     /**
      * Render with custom {@linkplain com.eje_c.meganekko.Texture.CanvasRenderer renderer}.
+     * If material is in {@link TextureAtlas}, it is detached from atlas.
      *
      * @param renderer
      */
     public void set(CanvasRenderer renderer) {
+        mMaterial.detachFromAtlas();
         this.mContinuesUpdate = false;
         this.mRenderer = renderer;
     }
 
     /**
      * Render with {@code MediaPlayer}.
+     * If material is in {@link TextureAtlas}, it is detached from atlas.
      *
      * @param mediaPlayer
      */
     public void set(MediaPlayer mediaPlayer) {
+        mMaterial.detachFromAtlas();
         this.mContinuesUpdate = true;
 
         Surface surface = new Surface(mSurfaceTexture);
@@ -103,31 +147,147 @@ public class Texture {
 
     /**
      * Called in every frame for update texture image.
+     * Rendering with {@link CanvasRenderer} is done in worker thread. GL thread only updates
+     * texture image when new frame is available.
      *
      * @param vrFrame
      */
     public void update(Frame vrFrame) {
-        if (mRenderer != null) {
+        final CanvasRenderer renderer = mRenderer;
+
+        if (mReleased) return;
+
+        if (renderer != null && !mRendering.get() && renderer.isDirty()) {
+            startRendering(renderer, vrFrame);
+        }
 
-            if (mRenderer.isDirty()) {
+        // Each call latches one queued buffer. Latch all of them so that producer never waits for a free buffer.
+        if (renderer != null || mContinuesUpdate) {
+            for (int frames = mPendingFrames.getAndSet(0); frames > 0; --frames) {
+                mSurfaceTexture.updateTexImage();
+            }
+        }
+    }
+
+    private void startRendering(final CanvasRenderer renderer, final Frame vrFrame) {
+        final int width = renderer.getWidth();
+        final int height = renderer.getHeight();
+
+        // Decided under lock with release(), so that exactly one of them releases surfaces
+        synchronized (mSurfaceLock) {
+            if (mReleased) return;
+            mRendering.set(true);
+        }
+
+        if (mSurface == null) {
+            mSurface = new Surface(mSurfaceTexture);
+        }
 
-                mSurfaceTexture.setDefaultBufferSize(mRenderer.getWidth(), mRenderer.getHeight());
+        if (width != mBufferWidth || height != mBufferHeight) {
+            mSurfaceTexture.setDefaultBufferSize(width, height);
+            mBufferWidth = width;
+            mBufferHeight = height;
+            mHasContent = false;
+        }
 
-                Surface surface = new Surface(mSurfaceTexture);
+        // Redraw only dirty region if previous content can be kept.
+        // Only one rendering is in flight at a time, so mDirtyRect can be reused.
+        Rect dirty = null;
+        if (mHasContent && renderer instanceof PartialCanvasRenderer) {
+            mDirtyRect.setEmpty();
+            // Fall back to full redraw if region is empty so that dirty state is cleared
+            if (((PartialCanvasRenderer) renderer).getDirtyRect(mDirtyRect)
+                    && mDirtyRect.intersect(0, 0, width, height)) {
+                dirty = mDirtyRect;
+            }
+        }
+        mHasContent = true;
 
+        final Rect dirtyRect = dirty;
+        final Frame frame = vrFrame != null ? new FrameSnapshot(vrFrame) : null;
+        final Surface surface = mSurface;
+
+        // Surfaces are not released while mRendering is set, so drawing holds no lock
+        Threads.spawn(new Runnable() {
+            @Override
+            public void run() {
                 try {
-                    Canvas canvas = surface.lockCanvas(null);
-                    mRenderer.render(canvas, vrFrame);
-                    surface.unlockCanvasAndPost(canvas);
+                    Canvas canvas = surface.lockCanvas(dirtyRect);
+                    try {
+                        renderer.render(canvas, frame);
+                    } finally {
+                        surface.unlockCanvasAndPost(canvas);
+                    }
                 } finally {
-                    surface.release();
+                    finishRendering();
                 }
-
-                mSurfaceTexture.updateTexImage();
             }
+        });
+    }
 
-        } else if (mContinuesUpdate) {
-            mSurfaceTexture.updateTexImage();
+    private void finishRendering() {
+        synchronized (mSurfaceLock) {
+            mRendering.set(false);
+            if (!mReleased) return;
+        }
+        releaseSurfaces();
+    }
+
+    /**
+     * Values of {@link Frame} which can be read after the frame is over.
+     */
+    private static class FrameSnapshot implements Frame {
+        private final double mPredictedDisplayTimeInSeconds;
+        private final float mDeltaSeconds;
+        private final int mFrameNumber;
+        private final float mSwipeFraction;
+        private final int mButtonState;
+        private final int mButtonPressed;
+        private final int mButtonReleased;
+
+        FrameSnapshot(Frame frame) {
+            mPredictedDisplayTimeInSeconds = frame.getPredictedDisplayTimeInSeconds();
+            mDeltaSeconds = frame.getDeltaSeconds();
+            mFrameNumber = frame.getFrameNumber();
+            mSwipeFraction = frame.getSwipeFraction();
+            mButtonState = frame.getButtonState();
+            mButtonPressed = frame.getButtonPressed();
+            mButtonReleased = frame.getButtonReleased();
+        }
+
+        @Override
+        public double getPredictedDisplayTimeInSeconds() {
+            return mPredictedDisplayTimeInSeconds;
+        }
+
+        @Override
+        public float getDeltaSeconds() {
+            return mDeltaSeconds;
+        }
+
+        @Override
+        public int getFrameNumber() {
+            return mFrameNumber;
+        }
+
+        @Override
+        public float getSwipeFraction() {
+            return mSwipeFraction;
+        }
+
+        @Override
+        public int getButtonState() {
+            return mButtonState;
+        }
+
+        @Override
+        public int getButtonPressed() {
+            return mButtonPressed;
+        }
+
+        @Override
+        public int getButtonReleased() {
+            return mButtonReleased;
         }
     }
 
@@ -136,10 +296,10 @@ public class Texture {
      */
     public interface CanvasRenderer {
         /**
-         * Do rendering with {@code Canvas}.
+         * Do rendering with {@code Canvas}. This is called in worker thread.
          *
          * @param canvas
-         * @param vrFrame
+         * @param vrFrame Copy of frame in which rendering was started.
          */
         void render(Canvas canvas, Frame vrFrame);
 
@@ -161,13 +321,28 @@ public class Texture {
         boolean isDirty();
     }
 
+    /**
+     * {@link CanvasRenderer} which can tell which region must be redrawn.
+     * Pixels outside of the region are kept from previous rendering.
+     */
+    public interface PartialCanvasRenderer extends CanvasRenderer {
+        /**
+         * Get region which must be redrawn. This is called in GL thread before
+         * {@link #render(Canvas, Frame)}. {@code Canvas} passed to render is clipped to the region.
+         *
+         * @param outRect Will hold the region in canvas coordinates.
+         * @return false if whole canvas must be redrawn.
+         */
+        boolean getDirtyRect(Rect outRect);
+    }
+
     /**
      * Basic renderer for Drawable.
      */
     public static class DrawableRenderer implements CanvasRenderer {
 
         private final Drawable mDrawable;
-        private boolean mDirty = true;
+        private volatile boolean mDirty = true;
 
         private DrawableRenderer(Drawable drawable) {
             this.mDrawable = drawable;
@@ -202,13 +377,20 @@ public class Texture {
     }
 
     /**
-     * Basic renderer for View.
+     * Basic renderer for View. Only region of dirty views is redrawn.
+     * <p>
+     * By default, dirty state is checked by walking the view hierarchy every frame because
+     * views which are not attached to a window don't notify their parents on invalidation.
+     * For large hierarchies, disable it with {@link #setDirtyCheckEnabled(boolean)} and call
+     * {@link #invalidate()} when the view is changed, then the check per frame is O(1).
      */
-    public static class ViewRenderer implements CanvasRenderer {
+    public static class ViewRenderer implements PartialCanvasRenderer {
 
         private final View mView;
+        private final AtomicBoolean mInvalidated = new AtomicBoolean(true);
+        private volatile boolean mDirtyCheckEnabled = true;
 
-        private ViewRenderer(View view) {
+        ViewRenderer(View view) {
             this.mView = view;
             view.measure(0, 0);
             view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
@@ -236,8 +418,78 @@ public class Texture {
             return false;
         }
 
+        /**
+         * Compute union of bounds of dirty views in hierarchy.
+         *
+         * @param view    Root view.
+         * @param outRect Will hold the result in root view coordinates. It is not cleared before computation.
+         */
+        public static void computeDirtyRect(View view, Rect outRect) {
+            computeDirtyRect(view, 0, 0, outRect);
+        }
+
+        private static void computeDirtyRect(View view, int x, int y, Rect outRect) {
+
+            if (view.isDirty()) {
+                outRect.union(x, y, x + view.getWidth(), y + view.getHeight());
+                return;
+            }
+
+            if (view instanceof ViewGroup) {
+                final ViewGroup viewGroup = (ViewGroup) view;
+                final int childX = x - viewGroup.getScrollX();
+                final int childY = y - viewGroup.getScrollY();
+
+                for (int i = 0, count = viewGroup.getChildCount(); i < count; ++i) {
+                    final View child = viewGroup.getChildAt(i);
+
+                    // Transformed child can draw anywhere in parent
+                    if (!child.getMatrix().isIdentity()) {
+                        if (isDirty(child)) {
+                            outRect.union(x, y, x + viewGroup.getWidth(), y + viewGroup.getHeight());
+                            return;
+                        }
+                        continue;
+                    }
+
+                    computeDirtyRect(child, childX + child.getLeft(), childY + child.getTop(), outRect);
+                }
+            }
+        }
+
+        /**
+         * Request redrawing whole view in next frame. Can be called from any thread.
+         */
+        public void invalidate() {
+            mInvalidated.set(true);
+        }
+
+        /**
+         * Enable or disable walking view hierarchy every frame to find dirty views.
+         *
+         * @param enabled {@code false} to redraw only when {@link #invalidate()} is called. Default is {@code true}.
+         */
+        public void setDirtyCheckEnabled(boolean enabled) {
+            mDirtyCheckEnabled = enabled;
+        }
+
+        public boolean isDirtyCheckEnabled() {
+            return mDirtyCheckEnabled;
+        }
+
+        @Override
+        public boolean getDirtyRect(Rect outRect) {
+            if (mInvalidated.get()) return false;
+
+            computeDirtyRect(mView, outRect);
+            return true;
+        }
+
         @Override
         public void render(Canvas canvas, Frame vrFrame) {
+            // Clear before drawing not to lose invalidation during drawing
+            mInvalidated.set(false);
+
             canvas.drawColor(0, PorterDuff.Mode.CLEAR);
             mView.draw(canvas);
         }
@@ -254,7 +506,7 @@ public class Texture {
 
         @Override
         public boolean isDirty() {
-            return isDirty(mView);
+            return mInvalidated.get() || (mDirtyCheckEnabled && isDirty(mView));
         }
 
         public View getView() {
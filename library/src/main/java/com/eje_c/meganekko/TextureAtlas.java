@@ -0,0 +1,473 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import com.eje_c.meganekko.utility.Exceptions;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs small {@code Drawable}s into shared texture pages. {@link Material}s added to atlas
+ * don't render their own texture but sample a sub-rectangle of a page, so many small images
+ * share one texture.
+ * <p>
+ * Regions are placed with {@link SkylinePacker}. Space of removed regions, and regions whose
+ * {@link Material} was garbage collected, is reclaimed by repacking a page when a new region
+ * doesn't fit. Repacking moves regions, so they can show old content of page until the page is
+ * redrawn. A new page is created when repacking is not enough, and empty pages are released.
+ * If all pages are full, {@link #add(Material, Drawable)} fails and caller should fall back to
+ * material's own texture.
+ * <p>
+ * Contents of regions are drawn once. Methods can be called from any thread. Materials start
+ * sampling their new regions in their next update on GL thread, and GL thread never waits for
+ * drawing of pages.
+ */
+public class TextureAtlas {
+
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+    public static final int DEFAULT_MAX_REGION_SIZE = 256;
+    public static final int DEFAULT_MAX_PAGE_COUNT = 4;
+
+    // Transparent gutter around each region to avoid bleeding of neighbors by filtering
+    private static final int PADDING = 1;
+
+    private static final Comparator<Region> HEIGHT_DESCENDING = new Comparator<Region>() {
+        @Override
+        public int compare(Region lhs, Region rhs) {
+            return rhs.mRect.height() - lhs.mRect.height();
+        }
+    };
+
+    private static TextureAtlas sDefault;
+
+    private final int mPageSize;
+    private final int mMaxRegionSize;
+    private final int mMaxPageCount;
+    private final List<Page> mPages = new ArrayList<>();
+
+    public TextureAtlas() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_MAX_REGION_SIZE, DEFAULT_MAX_PAGE_COUNT);
+    }
+
+    /**
+     * @param pageSize      Width and height of page in pixels.
+     * @param maxRegionSize {@code Drawable}s larger than this in width or height are not added.
+     * @param maxPageCount  Maximum number of pages.
+     */
+    public TextureAtlas(int pageSize, int maxRegionSize, int maxPageCount) {
+        if (pageSize <= 0) {
+            throw Exceptions.IllegalArgument("pageSize must be positive: %d", pageSize);
+        }
+        if (maxRegionSize <= 0 || maxRegionSize + PADDING * 2 > pageSize) {
+            throw Exceptions.IllegalArgument("maxRegionSize must be positive and fit in page: %d", maxRegionSize);
+        }
+        if (maxPageCount <= 0) {
+            throw Exceptions.IllegalArgument("maxPageCount must be positive: %d", maxPageCount);
+        }
+        this.mPageSize = pageSize;
+        this.mMaxRegionSize = maxRegionSize;
+        this.mMaxPageCount = maxPageCount;
+    }
+
+    /**
+     * @return Atlas shared by {@link Material#from(Drawable, TextureAtlas)} callers which don't
+     * need own atlas, such as XML {@code atlas} attribute.
+     */
+    public static synchronized TextureAtlas getDefault() {
+        if (sDefault == null) {
+            sDefault = new TextureAtlas();
+        }
+        return sDefault;
+    }
+
+    /**
+     * Render {@code Drawable} in its intrinsic size into a page and let {@code material} use it.
+     * If {@code material} is already in an atlas, it is removed from there first.
+     *
+     * @param material Material.
+     * @param drawable Drawable with intrinsic size.
+     * @return false if {@code drawable} is too large or there is no space.
+     */
+    public boolean add(Material material, Drawable drawable) {
+        final int width = drawable.getIntrinsicWidth();
+        final int height = drawable.getIntrinsicHeight();
+
+        if (width <= 0 || height <= 0 || width > mMaxRegionSize || height > mMaxRegionSize) {
+            return false;
+        }
+
+        // Outside of lock not to hold locks of two atlases at once
+        final Region current = material.getAtlasRegion();
+        if (current != null) {
+            current.mAtlas.remove(material);
+        }
+
+        return add(material, drawable, width, height);
+    }
+
+    private synchronized boolean add(Material material, Drawable drawable, int width, int height) {
+        final Region region = new Region(this, material, drawable);
+        final int paddedWidth = width + PADDING * 2;
+        final int paddedHeight = height + PADDING * 2;
+
+        // Try free space, then space of removed regions, then new page
+        Page page = findPage(paddedWidth, paddedHeight, region.mRect);
+
+        if (page == null) {
+            purge();
+            final int area = paddedWidth * paddedHeight;
+            for (int i = 0, size = mPages.size(); i < size && page == null; ++i) {
+                final Page candidate = mPages.get(i);
+                if (candidate.getWastedArea() >= area) {
+                    repack(candidate);
+                    if (candidate.mPacker.insert(paddedWidth, paddedHeight, region.mRect)) {
+                        page = candidate;
+                    }
+                }
+            }
+        }
+
+        if (page == null && mPages.size() < mMaxPageCount) {
+            final Page newPage = new Page();
+            if (newPage.mPacker.insert(paddedWidth, paddedHeight, region.mRect)) {
+                mPages.add(newPage);
+                page = newPage;
+            }
+        }
+
+        if (page == null) return false;
+
+        page.mRegions.add(region);
+        page.mLiveArea += paddedWidth * paddedHeight;
+        page.invalidate(region.mRect);
+        assign(region, page);
+        return true;
+    }
+
+    /**
+     * Stop {@code material} using atlas. Its space is reclaimed on next repacking.
+     * {@code material} has no texture image after this call.
+     *
+     * @param material Material.
+     */
+    public synchronized void remove(Material material) {
+        final Region region = material.getAtlasRegion();
+        if (region == null || region.mAtlas != this) return;
+
+        material.clearAtlasRegion();
+
+        final Page page = region.mPage;
+        if (page != null) {
+            removeRegion(page, region);
+            if (page.mRegions.isEmpty()) {
+                mPages.remove(page);
+            }
+        }
+    }
+
+    /**
+     * Remove regions of garbage collected materials and repack all pages.
+     */
+    public synchronized void repack() {
+        purge();
+        for (int i = 0, size = mPages.size(); i < size; ++i) {
+            repack(mPages.get(i));
+        }
+    }
+
+    /**
+     * @return Number of pages.
+     */
+    public synchronized int getPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * @return Number of regions including ones whose materials are already garbage collected.
+     */
+    public synchronized int getRegionCount() {
+        int count = 0;
+        for (int i = 0, size = mPages.size(); i < size; ++i) {
+            count += mPages.get(i).mRegions.size();
+        }
+        return count;
+    }
+
+    /**
+     * @param pageIndex Index of page.
+     * @return Ratio of area used by regions to whole page area, between 0 and 1.
+     */
+    public synchronized float getOccupancy(int pageIndex) {
+        return (float) mPages.get(pageIndex).mLiveArea / (mPageSize * mPageSize);
+    }
+
+    /**
+     * @param pageIndex Index of page.
+     * @return Ratio of area which cannot be allocated until repacking to whole page area,
+     * between 0 and 1. This includes area used by regions.
+     */
+    public synchronized float getAllocatedRatio(int pageIndex) {
+        return mPages.get(pageIndex).mPacker.getOccupancy();
+    }
+
+    private Page findPage(int width, int height, Rect outRect) {
+        for (int i = 0, size = mPages.size(); i < size; ++i) {
+            final Page page = mPages.get(i);
+            if (page.mPacker.insert(width, height, outRect)) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove regions whose materials are garbage collected and empty pages.
+     */
+    private void purge() {
+        for (int i = mPages.size() - 1; i >= 0; --i) {
+            final Page page = mPages.get(i);
+            final List<Region> regions = page.mRegions;
+
+            for (int j = regions.size() - 1; j >= 0; --j) {
+                final Region region = regions.get(j);
+                if (region.mOwner.get() == null) {
+                    removeRegion(page, region);
+                }
+            }
+
+            if (regions.isEmpty()) {
+                mPages.remove(i);
+            }
+        }
+    }
+
+    private void removeRegion(Page page, Region region) {
+        page.mRegions.remove(region);
+        page.mLiveArea -= region.mRect.width() * region.mRect.height();
+        region.mPage = null;
+    }
+
+    /**
+     * Place all regions of page again from empty state. Regions which don't fit anymore are
+     * moved to other pages, or their materials fall back to own texture.
+     */
+    private void repack(Page page) {
+        final List<Region> regions = new ArrayList<>(page.mRegions);
+        Collections.sort(regions, HEIGHT_DESCENDING);
+
+        page.mPacker.clear();
+        page.mRegions.clear();
+        page.mLiveArea = 0;
+        page.invalidateAll();
+
+        for (int i = 0, size = regions.size(); i < size; ++i) {
+            final Region region = regions.get(i);
+            final int width = region.mRect.width();
+            final int height = region.mRect.height();
+
+            Page target = page;
+            if (!page.mPacker.insert(width, height, region.mRect)) {
+                target = findPage(width, height, region.mRect);
+            }
+
+            if (target == null) {
+                region.mPage = null;
+                final Material material = region.mOwner.get();
+                if (material != null) {
+                    material.clearAtlasRegion();
+                    material.texture().set(region.mDrawable);
+                }
+                continue;
+            }
+
+            target.mRegions.add(region);
+            target.mLiveArea += width * height;
+            if (target != page) {
+                target.invalidate(region.mRect);
+            }
+            assign(region, target);
+        }
+    }
+
+    private void assign(Region region, Page page) {
+        region.mPage = page;
+
+        final Material material = region.mOwner.get();
+        if (material == null) return;
+
+        // Sample centers of edge pixels at edges, like clamping to edge of own texture
+        final Rect rect = region.mRect;
+        final float size = mPageSize;
+        material.setAtlasRegion(region, page.mMaterial,
+                (rect.left + PADDING + 0.5f) / size,
+                (rect.top + PADDING + 0.5f) / size,
+                (rect.width() - PADDING * 2 - 1) / size,
+                (rect.height() - PADDING * 2 - 1) / size);
+    }
+
+    /**
+     * Area of page used by one {@link Material}.
+     */
+    static final class Region {
+        private final TextureAtlas mAtlas;
+        private final WeakReference<Material> mOwner;
+        private final Drawable mDrawable;
+        private final Rect mRect = new Rect(); // including padding
+        private Page mPage;
+
+        private Region(TextureAtlas atlas, Material owner, Drawable drawable) {
+            this.mAtlas = atlas;
+            this.mOwner = new WeakReference<>(owner);
+            this.mDrawable = drawable;
+        }
+
+        TextureAtlas getAtlas() {
+            return mAtlas;
+        }
+
+        Drawable getDrawable() {
+            return mDrawable;
+        }
+
+        /**
+         * Update texture of page. Called by materials in every frame.
+         */
+        void update(Frame vrFrame) {
+            final Page page = mPage;
+            if (page != null) {
+                page.update(vrFrame);
+            }
+        }
+    }
+
+    /**
+     * One texture shared by regions. Only rectangles of changed regions are redrawn.
+     * Regions are guarded by lock of atlas, and dirty state is guarded by {@code mDirtyLock},
+     * which is never held while drawing, so that GL thread can take dirty state while other
+     * pages are drawn.
+     */
+    private final class Page implements Texture.PartialCanvasRenderer {
+        final Material mMaterial = new Material();
+        final SkylinePacker mPacker = new SkylinePacker(mPageSize, mPageSize);
+        final List<Region> mRegions = new ArrayList<>();
+        final Object mDirtyLock = new Object();
+        final Rect mDirtyRect = new Rect();
+        final Rect mClipRect = new Rect();
+        boolean mFullRedraw = true;
+        boolean mDirtyRectTaken;
+        volatile boolean mDirty = true;
+        int mLiveArea;
+        int mLastUpdatedFrame = -1;
+
+        Page() {
+            mMaterial.texture().set(this);
+        }
+
+        int getWastedArea() {
+            return mPacker.getAllocatedArea() - mLiveArea;
+        }
+
+        void invalidate(Rect rect) {
+            synchronized (mDirtyLock) {
+                mDirtyRect.union(rect);
+                mDirty = true;
+            }
+        }
+
+        void invalidateAll() {
+            synchronized (mDirtyLock) {
+                mFullRedraw = true;
+                mDirty = true;
+            }
+        }
+
+        // Called in GL thread by each material sharing this page
+        void update(Frame vrFrame) {
+            if (vrFrame.getFrameNumber() != mLastUpdatedFrame) {
+                mLastUpdatedFrame = vrFrame.getFrameNumber();
+                mMaterial.update(vrFrame);
+            }
+        }
+
+        @Override
+        public boolean getDirtyRect(Rect outRect) {
+            synchronized (mDirtyLock) {
+                // Regions invalidated after this are drawn in next rendering
+                mDirtyRectTaken = true;
+                final boolean partial = !mFullRedraw;
+                outRect.set(mDirtyRect);
+                mDirtyRect.setEmpty();
+                mFullRedraw = false;
+                mDirty = false;
+                return partial;
+            }
+        }
+
+        @Override
+        public void render(Canvas canvas, Frame vrFrame) {
+            synchronized (TextureAtlas.this) {
+                synchronized (mDirtyLock) {
+                    if (!mDirtyRectTaken) {
+                        mDirtyRect.setEmpty();
+                        mFullRedraw = false;
+                        mDirty = false;
+                    }
+                    mDirtyRectTaken = false;
+                }
+
+                canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+
+                if (!canvas.getClipBounds(mClipRect)) return;
+
+                for (int i = 0, size = mRegions.size(); i < size; ++i) {
+                    final Region region = mRegions.get(i);
+                    final Rect rect = region.mRect;
+                    if (!Rect.intersects(rect, mClipRect)) continue;
+
+                    final Drawable drawable = region.mDrawable;
+                    drawable.setBounds(rect.left + PADDING, rect.top + PADDING,
+                            rect.right - PADDING, rect.bottom - PADDING);
+                    drawable.draw(canvas);
+                }
+            }
+        }
+
+        @Override
+        public int getWidth() {
+            return mPageSize;
+        }
+
+        @Override
+        public int getHeight() {
+            return mPageSize;
+        }
+
+        @Override
+        public boolean isDirty() {
+            return mDirty;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import com.eje_c.meganekko.utility.Exceptions;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Applies position, rotation and scale of many {@link SceneObject}s in one JNI call.
+ * Instance is reusable. Call {@link #clear()}, {@link #add(SceneObject, Vector3f, Quaternionf, Vector3f) add}
+ * transforms and {@link #apply()} them on every frame. Must be applied on GL thread
+ * like other {@link SceneObject} setters.
+ * <p>
+ * Each transform is packed as {@link #FLOATS_PER_OBJECT} floats in the order of
+ * position (x, y, z), rotation (x, y, z, w) and scale (x, y, z). Optional mask of
+ * {@link #POSITION}, {@link #ROTATION} and {@link #SCALE} selects which of them are applied,
+ * and other components of the object are kept.
+ */
+public class TransformBatch {
+
+    public static final int FLOATS_PER_OBJECT = 10;
+
+    public static final int POSITION = 1;
+    public static final int ROTATION = 2;
+    public static final int SCALE = 4;
+    public static final int ALL = POSITION | ROTATION | SCALE;
+
+    private long[] mHandles;
+    private int[] mMasks;
+    private boolean mPartial;
+    private FloatBuffer mData;
+    private int mCount;
+
+    public TransformBatch() {
+        this(64);
+    }
+
+    /**
+     * @param capacity Initial number of objects. Grows automatically.
+     */
+    public TransformBatch(int capacity) {
+        if (capacity <= 0) {
+            throw Exceptions.IllegalArgument("capacity must be positive: %d", capacity);
+        }
+        mHandles = new long[capacity];
+        mMasks = new int[capacity];
+        mData = allocate(capacity);
+    }
+
+    private static FloatBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * FLOATS_PER_OBJECT * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mHandles.length) return;
+
+        int newCapacity = Math.max(capacity, mHandles.length * 2);
+        long[] handles = new long[newCapacity];
+        System.arraycopy(mHandles, 0, handles, 0, mCount);
+        int[] masks = new int[newCapacity];
+        System.arraycopy(mMasks, 0, masks, 0, mCount);
+        FloatBuffer data = allocate(newCapacity);
+        mData.position(0).limit(mCount * FLOATS_PER_OBJECT);
+        data.put(mData);
+        mData.clear();
+        mHandles = handles;
+        mMasks = masks;
+        mData = data;
+    }
+
+    /**
+     * Add transform for object.
+     *
+     * @param object   Target object.
+     * @param position Local position.
+     * @param rotation Local rotation.
+     * @param scale    Local scale.
+     */
+    public void add(SceneObject object, Vector3f position, Quaternionf rotation, Vector3f scale) {
+        add(object.getNative(),
+                position.x, position.y, position.z,
+                rotation.x, rotation.y, rotation.z, rotation.w,
+                scale.x, scale.y, scale.z);
+    }
+
+    /**
+     * Add transform for native object.
+     *
+     * @param nativeHandle Value of {@link SceneObject#getNative()}.
+     */
+    public void add(long nativeHandle,
+                    float px, float py, float pz,
+                    float rx, float ry, float rz, float rw,
+                    float sx, float sy, float sz) {
+        add(nativeHandle, ALL, px, py, pz, rx, ry, rz, rw, sx, sy, sz);
+    }
+
+    /**
+     * Add transform for native object. Only components selected by mask are applied.
+     *
+     * @param nativeHandle Value of {@link SceneObject#getNative()}.
+     * @param mask         Combination of {@link #POSITION}, {@link #ROTATION} and {@link #SCALE}.
+     */
+    public void add(long nativeHandle, int mask,
+                    float px, float py, float pz,
+                    float rx, float ry, float rz, float rw,
+                    float sx, float sy, float sz) {
+        ensureCapacity(mCount + 1);
+
+        mHandles[mCount] = nativeHandle;
+        mMasks[mCount] = mask;
+        mPartial |= mask != ALL;
+
+        final FloatBuffer data = mData;
+        int i = mCount * FLOATS_PER_OBJECT;
+        data.put(i++, px).put(i++, py).put(i++, pz);
+        data.put(i++, rx).put(i++, ry).put(i++, rz).put(i++, rw);
+        data.put(i++, sx).put(i++, sy).put(i, sz);
+
+        ++mCount;
+    }
+
+    /**
+     * @return Number of added transforms.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Remove all added transforms. Allocated buffers are kept.
+     */
+    public void clear() {
+        mCount = 0;
+        mPartial = false;
+    }
+
+    /**
+     * Apply all added transforms in one native call.
+     */
+    public void apply() {
+        if (mCount == 0) return;
+        setTransforms(mHandles, mPartial ? mMasks : null, mData, 0, mCount);
+    }
+
+    /**
+     * Apply packed transforms in one native call.
+     *
+     * @param handles Native handles of {@link SceneObject}s.
+     * @param data    Direct buffer in native byte order holding {@link #FLOATS_PER_OBJECT} floats per object
+     *                from its current position.
+     * @param count   Number of objects.
+     */
+    public static void apply(long[] handles, FloatBuffer data, int count) {
+        if (!data.isDirect()) {
+            throw Exceptions.IllegalArgument("data must be direct buffer");
+        }
+        if (data.order() != ByteOrder.nativeOrder()) {
+            throw Exceptions.IllegalArgument("data must be in native byte order");
+        }
+        if (count < 0 || count > handles.length || count > data.remaining() / FLOATS_PER_OBJECT) {
+            throw Exceptions.IllegalArgument("count is out of range: %d", count);
+        }
+        if (count == 0) return;
+        setTransforms(handles, null, data, data.position(), count);
+    }
+
+    private static native void setTransforms(long[] handles, int[] masks, FloatBuffer data, int offset, int count);
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import com.eje_c.meganekko.utility.Exceptions;
+
+import java.util.Arrays;
+
+/**
+ * Describes interleaved vertex data passed to {@link Mesh#build(java.nio.ByteBuffer, VertexLayout, java.nio.Buffer)}
+ * and {@link DynamicMesh}.
+ * Attributes are laid out in the order they are added. Each attribute starts at 4 byte
+ * boundary, so 3 half floats take 8 bytes.
+ * <pre>
+ * VertexLayout layout = new VertexLayout()
+ *         .add(VertexLayout.Attribute.POSITION, 3, VertexLayout.Type.HALF_FLOAT)
+ *         .add(VertexLayout.Attribute.COLOR, 4, VertexLayout.Type.UNSIGNED_BYTE)
+ *         .add(VertexLayout.Attribute.UV, 2, VertexLayout.Type.FLOAT);
+ * </pre>
+ */
+public class VertexLayout {
+
+    // Values per attribute passed to native: attribute, components, type, offset
+    static final int VALUES_PER_ATTRIBUTE = 4;
+
+    private int[] mValues = new int[0];
+    private int mStride;
+    private boolean mHasPosition;
+
+    /**
+     * Add attribute after previously added ones.
+     *
+     * @param attribute  Attribute. Each attribute can be added only once.
+     * @param components Number of components between 1 and 4.
+     * @param type       Type of each component.
+     * @return this
+     */
+    public VertexLayout add(Attribute attribute, int components, Type type) {
+        if (components < 1 || components > 4) {
+            throw Exceptions.IllegalArgument("components must be between 1 and 4: %d", components);
+        }
+
+        for (int i = 0; i < mValues.length; i += VALUES_PER_ATTRIBUTE) {
+            if (mValues[i] == attribute.ordinal()) {
+                throw Exceptions.IllegalArgument("%s is already added", attribute);
+            }
+        }
+
+        final int index = mValues.length;
+        mValues = Arrays.copyOf(mValues, index + VALUES_PER_ATTRIBUTE);
+        mValues[index] = attribute.ordinal();
+        mValues[index + 1] = components;
+        mValues[index + 2] = type.ordinal();
+        mValues[index + 3] = mStride;
+
+        mStride += (components * type.size + 3) & ~3;
+        mHasPosition |= attribute == Attribute.POSITION;
+        return this;
+    }
+
+    /**
+     * @return Size of one vertex in bytes.
+     */
+    public int getStride() {
+        return mStride;
+    }
+
+    boolean hasPosition() {
+        return mHasPosition;
+    }
+
+    int[] getValues() {
+        return mValues;
+    }
+
+    /**
+     * Vertex attributes read by Meganekko shaders.
+     */
+    public enum Attribute {
+        POSITION, NORMAL, COLOR, UV
+    }
+
+    /**
+     * Component types. Integer types are normalized to [0, 1] or [-1, 1].
+     */
+    public enum Type {
+        FLOAT(4), HALF_FLOAT(2), UNSIGNED_BYTE(1), BYTE(1);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return Size of one component in bytes.
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+}
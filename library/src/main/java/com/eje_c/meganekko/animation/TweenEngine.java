@@ -0,0 +1,546 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.animation;
+
+import android.animation.TimeInterpolator;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.eje_c.meganekko.Frame;
+import com.eje_c.meganekko.MeganekkoApp;
+import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.TransformBatch;
+import com.eje_c.meganekko.utility.Exceptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Runs tweens of position, rotation, scale and opacity of {@link SceneObject}s in GL frame loop.
+ * <p>
+ * Tweens are stored in parallel primitive arrays and all of them are evaluated in one pass by
+ * {@link #update(float)}, which {@link MeganekkoApp#update()} calls every frame with
+ * {@link Frame#getDeltaSeconds()}. Transforms of all animated objects are applied with one
+ * {@link TransformBatch} call. Nothing is allocated per frame.
+ * <p>
+ * Tweens are grouped into animations. An animation ends when all of its tweens end, and its end
+ * callback is called on GL thread unless it was canceled. When a tween starts, running tween of
+ * other animation on same property of same object is canceled, so newer animation always wins.
+ * <p>
+ * Tweens of {@link SceneObject#close() closed} objects are removed in next {@link #update(float)}
+ * as if they ended. Their animations go on with the rest of tweens.
+ * <p>
+ * This class is not thread safe. Methods must be called on GL thread.
+ */
+public class TweenEngine {
+
+    public static final int POSITION = 0;
+    public static final int ROTATION = 1;
+    public static final int SCALE = 2;
+    public static final int OPACITY = 3;
+    private static final int PROPERTY_COUNT = 4;
+
+    // Tween states
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int DEAD = 2;
+
+    // Offset of each property in transform floats of TransformBatch
+    private static final int[] TRANSFORM_OFFSETS = {0, 3, 7};
+    private static final int[] TRANSFORM_MASKS = {TransformBatch.POSITION, TransformBatch.ROTATION, TransformBatch.SCALE};
+
+    // Tweens in the order of added
+    private int mTweenCount;
+    private int[] mTweenState;
+    private int[] mTweenTarget;
+    private int[] mTweenProperty;
+    private int[] mTweenAnimation;
+    private float[] mElapsed;
+    private float[] mDuration;
+    private float[] mFrom;
+    private float[] mTo;
+    private TimeInterpolator[] mInterpolators;
+
+    // Animated objects. Slots are reused.
+    private final IdentityHashMap<SceneObject, Integer> mTargetSlots = new IdentityHashMap<>();
+    private int mTargetSlotCount;
+    private int[] mFreeTargets;
+    private int mFreeTargetCount;
+    private SceneObject[] mTargets;
+    private long[] mTargetHandles;
+    private int[] mTargetTweenCounts;
+    private int[] mRunningTweens;
+    private int[] mTargetMasks;
+    private float[] mTransforms;
+    private int[] mDirtyTargets;
+    private int mDirtyTargetCount;
+
+    // Animations. Slots are reused and distinguished by generation.
+    private int mAnimationSlotCount;
+    private int[] mFreeAnimations;
+    private int mFreeAnimationCount;
+    private int[] mGenerations;
+    private int[] mRemainingTweens;
+    private boolean[] mAlive;
+    private boolean[] mCanceled;
+    private Runnable[] mEndCallbacks;
+    private int[] mNewAnimations;
+    private int mNewAnimationCount;
+
+    private final TransformBatch mBatch = new TransformBatch();
+    private final List<Runnable> mCallbacksToRun = new ArrayList<>();
+
+    public TweenEngine() {
+        this(64);
+    }
+
+    /**
+     * @param capacity Initial number of tweens. Grows automatically.
+     */
+    public TweenEngine(int capacity) {
+        if (capacity <= 0) {
+            throw Exceptions.IllegalArgument("capacity must be positive: %d", capacity);
+        }
+
+        mTweenState = new int[capacity];
+        mTweenTarget = new int[capacity];
+        mTweenProperty = new int[capacity];
+        mTweenAnimation = new int[capacity];
+        mElapsed = new float[capacity];
+        mDuration = new float[capacity];
+        mFrom = new float[capacity * 4];
+        mTo = new float[capacity * 4];
+        mInterpolators = new TimeInterpolator[capacity];
+
+        mFreeTargets = new int[capacity];
+        mTargets = new SceneObject[capacity];
+        mTargetHandles = new long[capacity];
+        mTargetTweenCounts = new int[capacity];
+        mRunningTweens = new int[capacity * PROPERTY_COUNT];
+        mTargetMasks = new int[capacity];
+        mTransforms = new float[capacity * TransformBatch.FLOATS_PER_OBJECT];
+        mDirtyTargets = new int[capacity];
+
+        mFreeAnimations = new int[capacity];
+        mGenerations = new int[capacity];
+        mRemainingTweens = new int[capacity];
+        mAlive = new boolean[capacity];
+        mCanceled = new boolean[capacity];
+        mEndCallbacks = new Runnable[capacity];
+        mNewAnimations = new int[capacity];
+    }
+
+    /**
+     * Begin new animation. Add tweens to it with {@link #add(long, SceneObject, int, float, float, float, float, float, float, float, float, float, float, TimeInterpolator) add()}.
+     * An animation without tweens ends in next {@link #update(float)}.
+     *
+     * @param endCallback Called on GL thread when all tweens ended. Not called if canceled.
+     * @return Handle of animation.
+     */
+    public long begin(@Nullable Runnable endCallback) {
+        final int slot;
+        if (mFreeAnimationCount > 0) {
+            slot = mFreeAnimations[--mFreeAnimationCount];
+        } else {
+            ensureAnimationCapacity(mAnimationSlotCount + 1);
+            slot = mAnimationSlotCount++;
+        }
+
+        mAlive[slot] = true;
+        mCanceled[slot] = false;
+        mRemainingTweens[slot] = 0;
+        mEndCallbacks[slot] = endCallback;
+
+        if (mNewAnimationCount == mNewAnimations.length) {
+            mNewAnimations = Arrays.copyOf(mNewAnimations, mNewAnimationCount * 2);
+        }
+        mNewAnimations[mNewAnimationCount++] = slot;
+
+        return ((long) mGenerations[slot] << 32) | slot;
+    }
+
+    /**
+     * Add tween to animation. Only components used by property are read: x, y and z for
+     * {@link #POSITION} and {@link #SCALE}, x, y, z and w of quaternion for {@link #ROTATION}
+     * and x for {@link #OPACITY}.
+     *
+     * @param animation       Handle returned from {@link #begin(Runnable)}.
+     * @param target          Animated object.
+     * @param property        {@link #POSITION}, {@link #ROTATION}, {@link #SCALE} or {@link #OPACITY}.
+     * @param delaySeconds    Delay from next frame before tween starts.
+     * @param durationSeconds Duration of tween.
+     * @param interpolator    Easing of tween. {@code null} means accelerate and decelerate like
+     *                        default of Android animation framework.
+     */
+    public void add(long animation, @NonNull SceneObject target, int property,
+                    float fromX, float fromY, float fromZ, float fromW,
+                    float toX, float toY, float toZ, float toW,
+                    float delaySeconds, float durationSeconds, @Nullable TimeInterpolator interpolator) {
+
+        final int slot = (int) animation;
+        if (!isRunning(animation)) {
+            throw Exceptions.IllegalArgument("animation is not running: %d", animation);
+        }
+        if (property < 0 || property >= PROPERTY_COUNT) {
+            throw Exceptions.IllegalArgument("unknown property: %d", property);
+        }
+        if (delaySeconds < 0 || durationSeconds < 0) {
+            throw Exceptions.IllegalArgument("delay and duration must not be negative: %f, %f", delaySeconds, durationSeconds);
+        }
+        if (target.getNative() == 0) {
+            throw Exceptions.IllegalArgument("target is closed");
+        }
+
+        ensureTweenCapacity(mTweenCount + 1);
+
+        final int i = mTweenCount++;
+        mTweenState[i] = WAITING;
+        mTweenTarget[i] = acquireTarget(target);
+        mTweenProperty[i] = property;
+        mTweenAnimation[i] = slot;
+        mElapsed[i] = -delaySeconds;
+        mDuration[i] = durationSeconds;
+        mInterpolators[i] = interpolator;
+
+        final int v = i * 4;
+        mFrom[v] = fromX;
+        mFrom[v + 1] = fromY;
+        mFrom[v + 2] = fromZ;
+        mFrom[v + 3] = fromW;
+        mTo[v] = toX;
+        mTo[v + 1] = toY;
+        mTo[v + 2] = toZ;
+        mTo[v + 3] = toW;
+
+        ++mRemainingTweens[slot];
+    }
+
+    /**
+     * Stop all tweens of animation where they are. End callback will not be called.
+     *
+     * @param animation Handle returned from {@link #begin(Runnable)}. Nothing happens if it already ended.
+     */
+    public void cancel(long animation) {
+        if (!isRunning(animation)) return;
+
+        final int slot = (int) animation;
+        mCanceled[slot] = true;
+
+        for (int i = 0; i < mTweenCount; ++i) {
+            if (mTweenAnimation[i] == slot) {
+                mTweenState[i] = DEAD;
+            }
+        }
+    }
+
+    /**
+     * @param animation Handle returned from {@link #begin(Runnable)}.
+     * @return true if animation has not ended nor been canceled.
+     */
+    public boolean isRunning(long animation) {
+        final int slot = (int) animation;
+        return slot >= 0 && slot < mAnimationSlotCount
+                && mAlive[slot] && !mCanceled[slot]
+                && mGenerations[slot] == (int) (animation >>> 32);
+    }
+
+    /**
+     * @return Number of tweens waiting or running.
+     */
+    public int getTweenCount() {
+        return mTweenCount;
+    }
+
+    /**
+     * @return Number of objects which have tweens.
+     */
+    public int getTargetCount() {
+        return mTargetSlots.size();
+    }
+
+    /**
+     * Advance all tweens and apply their values to objects.
+     *
+     * @param deltaSeconds Time passed since last update.
+     */
+    public void update(float deltaSeconds) {
+
+        for (int i = 0; i < mTweenCount; ++i) {
+            if (mTweenState[i] == DEAD) continue;
+
+            final int target = mTweenTarget[i];
+            final int property = mTweenProperty[i];
+
+            // Native object of closed target may already be deleted
+            if (mTargets[target].getNative() != mTargetHandles[target]) {
+                mTweenState[i] = DEAD;
+                continue;
+            }
+
+            final float elapsed = mElapsed[i] += deltaSeconds;
+            if (elapsed < 0) continue;
+
+            if (mTweenState[i] == WAITING) {
+                mTweenState[i] = RUNNING;
+
+                // Newer tween overrides running one on same property. Other animation is canceled.
+                final int key = target * PROPERTY_COUNT + property;
+                final int running = mRunningTweens[key];
+                if (running >= 0 && running != i && mTweenState[running] == RUNNING) {
+                    mTweenState[running] = DEAD;
+                    if (mTweenAnimation[running] != mTweenAnimation[i]) {
+                        mCanceled[mTweenAnimation[running]] = true;
+                    }
+                }
+                mRunningTweens[key] = i;
+            }
+
+            final float duration = mDuration[i];
+            final float t = duration > 0 ? Math.min(elapsed / duration, 1.0f) : 1.0f;
+            final TimeInterpolator interpolator = mInterpolators[i];
+            final float fraction = interpolator != null
+                    ? interpolator.getInterpolation(t)
+                    : (float) (Math.cos((t + 1) * Math.PI) / 2.0) + 0.5f;
+
+            if (property == OPACITY) {
+                mTargets[target].setOpacity(mFrom[i * 4] + (mTo[i * 4] - mFrom[i * 4]) * fraction);
+            } else {
+                final int offset = target * TransformBatch.FLOATS_PER_OBJECT + TRANSFORM_OFFSETS[property];
+                if (property == ROTATION) {
+                    slerp(mFrom, mTo, i * 4, fraction, mTransforms, offset);
+                } else {
+                    lerp(mFrom, mTo, i * 4, fraction, mTransforms, offset);
+                }
+
+                if (mTargetMasks[target] == 0) {
+                    mDirtyTargets[mDirtyTargetCount++] = target;
+                }
+                mTargetMasks[target] |= TRANSFORM_MASKS[property];
+            }
+
+            if (t >= 1.0f) {
+                mTweenState[i] = DEAD;
+            }
+        }
+
+        applyTransforms();
+        removeDeadTweens();
+        endNewAnimationsWithoutTweens();
+
+        // Callbacks run last because they may start new animations
+        final int callbackCount = mCallbacksToRun.size();
+        for (int i = 0; i < callbackCount; ++i) {
+            mCallbacksToRun.get(i).run();
+        }
+        mCallbacksToRun.clear();
+    }
+
+    private void applyTransforms() {
+        if (mDirtyTargetCount == 0) return;
+
+        final TransformBatch batch = mBatch;
+        final float[] v = mTransforms;
+        batch.clear();
+
+        for (int i = 0; i < mDirtyTargetCount; ++i) {
+            final int target = mDirtyTargets[i];
+            final int o = target * TransformBatch.FLOATS_PER_OBJECT;
+            batch.add(mTargetHandles[target], mTargetMasks[target],
+                    v[o], v[o + 1], v[o + 2],
+                    v[o + 3], v[o + 4], v[o + 5], v[o + 6],
+                    v[o + 7], v[o + 8], v[o + 9]);
+            mTargetMasks[target] = 0;
+        }
+
+        batch.apply();
+        mDirtyTargetCount = 0;
+    }
+
+    // Compact tweens keeping their order, and finish animations and targets whose tweens all ended
+    private void removeDeadTweens() {
+        int w = 0;
+
+        for (int i = 0; i < mTweenCount; ++i) {
+            final int target = mTweenTarget[i];
+            final int key = target * PROPERTY_COUNT + mTweenProperty[i];
+
+            if (mTweenState[i] == DEAD) {
+                if (mRunningTweens[key] == i) {
+                    mRunningTweens[key] = -1;
+                }
+                mInterpolators[i] = null;
+                releaseTarget(target);
+
+                final int animation = mTweenAnimation[i];
+                if (--mRemainingTweens[animation] == 0) {
+                    endAnimation(animation);
+                }
+                continue;
+            }
+
+            if (w != i) {
+                if (mRunningTweens[key] == i) {
+                    mRunningTweens[key] = w;
+                }
+                mTweenState[w] = mTweenState[i];
+                mTweenTarget[w] = target;
+                mTweenProperty[w] = mTweenProperty[i];
+                mTweenAnimation[w] = mTweenAnimation[i];
+                mElapsed[w] = mElapsed[i];
+                mDuration[w] = mDuration[i];
+                mInterpolators[w] = mInterpolators[i];
+                mInterpolators[i] = null;
+                System.arraycopy(mFrom, i * 4, mFrom, w * 4, 4);
+                System.arraycopy(mTo, i * 4, mTo, w * 4, 4);
+            }
+            ++w;
+        }
+
+        mTweenCount = w;
+    }
+
+    private void endNewAnimationsWithoutTweens() {
+        for (int i = 0; i < mNewAnimationCount; ++i) {
+            final int animation = mNewAnimations[i];
+            if (mAlive[animation] && mRemainingTweens[animation] == 0) {
+                endAnimation(animation);
+            }
+        }
+        mNewAnimationCount = 0;
+    }
+
+    private void endAnimation(int animation) {
+        if (!mCanceled[animation] && mEndCallbacks[animation] != null) {
+            mCallbacksToRun.add(mEndCallbacks[animation]);
+        }
+
+        mAlive[animation] = false;
+        mEndCallbacks[animation] = null;
+        ++mGenerations[animation];
+
+        if (mFreeAnimationCount == mFreeAnimations.length) {
+            mFreeAnimations = Arrays.copyOf(mFreeAnimations, mFreeAnimationCount * 2);
+        }
+        mFreeAnimations[mFreeAnimationCount++] = animation;
+    }
+
+    private int acquireTarget(SceneObject target) {
+        final Integer existing = mTargetSlots.get(target);
+        if (existing != null) {
+            ++mTargetTweenCounts[existing];
+            return existing;
+        }
+
+        final int slot;
+        if (mFreeTargetCount > 0) {
+            slot = mFreeTargets[--mFreeTargetCount];
+        } else {
+            ensureTargetCapacity(mTargetSlotCount + 1);
+            slot = mTargetSlotCount++;
+        }
+
+        mTargets[slot] = target;
+        mTargetHandles[slot] = target.getNative();
+        mTargetTweenCounts[slot] = 1;
+        mTargetMasks[slot] = 0;
+        Arrays.fill(mRunningTweens, slot * PROPERTY_COUNT, (slot + 1) * PROPERTY_COUNT, -1);
+        mTargetSlots.put(target, slot);
+
+        return slot;
+    }
+
+    private void releaseTarget(int slot) {
+        if (--mTargetTweenCounts[slot] > 0) return;
+
+        mTargetSlots.remove(mTargets[slot]);
+        mTargets[slot] = null;
+
+        if (mFreeTargetCount == mFreeTargets.length) {
+            mFreeTargets = Arrays.copyOf(mFreeTargets, mFreeTargetCount * 2);
+        }
+        mFreeTargets[mFreeTargetCount++] = slot;
+    }
+
+    private void ensureTweenCapacity(int capacity) {
+        if (capacity <= mTweenState.length) return;
+
+        final int newCapacity = Math.max(capacity, mTweenState.length * 2);
+        mTweenState = Arrays.copyOf(mTweenState, newCapacity);
+        mTweenTarget = Arrays.copyOf(mTweenTarget, newCapacity);
+        mTweenProperty = Arrays.copyOf(mTweenProperty, newCapacity);
+        mTweenAnimation = Arrays.copyOf(mTweenAnimation, newCapacity);
+        mElapsed = Arrays.copyOf(mElapsed, newCapacity);
+        mDuration = Arrays.copyOf(mDuration, newCapacity);
+        mFrom = Arrays.copyOf(mFrom, newCapacity * 4);
+        mTo = Arrays.copyOf(mTo, newCapacity * 4);
+        mInterpolators = Arrays.copyOf(mInterpolators, newCapacity);
+    }
+
+    private void ensureTargetCapacity(int capacity) {
+        if (capacity <= mTargets.length) return;
+
+        final int newCapacity = Math.max(capacity, mTargets.length * 2);
+        mTargets = Arrays.copyOf(mTargets, newCapacity);
+        mTargetHandles = Arrays.copyOf(mTargetHandles, newCapacity);
+        mTargetTweenCounts = Arrays.copyOf(mTargetTweenCounts, newCapacity);
+        mRunningTweens = Arrays.copyOf(mRunningTweens, newCapacity * PROPERTY_COUNT);
+        mTargetMasks = Arrays.copyOf(mTargetMasks, newCapacity);
+        mTransforms = Arrays.copyOf(mTransforms, newCapacity * TransformBatch.FLOATS_PER_OBJECT);
+        mDirtyTargets = Arrays.copyOf(mDirtyTargets, newCapacity);
+    }
+
+    private void ensureAnimationCapacity(int capacity) {
+        if (capacity <= mAlive.length) return;
+
+        final int newCapacity = Math.max(capacity, mAlive.length * 2);
+        mGenerations = Arrays.copyOf(mGenerations, newCapacity);
+        mRemainingTweens = Arrays.copyOf(mRemainingTweens, newCapacity);
+        mAlive = Arrays.copyOf(mAlive, newCapacity);
+        mCanceled = Arrays.copyOf(mCanceled, newCapacity);
+        mEndCallbacks = Arrays.copyOf(mEndCallbacks, newCapacity);
+    }
+
+    private static void lerp(float[] from, float[] to, int i, float fraction, float[] dest, int o) {
+        dest[o] = from[i] + (to[i] - from[i]) * fraction;
+        dest[o + 1] = from[i + 1] + (to[i + 1] - from[i + 1]) * fraction;
+        dest[o + 2] = from[i + 2] + (to[i + 2] - from[i + 2]) * fraction;
+    }
+
+    // Same as Quaternionf.slerp() without allocating objects
+    private static void slerp(float[] from, float[] to, int i, float fraction, float[] dest, int o) {
+        final float cosom = from[i] * to[i] + from[i + 1] * to[i + 1] + from[i + 2] * to[i + 2] + from[i + 3] * to[i + 3];
+        final float absCosom = Math.abs(cosom);
+        float scale0, scale1;
+        if (1.0f - absCosom > 1E-6f) {
+            final float sinSqr = 1.0f - absCosom * absCosom;
+            final float sinom = (float) (1.0 / Math.sqrt(sinSqr));
+            final float omega = (float) Math.atan2(sinSqr * sinom, absCosom);
+            scale0 = (float) Math.sin((1.0 - fraction) * omega) * sinom;
+            scale1 = (float) Math.sin(fraction * omega) * sinom;
+        } else {
+            scale0 = 1.0f - fraction;
+            scale1 = fraction;
+        }
+        scale1 = cosom >= 0.0f ? scale1 : -scale1;
+        dest[o] = scale0 * from[i] + scale1 * to[i];
+        dest[o + 1] = scale0 * from[i + 1] + scale1 * to[i + 1];
+        dest[o + 2] = scale0 * from[i + 2] + scale1 * to[i + 2];
+        dest[o + 3] = scale0 * from[i + 3] + scale1 * to[i + 3];
+    }
+}
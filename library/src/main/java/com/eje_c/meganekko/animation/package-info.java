@@ -17,6 +17,7 @@
 
 /**
  * Animation support classes.
- * With these classes, Meganekko application can easily use Android's animation framework.
+ * {@link com.eje_c.meganekko.animation.TweenEngine} runs animations on GL thread.
+ * Other classes let Meganekko application use Android's animation framework.
  */
 package com.eje_c.meganekko.animation;
\ No newline at end of file
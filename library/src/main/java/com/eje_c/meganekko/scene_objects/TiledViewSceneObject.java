@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.scene_objects;
+
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.view.View;
+
+import com.eje_c.meganekko.Frame;
+import com.eje_c.meganekko.Material;
+import com.eje_c.meganekko.Mesh;
+import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.Texture;
+import com.eje_c.meganekko.utility.Exceptions;
+
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shows large {@code View} with fixed size tiles. Each tile has its own texture and quad,
+ * so only tiles which contain dirty views are redrawn and uploaded.
+ */
+public class TiledViewSceneObject extends SceneObject {
+
+    private final View mView;
+    private final List<TileRenderer> mTiles = new ArrayList<>();
+    private final Rect mDirtyRect = new Rect();
+
+    // Tiles are rendered in parallel but View is not thread safe
+    private final ReentrantLock mDrawLock = new ReentrantLock();
+
+    /**
+     * @param view     View to show.
+     * @param tileSize Width and height of a tile in pixels.
+     */
+    public TiledViewSceneObject(View view, int tileSize) {
+        this(view, tileSize, Mesh.getDefaultScaleFactor());
+    }
+
+    /**
+     * @param view        View to show.
+     * @param tileSize    Width and height of a tile in pixels.
+     * @param scaleFactor Size of a pixel in scene.
+     */
+    public TiledViewSceneObject(View view, int tileSize, float scaleFactor) {
+        if (tileSize <= 0) {
+            throw Exceptions.IllegalArgument("tileSize must be positive: %d", tileSize);
+        }
+
+        mView = view;
+        view.measure(0, 0);
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+
+        final int width = view.getMeasuredWidth();
+        final int height = view.getMeasuredHeight();
+
+        for (int top = 0; top < height; top += tileSize) {
+            for (int left = 0; left < width; left += tileSize) {
+                final Rect bounds = new Rect(left, top, Math.min(left + tileSize, width), Math.min(top + tileSize, height));
+                final TileRenderer renderer = new TileRenderer(bounds);
+                mTiles.add(renderer);
+
+                Material material = new Material();
+                material.texture().set(renderer);
+
+                SceneObject tile = new SceneObject();
+                tile.mesh(Mesh.createQuad(scaleFactor * bounds.width(), scaleFactor * bounds.height()));
+                tile.material(material);
+                tile.position(new Vector3f(
+                        scaleFactor * (bounds.exactCenterX() - width * 0.5f),
+                        scaleFactor * (height * 0.5f - bounds.exactCenterY()),
+                        0.0f));
+                addChildObject(tile);
+            }
+        }
+    }
+
+    /**
+     * @return Shown view.
+     */
+    public View getView() {
+        return mView;
+    }
+
+    @Override
+    public void update(Frame frame) {
+
+        // Never wait for tile drawing on GL thread. A drawing tile marks dirty tiles itself before
+        // drawing, and views dirtied after that are still dirty in next frame.
+        if (mDrawLock.tryLock()) {
+            try {
+                markDirtyTiles();
+            } finally {
+                mDrawLock.unlock();
+            }
+        }
+
+        super.update(frame);
+    }
+
+    /**
+     * Mark tiles which intersect dirty views. Must be called with {@code mDrawLock}.
+     * Any tile draw clears dirty state of all views, so this is also called right before each draw
+     * in the same critical section. Otherwise views dirtied between frames could be lost.
+     */
+    private void markDirtyTiles() {
+        mDirtyRect.setEmpty();
+        Texture.ViewRenderer.computeDirtyRect(mView, mDirtyRect);
+
+        if (!mDirtyRect.isEmpty()) {
+            for (TileRenderer tile : mTiles) {
+                if (Rect.intersects(tile.mBounds, mDirtyRect)) {
+                    tile.mDirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a region of the view.
+     */
+    private class TileRenderer implements Texture.CanvasRenderer {
+
+        private final Rect mBounds;
+        private volatile boolean mDirty = true;
+
+        TileRenderer(Rect bounds) {
+            this.mBounds = bounds;
+        }
+
+        @Override
+        public void render(Canvas canvas, Frame vrFrame) {
+
+            mDrawLock.lock();
+            try {
+                markDirtyTiles();
+                mDirty = false;
+
+                canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+                canvas.translate(-mBounds.left, -mBounds.top);
+                mView.draw(canvas);
+            } finally {
+                mDrawLock.unlock();
+            }
+        }
+
+        @Override
+        public int getWidth() {
+            return mBounds.width();
+        }
+
+        @Override
+        public int getHeight() {
+            return mBounds.height();
+        }
+
+        @Override
+        public boolean isDirty() {
+            return mDirty;
+        }
+    }
+}
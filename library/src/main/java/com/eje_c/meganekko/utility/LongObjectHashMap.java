@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.utility;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive {@code long} keys to objects.
+ * Keys are never boxed. Linear probing is used and removed entries are
+ * back-shifted, so there are no tombstones and lookups stay short.
+ * {@code null} values are not allowed because an empty slot is marked by a
+ * {@code null} value.
+ * <p>
+ * This class is not thread safe. Callers must synchronize externally.
+ *
+ * @param <V> Value type.
+ */
+public class LongObjectHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mMask;
+    private int mSize;
+    private int mThreshold;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize Number of entries expected to be stored without rehashing.
+     */
+    public LongObjectHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw Exceptions.IllegalArgument("expectedSize must not be negative: %d", expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 2);
+    }
+
+    /**
+     * Spread bits of key. Native pointers are aligned so their low bits are
+     * almost always zero.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+        mThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @param key Key.
+     * @return Value mapped to key or {@code null} if there is no mapping.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        for (int i = hash(key) & mMask; values[i] != null; i = (i + 1) & mMask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key Key.
+     * @return true if key is mapped.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map key to value.
+     *
+     * @param key   Key.
+     * @param value Value. Must not be null.
+     * @return Previous value or {@code null} if key was not mapped.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw Exceptions.IllegalArgument("value must not be null");
+        }
+
+        int i = hash(key) & mMask;
+        for (; mValues[i] != null; i = (i + 1) & mMask) {
+            if (mKeys[i] == key) {
+                V old = (V) mValues[i];
+                mValues[i] = value;
+                return old;
+            }
+        }
+
+        mKeys[i] = key;
+        mValues[i] = value;
+
+        if (++mSize > mThreshold) {
+            rehash(mKeys.length << 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove mapping for key.
+     *
+     * @param key Key.
+     * @return Removed value or {@code null} if key was not mapped.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        for (int i = hash(key) & mMask; mValues[i] != null; i = (i + 1) & mMask) {
+            if (mKeys[i] == key) {
+                V old = (V) mValues[i];
+                removeAt(i);
+                return old;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove mapping only if key is currently mapped to the given value
+     * (compared by identity).
+     *
+     * @param key   Key.
+     * @param value Expected value.
+     * @return true if the mapping was removed.
+     */
+    public boolean remove(long key, V value) {
+        for (int i = hash(key) & mMask; mValues[i] != null; i = (i + 1) & mMask) {
+            if (mKeys[i] == key) {
+                if (mValues[i] != value) {
+                    return false;
+                }
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeAt(int i) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+
+        // Back-shift following entries in the same cluster into the gap
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int home = hash(keys[j]) & mask;
+            // Entry at j can move to gap if its home slot is not in (gap, j]
+            if (gap <= j ? (home <= gap || home > j) : (home <= gap && home > j)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+
+        keys[gap] = 0;
+        values[gap] = null;
+        --mSize;
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = mKeys;
+        final Object[] oldValues = mValues;
+
+        allocate(newCapacity);
+
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+
+        for (int i = 0; i < oldValues.length; ++i) {
+            if (oldValues[i] != null) {
+                int j = hash(oldKeys[i]) & mask;
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @return Number of mappings.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Remove all mappings. Allocated capacity is kept.
+     */
+    public void clear() {
+        Arrays.fill(mKeys, 0);
+        Arrays.fill(mValues, null);
+        mSize = 0;
+    }
+}
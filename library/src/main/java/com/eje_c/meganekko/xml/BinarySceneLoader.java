@@ -0,0 +1,433 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.xml;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.eje_c.meganekko.Material;
+import com.eje_c.meganekko.Mesh;
+import com.eje_c.meganekko.Scene;
+import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.TransformBatch;
+import com.eje_c.meganekko.scene_objects.GlobeSceneObject;
+import com.eje_c.meganekko.xml.attribute_parser.DrawableParser;
+
+import org.joml.Vector3f;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Loads {@link Scene} compiled from XML resource by {@code scene-compiler.gradle}. Compiled
+ * scene is read from memory mapped asset, so XML is not parsed, numbers are not parsed from
+ * strings and classes are looked up once per class instead of once per node. Transforms of all
+ * nodes are applied with one {@link TransformBatch}. Result is same as {@link XmlSceneParser}.
+ * <p>
+ * Layout of compiled scene in big endian:
+ * <pre>
+ * header   magic "MGNS", version, string count, class count, node count,
+ *          scene class string (-1 for {@link Scene}), strings offset, nodes offset
+ * classes  class name string of each custom class id
+ * strings  byte length and UTF-8 bytes of each string
+ * nodes    {@link #NODE_SIZE} bytes per node in document order:
+ *          parent node (-1 for scene), class id, flags, id and name strings,
+ *          position, rotation quaternion, scale, opacity, rendering order,
+ *          quad width and height, drawable and layout strings
+ * </pre>
+ * Resource references are stored as "type/name" strings and resolved once per string.
+ */
+public class BinarySceneLoader {
+
+    public static final String ASSET_DIRECTORY = "meganekko/scenes/";
+    public static final String EXTENSION = ".mgs";
+
+    static final int MAGIC = 0x4D474E53;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int NODE_SIZE = 80;
+
+    static final int CLASS_OBJECT = 0;
+    static final int CLASS_GLOBE = 1;
+    static final int CLASS_CUSTOM = 2;
+
+    static final int FLAG_SCALE = 1;
+    static final int FLAG_ROTATION = 2;
+    static final int FLAG_VISIBILITY = 4;
+    static final int FLAG_VISIBLE = 8;
+    static final int FLAG_OPACITY = 16;
+    static final int FLAG_RENDERING_ORDER = 32;
+    static final int FLAG_QUAD = 64;
+    static final int FLAG_ATLAS = 128;
+    static final int FLAG_AUTO_SIZE = 256;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Context mContext;
+    private final TransformBatch mTransformBatch = new TransformBatch();
+    private final Vector3f mScale = new Vector3f();
+
+    public BinarySceneLoader(Context context) {
+        this.mContext = context;
+    }
+
+    /**
+     * Load scene compiled from XML resource.
+     *
+     * @param xmlRes XML resource.
+     * @param scene  Root scene. It can be null.
+     * @return Loaded {@code Scene}, or null if XML resource was not compiled or
+     * {@link XmlSceneObjectParser#installAttributeParser(Class) custom attribute parser} is installed.
+     * @throws IOException If compiled scene is broken. Nothing is added to scene then.
+     */
+    @Nullable
+    public Scene load(int xmlRes, @Nullable Scene scene) throws IOException {
+        if (XmlSceneObjectParser.hasInstalledAttributeParsers()) return null;
+
+        final Resources resources = mContext.getResources();
+        final ByteBuffer buffer = open(ASSET_DIRECTORY + resources.getResourceEntryName(xmlRes) + EXTENSION);
+        if (buffer == null) return null;
+
+        return load(buffer, resources.getResourcePackageName(xmlRes), scene);
+    }
+
+    @Nullable
+    private ByteBuffer open(String path) throws IOException {
+        final AssetManager assets = mContext.getAssets();
+
+        // Uncompressed asset can be memory mapped
+        try {
+            final AssetFileDescriptor fd = assets.openFd(path);
+            try {
+                final FileInputStream in = fd.createInputStream();
+                try {
+                    return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+                } finally {
+                    in.close();
+                }
+            } finally {
+                fd.close();
+            }
+        } catch (FileNotFoundException e) {
+            // Not exist or compressed
+        }
+
+        final InputStream in;
+        try {
+            in = assets.open(path);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Load compiled scene from buffer.
+     *
+     * @param buffer          Compiled scene from current position.
+     * @param resourcePackage Package name used to resolve resources.
+     * @param scene           Root scene. It can be null.
+     * @return Loaded {@code Scene}.
+     * @throws IOException If compiled scene is broken. Nothing is added to scene then.
+     */
+    @NonNull
+    public Scene load(@NonNull ByteBuffer buffer, @NonNull String resourcePackage, @Nullable Scene scene) throws IOException {
+
+        // slice() is always big endian
+        final ByteBuffer data = buffer.slice();
+        final String[] strings;
+        try {
+            strings = validate(data);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Broken compiled scene", e);
+        }
+
+        final int stringCount = data.getInt(8);
+        final int classCount = data.getInt(12);
+        final int nodeCount = data.getInt(16);
+        final int sceneClass = data.getInt(20);
+        final int nodesOffset = data.getInt(28);
+
+        final Class<?>[] classes = new Class<?>[classCount];
+        final int[] resources = new int[stringCount];
+        Arrays.fill(resources, -1);
+
+        if (scene == null) {
+            scene = sceneClass >= 0 ? (Scene) newInstance(strings[sceneClass]) : new Scene();
+        }
+
+        final SceneObject[] objects = new SceneObject[nodeCount];
+        final TransformBatch batch = mTransformBatch;
+        batch.clear();
+
+        // Same order as XmlSceneObjectParser applies attributes
+        for (int i = 0; i < nodeCount; ++i) {
+            final int o = nodesOffset + i * NODE_SIZE;
+            final int classId = data.getShort(o + 4);
+            final int flags = data.getShort(o + 6) & 0xffff;
+
+            final SceneObject object;
+            switch (classId) {
+                case CLASS_OBJECT:
+                    object = new SceneObject();
+                    break;
+                case CLASS_GLOBE:
+                    object = new GlobeSceneObject();
+                    break;
+                default:
+                    final int c = classId - CLASS_CUSTOM;
+                    if (classes[c] == null) {
+                        classes[c] = classForName(strings[data.getInt(HEADER_SIZE + c * 4)]);
+                    }
+                    object = (SceneObject) newInstance(classes[c]);
+            }
+            objects[i] = object;
+
+            final int id = data.getInt(o + 8);
+            if (id >= 0) {
+                final int res = resolve(id, strings, resources, resourcePackage);
+                if (res != 0) object.setId(res);
+            }
+
+            final int name = data.getInt(o + 12);
+            if (name >= 0) {
+                object.setName(strings[name]);
+            }
+
+            addTransform(batch, object, data, o, flags);
+
+            final boolean autoSize = (flags & FLAG_AUTO_SIZE) != 0;
+
+            final int layout = data.getInt(o + 76);
+            if (layout >= 0) {
+                View view = LayoutInflater.from(mContext).inflate(resolve(layout, strings, resources, resourcePackage), null);
+                object.material(Material.from(view));
+                if (autoSize) {
+                    object.mesh(Mesh.from(view));
+                }
+            }
+
+            final int drawable = data.getInt(o + 72);
+            if (drawable >= 0) {
+                DrawableParser.setDrawable(object,
+                        ContextCompat.getDrawable(mContext, resolve(drawable, strings, resources, resourcePackage)),
+                        (flags & FLAG_ATLAS) != 0, autoSize);
+            }
+
+            if ((flags & FLAG_QUAD) != 0) {
+                object.mesh(Mesh.createQuad(data.getFloat(o + 64), data.getFloat(o + 68)));
+            }
+
+            final int renderingOrder = data.getInt(o + 60);
+            if ((flags & FLAG_RENDERING_ORDER) != 0 && renderingOrder >= 0 && object.getRenderData() != null) {
+                object.getRenderData().setRenderingOrder(renderingOrder);
+            }
+        }
+
+        batch.apply();
+        batch.clear();
+
+        // Lists of children in document order
+        final int[] firstChild = new int[nodeCount];
+        final int[] nextSibling = new int[nodeCount];
+        Arrays.fill(firstChild, -1);
+        for (int i = nodeCount - 1; i >= 0; --i) {
+            final int parent = data.getInt(nodesOffset + i * NODE_SIZE);
+            if (parent >= 0) {
+                nextSibling[i] = firstChild[parent];
+                firstChild[parent] = i;
+            }
+        }
+
+        // Children come after their parent, so each subtree is completed before it is added to parent.
+        // Opacity and visibility are propagated to children, so they are applied after children are added.
+        for (int i = nodeCount - 1; i >= 0; --i) {
+            final SceneObject object = objects[i];
+            for (int child = firstChild[i]; child >= 0; child = nextSibling[child]) {
+                object.addChildObject(objects[child]);
+            }
+
+            final int o = nodesOffset + i * NODE_SIZE;
+            final int flags = data.getShort(o + 6) & 0xffff;
+
+            final float opacity = data.getFloat(o + 56);
+            if ((flags & FLAG_OPACITY) != 0 && opacity >= 0.0f) {
+                object.setOpacity(opacity);
+            }
+
+            if ((flags & FLAG_VISIBILITY) != 0) {
+                object.setVisible((flags & FLAG_VISIBLE) != 0);
+            }
+        }
+
+        for (int i = 0; i < nodeCount; ++i) {
+            if (data.getInt(nodesOffset + i * NODE_SIZE) < 0) {
+                scene.addChildObject(objects[i]);
+            }
+        }
+
+        return scene;
+    }
+
+    // Position is always set like PositionParser. Missing scale components are kept.
+    private void addTransform(TransformBatch batch, SceneObject object, ByteBuffer data, int o, int flags) {
+        int mask = TransformBatch.POSITION;
+
+        if ((flags & FLAG_ROTATION) != 0) {
+            mask |= TransformBatch.ROTATION;
+        }
+
+        float sx = data.getFloat(o + 44);
+        float sy = data.getFloat(o + 48);
+        float sz = data.getFloat(o + 52);
+        if ((flags & FLAG_SCALE) != 0) {
+            mask |= TransformBatch.SCALE;
+            if (Float.isNaN(sx) || Float.isNaN(sy) || Float.isNaN(sz)) {
+                final Vector3f scale = object.getScale(mScale);
+                if (Float.isNaN(sx)) sx = scale.x;
+                if (Float.isNaN(sy)) sy = scale.y;
+                if (Float.isNaN(sz)) sz = scale.z;
+            }
+        }
+
+        batch.add(object.getNative(), mask,
+                data.getFloat(o + 16), data.getFloat(o + 20), data.getFloat(o + 24),
+                data.getFloat(o + 28), data.getFloat(o + 32), data.getFloat(o + 36), data.getFloat(o + 40),
+                sx, sy, sz);
+    }
+
+    // Check everything before creating objects, so that broken data doesn't leave half loaded scene.
+    // Offsets are compared in long not to be fooled by overflow, and counts are bounded by data size
+    // before allocating arrays for them.
+    static String[] validate(ByteBuffer data) throws IOException {
+        final int size = data.remaining();
+        if (size < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled scene");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported compiled scene version " + data.getInt(4));
+        }
+
+        final int stringCount = data.getInt(8);
+        final int classCount = data.getInt(12);
+        final int nodeCount = data.getInt(16);
+        final int sceneClass = data.getInt(20);
+        final int stringsOffset = data.getInt(24);
+        final int nodesOffset = data.getInt(28);
+
+        if (stringCount < 0 || classCount < 0 || nodeCount < 0
+                || stringsOffset != HEADER_SIZE + (long) classCount * 4
+                || nodesOffset < stringsOffset
+                || stringCount > (nodesOffset - stringsOffset) / 4
+                || (long) nodesOffset + (long) nodeCount * NODE_SIZE > size) {
+            throw new IOException("Broken compiled scene header");
+        }
+
+        final String[] strings = new String[stringCount];
+        int p = stringsOffset;
+        for (int i = 0; i < stringCount; ++i) {
+            if (p + 4 > nodesOffset) throw new IOException("Broken compiled scene strings");
+            final int length = data.getInt(p);
+            p += 4;
+            if (length < 0 || (long) p + length > nodesOffset) throw new IOException("Broken compiled scene strings");
+            final byte[] bytes = new byte[length];
+            data.position(p);
+            data.get(bytes);
+            strings[i] = new String(bytes, UTF_8);
+            p += length;
+        }
+        data.position(0);
+
+        checkString(sceneClass, stringCount);
+        for (int c = 0; c < classCount; ++c) {
+            checkString(data.getInt(HEADER_SIZE + c * 4), stringCount);
+        }
+
+        for (int i = 0; i < nodeCount; ++i) {
+            final int o = nodesOffset + i * NODE_SIZE;
+            final int parent = data.getInt(o);
+            final int classId = data.getShort(o + 4);
+            if (parent < -1 || parent >= i) throw new IOException("Broken compiled scene node " + i);
+            if (classId < 0 || classId >= CLASS_CUSTOM + classCount) throw new IOException("Broken compiled scene node " + i);
+            checkString(data.getInt(o + 8), stringCount);
+            checkString(data.getInt(o + 12), stringCount);
+            checkString(data.getInt(o + 72), stringCount);
+            checkString(data.getInt(o + 76), stringCount);
+        }
+
+        return strings;
+    }
+
+    private static void checkString(int index, int stringCount) throws IOException {
+        if (index < -1 || index >= stringCount) {
+            throw new IOException("Broken compiled scene string reference " + index);
+        }
+    }
+
+    private int resolve(int string, String[] strings, int[] resources, String resourcePackage) {
+        if (resources[string] == -1) {
+            resources[string] = mContext.getResources().getIdentifier(strings[string], null, resourcePackage);
+        }
+        return resources[string];
+    }
+
+    private static Class<?> classForName(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + className, e);
+        }
+    }
+
+    private static Object newInstance(String className) {
+        return newInstance(classForName(className));
+    }
+
+    private static Object newInstance(Class<?> clazz) {
+        try {
+            return clazz.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + clazz.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko.xml;
+
+/**
+ * Reads whitespace separated floats in XML attributes without regular expression and without
+ * creating substrings for plain decimal numbers.
+ */
+final class FloatTokenizer {
+
+    // Mantissa and power of ten below these are exact in float, so one float division rounds
+    // same as Float.parseFloat.
+    private static final int MAX_EXACT_MANTISSA = 1 << 24;
+    private static final float[] POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private FloatTokenizer() {
+    }
+
+    /**
+     * Read floats separated by whitespace.
+     *
+     * @param value String such as "0 1.5 -2".
+     * @param dest  Array to store values.
+     * @return Number of values in string. If it is greater than {@code dest.length},
+     * {@code dest.length + 1} is returned without reading rest of string.
+     * @throws NumberFormatException if a value is not a number.
+     */
+    static int parse(String value, float[] dest) throws NumberFormatException {
+        final int length = value.length();
+        int count = 0;
+        int i = 0;
+
+        while (true) {
+            while (i < length && isWhitespace(value.charAt(i))) ++i;
+            if (i == length) return count;
+            if (count == dest.length) return count + 1;
+
+            final int start = i;
+            while (i < length && !isWhitespace(value.charAt(i))) ++i;
+            dest[count++] = parseFloat(value, start, i);
+        }
+    }
+
+    /**
+     * Same as {@link Float#parseFloat(String)}.
+     */
+    static float parseFloat(String value) throws NumberFormatException {
+        return parseFloat(value, 0, value.length());
+    }
+
+    private static float parseFloat(String value, int start, int end) throws NumberFormatException {
+        int i = start;
+        boolean negative = false;
+        if (i < end) {
+            final char c = value.charAt(i);
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                ++i;
+            }
+        }
+
+        // Plain decimal such as "-12.375"
+        int mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; ++i) {
+            final char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                ++digits;
+                if (fractionDigits >= 0) ++fractionDigits;
+                if (mantissa >= MAX_EXACT_MANTISSA) break;
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+
+        if (i == end && digits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            float result = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -result : result;
+        }
+
+        // Exponents, long numbers, NaN, Infinity and errors
+        return Float.parseFloat(value.substring(start, end));
+    }
+
+    // Same characters as \s in regular expression
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+}
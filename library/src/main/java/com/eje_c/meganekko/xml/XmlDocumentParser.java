@@ -12,6 +12,7 @@ import com.eje_c.meganekko.Mesh;
 import com.eje_c.meganekko.RenderData;
 import com.eje_c.meganekko.Scene;
 import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.TextureAtlas;
 import com.eje_c.meganekko.scene_objects.GlobeSceneObject;
 
 import org.joml.Quaternionf;
@@ -209,7 +210,10 @@ public class XmlDocumentParser {
         if (texture.startsWith("@drawable") || texture.startsWith("@mipmap")) {
             int res = mContext.getResources().getIdentifier(texture.substring(1), "drawable", mContext.getPackageName());
             Drawable drawable = ContextCompat.getDrawable(mContext, res);
-            Material material = Material.from(drawable);
+            // Small drawables can share a texture with atlas="true"
+            Material material = Boolean.parseBoolean(element.getAttribute("atlas"))
+                    ? Material.from(drawable, TextureAtlas.getDefault())
+                    : Material.from(drawable);
             object.material(material);
 
             if (object.mesh() == null) {
@@ -16,49 +16,47 @@
 package com.eje_c.meganekko.xml;
 
 import android.content.Context;
+import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
 import android.util.Xml;
+import android.view.LayoutInflater;
+import android.view.View;
 
+import com.eje_c.meganekko.Material;
+import com.eje_c.meganekko.Mesh;
 import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.TransformBatch;
 import com.eje_c.meganekko.scene_objects.GlobeSceneObject;
-import com.eje_c.meganekko.xml.attribute_parser.BasicParser;
 import com.eje_c.meganekko.xml.attribute_parser.DrawableParser;
-import com.eje_c.meganekko.xml.attribute_parser.MeshParser;
-import com.eje_c.meganekko.xml.attribute_parser.PositionParser;
-import com.eje_c.meganekko.xml.attribute_parser.RotationParser;
-import com.eje_c.meganekko.xml.attribute_parser.ScaleParser;
-import com.eje_c.meganekko.xml.attribute_parser.ViewParser;
 
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Internally used from {@link XmlSceneParser}. This creates {@link SceneObject} and set properties from XML attributes.
+ * Attributes of each element are read once and dispatched by name. Position, rotation and scale are
+ * written with one {@link TransformBatch} per parsed tree.
  */
 public class XmlSceneObjectParser {
 
+    // Built-in attributes are read in one pass. These are installed by application.
     private static final List<Class<? extends XmlAttributeParser>> sAttributeParsers = new ArrayList<>();
 
-    static {
-        sAttributeParsers.addAll(Arrays.asList(
-                BasicParser.class,
-                PositionParser.class,
-                ScaleParser.class,
-                RotationParser.class,
-                ViewParser.class,
-                DrawableParser.class,
-                MeshParser.class
-        ));
-    }
-
     private final Context mContext;
     private final List<XmlAttributeParser> mAttributeParsers = new ArrayList<>();
+    private final Attributes mAttributes = new Attributes();
+    private final TransformBatch mTransformBatch = new TransformBatch();
+    private final float[] mValues = new float[4];
+    private final Quaternionf mRotation = new Quaternionf();
+    private final Vector3f mScale = new Vector3f();
+    private int mDepth;
 
     public XmlSceneObjectParser(Context context) {
         this.mContext = context;
@@ -77,7 +75,33 @@ public class XmlSceneObjectParser {
         sAttributeParsers.add(attributeParserClass);
     }
 
+    /**
+     * @return true if any parser was installed by {@link #installAttributeParser(Class)}.
+     * Compiled scenes are not used then because they only contain built-in attributes.
+     */
+    static boolean hasInstalledAttributeParsers() {
+        return !sAttributeParsers.isEmpty();
+    }
+
+    /**
+     * Parse element and its children. Transforms are written when the outermost element is done.
+     */
     public SceneObject parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+        ++mDepth;
+        try {
+            SceneObject object = parseElement(parser);
+            if (mDepth == 1) {
+                mTransformBatch.apply();
+            }
+            return object;
+        } finally {
+            if (--mDepth == 0) {
+                mTransformBatch.clear();
+            }
+        }
+    }
+
+    private SceneObject parseElement(XmlPullParser parser) throws XmlPullParserException, IOException {
 
         // Skip until start tag appears
         while (parser.getEventType() != XmlPullParser.START_TAG) {
@@ -91,53 +115,67 @@ public class XmlSceneObjectParser {
         if (object == null)
             return null;
 
-        float opacity = -1;
-        boolean visible = object.isVisible();
-        int renderingOrder = -1;
-
-        // Parse attributes
+        // Read attributes in one pass. Values are applied in same order as built-in attribute parsers did.
         AttributeSet attributeSet = Xml.asAttributeSet(parser);
-        for (XmlAttributeParser attributeParser : mAttributeParsers) {
-            attributeParser.parse(mContext, object, attributeSet);
+        final Attributes attrs = readAttributes(attributeSet, object.isVisible());
+
+        if (attrs.id != -1) {
+            object.setId(attrs.id);
         }
 
-        // TODO refactor
-        for (int i = 0; i < attributeSet.getAttributeCount(); ++i) {
+        if (attrs.name != null) {
+            object.setName(attrs.name);
+        }
 
-            switch (attributeSet.getAttributeName(i)) {
+        addTransform(object, attrs);
 
-                case "visible":
-                    visible = attributeSet.getAttributeBooleanValue(i, visible);
-                    break;
+        final boolean autoSize = attrs.width == null && attrs.height == null && !attrs.hasMesh;
 
-                case "opacity":
-                    opacity = Float.parseFloat(parser.getAttributeValue(i));
-                    break;
+        if (attrs.layout != 0) {
+            View view = LayoutInflater.from(mContext).inflate(attrs.layout, null);
+            object.material(Material.from(view));
+            if (autoSize) {
+                object.mesh(Mesh.from(view));
+            }
+        }
 
-                case "renderingOrder":
-                    renderingOrder = attributeSet.getAttributeIntValue(i, renderingOrder);
-                    break;
+        if (attrs.drawable != 0) {
+            DrawableParser.setDrawable(object, ContextCompat.getDrawable(mContext, attrs.drawable), attrs.atlas, autoSize);
+        }
+
+        if (attrs.width != null && attrs.height != null) {
+            object.mesh(Mesh.createQuad(FloatTokenizer.parseFloat(attrs.width), FloatTokenizer.parseFloat(attrs.height)));
+        }
+
+        // Installed parsers may read transform, so it is written before them
+        if (mAttributeParsers.size() > 0) {
+            mTransformBatch.apply();
+            mTransformBatch.clear();
+
+            for (XmlAttributeParser attributeParser : mAttributeParsers) {
+                attributeParser.parse(mContext, object, attributeSet);
             }
         }
 
-        // TODO refactor
         // Apply renderingOrder
-        if (renderingOrder >= 0 && object.getRenderData() != null) {
-            object.getRenderData().setRenderingOrder(renderingOrder);
+        if (attrs.renderingOrder >= 0 && object.getRenderData() != null) {
+            object.getRenderData().setRenderingOrder(attrs.renderingOrder);
         }
 
+        final float opacity = attrs.opacity;
+        final boolean visible = attrs.visible;
+
         // Parse children
         while (parser.next() != XmlPullParser.END_TAG) {
 
             if (parser.getEventType() == XmlPullParser.START_TAG) {
-                SceneObject child = parse(parser);
+                SceneObject child = parseElement(parser);
                 if (child != null) {
                     object.addChildObject(child);
                 }
             }
         }
 
-        // TODO refactor
         /*
          * These are propagated to children so must be called after children are
          * added.
@@ -154,6 +192,207 @@ public class XmlSceneObjectParser {
         return object;
     }
 
+    /**
+     * Dispatch each attribute by name. Switch on string is compiled to hash table lookup.
+     */
+    private Attributes readAttributes(AttributeSet attributeSet, boolean visible) {
+        final Attributes attrs = mAttributes;
+        attrs.reset(visible);
+
+        String layout = null, texture = null, drawable = null;
+        int layoutRes = 0, textureRes = 0, drawableRes = 0;
+
+        for (int i = 0, count = attributeSet.getAttributeCount(); i < count; ++i) {
+
+            switch (attributeSet.getAttributeName(i)) {
+
+                case "id":
+                    attrs.id = attributeSet.getAttributeResourceValue(i, -1);
+                    break;
+
+                case "name":
+                    attrs.name = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "position":
+                    attrs.position = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "x":
+                    attrs.x = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "y":
+                    attrs.y = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "z":
+                    attrs.z = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "scale":
+                    attrs.scale = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "scaleX":
+                    attrs.scaleX = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "scaleY":
+                    attrs.scaleY = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "scaleZ":
+                    attrs.scaleZ = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "rotation":
+                    attrs.rotation = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "layout":
+                    layout = attributeSet.getAttributeValue(i);
+                    layoutRes = attributeSet.getAttributeResourceValue(i, 0);
+                    break;
+
+                case "texture":
+                    texture = attributeSet.getAttributeValue(i);
+                    textureRes = attributeSet.getAttributeResourceValue(i, 0);
+                    break;
+
+                case "drawable":
+                    drawable = attributeSet.getAttributeValue(i);
+                    drawableRes = attributeSet.getAttributeResourceValue(i, 0);
+                    break;
+
+                case "atlas":
+                    attrs.atlas = attributeSet.getAttributeBooleanValue(i, false);
+                    break;
+
+                case "width":
+                    attrs.width = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "height":
+                    attrs.height = attributeSet.getAttributeValue(i);
+                    break;
+
+                case "mesh":
+                    attrs.hasMesh = true;
+                    break;
+
+                case "visible":
+                    attrs.visible = attributeSet.getAttributeBooleanValue(i, attrs.visible);
+                    break;
+
+                case "opacity":
+                    attrs.opacity = FloatTokenizer.parseFloat(attributeSet.getAttributeValue(i));
+                    break;
+
+                case "renderingOrder":
+                    attrs.renderingOrder = attributeSet.getAttributeIntValue(i, attrs.renderingOrder);
+                    break;
+            }
+        }
+
+        // layout & texture are alias
+        if (isLayout(layout)) {
+            attrs.layout = layoutRes;
+        } else if (isLayout(texture)) {
+            attrs.layout = textureRes;
+        }
+
+        // texture is alternative of drawable
+        if (isDrawable(drawable)) {
+            attrs.drawable = drawableRes;
+        } else if (isDrawable(texture)) {
+            attrs.drawable = textureRes;
+        }
+
+        return attrs;
+    }
+
+    private static boolean isLayout(String value) {
+        return value != null && value.startsWith("@layout/");
+    }
+
+    private static boolean isDrawable(String value) {
+        return value != null && (value.startsWith("@drawable/") || value.startsWith("@mipmap/"));
+    }
+
+    /**
+     * Add position, rotation and scale of object to batch so that they are written once.
+     */
+    private void addTransform(SceneObject object, Attributes attrs) {
+        final float[] values = mValues;
+        int mask = 0;
+
+        // Position is always set unless position attribute is invalid
+        float px = 0, py = 0, pz = 0;
+        if (attrs.position != null) {
+            if (parseFloats(attrs.position, values) == 3) {
+                px = values[0];
+                py = values[1];
+                pz = values[2];
+                mask |= TransformBatch.POSITION;
+            }
+        } else {
+            px = parseFloat(attrs.x, 0);
+            py = parseFloat(attrs.y, 0);
+            pz = parseFloat(attrs.z, 0);
+            mask |= TransformBatch.POSITION;
+        }
+
+        // Rotation is angle in degrees and axis
+        final Quaternionf rotation = mRotation.identity();
+        if (attrs.rotation != null && parseFloats(attrs.rotation, values) == 4) {
+            rotation.rotateAxis((float) Math.toRadians(values[0]), values[1], values[2], values[3]);
+            mask |= TransformBatch.ROTATION;
+        }
+
+        // Missing components of simple scale are taken from object
+        final Vector3f scale = mScale;
+        if (attrs.scale != null && parseFloats(attrs.scale, values) == 3) {
+            scale.set(values[0], values[1], values[2]);
+            mask |= TransformBatch.SCALE;
+        } else if (attrs.scaleX != null || attrs.scaleY != null || attrs.scaleZ != null) {
+            object.getScale(scale);
+            scale.x = parseFloat(attrs.scaleX, scale.x);
+            scale.y = parseFloat(attrs.scaleY, scale.y);
+            scale.z = parseFloat(attrs.scaleZ, scale.z);
+            mask |= TransformBatch.SCALE;
+        }
+
+        if (mask != 0) {
+            mTransformBatch.add(object.getNative(), mask,
+                    px, py, pz,
+                    rotation.x, rotation.y, rotation.z, rotation.w,
+                    scale.x, scale.y, scale.z);
+        }
+    }
+
+    /**
+     * @return Number of values, or -1 if a value is not a number.
+     */
+    private static int parseFloats(String value, float[] dest) {
+        try {
+            return FloatTokenizer.parse(value, dest);
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    private static float parseFloat(String value, float defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return FloatTokenizer.parseFloat(value);
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return defaultValue;
+        }
+    }
+
     private SceneObject createSceneObject(XmlPullParser parser) {
 
         String name = parser.getName();
@@ -178,4 +417,37 @@ public class XmlSceneObjectParser {
             throw new IllegalArgumentException("Cannot instantiate " + name, e);
         }
     }
+
+    /**
+     * Attribute values of an element. Reused for each element.
+     */
+    private static class Attributes {
+        int id;
+        String name;
+        String position, x, y, z;
+        String scale, scaleX, scaleY, scaleZ;
+        String rotation;
+        int layout, drawable;
+        boolean atlas;
+        String width, height;
+        boolean hasMesh;
+        boolean visible;
+        float opacity;
+        int renderingOrder;
+
+        void reset(boolean visible) {
+            id = -1;
+            name = null;
+            position = x = y = z = null;
+            scale = scaleX = scaleY = scaleZ = null;
+            rotation = null;
+            layout = drawable = 0;
+            atlas = false;
+            width = height = null;
+            hasMesh = false;
+            this.visible = visible;
+            opacity = -1;
+            renderingOrder = -1;
+        }
+    }
 }
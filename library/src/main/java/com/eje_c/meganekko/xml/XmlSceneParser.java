@@ -21,6 +21,7 @@ import android.util.Xml;
 
 import com.eje_c.meganekko.Scene;
 import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.utility.Log;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -35,16 +36,20 @@ import java.net.URL;
  */
 public class XmlSceneParser {
 
+    private static final String TAG = Log.tag(XmlSceneParser.class);
     private final Context mContext;
     private final XmlSceneObjectParser mObjectParser;
+    private final BinarySceneLoader mBinaryLoader;
 
     public XmlSceneParser(Context context) {
         this.mContext = context;
         this.mObjectParser = new XmlSceneObjectParser(context);
+        this.mBinaryLoader = new BinarySceneLoader(context);
     }
 
     /**
-     * Parse scene from XML resource.
+     * Parse scene from XML resource. If the resource was compiled by {@code scene-compiler.gradle},
+     * compiled scene is loaded with {@link BinarySceneLoader} instead.
      *
      * @param xmlRes XML resource.
      * @param scene  Root scene. It can be null.
@@ -53,6 +58,14 @@ public class XmlSceneParser {
      * @throws IOException
      */
     public Scene parse(int xmlRes, Scene scene) throws XmlPullParserException, IOException {
+        try {
+            Scene compiled = mBinaryLoader.load(xmlRes, scene);
+            if (compiled != null) {
+                return compiled;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Compiled scene is broken. Parse XML instead: %s", e.getMessage());
+        }
         return parse(mContext.getResources().getXml(xmlRes), scene);
     }
 
@@ -9,11 +9,26 @@ import com.eje_c.meganekko.Material;
 import com.eje_c.meganekko.Mesh;
 import com.eje_c.meganekko.RenderData;
 import com.eje_c.meganekko.SceneObject;
+import com.eje_c.meganekko.TextureAtlas;
 import com.eje_c.meganekko.xml.XmlAttributeParser;
 
 public class DrawableParser implements XmlAttributeParser {
 
     private static void setDrawable(SceneObject object, Drawable d, AttributeSet attributeSet) {
+        setDrawable(object, d,
+                attributeSet.getAttributeBooleanValue(NAMESPACE, "atlas", false),
+                attributeSet.getAttributeValue(NAMESPACE, "width") == null
+                        && attributeSet.getAttributeValue(NAMESPACE, "height") == null
+                        && attributeSet.getAttributeValue(NAMESPACE, "mesh") == null);
+    }
+
+    /**
+     * Set drawable as texture of object. Also used for scenes compiled from XML.
+     *
+     * @param atlas    Share a texture with other small drawables.
+     * @param autoSize Set mesh sized to drawable if object has no mesh.
+     */
+    public static void setDrawable(SceneObject object, Drawable d, boolean atlas, boolean autoSize) {
         RenderData renderData = object.getRenderData();
 
         if (renderData == null) {
@@ -21,16 +36,18 @@ public class DrawableParser implements XmlAttributeParser {
             object.attachRenderData(renderData);
         }
 
-        Material material = new Material();
-        material.texture().set(d);
+        // Small drawables can share a texture with atlas="true"
+        Material material;
+        if (atlas) {
+            material = Material.from(d, TextureAtlas.getDefault());
+        } else {
+            material = new Material();
+            material.texture().set(d);
+        }
         renderData.setMaterial(material);
 
         // Set auto sized mesh
-        if (object.mesh() == null
-                && attributeSet.getAttributeValue(NAMESPACE, "width") == null
-                && attributeSet.getAttributeValue(NAMESPACE, "height") == null
-                && attributeSet.getAttributeValue(NAMESPACE, "mesh") == null) {
-
+        if (object.mesh() == null && autoSize) {
             Mesh mesh = Mesh.from(d);
             renderData.setMesh(mesh);
         }
@@ -17,6 +17,8 @@
 
 /**
  * XML attribute parsers.
+ * Built-in attributes are read directly by {@link com.eje_c.meganekko.xml.XmlSceneObjectParser} in one pass,
+ * so parsers in this package are only used when application calls them.
  * You can add your own parser with {@link com.eje_c.meganekko.xml.XmlSceneParser#addXmlAttributeParser(java.lang.Class)}.
  */
 package com.eje_c.meganekko.xml.attribute_parser;
\ No newline at end of file
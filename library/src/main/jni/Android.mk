@@ -48,6 +48,12 @@ LOCAL_ARM_NEON := true
 LOCAL_CPPFLAGS += -fexceptions -std=c++11
 LOCAL_CFLAGS := -Wattributes
 
+# Frame phase timings. Build with MGN_FRAME_STATS=0 to compile them out.
+MGN_FRAME_STATS ?= 1
+ifeq ($(MGN_FRAME_STATS),1)
+LOCAL_CFLAGS += -DMGN_FRAME_STATS
+endif
+
 LOCAL_LDLIBS += -llog -lGLESv3 -lEGL -landroid
 
 include $(BUILD_SHARED_LIBRARY)
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "DynamicGeometry.h"
+
+namespace mgn {
+
+DynamicGeometry::DynamicGeometry(const VertexLayout & layout, int vertexCapacity, int indexCapacity) :
+        layout(layout),
+        vertexCapacity(vertexCapacity),
+        indexCapacity(indexCapacity),
+        current(0),
+        vertexCount(0),
+        indexCount(0),
+        dirty(false) {
+
+    vertices.Resize(vertexCapacity * layout.GetStride());
+    indices.Resize(indexCapacity);
+    memset(vertices.GetDataPtr(), 0, vertices.GetSize());
+    memset(indices.GetDataPtr(), 0, indices.GetSize() * sizeof(uint16_t));
+
+    const int chunkCount = (vertexCapacity + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    chunkMins.Resize(chunkCount);
+    chunkMaxs.Resize(chunkCount);
+
+    for (int i = 0; i < BUFFER_COUNT; ++i) {
+        Buffer & buffer = buffers[i];
+        GlGeometry & geometry = buffer.geometry;
+
+        glGenVertexArrays(1, &geometry.vertexArrayObject);
+        glBindVertexArray(geometry.vertexArrayObject);
+
+        glGenBuffers(1, &geometry.vertexBuffer);
+        glBindBuffer(GL_ARRAY_BUFFER, geometry.vertexBuffer);
+        glBufferData(GL_ARRAY_BUFFER, vertices.GetSize(), vertices.GetDataPtr(), GL_DYNAMIC_DRAW);
+        layout.SetAttribPointers();
+
+        glGenBuffers(1, &geometry.indexBuffer);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, geometry.indexBuffer);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices.GetSize() * sizeof(uint16_t), indices.GetDataPtr(), GL_DYNAMIC_DRAW);
+
+        buffer.dirtyVertices.Clear();
+        buffer.dirtyIndices.Clear();
+    }
+
+    glBindVertexArray(0);
+    glBindBuffer(GL_ARRAY_BUFFER, 0);
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+}
+
+DynamicGeometry::~DynamicGeometry() {
+    for (int i = 0; i < BUFFER_COUNT; ++i) {
+        buffers[i].geometry.Free();
+    }
+}
+
+void DynamicGeometry::UpdateVertices(int first, int count, const uint8_t * data) {
+    if (count <= 0) return;
+
+    const int stride = layout.GetStride();
+    memcpy(&vertices[first * stride], data, static_cast<size_t>(count) * stride);
+
+    for (int i = 0; i < BUFFER_COUNT; ++i) {
+        buffers[i].dirtyVertices.Merge(first, count);
+    }
+    RefitChunks(first, first + count);
+    dirty = true;
+}
+
+void DynamicGeometry::UpdateIndices(int first, int count, const uint16_t * data) {
+    if (count <= 0) return;
+
+    memcpy(&indices[first], data, static_cast<size_t>(count) * sizeof(uint16_t));
+
+    for (int i = 0; i < BUFFER_COUNT; ++i) {
+        buffers[i].dirtyIndices.Merge(first, count);
+    }
+    dirty = true;
+}
+
+void DynamicGeometry::SetCounts(int vertexCount, int indexCount) {
+    if (vertexCount != this->vertexCount) {
+        // Only chunks on both ends of changed range are partially used
+        const int oldCount = this->vertexCount;
+        this->vertexCount = vertexCount;
+        RefitChunks(Alg::Min(oldCount, vertexCount), Alg::Max(oldCount, vertexCount));
+    }
+
+    this->indexCount = indexCount;
+    dirty = true;
+}
+
+int DynamicGeometry::GetMaxIndex(int count) const {
+    int maxIndex = -1;
+    for (int i = 0; i < count; ++i) {
+        maxIndex = Alg::Max(maxIndex, static_cast<int>(indices[i]));
+    }
+    return maxIndex;
+}
+
+const GlGeometry & DynamicGeometry::Flush() {
+    const Buffer & previous = buffers[current];
+    const bool hasChanges = !previous.dirtyVertices.IsEmpty() || !previous.dirtyIndices.IsEmpty();
+
+    if (hasChanges) {
+        // Write to oldest buffer while GPU may still read newer ones
+        current = (current + 1) % BUFFER_COUNT;
+        Buffer & buffer = buffers[current];
+        const int stride = layout.GetStride();
+
+        if (!buffer.dirtyVertices.IsEmpty()) {
+            const Range & range = buffer.dirtyVertices;
+            glBindBuffer(GL_ARRAY_BUFFER, buffer.geometry.vertexBuffer);
+            glBufferSubData(GL_ARRAY_BUFFER, range.begin * stride, (range.end - range.begin) * stride, &vertices[range.begin * stride]);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            buffer.dirtyVertices.Clear();
+        }
+
+        if (!buffer.dirtyIndices.IsEmpty()) {
+            // Element array binding is a part of vertex array state
+            const Range & range = buffer.dirtyIndices;
+            glBindVertexArray(0);
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, buffer.geometry.indexBuffer);
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, range.begin * sizeof(uint16_t), (range.end - range.begin) * sizeof(uint16_t), &indices[range.begin]);
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+            buffer.dirtyIndices.Clear();
+        }
+    }
+
+    GlGeometry & geometry = buffers[current].geometry;
+    geometry.vertexCount = vertexCount;
+    geometry.indexCount = indexCount;
+    dirty = false;
+    return geometry;
+}
+
+void DynamicGeometry::RefitChunks(int begin, int end) {
+    const int stride = layout.GetStride();
+    const int lastChunk = Alg::Min(end - 1, vertexCapacity - 1) / CHUNK_SIZE;
+
+    for (int chunk = begin / CHUNK_SIZE; chunk <= lastChunk; ++chunk) {
+        const int first = chunk * CHUNK_SIZE;
+        const int count = Alg::Min(first + CHUNK_SIZE, vertexCount) - first;
+
+        chunkMins[chunk] = Vector3f(FLT_MAX, FLT_MAX, FLT_MAX);
+        chunkMaxs[chunk] = Vector3f(-FLT_MAX, -FLT_MAX, -FLT_MAX);
+        if (count > 0) {
+            layout.MergeBounds(&vertices[first * stride], count, chunkMins[chunk], chunkMaxs[chunk]);
+        }
+    }
+}
+
+void DynamicGeometry::GetBounds(Vector3f & mins, Vector3f & maxs) const {
+    if (vertexCount == 0) {
+        mins = Vector3f();
+        maxs = Vector3f();
+        return;
+    }
+
+    mins = Vector3f(FLT_MAX, FLT_MAX, FLT_MAX);
+    maxs = Vector3f(-FLT_MAX, -FLT_MAX, -FLT_MAX);
+
+    const int chunkCount = (vertexCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    for (int chunk = 0; chunk < chunkCount; ++chunk) {
+        mins = Vector3f::Min(mins, chunkMins[chunk]);
+        maxs = Vector3f::Max(maxs, chunkMaxs[chunk]);
+    }
+}
+
+}
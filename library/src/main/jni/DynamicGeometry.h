@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Fixed capacity geometry updated from CPU every frame.
+ ***************************************************************************/
+
+#ifndef DYNAMIC_GEOMETRY_H_
+#define DYNAMIC_GEOMETRY_H_
+
+#include "VertexLayout.h"
+
+using namespace OVR;
+
+namespace mgn {
+
+class DynamicGeometry {
+public:
+    // Buffers are used in turn so that GPU is done with a buffer when it is written again.
+    static const int BUFFER_COUNT = 3;
+
+    // Number of vertices sharing a bounding box. Bounds are refit only for chunks touched by updates.
+    static const int CHUNK_SIZE = 256;
+
+    DynamicGeometry(const VertexLayout & layout, int vertexCapacity, int indexCapacity);
+    ~DynamicGeometry();
+
+    int GetVertexCapacity() const {
+        return vertexCapacity;
+    }
+
+    int GetIndexCapacity() const {
+        return indexCapacity;
+    }
+
+    // Copy count vertices to the range starting at first. Uploaded on next Flush().
+    void UpdateVertices(int first, int count, const uint8_t * vertices);
+
+    // Copy count indices to the range starting at first. Uploaded on next Flush().
+    void UpdateIndices(int first, int count, const uint16_t * indices);
+
+    // Number of vertices in use and number of indices to draw.
+    void SetCounts(int vertexCount, int indexCount);
+
+    // Largest of first count indices. -1 if count is 0.
+    int GetMaxIndex(int count) const;
+
+    // True if there are changes which are not flushed yet.
+    bool IsDirty() const {
+        return dirty;
+    }
+
+    // Upload pending changes to next buffer and return geometry to draw.
+    const GlGeometry & Flush();
+
+    // Bounds of vertices in use. Zero box if no vertex is used.
+    void GetBounds(Vector3f & mins, Vector3f & maxs) const;
+
+private:
+    DynamicGeometry(const DynamicGeometry& dynamicGeometry);
+    DynamicGeometry(DynamicGeometry&& dynamicGeometry);
+    DynamicGeometry& operator=(const DynamicGeometry& dynamicGeometry);
+    DynamicGeometry& operator=(DynamicGeometry&& dynamicGeometry);
+
+    // Half open range of elements
+    struct Range {
+        int begin;
+        int end;
+
+        void Clear() {
+            begin = INT_MAX;
+            end = 0;
+        }
+
+        bool IsEmpty() const {
+            return begin >= end;
+        }
+
+        void Merge(int first, int count) {
+            begin = Alg::Min(begin, first);
+            end = Alg::Max(end, first + count);
+        }
+    };
+
+    struct Buffer {
+        GlGeometry geometry;
+        Range      dirtyVertices; // changes made since this buffer was written last
+        Range      dirtyIndices;
+    };
+
+    // Recompute bounds of chunks overlapping vertices in [begin, end).
+    void RefitChunks(int begin, int end);
+
+private:
+    const VertexLayout layout;
+    const int vertexCapacity;
+    const int indexCapacity;
+
+    // Copy of whole contents. Buffers which are behind are caught up from here.
+    Array<uint8_t>  vertices;
+    Array<uint16_t> indices;
+
+    Buffer buffers[BUFFER_COUNT];
+    int    current;
+    int    vertexCount;
+    int    indexCount;
+    bool   dirty;
+
+    Array<Vector3f> chunkMins;
+    Array<Vector3f> chunkMaxs;
+};
+
+}
+#endif
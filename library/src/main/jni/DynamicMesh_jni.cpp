@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "Mesh.h"
+#include "DynamicGeometry.h"
+
+namespace mgn {
+
+// Refit bounding box from chunk bounds. Scene picks up new bounds on next culling.
+static void RefitBounds(Mesh * mesh) {
+    Vector3f mins;
+    Vector3f maxs;
+    mesh->GetDynamicGeometry()->GetBounds(mins, maxs);
+    mesh->SetBoundingBox(mins, maxs);
+}
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_DynamicMesh_allocate(JNIEnv * env, jobject obj, jlong jmesh,
+        jintArray jlayout, jint stride, jint vertexCapacity, jint indexCapacity) {
+
+    const jsize layoutSize = Alg::Min(env->GetArrayLength(jlayout), static_cast<jsize>(VertexLayout::MAX_ATTRIBUTES * 4));
+    jint values[VertexLayout::MAX_ATTRIBUTES * 4];
+    env->GetIntArrayRegion(jlayout, 0, layoutSize, values);
+    const VertexLayout layout(values, layoutSize, stride);
+
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    mesh->SetDynamicGeometry(new DynamicGeometry(layout, vertexCapacity, indexCapacity));
+    RefitBounds(mesh);
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_eje_1c_meganekko_DynamicMesh_updateVertices(JNIEnv * env, jobject obj, jlong jmesh,
+        jobject jvertices, jint offset, jint firstVertex, jint vertexCount) {
+
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    DynamicGeometry * geometry = mesh->GetDynamicGeometry();
+    if (geometry == nullptr) return false;
+
+    const uint8_t * vertices = static_cast<const uint8_t*>(env->GetDirectBufferAddress(jvertices)) + offset;
+    geometry->UpdateVertices(firstVertex, vertexCount, vertices);
+    RefitBounds(mesh);
+    return true;
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_eje_1c_meganekko_DynamicMesh_updateIndices(JNIEnv * env, jobject obj, jlong jmesh,
+        jobject jindices, jint offset, jint firstIndex, jint indexCount) {
+
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    DynamicGeometry * geometry = mesh->GetDynamicGeometry();
+    if (geometry == nullptr) return false;
+
+    const uint8_t * indices = static_cast<const uint8_t*>(env->GetDirectBufferAddress(jindices)) + offset;
+    geometry->UpdateIndices(firstIndex, indexCount, reinterpret_cast<const uint16_t*>(indices));
+    return true;
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_DynamicMesh_getMaxIndex(JNIEnv * env, jobject obj, jlong jmesh, jint indexCount) {
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    DynamicGeometry * geometry = mesh->GetDynamicGeometry();
+    if (geometry == nullptr) return -1;
+
+    return geometry->GetMaxIndex(indexCount);
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_eje_1c_meganekko_DynamicMesh_setCounts(JNIEnv * env, jobject obj, jlong jmesh, jint vertexCount, jint indexCount) {
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    DynamicGeometry * geometry = mesh->GetDynamicGeometry();
+    if (geometry == nullptr) return false;
+
+    geometry->SetCounts(vertexCount, indexCount);
+    RefitBounds(mesh);
+    return true;
+}
+
+#ifdef __cplusplus
+} // extern C
+#endif
+} // namespace mgn
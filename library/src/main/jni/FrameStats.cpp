@@ -1,4 +1,4 @@
-/* 
+/*
  * Copyright 2016 eje inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -15,19 +15,24 @@
  */
 
 #include "includes.h"
-#include "HybridObject.h"
+#include "FrameStats.h"
 
 namespace mgn {
+
+int64_t * FrameStats::values = nullptr;
+
 #ifdef __cplusplus
 extern "C" {
 #endif
 
 JNIEXPORT void JNICALL
-Java_com_eje_1c_meganekko_NativeReference_delete(JNIEnv * env, jobject obj, jlong nativePointer) {
-    delete reinterpret_cast<HybridObject*>(nativePointer);
+Java_com_eje_1c_meganekko_FrameStats_nativeAttach(JNIEnv * env, jclass clazz, jobject jvalues) {
+#ifdef MGN_FRAME_STATS
+    FrameStats::Attach(jvalues != nullptr ? static_cast<int64_t*>(env->GetDirectBufferAddress(jvalues)) : nullptr);
+#endif
 }
 
-#ifdef __cplusplus 
+#ifdef __cplusplus
 } // extern C
 #endif
 } // namespace mgn
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Timing histograms of frame phases shared with Java FrameStats.
+ ***************************************************************************/
+
+#ifndef FRAME_STATS_H_
+#define FRAME_STATS_H_
+
+#include <time.h>
+
+namespace mgn {
+
+class FrameStats {
+public:
+    // Must match FrameStats.Phase
+    enum Phase {
+        FRAME,
+        JAVA_UPDATE,
+        GL_TASKS,
+        ANIMATION,
+        SCENE_UPDATE,
+        REFERENCE_CLEANUP,
+        PREPARE_FOR_RENDERING,
+        QUEUE_REBUILD,
+        CULL,
+        SORT,
+        DRAW_LEFT_EYE,
+        DRAW_RIGHT_EYE,
+        PHASE_COUNT
+    };
+
+    // Values per phase: count, sum of nanoseconds, max nanoseconds, buckets
+    static const int BUCKET_COUNT = 128;
+    static const int VALUES_PER_PHASE = 3 + BUCKET_COUNT;
+
+    // Start recording into values which has VALUES_PER_PHASE * PHASE_COUNT elements. nullptr stops recording.
+    static void Attach(int64_t * values) {
+        FrameStats::values = values;
+    }
+
+    static bool IsRecording() {
+        return values != nullptr;
+    }
+
+    static int64_t Now() {
+        timespec time;
+        clock_gettime(CLOCK_MONOTONIC, &time);
+        return static_cast<int64_t>(time.tv_sec) * 1000000000 + time.tv_nsec;
+    }
+
+    static void Record(Phase phase, int64_t nanos) {
+        int64_t * v = values;
+        if (v == nullptr) return;
+
+        v += phase * VALUES_PER_PHASE;
+        v[0] += 1;
+        v[1] += nanos;
+        if (nanos > v[2]) v[2] = nanos;
+        v[3 + BucketOf(nanos)] += 1;
+    }
+
+    // Microseconds below 16 have own bucket. Above that, each power of 2 is split into 8 buckets.
+    static int BucketOf(int64_t nanos) {
+        const uint64_t micros = nanos > 0 ? static_cast<uint64_t>(nanos) / 1000 : 0;
+        if (micros < 16) return static_cast<int>(micros);
+
+        const int exponent = 63 - __builtin_clzll(micros);
+        const int bucket = 16 + (exponent - 4) * 8 + static_cast<int>((micros >> (exponent - 3)) & 7);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    // Records time until end of scope
+    class Scope {
+    public:
+        explicit Scope(Phase phase) : phase(phase), start(IsRecording() ? Now() : 0) {
+        }
+
+        ~Scope() {
+            if (start != 0) Record(phase, Now() - start);
+        }
+
+    private:
+        const Phase   phase;
+        const int64_t start;
+    };
+
+private:
+    static int64_t * values;
+};
+
+}
+
+// Defined by Android.mk unless built with MGN_FRAME_STATS=0
+#ifdef MGN_FRAME_STATS
+#define FRAME_STATS_CONCAT_(a, b) a##b
+#define FRAME_STATS_CONCAT(a, b) FRAME_STATS_CONCAT_(a, b)
+#define FRAME_STATS_SCOPE(phase) ::mgn::FrameStats::Scope FRAME_STATS_CONCAT(frameStatsScope, __LINE__)(phase)
+#else
+#define FRAME_STATS_SCOPE(phase)
+#endif
+
+#endif
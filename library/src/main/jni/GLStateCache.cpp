@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Shadow copy of OpenGL state to skip redundant state changes.
+ ***************************************************************************/
+
+#include "includes.h"
+#include "GLStateCache.h"
+
+#include "util/GL.h"
+
+namespace mgn {
+
+class OpenGLBackend: public GLStateCache::Backend {
+public:
+    void Enable(GLenum cap) {
+        GL(glEnable(cap));
+    }
+
+    void Disable(GLenum cap) {
+        GL(glDisable(cap));
+    }
+
+    void CullFace(GLenum mode) {
+        GL(glCullFace(mode));
+    }
+
+    void PolygonOffset(GLfloat factor, GLfloat units) {
+        GL(glPolygonOffset(factor, units));
+    }
+
+    void UseProgram(GLuint program) {
+        GL(glUseProgram(program));
+    }
+
+    void ActiveTexture(GLenum unit) {
+        GL(glActiveTexture(unit));
+    }
+
+    void BindTexture(GLenum target, GLuint texture) {
+        GL(glBindTexture(target, texture));
+    }
+};
+
+GLStateCache::GLStateCache() :
+        backend(new OpenGLBackend()),
+        ownsBackend(true),
+        issuedCount(0),
+        skippedCount(0) {
+    Invalidate();
+}
+
+GLStateCache::GLStateCache(Backend * backend) :
+        backend(backend),
+        ownsBackend(false),
+        issuedCount(0),
+        skippedCount(0) {
+    Invalidate();
+}
+
+GLStateCache::~GLStateCache() {
+    if (ownsBackend) {
+        delete backend;
+    }
+}
+
+void GLStateCache::Invalidate() {
+    cullFace = UNKNOWN;
+    blend = UNKNOWN;
+    depthTest = UNKNOWN;
+    polygonOffsetFill = UNKNOWN;
+    cullFaceModeKnown = false;
+    polygonOffsetKnown = false;
+    programKnown = false;
+    activeTextureKnown = false;
+    textureKnown = false;
+}
+
+void GLStateCache::SetCapability(GLenum cap, int & current, bool enabled) {
+    const int value = enabled ? 1 : 0;
+    if (!Changed(current != value)) return;
+
+    if (enabled) {
+        backend->Enable(cap);
+    } else {
+        backend->Disable(cap);
+    }
+    current = value;
+}
+
+void GLStateCache::SetCullFace(bool enabled) {
+    SetCapability(GL_CULL_FACE, cullFace, enabled);
+}
+
+void GLStateCache::CullFace(GLenum mode) {
+    if (!Changed(!cullFaceModeKnown || cullFaceMode != mode)) return;
+
+    backend->CullFace(mode);
+    cullFaceModeKnown = true;
+    cullFaceMode = mode;
+}
+
+void GLStateCache::SetBlend(bool enabled) {
+    SetCapability(GL_BLEND, blend, enabled);
+}
+
+void GLStateCache::SetDepthTest(bool enabled) {
+    SetCapability(GL_DEPTH_TEST, depthTest, enabled);
+}
+
+void GLStateCache::SetPolygonOffsetFill(bool enabled) {
+    SetCapability(GL_POLYGON_OFFSET_FILL, polygonOffsetFill, enabled);
+}
+
+void GLStateCache::PolygonOffset(GLfloat factor, GLfloat units) {
+    if (!Changed(!polygonOffsetKnown || polygonOffsetFactor != factor || polygonOffsetUnits != units)) return;
+
+    backend->PolygonOffset(factor, units);
+    polygonOffsetKnown = true;
+    polygonOffsetFactor = factor;
+    polygonOffsetUnits = units;
+}
+
+void GLStateCache::UseProgram(GLuint program) {
+    if (!Changed(!programKnown || this->program != program)) return;
+
+    backend->UseProgram(program);
+    programKnown = true;
+    this->program = program;
+}
+
+void GLStateCache::ActiveTexture(GLenum unit) {
+    if (!Changed(!activeTextureKnown || activeTexture != unit)) return;
+
+    backend->ActiveTexture(unit);
+    activeTextureKnown = true;
+    activeTexture = unit;
+
+    // binding is per texture unit
+    textureKnown = false;
+}
+
+void GLStateCache::BindTexture(GLenum target, GLuint texture) {
+    if (!Changed(!textureKnown || textureTarget != target || this->texture != texture)) return;
+
+    backend->BindTexture(target, texture);
+    textureKnown = true;
+    textureTarget = target;
+    this->texture = texture;
+}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Shadow copy of OpenGL state to skip redundant state changes.
+ ***************************************************************************/
+
+#ifndef GL_STATE_CACHE_H_
+#define GL_STATE_CACHE_H_
+
+using namespace OVR;
+
+namespace mgn {
+
+class GLStateCache {
+public:
+
+    // Receives state changes which are actually issued.
+    // Replace it to record calls without GL context.
+    class Backend {
+    public:
+        virtual ~Backend() {
+        }
+        virtual void Enable(GLenum cap) = 0;
+        virtual void Disable(GLenum cap) = 0;
+        virtual void CullFace(GLenum mode) = 0;
+        virtual void PolygonOffset(GLfloat factor, GLfloat units) = 0;
+        virtual void UseProgram(GLuint program) = 0;
+        virtual void ActiveTexture(GLenum unit) = 0;
+        virtual void BindTexture(GLenum target, GLuint texture) = 0;
+    };
+
+    // Use real OpenGL.
+    GLStateCache();
+
+    // Use given backend. Backend is not owned by this object.
+    explicit GLStateCache(Backend * backend);
+
+    ~GLStateCache();
+
+    // Forget known state. Call when someone else may have changed GL state.
+    void Invalidate();
+
+    void SetCullFace(bool enabled);
+    void CullFace(GLenum mode);
+    void SetBlend(bool enabled);
+    void SetDepthTest(bool enabled);
+    void SetPolygonOffsetFill(bool enabled);
+    void PolygonOffset(GLfloat factor, GLfloat units);
+    void UseProgram(GLuint program);
+    void ActiveTexture(GLenum unit);
+    void BindTexture(GLenum target, GLuint texture);
+
+    // Number of calls passed to backend since last ResetCounters().
+    int GetIssuedCount() const {
+        return issuedCount;
+    }
+
+    // Number of calls skipped since last ResetCounters().
+    int GetSkippedCount() const {
+        return skippedCount;
+    }
+
+    void ResetCounters() {
+        issuedCount = 0;
+        skippedCount = 0;
+    }
+
+private:
+    GLStateCache(const GLStateCache& glStateCache);
+    GLStateCache(GLStateCache&& glStateCache);
+    GLStateCache& operator=(const GLStateCache& glStateCache);
+    GLStateCache& operator=(GLStateCache&& glStateCache);
+
+    void SetCapability(GLenum cap, int & current, bool enabled);
+
+    // Returns true if call must be issued. Updates counters.
+    bool Changed(bool changed) {
+        if (changed) {
+            ++issuedCount;
+        } else {
+            ++skippedCount;
+        }
+        return changed;
+    }
+
+private:
+    static const int UNKNOWN = -1;
+
+    Backend * backend;
+    bool ownsBackend;
+
+    // -1 is unknown, 0 is disabled, 1 is enabled
+    int cullFace;
+    int blend;
+    int depthTest;
+    int polygonOffsetFill;
+
+    bool cullFaceModeKnown;
+    GLenum cullFaceMode;
+    bool polygonOffsetKnown;
+    GLfloat polygonOffsetFactor;
+    GLfloat polygonOffsetUnits;
+    bool programKnown;
+    GLuint program;
+    bool activeTextureKnown;
+    GLenum activeTexture;
+    bool textureKnown;
+    GLenum textureTarget;
+    GLuint texture;
+
+    int issuedCount;
+    int skippedCount;
+};
+
+}
+#endif
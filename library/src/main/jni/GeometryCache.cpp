@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "GeometryCache.h"
+
+namespace mgn {
+
+static int BufferSize(GLenum target, GLuint buffer) {
+    if (buffer == 0) return 0;
+
+    GLint size = 0;
+    glBindBuffer(target, buffer);
+    glGetBufferParameteriv(target, GL_BUFFER_SIZE, &size);
+    glBindBuffer(target, 0);
+    return size;
+}
+
+GeometryCache & GeometryCache::Get() {
+    static GeometryCache instance;
+    return instance;
+}
+
+SharedGeometry * GeometryCache::Acquire(const GeometryKey & key) {
+    if (!enabled) return nullptr;
+
+    SharedGeometry * shared = nullptr;
+    if (entries.Get(key, &shared)) {
+        ++shared->refCount;
+        ++hitCount;
+        bytesSaved += shared->bytes;
+        return shared;
+    }
+
+    ++missCount;
+    return nullptr;
+}
+
+SharedGeometry * GeometryCache::Insert(const GeometryKey & key, const GlGeometry & geometry) {
+    SharedGeometry * shared = new SharedGeometry(key);
+    shared->geometry = geometry;
+    return Add(shared);
+}
+
+SharedGeometry * GeometryCache::Add(SharedGeometry * shared) {
+    // Element array binding belongs to vertex array
+    glBindVertexArray(0);
+    shared->bytes = BufferSize(GL_ARRAY_BUFFER, shared->geometry.vertexBuffer)
+            + BufferSize(GL_ELEMENT_ARRAY_BUFFER, shared->geometry.indexBuffer);
+
+    if (enabled) {
+        shared->listed = true;
+        entries.Set(shared->key, shared);
+    }
+    return shared;
+}
+
+void GeometryCache::Release(SharedGeometry * shared) {
+    if (--shared->refCount > 0) return;
+
+    // Key may have been taken over by other geometry
+    SharedGeometry * listed = nullptr;
+    if (shared->listed && entries.Get(shared->key, &listed) && listed == shared) {
+        entries.Remove(shared->key);
+    }
+
+    shared->geometry.Free();
+    delete shared;
+}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Reference counted geometry shared by meshes built with same parameters.
+ ***************************************************************************/
+
+#ifndef GEOMETRY_CACHE_H_
+#define GEOMETRY_CACHE_H_
+
+#include "GeometrySource.h"
+
+using namespace OVR;
+
+namespace mgn {
+
+// Builder of geometry and its parameters
+struct GeometryKey {
+    enum Type {
+        QUAD,
+        TESSELATED_QUAD,
+        VIGNETTE,
+        TESSELATED_CYLINDER,
+        DOME,
+        GLOBE,
+        SPHERE_PATCH,
+        CALIBRATION_LINES,
+        UNIT_CUBE_LINES
+    };
+
+    static const int MAX_PARAMS = 6;
+
+    Type  type;
+    float params[MAX_PARAMS];
+
+    GeometryKey(Type type, float p0 = 0, float p1 = 0, float p2 = 0, float p3 = 0, float p4 = 0, float p5 = 0) : type(type) {
+        params[0] = p0;
+        params[1] = p1;
+        params[2] = p2;
+        params[3] = p3;
+        params[4] = p4;
+        params[5] = p5;
+    }
+
+    // Parameters are compared by value, so -0.0 equals 0.0. NaN equals NaN not to lose entries.
+    bool operator==(const GeometryKey & other) const {
+        if (type != other.type) return false;
+
+        for (int i = 0; i < MAX_PARAMS; ++i) {
+            const float a = params[i];
+            const float b = other.params[i];
+            if (a != b && !(a != a && b != b)) return false;
+        }
+        return true;
+    }
+
+    // Consistent with operator==. Equal values have one bit pattern after normalization.
+    size_t Hash() const {
+        size_t hash = static_cast<size_t>(type);
+        for (int i = 0; i < MAX_PARAMS; ++i) {
+            float value = params[i];
+            if (value == 0.0f) {
+                value = 0.0f;
+            } else if (value != value) {
+                value = NAN;
+            }
+
+            uint32_t bits;
+            memcpy(&bits, &value, sizeof(bits));
+            hash = hash * 31 + bits;
+        }
+        return hash;
+    }
+};
+
+struct GeometryKeyHash {
+    size_t operator()(const GeometryKey & key) const {
+        return key.Hash();
+    }
+};
+
+struct SharedGeometry {
+    GeometryKey          key;
+    GlGeometry           geometry;
+    GeometrySource       source;         // vertices for static batching. Read only when merged.
+    int                  bytes;          // size of vertex and index buffers
+    int                  refCount;
+    bool                 listed;         // false if created while cache is disabled
+
+    SharedGeometry(const GeometryKey & key) : key(key), bytes(0), refCount(1), listed(false) {
+    }
+};
+
+class GeometryCache {
+public:
+    // Cache shared by all meshes. Used only on GL thread.
+    static GeometryCache & Get();
+
+    // Returns geometry with same key and adds reference to it. nullptr if not cached.
+    SharedGeometry * Acquire(const GeometryKey & key);
+
+    // Add new geometry with one reference. Call after Acquire returned nullptr.
+    SharedGeometry * Insert(const GeometryKey & key, const GlGeometry & geometry);
+
+    // Remove reference. Geometry is freed when no mesh refers to it.
+    void Release(SharedGeometry * shared);
+
+    // When disabled, each mesh gets its own geometry. Cached geometry is kept until released.
+    void SetEnabled(bool enabled) {
+        this->enabled = enabled;
+    }
+
+    bool IsEnabled() const {
+        return enabled;
+    }
+
+    int GetHitCount() const {
+        return hitCount;
+    }
+
+    int GetMissCount() const {
+        return missCount;
+    }
+
+    // Total size of buffers which would have been allocated without cache.
+    int64_t GetBytesSaved() const {
+        return bytesSaved;
+    }
+
+    // Number of distinct geometries alive.
+    int GetEntryCount() const {
+        return static_cast<int>(entries.GetSize());
+    }
+
+    void ResetCounters() {
+        hitCount = 0;
+        missCount = 0;
+        bytesSaved = 0;
+    }
+
+private:
+    GeometryCache() : enabled(true), hitCount(0), missCount(0), bytesSaved(0) {
+    }
+
+    GeometryCache(const GeometryCache& geometryCache);
+    GeometryCache(GeometryCache&& geometryCache);
+    GeometryCache& operator=(const GeometryCache& geometryCache);
+    GeometryCache& operator=(GeometryCache&& geometryCache);
+
+    SharedGeometry * Add(SharedGeometry * shared);
+
+private:
+    Hash<GeometryKey, SharedGeometry*, GeometryKeyHash> entries;
+    bool    enabled;
+    int     hitCount;
+    int     missCount;
+    int64_t bytesSaved;
+};
+
+}
+#endif
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "GeometryCache.h"
+
+namespace mgn {
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeSetEnabled(JNIEnv * env, jclass clazz, jboolean enabled) {
+    GeometryCache::Get().SetEnabled(enabled);
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeIsEnabled(JNIEnv * env, jclass clazz) {
+    return GeometryCache::Get().IsEnabled();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeGetHitCount(JNIEnv * env, jclass clazz) {
+    return GeometryCache::Get().GetHitCount();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeGetMissCount(JNIEnv * env, jclass clazz) {
+    return GeometryCache::Get().GetMissCount();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeGetEntryCount(JNIEnv * env, jclass clazz) {
+    return GeometryCache::Get().GetEntryCount();
+}
+
+JNIEXPORT jlong JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeGetBytesSaved(JNIEnv * env, jclass clazz) {
+    return GeometryCache::Get().GetBytesSaved();
+}
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_GeometryCache_nativeResetCounters(JNIEnv * env, jclass clazz) {
+    GeometryCache::Get().ResetCounters();
+}
+
+#ifdef __cplusplus
+} // extern C
+#endif
+} // namespace mgn
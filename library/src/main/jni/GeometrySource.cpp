@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/***************************************************************************
+ * Vertices and indices of GPU geometry read back into memory on demand.
+ ***************************************************************************/
+
+#include "includes.h"
+#include "GeometrySource.h"
+
+namespace mgn {
+
+// Copy float attribute of vertexArray, which must be bound. Disabled attribute is left empty.
+template<typename T>
+static bool ReadAttribute(GLuint location, int vertexCount, Array<T> & out) {
+    const int components = sizeof(T) / sizeof(float);
+
+    GLint enabled = 0;
+    glGetVertexAttribiv(location, GL_VERTEX_ATTRIB_ARRAY_ENABLED, &enabled);
+    if (!enabled) return true;
+
+    GLint size = 0;
+    GLint type = 0;
+    GLint stride = 0;
+    GLint buffer = 0;
+    GLvoid * pointer = nullptr;
+    glGetVertexAttribiv(location, GL_VERTEX_ATTRIB_ARRAY_SIZE, &size);
+    glGetVertexAttribiv(location, GL_VERTEX_ATTRIB_ARRAY_TYPE, &type);
+    glGetVertexAttribiv(location, GL_VERTEX_ATTRIB_ARRAY_STRIDE, &stride);
+    glGetVertexAttribiv(location, GL_VERTEX_ATTRIB_ARRAY_BUFFER_BINDING, &buffer);
+    glGetVertexAttribPointerv(location, GL_VERTEX_ATTRIB_ARRAY_POINTER, &pointer);
+    if (size != components || type != GL_FLOAT || buffer == 0) return false;
+
+    const GLintptr offset = reinterpret_cast<GLintptr>(pointer);
+    const GLsizeiptr elementSize = components * sizeof(float);
+    if (stride == 0) stride = elementSize;
+    if (vertexCount == 0) return true;
+
+    glBindBuffer(GL_ARRAY_BUFFER, buffer);
+    GLint bufferSize = 0;
+    glGetBufferParameteriv(GL_ARRAY_BUFFER, GL_BUFFER_SIZE, &bufferSize);
+
+    const GLsizeiptr length = static_cast<GLsizeiptr>(vertexCount - 1) * stride + elementSize;
+    bool read = false;
+    if (offset >= 0 && offset + length <= bufferSize) {
+        const uint8_t * data = static_cast<const uint8_t*>(glMapBufferRange(GL_ARRAY_BUFFER, offset, length, GL_MAP_READ_BIT));
+        if (data != nullptr) {
+            out.Resize(vertexCount);
+            for (int i = 0; i < vertexCount; ++i) {
+                memcpy(&out[i], data + static_cast<GLsizeiptr>(i) * stride, elementSize);
+            }
+            read = glUnmapBuffer(GL_ARRAY_BUFFER) == GL_TRUE;
+        }
+    }
+
+    glBindBuffer(GL_ARRAY_BUFFER, 0);
+    return read;
+}
+
+static bool ReadIndices(const GlGeometry & geometry, Array<TriangleIndex> & out) {
+    if (geometry.indexCount == 0) return true;
+
+    // Same buffer as bound to vertex array, so binding it doesn't change vertex array
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, geometry.indexBuffer);
+    GLint bufferSize = 0;
+    glGetBufferParameteriv(GL_ELEMENT_ARRAY_BUFFER, GL_BUFFER_SIZE, &bufferSize);
+
+    const GLsizeiptr length = static_cast<GLsizeiptr>(geometry.indexCount) * sizeof(TriangleIndex);
+    if (length > bufferSize) return false;
+
+    const TriangleIndex * data = static_cast<const TriangleIndex*>(glMapBufferRange(GL_ELEMENT_ARRAY_BUFFER, 0, length, GL_MAP_READ_BIT));
+    if (data == nullptr) return false;
+
+    out.Resize(geometry.indexCount);
+    memcpy(out.GetDataPtr(), data, length);
+    return glUnmapBuffer(GL_ELEMENT_ARRAY_BUFFER) == GL_TRUE;
+}
+
+bool GeometrySource::Read(const GlGeometry & geometry) {
+    if (state != NOT_READ) return state == READ;
+
+    state = UNAVAILABLE;
+    if (geometry.vertexArrayObject == 0 || geometry.indexBuffer == 0) return false;
+
+    glBindVertexArray(geometry.vertexArrayObject);
+    const bool read = ReadAttribute(VERTEX_ATTRIBUTE_LOCATION_POSITION, geometry.vertexCount, attribs.position)
+            && attribs.position.GetSizeI() == geometry.vertexCount
+            && ReadAttribute(VERTEX_ATTRIBUTE_LOCATION_UV0, geometry.vertexCount, attribs.uv0)
+            && ReadIndices(geometry, indices);
+    glBindVertexArray(0);
+
+    bool valid = read;
+    for (int i = 0; valid && i < indices.GetSizeI(); ++i) {
+        valid = indices[i] < geometry.vertexCount;
+    }
+
+    if (!valid) {
+        Clear();
+        state = UNAVAILABLE;
+        return false;
+    }
+
+    state = READ;
+    return true;
+}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "includes.h"
+
+/***************************************************************************
+ * Vertices and indices of GPU geometry read back into memory on demand.
+ ***************************************************************************/
+
+#ifndef GEOMETRY_SOURCE_H_
+#define GEOMETRY_SOURCE_H_
+
+using namespace OVR;
+
+namespace mgn {
+
+// Positions, texture coordinates and indices which static batching merges. Geometry is not
+// copied when it is built, because most geometry is never merged. It is read back from its
+// buffers by the first Read() and kept until Clear().
+class GeometrySource {
+public:
+    GeometrySource() : state(NOT_READ) {
+    }
+
+    // Read geometry if not read yet. Returns false if it can't be merged, such as when positions
+    // are not 3 floats. Must be called on GL thread.
+    bool Read(const GlGeometry & geometry);
+
+    void Clear() {
+        attribs = VertexAttribs();
+        indices.Clear();
+        state = NOT_READ;
+    }
+
+    // Empty unless Read() succeeded.
+    const VertexAttribs & GetAttribs() const {
+        return attribs;
+    }
+
+    const Array<TriangleIndex> & GetIndices() const {
+        return indices;
+    }
+
+private:
+    enum State {
+        NOT_READ,
+        READ,
+        UNAVAILABLE
+    };
+
+    VertexAttribs attribs;
+    Array<TriangleIndex> indices;
+    State state;
+};
+
+}
+#endif
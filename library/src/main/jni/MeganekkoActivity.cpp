@@ -19,6 +19,7 @@
 #include "MeganekkoActivity.h"
 #include "Scene.h"
 #include "SceneObject.h"
+#include "FrameStats.h"
 
 namespace mgn
 {
@@ -112,6 +113,8 @@ Matrix4f MeganekkoActivity::DrawEyeView(const int eye, const float fovDegreesX,
 
 ovrFrameResult MeganekkoActivity::Frame( const ovrFrameInput & vrFrame )
 {
+    FRAME_STATS_SCOPE(FrameStats::FRAME);
+
     // process input events first because this mirrors the behavior when OnKeyEvent was
     // a virtual function on VrAppInterface and was called by VrAppFramework.
     for ( int i = 0; i < vrFrame.Input.NumKeyEvents; i++ )
@@ -135,7 +138,10 @@ ovrFrameResult MeganekkoActivity::Frame( const ovrFrameInput & vrFrame )
 
     Scene * scene = GetScene();
     JNIEnv * jni = app->GetJava()->Env;
-    jni->CallVoidMethod(app->GetJava()->ActivityObject, frameMethodId, (jlong)(intptr_t)&vrFrame);
+    {
+        FRAME_STATS_SCOPE(FrameStats::JAVA_UPDATE);
+        jni->CallVoidMethod(app->GetJava()->ActivityObject, frameMethodId, (jlong)(intptr_t)&vrFrame);
+    }
 
     const bool headsetIsMounted = vrFrame.DeviceStatus.HeadsetIsMounted;
     if (!HmdMounted && headsetIsMounted) {
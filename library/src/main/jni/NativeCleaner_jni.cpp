@@ -0,0 +1,45 @@
+/* 
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "HybridObject.h"
+
+namespace mgn {
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+// Pointers are copied in chunks so that no JNI array is pinned while destructors run
+static const int CHUNK_SIZE = 64;
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_NativeCleaner_nativeDeleteAll(JNIEnv * env, jclass clazz, jlongArray jnativePointers, jint count) {
+    jlong nativePointers[CHUNK_SIZE];
+
+    for (int first = 0; first < count; first += CHUNK_SIZE) {
+        const int chunk = Alg::Min(CHUNK_SIZE, count - first);
+        env->GetLongArrayRegion(jnativePointers, first, chunk, nativePointers);
+
+        for (int i = 0; i < chunk; ++i) {
+            delete reinterpret_cast<HybridObject*>(nativePointers[i]);
+        }
+    }
+}
+
+#ifdef __cplusplus 
+} // extern C
+#endif
+} // namespace mgn
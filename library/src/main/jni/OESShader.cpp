@@ -56,31 +56,117 @@ static const char FRAGMENT_SHADER[] =
         "  gl_FragColor = texel;\n"
         "}\n";
 
+static const char INSTANCED_VERTEX_SHADER[] =
+        "in vec4 Position;\n"
+        "in vec2 TexCoord;\n"
+        "in vec4 InstanceRow0;\n"
+        "in vec4 InstanceRow1;\n"
+        "in vec4 InstanceRow2;\n"
+        "in vec4 InstanceRow3;\n"
+        "in vec4 InstanceColor;\n"
+        "in vec4 InstanceUvRect;\n"
+        "uniform highp mat4 Vpm;\n"
+        "uniform highp mat4 Texm;\n"
+        "out highp vec2 oTexCoord;\n"
+        "out vec4 oColor;\n"
+        "void main() {\n"
+        "  oTexCoord = InstanceUvRect.xy + InstanceUvRect.zw * vec2(Texm * vec4(TexCoord, 0, 1));\n"
+        "  oColor = InstanceColor;\n"
+        "  vec4 world = vec4(dot(InstanceRow0, Position), dot(InstanceRow1, Position), dot(InstanceRow2, Position), dot(InstanceRow3, Position));\n"
+        "  gl_Position = Vpm * world;\n"
+        "}\n";
+
+static const char INSTANCED_FRAGMENT_SHADER[] =
+        "precision highp float;\n"
+        "uniform samplerExternalOES Texture0;\n"
+        "in highp vec2 oTexCoord;\n"
+        "in vec4 oColor;\n"
+        "void main() {\n"
+        "  vec4 texel = texture2D(Texture0, oTexCoord) * oColor;\n"
+        "  if (texel.a < 0.1)\n"
+        "    discard;\n"
+        "  gl_FragColor = texel;\n"
+        "}\n";
+
+static const char * INSTANCE_ATTRIBUTE_NAMES[] = {
+        "InstanceRow0", "InstanceRow1", "InstanceRow2", "InstanceRow3", "InstanceColor", "InstanceUvRect"
+};
+
 OESShader::OESShader() {
     program = BuildProgram(NULL, VERTEX_SHADER, ImageExternalDirectives, FRAGMENT_SHADER);
     opacity = glGetUniformLocation(program.Program, "Opacity");
+
+    // Locations of instance attributes are assigned by linker
+    instancedProgram = BuildProgram(NULL, INSTANCED_VERTEX_SHADER, ImageExternalDirectives, INSTANCED_FRAGMENT_SHADER);
+    instancedVp = glGetUniformLocation(instancedProgram.Program, "Vpm");
+    for (int i = 0; i < INSTANCE_ATTRIBUTE_COUNT; ++i) {
+        instanceAttributes[i] = glGetAttribLocation(instancedProgram.Program, INSTANCE_ATTRIBUTE_NAMES[i]);
+    }
 }
 
 OESShader::~OESShader() {
     DeleteProgram(program);
+    DeleteProgram(instancedProgram);
 }
 
-void OESShader::Render(const Matrix4f & mvpMatrix, const GlGeometry & geometry, const Material * material, const int eye) const {
+void OESShader::Render(GLStateCache & glState, const Matrix4f & mvpMatrix, const GlGeometry & geometry, const Material * material, const int eye) const {
 
     Vector4f color = material->GetColor();
 
-    GL(glUseProgram(program.Program));
+    glState.UseProgram(program.Program);
 
     GL(glUniformMatrix4fv(program.uMvp, 1, GL_TRUE, mvpMatrix.M[0]));
-    GL(glUniformMatrix4fv(program.uTexm, 1, GL_TRUE, TexmForVideo(material->GetStereoMode(), eye).M[ 0 ] ));
-    GL(glActiveTexture (GL_TEXTURE0));
-    GL(glBindTexture(GL_TEXTURE_EXTERNAL_OES, material->GetTextureId()));
+    const Matrix4f & texm = TexmForVideo(material->GetStereoMode(), eye);
+    if (material->HasUvRect()) {
+        const Matrix4f uvTexm = material->GetUvTransform() * texm;
+        GL(glUniformMatrix4fv(program.uTexm, 1, GL_TRUE, uvTexm.M[ 0 ] ));
+    } else {
+        GL(glUniformMatrix4fv(program.uTexm, 1, GL_TRUE, texm.M[ 0 ] ));
+    }
+    glState.ActiveTexture(GL_TEXTURE0);
+    glState.BindTexture(GL_TEXTURE_EXTERNAL_OES, material->GetTextureId());
     GL(glUniform4f(program.uColor, color.x, color.y, color.z, color.w));
     GL(glUniform1f(opacity, material->GetOpacity()));
 
     geometry.Draw();
+}
+
+void OESShader::RenderInstanced(GLStateCache & glState, const Matrix4f & vpMatrix, const GlGeometry & geometry, const Material * material,
+        GLuint instanceBuffer, int firstInstance, int count, const int eye) const {
+
+    glState.UseProgram(instancedProgram.Program);
+
+    GL(glUniformMatrix4fv(instancedVp, 1, GL_TRUE, vpMatrix.M[0]));
+    GL(glUniformMatrix4fv(instancedProgram.uTexm, 1, GL_TRUE, TexmForVideo(material->GetStereoMode(), eye).M[ 0 ] ));
+    glState.ActiveTexture(GL_TEXTURE0);
+    glState.BindTexture(GL_TEXTURE_EXTERNAL_OES, material->GetTextureId());
+
+    // Instance attributes are enabled only while drawing not to affect non-instanced draws sharing the vertex array
+    const GLsizei stride = INSTANCE_FLOATS * sizeof(float);
+    const size_t base = static_cast<size_t>(firstInstance) * stride;
+
+    GL(glBindVertexArray(geometry.vertexArrayObject));
+    GL(glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer));
+
+    for (int i = 0; i < INSTANCE_ATTRIBUTE_COUNT; ++i) {
+        const GLint location = instanceAttributes[i];
+        if (location < 0) continue;
+        GL(glEnableVertexAttribArray(location));
+        GL(glVertexAttribPointer(location, 4, GL_FLOAT, GL_FALSE, stride, reinterpret_cast<const void*>(base + i * 4 * sizeof(float))));
+        GL(glVertexAttribDivisor(location, 1));
+    }
+
+    GL(glDrawElementsInstanced(GL_TRIANGLES, geometry.indexCount, sizeof(TriangleIndex) == 2 ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT, nullptr, count));
+
+    for (int i = 0; i < INSTANCE_ATTRIBUTE_COUNT; ++i) {
+        const GLint location = instanceAttributes[i];
+        if (location < 0) continue;
+        GL(glVertexAttribDivisor(location, 0));
+        GL(glDisableVertexAttribArray(location));
+    }
 
-    GL(glBindTexture( GL_TEXTURE_EXTERNAL_OES, 0 ));
+    GL(glBindVertexArray(0));
+    GL(glBindBuffer(GL_ARRAY_BUFFER, 0));
 }
 
 const Matrix4f & OESShader::TexmForVideo(const Material::StereoMode stereoMode, const int eye ) const
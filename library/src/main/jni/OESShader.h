@@ -26,6 +26,7 @@
 
 #include "util/GL.h"
 #include "Material.h"
+#include "GLStateCache.h"
 
 using namespace OVR;
 
@@ -36,7 +37,15 @@ class RenderData;
 public:
     OESShader();
     ~OESShader();
-    void Render(const Matrix4f & mvpMatrix, const GlGeometry & geometry, const Material * material, const int eye) const;
+    void Render(GLStateCache & glState, const Matrix4f & mvpMatrix, const GlGeometry & geometry, const Material * material, const int eye) const;
+
+    // Draw count instances of geometry with one draw call. Per instance data is read from instanceBuffer
+    // starting at firstInstance. Texture, stereo mode and side are taken from material.
+    void RenderInstanced(GLStateCache & glState, const Matrix4f & vpMatrix, const GlGeometry & geometry, const Material * material,
+            GLuint instanceBuffer, int firstInstance, int count, const int eye) const;
+
+    // Per instance data: rows of model matrix, color multiplied by opacity and UV rect (offset xy, scale xy).
+    static const int INSTANCE_FLOATS = 24;
 
 private:
     OESShader(const OESShader& oesShader);
@@ -49,6 +58,11 @@ private:
     GlProgram program;
     GLuint opacity;
 
+    static const int INSTANCE_ATTRIBUTE_COUNT = INSTANCE_FLOATS / 4;
+    GlProgram instancedProgram;
+    GLint instancedVp;
+    GLint instanceAttributes[INSTANCE_ATTRIBUTE_COUNT];
+
     Matrix4f normalM = Matrix4f::Identity();
     Matrix4f topM = Matrix4f(
             1, 0, 0, 0,
@@ -45,7 +45,8 @@ public:
         offsetUnits(0.0f),
         depthTest(true),
         alphaBlend(true),
-        drawMode(GL_TRIANGLES) {
+        drawMode(GL_TRIANGLES),
+        cameraDistance(0.0f) {
     }
 
     ~RenderData() {
@@ -168,34 +169,5 @@ private:
     float cameraDistance;
 };
 
-inline bool compareRenderData(RenderData* i, RenderData* j) {
-    // if it is a transparent object, sort by camera distance.
-    if(i->GetRenderingOrder() == j->GetRenderingOrder() &&
-       i->GetRenderingOrder() >= RenderData::Transparent &&
-       i->GetRenderingOrder() < RenderData::Overlay) {
-        return i->GetCameraDistance() > j->GetCameraDistance();
-    }
-
-    return i->GetRenderingOrder() < j->GetRenderingOrder();
-}
-
-inline bool compareRenderDataWithFrustumCulling(RenderData* i, RenderData* j) {
-    // if either i or j is a transparent object or an overlay object
-    if (i->GetRenderingOrder() >= RenderData::Transparent
-            || j->GetRenderingOrder() >= RenderData::Transparent) {
-        if (i->GetRenderingOrder() == j->GetRenderingOrder()) {
-            // if both are either transparent or both are overlays
-            // place them in reverse camera order from back to front
-            return i->GetCameraDistance() < j->GetCameraDistance();
-        } else {
-            // if one of them is a transparent or an overlay draw by rendering order
-            return i->GetRenderingOrder() < j->GetRenderingOrder();
-        }
-    }
-
-    // if both are neither transparent nor overlays, place them in camera order front to back
-    return i->GetCameraDistance() > j->GetCameraDistance();
-}
-
 }
 #endif
@@ -16,8 +16,18 @@
 #include "includes.h"
 #include "RenderData.h"
 #include "Material.h"
+#include "SceneObject.h"
 
 namespace mgn {
+
+// Static batches are regrouped when render state of a member is changed
+static void OnRenderStateChanged(RenderData * renderData) {
+    SceneObject* owner = renderData->GetOwnerObject();
+    if (owner) {
+        owner->OnRenderStateChanged();
+    }
+}
+
 #ifdef __cplusplus
 extern "C" {
 #endif
@@ -32,6 +42,12 @@ Java_com_eje_1c_meganekko_RenderData_setMesh(JNIEnv * env, jobject obj, jlong jr
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
     render_data->SetMesh(mesh);
+
+    SceneObject* owner = render_data->GetOwnerObject();
+    if (owner) {
+        owner->InvalidateBounds();
+        owner->OnRenderStateChanged();
+    }
 }
 
 JNIEXPORT void JNICALL
@@ -39,6 +55,7 @@ Java_com_eje_1c_meganekko_RenderData_setMaterial(JNIEnv * env, jobject obj, jlon
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     Material* material = reinterpret_cast<Material*>(jmaterial);
     render_data->SetMaterial(material);
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jint JNICALL
@@ -51,6 +68,11 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setVisible(JNIEnv * env, jobject obj, jlong jrenderData, jboolean visible) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetVisible(visible);
+
+    SceneObject* owner = render_data->GetOwnerObject();
+    if (owner) {
+        owner->InvalidateStaticBatch();
+    }
 }
 
 JNIEXPORT jint JNICALL
@@ -63,6 +85,7 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setRenderingOrder( JNIEnv * env, jobject obj, jlong jrenderData, jint renderingOrder) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetRenderingOrder(renderingOrder);
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jboolean JNICALL
@@ -75,6 +98,7 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setOffset(JNIEnv * env, jobject obj, jlong jrenderData, jboolean offset) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetOffset(static_cast<bool>(offset));
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jfloat JNICALL
@@ -87,6 +111,7 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setOffsetFactor(JNIEnv * env, jobject obj, jlong jrenderData, jfloat offsetFactor) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetOffsetFactor(offsetFactor);
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jfloat JNICALL
@@ -99,6 +124,7 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setOffsetUnits(JNIEnv * env, jobject obj, jlong jrenderData, jfloat offsetUnits) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetOffsetUnits(offsetUnits);
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jboolean JNICALL
@@ -111,6 +137,7 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setDepthTest(JNIEnv * env, jobject obj, jlong jrenderData, jboolean depthTest) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetDepthTest(static_cast<bool>(depthTest));
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jboolean JNICALL
@@ -123,12 +150,14 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setAlphaBlend(JNIEnv * env, jobject obj, jlong jrenderData, jboolean alpha_blend) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetAlphaBlend(static_cast<bool>(alpha_blend));
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_RenderData_setDrawMode(JNIEnv * env, jobject obj, jlong jrenderData, jint draw_mode) {
     RenderData* render_data = reinterpret_cast<RenderData*>(jrenderData);
     render_data->SetDrawMode(draw_mode);
+    OnRenderStateChanged(render_data);
 }
 
 JNIEXPORT jint JNICALL
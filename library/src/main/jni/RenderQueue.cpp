@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Persistent render queue bucketed by rendering order.
+ ***************************************************************************/
+
+#include "includes.h"
+#include "RenderQueue.h"
+
+#include "Mesh.h"
+#include "RenderData.h"
+#include "SceneObject.h"
+#include "StaticBatch.h"
+
+namespace mgn {
+
+static inline const void * GeometryIdOf(const RenderQueueItem & item) {
+    const Mesh * mesh = item.renderData->GetMesh();
+    return mesh != nullptr ? mesh->GetGeometryId() : nullptr;
+}
+
+// In same rendering order, same geometry and material are put together so that they can be drawn as instances.
+static inline bool CompareRenderingOrder(const RenderQueueItem & i, const RenderQueueItem & j) {
+    if (i.renderingOrder != j.renderingOrder) {
+        return i.renderingOrder < j.renderingOrder;
+    }
+    if (GeometryIdOf(i) != GeometryIdOf(j)) {
+        return GeometryIdOf(i) < GeometryIdOf(j);
+    }
+    return i.renderData->GetMaterial() < j.renderData->GetMaterial();
+}
+
+// Smaller rendering order first. In same rendering order, farther object first.
+static inline bool CompareBackToFront(const RenderQueueItem & i, const RenderQueueItem & j) {
+    if (i.renderingOrder != j.renderingOrder) {
+        return i.renderingOrder < j.renderingOrder;
+    }
+    return i.renderData->GetCameraDistance() > j.renderData->GetCameraDistance();
+}
+
+RenderQueue::~RenderQueue() {
+    if (instanceBuffer != 0) {
+        glDeleteBuffers(1, &instanceBuffer);
+    }
+}
+
+void RenderQueue::UploadInstanceData() {
+    if (instanceData.GetSize() == 0) return;
+
+    if (instanceBuffer == 0) {
+        glGenBuffers(1, &instanceBuffer);
+    }
+
+    // Orphan previous storage so that driver doesn't wait for draws of previous frame
+    glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+    glBufferData(GL_ARRAY_BUFFER, instanceData.GetSize() * sizeof(float), instanceData.GetDataPtr(), GL_STREAM_DRAW);
+    glBindBuffer(GL_ARRAY_BUFFER, 0);
+}
+
+int RenderQueue::BucketFor(int renderingOrder) {
+    if (renderingOrder < RenderData::Geometry) return BACKGROUND_BUCKET;
+    if (renderingOrder < RenderData::Transparent) return GEOMETRY_BUCKET;
+    if (renderingOrder < RenderData::Overlay) return TRANSPARENT_BUCKET;
+    return OVERLAY_BUCKET;
+}
+
+bool RenderQueue::NeedsRebuild() const {
+    if (dirty) return true;
+
+    for (int b = 0; b < BUCKET_COUNT; ++b) {
+        const Array<RenderQueueItem> & bucket = buckets[b];
+        for (int i = 0; i < bucket.GetSize(); ++i) {
+            if (bucket[i].renderingOrder != bucket[i].renderData->GetRenderingOrder()) {
+                return true;
+            }
+        }
+    }
+
+    return false;
+}
+
+void RenderQueue::Push(RenderData * renderData, StaticBatch * batch) {
+    RenderQueueItem item;
+    item.renderData = renderData;
+    item.batch = batch;
+    item.renderingOrder = renderData->GetRenderingOrder();
+    item.culled = false;
+    item.instanceCount = 0;
+    item.firstInstance = 0;
+    buckets[BucketFor(item.renderingOrder)].PushBack(item);
+}
+
+void RenderQueue::Rebuild(const Array<SceneObject*> & sceneObjects, const Array<StaticBatch*> & staticBatches) {
+    for (int b = 0; b < BUCKET_COUNT; ++b) {
+        buckets[b].Clear();
+    }
+
+    for (auto it = sceneObjects.Begin(); it != sceneObjects.End(); ++it) {
+        RenderData * renderData = (*it)->GetRenderData();
+        if (renderData == nullptr || (*it)->GetStaticBatch() != nullptr) continue;
+        Push(renderData, nullptr);
+    }
+
+    for (auto it = staticBatches.Begin(); it != staticBatches.End(); ++it) {
+        Push((*it)->GetRenderData(), *it);
+    }
+
+    // Opaque buckets are sorted only here
+    Alg::QuickSort(buckets[BACKGROUND_BUCKET], CompareRenderingOrder);
+    Alg::QuickSort(buckets[GEOMETRY_BUCKET], CompareRenderingOrder);
+    Alg::QuickSort(buckets[OVERLAY_BUCKET], CompareRenderingOrder);
+
+    dirty = false;
+}
+
+void RenderQueue::SortTransparent() {
+    Array<RenderQueueItem> & bucket = buckets[TRANSPARENT_BUCKET];
+
+    for (int i = 1; i < bucket.GetSize(); ++i) {
+        const RenderQueueItem item = bucket[i];
+        int j = i - 1;
+        while (j >= 0 && CompareBackToFront(item, bucket[j])) {
+            bucket[j + 1] = bucket[j];
+            --j;
+        }
+        bucket[j + 1] = item;
+    }
+}
+
+}
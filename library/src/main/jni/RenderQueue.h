@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Persistent render queue bucketed by rendering order.
+ ***************************************************************************/
+
+#ifndef RENDER_QUEUE_H_
+#define RENDER_QUEUE_H_
+
+#include "util/GL.h"
+
+using namespace OVR;
+
+namespace mgn {
+class RenderData;
+class SceneObject;
+class StaticBatch;
+
+struct RenderQueueItem {
+    RenderData *  renderData;
+    StaticBatch * batch;          // nullptr if renderData is drawn by itself
+    int           renderingOrder; // cached to detect changes
+    bool          culled;
+    int           instanceCount;  // >0 if this item draws following items as instances, -1 if drawn as instance
+    int           firstInstance;  // offset in instance buffer
+};
+
+class RenderQueue {
+public:
+    enum Bucket {
+        BACKGROUND_BUCKET = 0, GEOMETRY_BUCKET, TRANSPARENT_BUCKET, OVERLAY_BUCKET, BUCKET_COUNT
+    };
+
+    RenderQueue() : dirty(true), instanceBuffer(0) {
+    }
+
+    ~RenderQueue();
+
+    // Call when set of renderable objects is changed.
+    void Invalidate() {
+        dirty = true;
+    }
+
+    // Returns true if the queue must be rebuilt before use.
+    bool NeedsRebuild() const;
+
+    // Distribute render data into buckets and sort them.
+    // Objects in static batches are replaced by their batches.
+    void Rebuild(const Array<SceneObject*> & sceneObjects, const Array<StaticBatch*> & staticBatches);
+
+    // Sort transparent bucket back to front by camera distance.
+    // Insertion sort is used because the order is almost same as the previous frame.
+    void SortTransparent();
+
+    Array<RenderQueueItem> & GetBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    const Array<RenderQueueItem> & GetBucket(int bucket) const {
+        return buckets[bucket];
+    }
+
+    // Per instance data of this frame. Filled by Renderer.
+    Array<float> & GetInstanceData() {
+        return instanceData;
+    }
+
+    // Copy instance data to GPU. Called once per frame on GL thread.
+    void UploadInstanceData();
+
+    GLuint GetInstanceBuffer() const {
+        return instanceBuffer;
+    }
+
+private:
+    RenderQueue(const RenderQueue& renderQueue);
+    RenderQueue(RenderQueue&& renderQueue);
+    RenderQueue& operator=(const RenderQueue& renderQueue);
+    RenderQueue& operator=(RenderQueue&& renderQueue);
+
+    static int BucketFor(int renderingOrder);
+    void Push(RenderData * renderData, StaticBatch * batch);
+
+private:
+    Array<RenderQueueItem> buckets[BUCKET_COUNT];
+    bool dirty;
+
+    Array<float> instanceData;
+    GLuint instanceBuffer;
+};
+
+}
+#endif
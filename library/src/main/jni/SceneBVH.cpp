@@ -0,0 +1,404 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Bounding volume hierarchy of renderable objects for ray casting.
+ ***************************************************************************/
+
+#include "includes.h"
+#include "SceneBVH.h"
+
+#include "RenderData.h"
+#include "SceneObject.h"
+
+namespace mgn {
+
+static inline void SetEmpty(BoundingBoxInfo & box) {
+    box.mins = Vector3f(FLT_MAX, FLT_MAX, FLT_MAX);
+    box.maxs = Vector3f(-FLT_MAX, -FLT_MAX, -FLT_MAX);
+}
+
+static inline void Merge(BoundingBoxInfo & box, const BoundingBoxInfo & other) {
+    box.mins = Vector3f::Min(box.mins, other.mins);
+    box.maxs = Vector3f::Max(box.maxs, other.maxs);
+}
+
+// Slab test. Empty box never hits.
+static inline bool HitsBox(const Vector3f & origin, const Vector3f & invDirection, const BoundingBoxInfo & box) {
+    float tNear = 0.0f;
+    float tFar = FLT_MAX;
+
+    for (int i = 0; i < 3; ++i) {
+        float t0 = (box.mins[i] - origin[i]) * invDirection[i];
+        float t1 = (box.maxs[i] - origin[i]) * invDirection[i];
+        if (t0 > t1) {
+            const float t = t0;
+            t0 = t1;
+            t1 = t;
+        }
+        if (t0 > tNear) tNear = t0;
+        if (t1 < tFar) tFar = t1;
+        if (tNear > tFar) return false;
+    }
+
+    return true;
+}
+
+enum {
+    OUTSIDE, INTERSECTING, INSIDE
+};
+
+// Test nearest and farthest corners along each plane normal.
+static inline int Classify(float frustum[6][4], const BoundingBoxInfo & box) {
+    int result = INSIDE;
+
+    for (int p = 0; p < 6; ++p) {
+        const float * plane = frustum[p];
+        const bool px = plane[0] > 0;
+        const bool py = plane[1] > 0;
+        const bool pz = plane[2] > 0;
+
+        const float far = plane[0] * (px ? box.maxs.x : box.mins.x)
+                + plane[1] * (py ? box.maxs.y : box.mins.y)
+                + plane[2] * (pz ? box.maxs.z : box.mins.z) + plane[3];
+        if (far <= 0) {
+            return OUTSIDE;
+        }
+
+        const float near = plane[0] * (px ? box.mins.x : box.maxs.x)
+                + plane[1] * (py ? box.mins.y : box.maxs.y)
+                + plane[2] * (pz ? box.mins.z : box.maxs.z) + plane[3];
+        if (near <= 0) {
+            result = INTERSECTING;
+        }
+    }
+
+    return result;
+}
+
+static inline bool CompareDistance(const RaycastHit & a, const RaycastHit & b) {
+    return a.distance < b.distance;
+}
+
+void SceneBVH::ComputeBounds(SceneObject * object, BoundingBoxInfo & bounds) {
+    RenderData * renderData = object->GetRenderData();
+    Mesh * mesh = renderData != nullptr ? renderData->GetMesh() : nullptr;
+    if (mesh == nullptr) {
+        SetEmpty(bounds);
+        return;
+    }
+
+    // Graphics Gems - Transforming Axis-Aligned Bounding Boxes
+    const Matrix4f & m = object->GetMatrixWorld();
+    const BoundingBoxInfo & local = mesh->GetBoundingBoxInfo();
+    for (int i = 0; i < 3; ++i) {
+        bounds.mins[i] = bounds.maxs[i] = m.M[i][3];
+        for (int j = 0; j < 3; ++j) {
+            const float a = m.M[i][j] * local.mins[j];
+            const float b = m.M[i][j] * local.maxs[j];
+            bounds.mins[i] += a < b ? a : b;
+            bounds.maxs[i] += a < b ? b : a;
+        }
+    }
+}
+
+void SceneBVH::InvalidateBounds(int primitive) {
+    if (needsRebuild || primitive >= dirtyFlags.GetSizeI() || dirtyFlags[primitive]) {
+        return;
+    }
+
+    dirtyFlags[primitive] = true;
+    dirtyPrimitives.PushBack(primitive);
+}
+
+void SceneBVH::Rebuild(const Array<SceneObject*> & objects) {
+    const int count = objects.GetSizeI();
+
+    primitives.Resize(count);
+    primitiveBounds.Resize(count);
+    dirtyFlags.Resize(count);
+    dirtyPrimitives.Clear();
+    boundsVersions.Resize(count);
+    dynamicFlags.Resize(count);
+    dynamicPrimitives.Clear();
+
+    for (int i = 0; i < count; ++i) {
+        primitives[i] = i;
+        dirtyFlags[i] = false;
+        dynamicFlags[i] = false;
+        ComputeBounds(objects[i], primitiveBounds[i]);
+        TrackDynamicMesh(objects[i], i);
+    }
+
+    nodes.Clear();
+    if (count > 0) {
+        Build(0, count);
+    }
+
+    needsRebuild = false;
+}
+
+int SceneBVH::Build(int first, int count) {
+    const int index = nodes.GetSizeI();
+    nodes.PushBack(Node());
+
+    BoundingBoxInfo bounds;
+    BoundingBoxInfo centers;
+    SetEmpty(bounds);
+    SetEmpty(centers);
+    for (int i = first; i < first + count; ++i) {
+        const BoundingBoxInfo & box = primitiveBounds[primitives[i]];
+        Merge(bounds, box);
+        const Vector3f center = (box.mins + box.maxs) * 0.5f;
+        centers.mins = Vector3f::Min(centers.mins, center);
+        centers.maxs = Vector3f::Max(centers.maxs, center);
+    }
+
+    if (count <= MAX_LEAF_SIZE) {
+        Node & node = nodes[index];
+        node.bounds = bounds;
+        node.left = node.right = -1;
+        node.first = first;
+        node.count = count;
+        return index;
+    }
+
+    // Split at middle of longest axis of centers
+    const Vector3f extent = centers.maxs - centers.mins;
+    const int axis = extent.x > extent.y ? (extent.x > extent.z ? 0 : 2) : (extent.y > extent.z ? 1 : 2);
+    const float middle = (centers.mins[axis] + centers.maxs[axis]) * 0.5f;
+
+    int split = first;
+    for (int i = first; i < first + count; ++i) {
+        const BoundingBoxInfo & box = primitiveBounds[primitives[i]];
+        if ((box.mins[axis] + box.maxs[axis]) * 0.5f < middle) {
+            const int tmp = primitives[i];
+            primitives[i] = primitives[split];
+            primitives[split] = tmp;
+            ++split;
+        }
+    }
+
+    // All centers are same. Split by count.
+    if (split == first || split == first + count) {
+        split = first + count / 2;
+    }
+
+    const int left = Build(first, split - first);
+    const int right = Build(split, first + count - split);
+
+    Node & node = nodes[index];
+    node.bounds = bounds;
+    node.left = left;
+    node.right = right;
+    node.first = first;
+    node.count = count;
+    return index;
+}
+
+void SceneBVH::Refit(const Array<SceneObject*> & objects) {
+    if (dirtyPrimitives.IsEmpty()) {
+        return;
+    }
+
+    for (int i = 0; i < dirtyPrimitives.GetSizeI(); ++i) {
+        const int primitive = dirtyPrimitives[i];
+        ComputeBounds(objects[primitive], primitiveBounds[primitive]);
+        TrackDynamicMesh(objects[primitive], primitive);
+        dirtyFlags[primitive] = false;
+    }
+    dirtyPrimitives.Clear();
+
+    RefitNodes();
+}
+
+void SceneBVH::TrackDynamicMesh(SceneObject * object, int primitive) {
+    RenderData * renderData = object->GetRenderData();
+    Mesh * mesh = renderData != nullptr ? renderData->GetMesh() : nullptr;
+    if (mesh == nullptr || mesh->GetDynamicGeometry() == nullptr) {
+        return;
+    }
+
+    boundsVersions[primitive] = mesh->GetBoundsVersion();
+    if (!dynamicFlags[primitive]) {
+        dynamicFlags[primitive] = true;
+        dynamicPrimitives.PushBack(primitive);
+    }
+}
+
+void SceneBVH::CheckDynamicMeshes(const Array<SceneObject*> & objects) {
+    for (int i = dynamicPrimitives.GetSizeI() - 1; i >= 0; --i) {
+        const int primitive = dynamicPrimitives[i];
+        RenderData * renderData = objects[primitive]->GetRenderData();
+        Mesh * mesh = renderData != nullptr ? renderData->GetMesh() : nullptr;
+
+        if (mesh == nullptr || mesh->GetDynamicGeometry() == nullptr) {
+            // Mesh was replaced with static one
+            dynamicFlags[primitive] = false;
+            dynamicPrimitives.RemoveAt(i);
+        } else if (mesh->GetBoundsVersion() != boundsVersions[primitive]) {
+            InvalidateBounds(primitive);
+        }
+    }
+}
+
+void SceneBVH::RefitNodes() {
+    // Children always come after parent
+    for (int i = nodes.GetSizeI() - 1; i >= 0; --i) {
+        Node & node = nodes[i];
+        if (node.right < 0) {
+            SetEmpty(node.bounds);
+            for (int p = node.first; p < node.first + node.count; ++p) {
+                Merge(node.bounds, primitiveBounds[primitives[p]]);
+            }
+        } else {
+            node.bounds = nodes[node.left].bounds;
+            Merge(node.bounds, nodes[node.right].bounds);
+        }
+    }
+}
+
+void SceneBVH::Update(const Array<SceneObject*> & objects) {
+    if (needsRebuild || primitives.GetSizeI() != objects.GetSizeI()) {
+        Rebuild(objects);
+    } else {
+        CheckDynamicMeshes(objects);
+        Refit(objects);
+    }
+}
+
+void SceneBVH::Cull(const Array<SceneObject*> & objects, float frustum[6][4], Array<bool> & inFrustum, CullingStats & stats) {
+    const double start = vrapi_GetTimeInSeconds();
+
+    Update(objects);
+
+    stats.tested = 0;
+    stats.culled = 0;
+    stats.accepted = 0;
+    inFrustum.Resize(objects.GetSizeI());
+
+    if (!nodes.IsEmpty()) {
+        int stack[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        while (stackSize > 0) {
+            const Node & node = nodes[stack[--stackSize]];
+
+            ++stats.tested;
+            const int result = Classify(frustum, node.bounds);
+
+            if (result != INTERSECTING) {
+                // Whole subtree is decided by one test
+                const bool inside = result == INSIDE;
+                for (int p = node.first; p < node.first + node.count; ++p) {
+                    inFrustum[primitives[p]] = inside;
+                }
+                if (inside) {
+                    stats.accepted += node.count;
+                } else {
+                    stats.culled += node.count;
+                }
+                continue;
+            }
+
+            if (node.right >= 0 && stackSize + 2 <= 64) {
+                stack[stackSize++] = node.right;
+                stack[stackSize++] = node.left;
+                continue;
+            }
+
+            for (int p = node.first; p < node.first + node.count; ++p) {
+                ++stats.tested;
+                const bool inside = Classify(frustum, primitiveBounds[primitives[p]]) != OUTSIDE;
+                inFrustum[primitives[p]] = inside;
+                if (inside) {
+                    ++stats.accepted;
+                } else {
+                    ++stats.culled;
+                }
+            }
+        }
+    }
+
+    stats.time = vrapi_GetTimeInSeconds() - start;
+}
+
+void SceneBVH::Raycast(const Array<SceneObject*> & objects, const Vector3f & origin, const Vector3f & direction,
+        int maxHits, Array<RaycastHit> & hits) {
+
+    hits.Clear();
+
+    Update(objects);
+
+    if (nodes.IsEmpty() || maxHits <= 0) {
+        return;
+    }
+
+    const Vector3f invDirection(1.0f / direction.x, 1.0f / direction.y, 1.0f / direction.z);
+
+    int stack[64];
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+
+    while (stackSize > 0) {
+        const Node & node = nodes[stack[--stackSize]];
+
+        if (!HitsBox(origin, invDirection, node.bounds)) {
+            continue;
+        }
+
+        if (node.right >= 0 && stackSize + 2 <= 64) {
+            stack[stackSize++] = node.right;
+            stack[stackSize++] = node.left;
+            continue;
+        }
+
+        // Exact test in model space like Scene::IntersectRayBounds
+        for (int p = node.first; p < node.first + node.count; ++p) {
+            SceneObject * object = objects[primitives[p]];
+            RenderData * renderData = object->GetRenderData();
+            if (renderData == nullptr || renderData->GetMesh() == nullptr || !renderData->IsVisible()) {
+                continue;
+            }
+
+            const Matrix4f & modelToWorldM = object->GetMatrixWorld();
+            const Matrix4f worldToModelM = modelToWorldM.Inverted();
+            const Vector3f rayStart = worldToModelM.Transform(origin);
+            const Vector3f rayDir = worldToModelM.Transform(origin + direction) - rayStart;
+            const BoundingBoxInfo & box = renderData->GetMesh()->GetBoundingBoxInfo();
+
+            float t0 = 0.0f;
+            float t1 = 0.0f;
+            if (!Intersect_RayBounds(rayStart, rayDir, box.mins, box.maxs, t0, t1) || t0 <= 0) {
+                continue;
+            }
+
+            RaycastHit hit;
+            hit.object = object;
+            hit.point = modelToWorldM.Transform(rayStart + t0 * rayDir);
+            hit.distance = (hit.point - origin).Length();
+            hits.PushBack(hit);
+        }
+    }
+
+    Alg::QuickSort(hits, CompareDistance);
+    if (hits.GetSizeI() > maxHits) {
+        hits.Resize(maxHits);
+    }
+}
+
+}
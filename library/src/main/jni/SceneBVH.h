@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Bounding volume hierarchy of renderable objects for ray casting.
+ ***************************************************************************/
+
+#ifndef SCENE_BVH_H_
+#define SCENE_BVH_H_
+
+#include "Mesh.h"
+
+using namespace OVR;
+
+namespace mgn {
+class SceneObject;
+
+struct CullingStats {
+    int    tested;   // number of box-frustum tests
+    int    culled;   // number of objects outside of frustum
+    int    accepted; // number of objects inside of frustum
+    double time;     // in seconds
+};
+
+struct RaycastHit {
+    SceneObject * object;
+    float         distance;
+    Vector3f      point; // in world
+};
+
+class SceneBVH {
+public:
+    SceneBVH() : needsRebuild(true) {
+    }
+
+    // Call when set of renderable objects is changed.
+    void Invalidate() {
+        needsRebuild = true;
+    }
+
+    // Call when world bounds of a renderable object may be changed.
+    void InvalidateBounds(int primitive);
+
+    // Bring hierarchy up to date with objects. Called from Raycast and Cull.
+    void Update(const Array<SceneObject*> & objects);
+
+    // Mark whether each object is in frustum. inFrustum is indexed same as objects.
+    // Subtrees which are entirely inside or outside of frustum are not traversed.
+    void Cull(const Array<SceneObject*> & objects, float frustum[6][4], Array<bool> & inFrustum, CullingStats & stats);
+
+    // Find objects hit by ray. Hits are sorted from near to far and at most maxHits are returned.
+    // Only visible objects with mesh are tested. Hierarchy is updated like Cull and world matrices
+    // of objects are computed, so this must be called on GL thread.
+    void Raycast(const Array<SceneObject*> & objects, const Vector3f & origin, const Vector3f & direction,
+            int maxHits, Array<RaycastHit> & hits);
+
+private:
+    SceneBVH(const SceneBVH& sceneBVH);
+    SceneBVH(SceneBVH&& sceneBVH);
+    SceneBVH& operator=(const SceneBVH& sceneBVH);
+    SceneBVH& operator=(SceneBVH&& sceneBVH);
+
+    struct Node {
+        BoundingBoxInfo bounds;
+        int left;  // index of children. right is -1 for leaf
+        int right;
+        int first; // range in primitives for leaf
+        int count;
+    };
+
+    void Rebuild(const Array<SceneObject*> & objects);
+    int Build(int first, int count);
+    void Refit(const Array<SceneObject*> & objects);
+    void RefitNodes();
+
+    static void ComputeBounds(SceneObject * object, BoundingBoxInfo & bounds);
+
+    // Remember bounds version of primitive if its mesh is dynamic. Called after computing its bounds.
+    void TrackDynamicMesh(SceneObject * object, int primitive);
+
+    // Invalidate bounds of primitives whose dynamic mesh has changed bounds.
+    void CheckDynamicMeshes(const Array<SceneObject*> & objects);
+
+private:
+    static const int MAX_LEAF_SIZE = 4;
+
+    Array<Node> nodes;                    // parent always precedes its children
+    Array<int> primitives;                // indices to objects ordered by leaves
+    Array<BoundingBoxInfo> primitiveBounds;
+    Array<int> dirtyPrimitives;
+    Array<bool> dirtyFlags;
+    Array<int> dynamicPrimitives;          // primitives with dynamic mesh
+    Array<unsigned int> boundsVersions;    // mesh bounds version when primitive bounds were computed
+    Array<bool> dynamicFlags;
+    bool needsRebuild;
+};
+
+}
+#endif
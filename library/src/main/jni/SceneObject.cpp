@@ -22,6 +22,8 @@
 
 #include "RenderData.h"
 #include "Mesh.h"
+#include "Scene.h"
+#include "StaticBatch.h"
 
 namespace mgn {
     SceneObject::SceneObject() : HybridObject(),
@@ -31,6 +33,10 @@ namespace mgn {
         renderData(nullptr),
         parent(nullptr),
         children(),
+        scene(nullptr),
+        renderableIndex(-1),
+        staticBatching(false),
+        staticBatch(nullptr),
         visible(true),
         inFrustum(false),
         queryCurrentlyIssued(false),
@@ -60,12 +66,20 @@ void SceneObject::AttachRenderData(SceneObject* self, RenderData* renderData) {
 
     this->renderData = renderData;
     renderData->SetOwnerObject(self);
+
+    if (scene && renderableIndex < 0) {
+        scene->AddRenderable(this);
+    }
 }
 
 void SceneObject::DetachRenderData() {
     if (renderData) {
         renderData->RemoveOwnerObject();
         renderData = nullptr;
+
+        if (scene && renderableIndex >= 0) {
+            scene->RemoveRenderable(this);
+        }
     }
 }
 
@@ -79,10 +93,46 @@ void SceneObject::AddChildObject(SceneObject* self, SceneObject* child) {
     }
     children.PushBack(child);
     child->parent = self;
+    child->Invalidate(false);
+    child->SetScene(scene);
 }
 
 void SceneObject::RemoveChildAt(int index) {
+    SceneObject* child = children[index];
     children.RemoveAt(index);
+
+    // Child may have been re-parented without being removed from here
+    if (child->parent == this) {
+        child->parent = nullptr;
+        child->Invalidate(false);
+        child->SetScene(nullptr);
+    }
+}
+
+void SceneObject::SetScene(Scene* scene) {
+    if (this->scene == scene) {
+        return;
+    }
+
+    if (this->scene) {
+        this->scene->CountTouchedNode();
+        if (renderableIndex >= 0) {
+            this->scene->RemoveRenderable(this);
+        }
+    }
+
+    this->scene = scene;
+
+    if (scene) {
+        scene->CountTouchedNode();
+        if (renderData) {
+            scene->AddRenderable(this);
+        }
+    }
+
+    for (auto it = children.Begin(); it != children.End(); ++it) {
+        (*it)->SetScene(scene);
+    }
 }
 
 int SceneObject::GetChildrenCount() const {
@@ -159,6 +209,13 @@ void SceneObject::SetRotation(const Quatf& rotation) {
     Invalidate(true);
 }
 
+void SceneObject::SetTransform(const Vector3f& position, const Quatf& rotation, const Vector3f& scale) {
+    this->position = position;
+    this->rotation = rotation;
+    this->scale = scale;
+    Invalidate(true);
+}
+
 const Matrix4f & SceneObject::GetMatrixWorld() {
     
     if (matrixWorldNeedsUpdate) {
@@ -220,13 +277,15 @@ void SceneObject::SetMatrixLocal(const Matrix4f & matrix) {
 void SceneObject::Invalidate(bool rotationUpdated) {
 
     if (!matrixWorldNeedsUpdate) {
-        Array<SceneObject*> objects = GetChildren();
+        const Array<SceneObject*> & objects = GetChildren();
         for (auto it = objects.Begin(); it != objects.End(); ++it) {
             (*it)->Invalidate(false);
         }
     }
 
     matrixWorldNeedsUpdate = true;
+    InvalidateBounds();
+    InvalidateStaticBatch();
 
     if (rotationUpdated) {
         // scale rotation if needed to avoid overflow
@@ -242,4 +301,31 @@ void SceneObject::Invalidate(bool rotationUpdated) {
     }
 }
 
+void SceneObject::InvalidateBounds() {
+    if (scene && renderableIndex >= 0) {
+        scene->InvalidateBounds(this);
+    }
+}
+
+void SceneObject::SetStaticBatching(bool staticBatching) {
+    if (this->staticBatching == staticBatching) return;
+
+    this->staticBatching = staticBatching;
+    if (scene && renderableIndex >= 0) {
+        scene->InvalidateStaticBatches();
+    }
+}
+
+void SceneObject::InvalidateStaticBatch() {
+    if (staticBatch) {
+        staticBatch->Invalidate();
+    }
+}
+
+void SceneObject::OnRenderStateChanged() {
+    if (staticBatching && scene && renderableIndex >= 0) {
+        scene->InvalidateStaticBatches();
+    }
+}
+
 }
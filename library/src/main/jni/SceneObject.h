@@ -29,6 +29,8 @@ using namespace OVR;
 namespace mgn {
 class Camera;
 class RenderData;
+class Scene;
+class StaticBatch;
 
 class SceneObject: public HybridObject {
 public:
@@ -69,6 +71,10 @@ public:
         return parent;
     }
 
+    Scene* GetScene() const {
+        return scene;
+    }
+
     const Array<SceneObject*>& GetChildren() const {
         return children;
     }
@@ -101,6 +107,10 @@ public:
         return lodMaxRange;
     }
 
+    bool UsesLOD() const {
+        return usingLod;
+    }
+
     bool InLODRange(float distance_from_camera) {
         if(!usingLod) {
             return true;
@@ -141,6 +151,9 @@ public:
     void SetScale(const Vector3f& scale);
     
     void SetRotation(const Quatf& rotation);
+
+    // Set position, rotation and scale at once. Subtree is invalidated only once.
+    void SetTransform(const Vector3f& position, const Quatf& rotation, const Vector3f& scale);
     
     const Matrix4f & GetMatrixWorld();
 
@@ -152,7 +165,40 @@ public:
     
     void Invalidate(bool rotationUpdated);
 
+    // Index in renderable list of scene. -1 if not listed.
+    int GetRenderableIndex() const {
+        return renderableIndex;
+    }
+
+    // Notify scene that bounds of this object in world may be changed.
+    void InvalidateBounds();
+
+    // Merge this object with other static objects which share same material.
+    void SetStaticBatching(bool staticBatching);
+
+    bool IsStaticBatching() const {
+        return staticBatching;
+    }
+
+    // Batch containing this object. nullptr if this object is drawn by itself.
+    StaticBatch * GetStaticBatch() const {
+        return staticBatch;
+    }
+
+    // Called by StaticBatch.
+    void SetStaticBatch(StaticBatch * staticBatch) {
+        this->staticBatch = staticBatch;
+    }
+
+    // Rebuild geometry of batch containing this object. Call when visibility is changed.
+    void InvalidateStaticBatch();
+
+    // Notify scene that material, mesh or render state is changed.
+    void OnRenderStateChanged();
+
 private:
+    friend class Scene;
+
     SceneObject(const SceneObject& scene_object);
     SceneObject(SceneObject&& scene_object);
     SceneObject& operator=(const SceneObject& scene_object);
@@ -162,6 +208,7 @@ private:
 
     void UpdateMatrixWorld();
     void UpdateMatrixLocal();
+    void SetScene(Scene* scene);
 
     Vector3f position;
     Vector3f scale;
@@ -174,6 +221,13 @@ private:
     SceneObject *             parent;
     Array<SceneObject*> children;
 
+    // Scene which this object belongs to and index in its renderable list (-1 if not listed)
+    Scene *                   scene;
+    int                       renderableIndex;
+
+    bool                      staticBatching;
+    StaticBatch *             staticBatch;
+
     float lodMinRange;
     float lodMaxRange;
     bool  usingLod;
@@ -64,6 +64,7 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_SceneObject_setLODRange(JNIEnv * env, jobject obj, jlong jsceneObject, jfloat minRange, jfloat maxRange) {
     SceneObject* sceneObject = reinterpret_cast<SceneObject*>(jsceneObject);
     sceneObject->SetLODRange(minRange, maxRange);
+    sceneObject->OnRenderStateChanged(); // LOD objects are not batched
 }
 
 JNIEXPORT jfloat JNICALL
@@ -147,6 +148,18 @@ Java_com_eje_1c_meganekko_SceneObject_getMatrix(JNIEnv * env, jobject obj, jlong
     FillElementsUnSafe(env, values, m);
 }
 
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_SceneObject_setStaticBatching(JNIEnv * env, jobject obj, jlong jsceneObject, jboolean staticBatching) {
+    SceneObject* sceneObject = reinterpret_cast<SceneObject*>(jsceneObject);
+    sceneObject->SetStaticBatching(staticBatching);
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_eje_1c_meganekko_SceneObject_isStaticBatching(JNIEnv * env, jobject obj, jlong jsceneObject) {
+    SceneObject* sceneObject = reinterpret_cast<SceneObject*>(jsceneObject);
+    return sceneObject->IsStaticBatching();
+}
+
 #ifdef __cplusplus 
 } // extern C
 #endif
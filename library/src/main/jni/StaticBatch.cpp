@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Merges static objects sharing same material into one geometry.
+ ***************************************************************************/
+
+#include "includes.h"
+#include "StaticBatch.h"
+
+#include "SceneObject.h"
+
+namespace mgn {
+
+StaticBatch::StaticBatch(const RenderData * source) :
+        vertexCount(0),
+        drawnMemberCount(0),
+        dirty(true) {
+    renderData.SetMesh(&mesh);
+    renderData.SetMaterial(source->GetMaterial());
+    renderData.SetRenderingOrder(source->GetRenderingOrder());
+    renderData.SetOffset(source->GetOffset());
+    renderData.SetOffsetFactor(source->GetOffsetFactor());
+    renderData.SetOffsetUnits(source->GetOffsetUnits());
+    renderData.SetDepthTest(source->GetDepthTest());
+    renderData.SetAlphaBlend(source->GetAlphaBlend());
+    renderData.SetDrawMode(source->GetDrawMode());
+}
+
+StaticBatch::~StaticBatch() {
+}
+
+void StaticBatch::Release() {
+    for (auto it = members.Begin(); it != members.End(); ++it) {
+        (*it)->SetStaticBatch(nullptr);
+    }
+    members.Clear();
+}
+
+bool StaticBatch::Accepts(const RenderData * other) const {
+    // Side and stereo mode are properties of material, so same material means same texture transform and culling
+    return other->GetMaterial() == renderData.GetMaterial()
+            && other->GetRenderingOrder() == renderData.GetRenderingOrder()
+            && other->GetOffset() == renderData.GetOffset()
+            && other->GetOffsetFactor() == renderData.GetOffsetFactor()
+            && other->GetOffsetUnits() == renderData.GetOffsetUnits()
+            && other->GetDepthTest() == renderData.GetDepthTest()
+            && other->GetAlphaBlend() == renderData.GetAlphaBlend()
+            && other->GetDrawMode() == renderData.GetDrawMode()
+            && vertexCount + other->GetMesh()->GetGeometry().vertexCount <= MAX_VERTEX_COUNT;
+}
+
+void StaticBatch::Add(SceneObject * object) {
+    members.PushBack(object);
+    vertexCount += object->GetRenderData()->GetMesh()->GetGeometry().vertexCount;
+    object->SetStaticBatch(this);
+    dirty = true;
+}
+
+void StaticBatch::Remove(SceneObject * object) {
+    for (int i = 0; i < members.GetSizeI(); ++i) {
+        if (members[i] == object) {
+            members.RemoveAt(i);
+            object->SetStaticBatch(nullptr);
+            dirty = true;
+            return;
+        }
+    }
+}
+
+void StaticBatch::Update() {
+    if (!dirty) return;
+    dirty = false;
+
+    VertexAttribs attribs;
+    Array<TriangleIndex> indices;
+    Vector3f mins(FLT_MAX, FLT_MAX, FLT_MAX);
+    Vector3f maxs(-FLT_MAX, -FLT_MAX, -FLT_MAX);
+    drawnMemberCount = 0;
+
+    for (auto it = members.Begin(); it != members.End(); ++it) {
+        RenderData * memberData = (*it)->GetRenderData();
+        if (memberData == nullptr || !memberData->IsVisible()) continue;
+
+        const GeometrySource * source = memberData->GetMesh()->GetSource();
+        if (source == nullptr) continue;
+
+        const VertexAttribs & sourceAttribs = source->GetAttribs();
+        const Array<TriangleIndex> & sourceIndices = source->GetIndices();
+        const Matrix4f & world = (*it)->GetMatrixWorld();
+        const int base = attribs.position.GetSizeI();
+        const int count = sourceAttribs.position.GetSizeI();
+
+        for (int i = 0; i < count; ++i) {
+            const Vector3f position = world.Transform(sourceAttribs.position[i]);
+            attribs.position.PushBack(position);
+            attribs.uv0.PushBack(i < sourceAttribs.uv0.GetSizeI() ? sourceAttribs.uv0[i] : Vector2f(0.0f, 0.0f));
+
+            mins.x = Alg::Min(mins.x, position.x);
+            mins.y = Alg::Min(mins.y, position.y);
+            mins.z = Alg::Min(mins.z, position.z);
+            maxs.x = Alg::Max(maxs.x, position.x);
+            maxs.y = Alg::Max(maxs.y, position.y);
+            maxs.z = Alg::Max(maxs.z, position.z);
+        }
+
+        for (auto index = sourceIndices.Begin(); index != sourceIndices.End(); ++index) {
+            indices.PushBack(static_cast<TriangleIndex>(base + *index));
+        }
+
+        ++drawnMemberCount;
+    }
+
+    renderData.SetVisible(drawnMemberCount > 0);
+
+    if (drawnMemberCount > 0) {
+        mesh.SetGeometry(GlGeometry(attribs, indices));
+        mesh.SetBoundingBox(mins, maxs);
+    } else {
+        mesh.SetGeometry(GlGeometry());
+        mesh.SetBoundingBox(Vector3f(), Vector3f());
+    }
+}
+
+void StaticBatcher::Clear() {
+    // Members may be already deleted when scene is deleted, so they are not touched here
+    for (auto it = batches.Begin(); it != batches.End(); ++it) {
+        delete *it;
+    }
+    batches.Clear();
+}
+
+void StaticBatcher::Remove(SceneObject * object) {
+    StaticBatch * batch = object->GetStaticBatch();
+    if (batch != nullptr) {
+        batch->Remove(object);
+    }
+}
+
+bool StaticBatcher::IsBatchable(SceneObject * object) {
+    if (!object->IsStaticBatching() || object->UsesLOD()) return false;
+
+    const RenderData * renderData = object->GetRenderData();
+    if (renderData == nullptr || renderData->GetMaterial() == nullptr) return false;
+    if (renderData->GetDrawMode() != GL_TRIANGLES) return false;
+
+    // Vertices are read back from GPU here, only for objects marked for static batching
+    Mesh * mesh = renderData->GetMesh();
+    return mesh != nullptr && mesh->GetGeometry().vertexCount <= StaticBatch::MAX_VERTEX_COUNT
+            && mesh->GetSource() != nullptr;
+}
+
+void StaticBatcher::Regroup(const Array<SceneObject*> & objects) {
+    for (auto it = batches.Begin(); it != batches.End(); ++it) {
+        (*it)->Release();
+    }
+    Clear();
+
+    for (auto it = objects.Begin(); it != objects.End(); ++it) {
+        SceneObject * object = *it;
+        if (!IsBatchable(object)) continue;
+
+        const RenderData * renderData = object->GetRenderData();
+        StaticBatch * batch = nullptr;
+        for (auto b = batches.Begin(); b != batches.End(); ++b) {
+            if ((*b)->Accepts(renderData)) {
+                batch = *b;
+                break;
+            }
+        }
+
+        if (batch == nullptr) {
+            batch = new StaticBatch(renderData);
+            batches.PushBack(batch);
+        }
+
+        batch->Add(object);
+    }
+
+    // Merging single object saves nothing
+    for (int i = batches.GetSizeI() - 1; i >= 0; --i) {
+        if (batches[i]->GetMembers().GetSizeI() < 2) {
+            batches[i]->Release();
+            delete batches[i];
+            batches.RemoveAt(i);
+        }
+    }
+}
+
+bool StaticBatcher::Update(const Array<SceneObject*> & objects) {
+    bool regrouped = false;
+
+    if (needsRegroup) {
+        Regroup(objects);
+        needsRegroup = false;
+        regrouped = true;
+    }
+
+    for (auto it = batches.Begin(); it != batches.End(); ++it) {
+        (*it)->Update();
+    }
+
+    return regrouped;
+}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Merges static objects sharing same material into one geometry.
+ ***************************************************************************/
+
+#ifndef STATIC_BATCH_H_
+#define STATIC_BATCH_H_
+
+#include "RenderData.h"
+#include "Mesh.h"
+
+using namespace OVR;
+
+namespace mgn {
+class SceneObject;
+
+// Objects with same material and render state. Vertices are transformed to world space.
+class StaticBatch {
+public:
+    explicit StaticBatch(const RenderData * renderData);
+    ~StaticBatch();
+
+    // Returns true if object with renderData can be merged into this batch.
+    bool Accepts(const RenderData * renderData) const;
+
+    void Add(SceneObject * object);
+    void Remove(SceneObject * object);
+
+    // Detach all members from this batch.
+    void Release();
+
+    // Call when transform or visibility of a member is changed.
+    void Invalidate() {
+        dirty = true;
+    }
+
+    // Rebuild merged geometry if invalidated.
+    void Update();
+
+    // Render data of merged geometry. It has no owner object and its geometry is in world space.
+    RenderData * GetRenderData() {
+        return &renderData;
+    }
+
+    const Array<SceneObject*> & GetMembers() const {
+        return members;
+    }
+
+    // Number of visible members, which are drawn by one draw call.
+    int GetDrawnMemberCount() const {
+        return drawnMemberCount;
+    }
+
+    // Bounds of visible members in world.
+    const BoundingBoxInfo & GetBounds() {
+        return mesh.GetBoundingBoxInfo();
+    }
+
+    // Vertex count is limited by 16 bit index.
+    static const int MAX_VERTEX_COUNT = 65535;
+
+private:
+    StaticBatch(const StaticBatch& staticBatch);
+    StaticBatch(StaticBatch&& staticBatch);
+    StaticBatch& operator=(const StaticBatch& staticBatch);
+    StaticBatch& operator=(StaticBatch&& staticBatch);
+
+private:
+    RenderData renderData;
+    Mesh mesh;
+    Array<SceneObject*> members;
+    int vertexCount;
+    int drawnMemberCount;
+    bool dirty;
+};
+
+// Groups objects marked for static batching.
+class StaticBatcher {
+public:
+    StaticBatcher() : needsRegroup(false) {
+    }
+
+    ~StaticBatcher() {
+        Clear();
+    }
+
+    // Call when objects marked for static batching or their render state are changed.
+    void Invalidate() {
+        needsRegroup = true;
+    }
+
+    // Call when object is removed from renderable objects. Object is excluded immediately.
+    void Remove(SceneObject * object);
+
+    // Regroup objects if invalidated and rebuild dirty batches.
+    // Returns true if set of batches is changed.
+    bool Update(const Array<SceneObject*> & objects);
+
+    const Array<StaticBatch*> & GetBatches() const {
+        return batches;
+    }
+
+private:
+    StaticBatcher(const StaticBatcher& staticBatcher);
+    StaticBatcher(StaticBatcher&& staticBatcher);
+    StaticBatcher& operator=(const StaticBatcher& staticBatcher);
+    StaticBatcher& operator=(StaticBatcher&& staticBatcher);
+
+    void Clear();
+    void Regroup(const Array<SceneObject*> & objects);
+
+    static bool IsBatchable(SceneObject * object);
+
+private:
+    Array<StaticBatch*> batches;
+    bool needsRegroup;
+};
+
+}
+#endif
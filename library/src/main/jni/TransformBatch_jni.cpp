@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "SceneObject.h"
+
+namespace mgn {
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+// Must match TransformBatch.POSITION, ROTATION and SCALE
+enum {
+    POSITION = 1,
+    ROTATION = 2,
+    SCALE = 4,
+    ALL = POSITION | ROTATION | SCALE
+};
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_TransformBatch_setTransforms(JNIEnv * env, jobject obj, jlongArray jhandles, jintArray jmasks, jobject jdata, jint offset, jint count) {
+    const float* data = static_cast<const float*>(env->GetDirectBufferAddress(jdata));
+    if (data == nullptr) return;
+    data += offset;
+
+    jlong* handles = static_cast<jlong*>(env->GetPrimitiveArrayCritical(jhandles, nullptr));
+    if (handles == nullptr) return;
+
+    // Masks are optional. All components are set when omitted.
+    jint* masks = nullptr;
+    if (jmasks != nullptr) {
+        masks = static_cast<jint*>(env->GetPrimitiveArrayCritical(jmasks, nullptr));
+        if (masks == nullptr) {
+            env->ReleasePrimitiveArrayCritical(jhandles, handles, JNI_ABORT);
+            return;
+        }
+    }
+
+    for (int i = 0; i < count; ++i) {
+        SceneObject* sceneObject = reinterpret_cast<SceneObject*>(handles[i]);
+        const float* v = data + i * 10;
+        const int mask = masks != nullptr ? masks[i] : ALL;
+
+        if (mask == ALL) {
+            sceneObject->SetTransform(Vector3f(v[0], v[1], v[2]), Quatf(v[3], v[4], v[5], v[6]), Vector3f(v[7], v[8], v[9]));
+        } else if (mask != 0) {
+            sceneObject->SetTransform(
+                    (mask & POSITION) ? Vector3f(v[0], v[1], v[2]) : sceneObject->GetPosition(),
+                    (mask & ROTATION) ? Quatf(v[3], v[4], v[5], v[6]) : sceneObject->GetRotation(),
+                    (mask & SCALE) ? Vector3f(v[7], v[8], v[9]) : sceneObject->GetScale());
+        }
+    }
+
+    if (masks != nullptr) {
+        env->ReleasePrimitiveArrayCritical(jmasks, masks, JNI_ABORT);
+    }
+    env->ReleasePrimitiveArrayCritical(jhandles, handles, JNI_ABORT);
+}
+
+#ifdef __cplusplus
+} // extern C
+#endif
+} // namespace mgn
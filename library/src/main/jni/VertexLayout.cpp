@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+#include "VertexLayout.h"
+
+namespace mgn {
+
+// Must match VertexLayout.Attribute
+static const GLuint ATTRIBUTE_LOCATIONS[] = {
+        VERTEX_ATTRIBUTE_LOCATION_POSITION,
+        VERTEX_ATTRIBUTE_LOCATION_NORMAL,
+        VERTEX_ATTRIBUTE_LOCATION_COLOR,
+        VERTEX_ATTRIBUTE_LOCATION_UV0
+};
+
+// Must match VertexLayout.Type
+static const GLenum COMPONENT_TYPES[] = {
+        GL_FLOAT, GL_HALF_FLOAT, GL_UNSIGNED_BYTE, GL_BYTE
+};
+
+static float HalfToFloat(uint16_t half) {
+    const uint32_t sign = (half & 0x8000u) << 16;
+    const uint32_t exponent = (half >> 10) & 0x1fu;
+    const uint32_t mantissa = half & 0x3ffu;
+
+    if (exponent == 0) {
+        // zero or subnormal
+        const float value = ldexpf(static_cast<float>(mantissa), -24);
+        return sign ? -value : value;
+    }
+
+    uint32_t bits;
+    if (exponent == 0x1f) {
+        bits = sign | 0x7f800000u | (mantissa << 13); // infinity or NaN
+    } else {
+        bits = sign | ((exponent + 112) << 23) | (mantissa << 13);
+    }
+
+    float value;
+    memcpy(&value, &bits, sizeof(value));
+    return value;
+}
+
+static float ReadComponent(const uint8_t * data, GLenum type) {
+    switch (type) {
+    case GL_HALF_FLOAT: {
+        uint16_t half;
+        memcpy(&half, data, sizeof(half));
+        return HalfToFloat(half);
+    }
+    case GL_UNSIGNED_BYTE:
+        return *data / 255.0f;
+    case GL_BYTE:
+        return Alg::Max(static_cast<int8_t>(*data) / 127.0f, -1.0f);
+    default: {
+        float value;
+        memcpy(&value, data, sizeof(value));
+        return value;
+    }
+    }
+}
+
+static int ComponentSize(GLenum type) {
+    return type == GL_FLOAT ? 4 : (type == GL_HALF_FLOAT ? 2 : 1);
+}
+
+VertexLayout::VertexLayout(const int * values, int valueCount, int stride) :
+        attributeCount(Alg::Min(valueCount / 4, static_cast<int>(MAX_ATTRIBUTES))),
+        position(-1),
+        stride(stride) {
+
+    for (int a = 0; a < attributeCount; ++a) {
+        Attribute & attribute = attributes[a];
+        attribute.location = ATTRIBUTE_LOCATIONS[values[a * 4]];
+        attribute.components = values[a * 4 + 1];
+        attribute.type = COMPONENT_TYPES[values[a * 4 + 2]];
+        attribute.offset = values[a * 4 + 3];
+
+        if (attribute.location == VERTEX_ATTRIBUTE_LOCATION_POSITION) {
+            position = a;
+        }
+    }
+}
+
+void VertexLayout::SetAttribPointers() const {
+    for (int a = 0; a < attributeCount; ++a) {
+        const Attribute & attribute = attributes[a];
+        const bool normalized = attribute.type != GL_FLOAT && attribute.type != GL_HALF_FLOAT;
+        glEnableVertexAttribArray(attribute.location);
+        glVertexAttribPointer(attribute.location, attribute.components, attribute.type, normalized, stride,
+                reinterpret_cast<const void*>(static_cast<size_t>(attribute.offset)));
+    }
+}
+
+void VertexLayout::MergeBounds(const uint8_t * vertices, int count, Vector3f & mins, Vector3f & maxs) const {
+    if (position < 0) return;
+
+    // Read positions in place
+    const Attribute & attribute = attributes[position];
+    const int componentSize = ComponentSize(attribute.type);
+    const int components = Alg::Min(static_cast<int>(attribute.components), 3);
+
+    for (int v = 0; v < count; ++v) {
+        const uint8_t * p = vertices + v * stride + attribute.offset;
+        float xyz[3] = { 0.0f, 0.0f, 0.0f };
+        for (int c = 0; c < components; ++c) {
+            xyz[c] = ReadComponent(p + c * componentSize, attribute.type);
+        }
+        mins.x = Alg::Min(mins.x, xyz[0]);
+        mins.y = Alg::Min(mins.y, xyz[1]);
+        mins.z = Alg::Min(mins.z, xyz[2]);
+        maxs.x = Alg::Max(maxs.x, xyz[0]);
+        maxs.y = Alg::Max(maxs.y, xyz[1]);
+        maxs.z = Alg::Max(maxs.z, xyz[2]);
+    }
+}
+
+}
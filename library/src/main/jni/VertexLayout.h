@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "includes.h"
+
+/***************************************************************************
+ * Layout of interleaved vertices described by Java VertexLayout.
+ ***************************************************************************/
+
+#ifndef VERTEX_LAYOUT_H_
+#define VERTEX_LAYOUT_H_
+
+using namespace OVR;
+
+namespace mgn {
+
+class VertexLayout {
+public:
+    static const int MAX_ATTRIBUTES = 4;
+
+    // values are from VertexLayout.getValues(). Values per attribute: attribute, components, type, offset
+    VertexLayout(const int * values, int valueCount, int stride);
+
+    int GetStride() const {
+        return stride;
+    }
+
+    bool HasPosition() const {
+        return position >= 0;
+    }
+
+    // Set attribute pointers for vertex buffer bound to GL_ARRAY_BUFFER. Vertex array must be bound.
+    void SetAttribPointers() const;
+
+    // Merge positions of count vertices into mins and maxs.
+    void MergeBounds(const uint8_t * vertices, int count, Vector3f & mins, Vector3f & maxs) const;
+
+private:
+    struct Attribute {
+        GLuint location;
+        GLint  components;
+        GLenum type;
+        int    offset;
+    };
+
+    Attribute attributes[MAX_ATTRIBUTES];
+    int attributeCount;
+    int position; // index in attributes. -1 if not contained
+    int stride;
+};
+
+}
+#endif
@@ -31,6 +31,7 @@
  */
 #include "Android/JniUtils.h"
 #include "Kernel/OVR_Alg.h"
+#include "Kernel/OVR_Hash.h"
 #include "Kernel/OVR_Math.h"
 #include "Kernel/OVR_Geometry.h"
 
@@ -48,6 +48,8 @@ public:
         surfaceTexture = new SurfaceTexture(jni);
         color = Vector4f(1.0f, 1.0f, 1.0f, 1.0f);
         opacity = 1.0f;
+        textureSource = nullptr;
+        hasUvRect = false;
     }
 
     ~Material() {
@@ -56,9 +58,41 @@ public:
     }
 
     GLuint GetTextureId() const {
+        if (textureSource != nullptr) {
+            return textureSource->GetTextureId();
+        }
         return surfaceTexture->GetTextureId();
     }
 
+    // Use texture of other material such as a texture atlas page instead of own texture.
+    // Pass nullptr to use own texture again.
+    void SetTextureSource(const Material * source) {
+        textureSource = source;
+    }
+
+    // Map texture coordinates into sub-rectangle (x, y, width, height) of the texture.
+    void SetUvRect(float x, float y, float width, float height) {
+        hasUvRect = x != 0.0f || y != 0.0f || width != 1.0f || height != 1.0f;
+        uvTransform = Matrix4f(
+                width, 0.0f, 0.0f, x,
+                0.0f, height, 0.0f, y,
+                0.0f, 0.0f, 1.0f, 0.0f,
+                0.0f, 0.0f, 0.0f, 1.0f);
+    }
+
+    bool HasUvRect() const {
+        return hasUvRect;
+    }
+
+    const Matrix4f & GetUvTransform() const {
+        return uvTransform;
+    }
+
+    // Sub-rectangle as (x, y, width, height).
+    Vector4f GetUvRect() const {
+        return Vector4f(uvTransform.M[0][3], uvTransform.M[1][3], uvTransform.M[0][0], uvTransform.M[1][1]);
+    }
+
     jobject GetSurfaceTexture() {
         return surfaceTexture->GetJavaObject();
     }
@@ -115,6 +149,9 @@ private:
 
 private:
     SurfaceTexture *surfaceTexture;
+    const Material *textureSource;
+    Matrix4f uvTransform;
+    bool hasUvRect;
     Vector4f color;
     float opacity;
     StereoMode Mode;
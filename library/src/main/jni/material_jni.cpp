@@ -70,6 +70,18 @@ Java_com_eje_1c_meganekko_Material_setSide(JNIEnv* env, jobject obj, jlong jmate
     material->SetSide(jside);
 }
 
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Material_setTextureSource(JNIEnv* env, jobject obj, jlong jmaterial, jlong jsource) {
+    Material* material = reinterpret_cast<Material*>(jmaterial);
+    material->SetTextureSource(reinterpret_cast<const Material*>(jsource));
+}
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Material_setUvRect(JNIEnv* env, jobject obj, jlong jmaterial, jfloat x, jfloat y, jfloat width, jfloat height) {
+    Material* material = reinterpret_cast<Material*>(jmaterial);
+    material->SetUvRect(x, y, width, height);
+}
+
 #ifdef __cplusplus 
 } // extern C
 #endif
@@ -21,6 +21,7 @@ namespace mgn {
 void Mesh::SetBoundingBox(const Vector3f & mins, const Vector3f & maxs){
     boundingBoxInfo.mins = mins;
     boundingBoxInfo.maxs = maxs;
+    ++boundsVersion;
 
     Vector3f center = (mins + maxs) * 0.5f;
 
@@ -23,6 +23,8 @@
 
 #include "HybridObject.h"
 #include "Material.h"
+#include "DynamicGeometry.h"
+#include "GeometryCache.h"
 #include "util/GL.h"
 
 namespace mgn {
@@ -39,28 +41,69 @@ struct BoundingSphereInfo {
 
 class Mesh: public HybridObject {
 public:
-    Mesh() {
+    Mesh() : dynamicGeometry(nullptr), sharedGeometry(nullptr), boundsVersion(0) {
     }
 
     ~Mesh() {
-        geometry.Free();
+        FreeGeometry();
     }
 
     const GlGeometry & GetGeometry() const {
         return geometry;
     }
 
+    // Dynamic geometry is uploaded here on first draw after changes.
     const GlGeometry & GetGeometry() {
+        if (dynamicGeometry != nullptr && dynamicGeometry->IsDirty()) {
+            geometry = dynamicGeometry->Flush();
+        }
         return geometry;
     }
 
     void SetGeometry(const GlGeometry & geometry) {
-        this->geometry.Free();
+        FreeGeometry();
         this->geometry = geometry;
+        source.Clear();
+    }
+
+    // Refer to geometry in GeometryCache. Reference is taken over by this mesh.
+    void SetSharedGeometry(SharedGeometry * sharedGeometry) {
+        SetGeometry(GlGeometry());
+        this->sharedGeometry = sharedGeometry;
+        geometry = sharedGeometry->geometry;
+    }
+
+    // Identifies GPU geometry. Meshes built with same parameters share it through GeometryCache.
+    const void * GetGeometryId() const {
+        return sharedGeometry != nullptr ? static_cast<const void*>(sharedGeometry) : static_cast<const void*>(this);
+    }
+
+    // Vertices in memory for merging into static batches. They are read back from GPU on first call
+    // and kept while geometry lives. nullptr if they can't be read, such as for dynamic geometry.
+    const GeometrySource * GetSource() {
+        if (dynamicGeometry != nullptr) return nullptr;
+        GeometrySource & s = sharedGeometry != nullptr ? sharedGeometry->source : source;
+        return s.Read(geometry) ? &s : nullptr;
+    }
+
+    // Take ownership of geometry which is updated every frame.
+    void SetDynamicGeometry(DynamicGeometry * dynamicGeometry) {
+        SetGeometry(GlGeometry());
+        this->dynamicGeometry = dynamicGeometry;
+    }
+
+    // nullptr if this mesh is not dynamic.
+    DynamicGeometry * GetDynamicGeometry() const {
+        return dynamicGeometry;
     }
 
     void SetBoundingBox(const Vector3f & mins, const Vector3f & maxs);
 
+    // Incremented whenever bounding box is set. Used to find dynamic meshes which have changed bounds.
+    unsigned int GetBoundsVersion() const {
+        return boundsVersion;
+    }
+
     const BoundingBoxInfo & GetBoundingBoxInfo(); // Xmin, Ymin, Zmin and Xmax, Ymax, Zmax
     void GetTransformedBoundingBoxInfo(OVR::Matrix4f *M,
             float *transformed_bounding_box); //Get Bounding box info transformed by matrix
@@ -72,6 +115,22 @@ private:
     Mesh& operator=(const Mesh& mesh);
     Mesh& operator=(Mesh&& mesh);
 
+    void FreeGeometry() {
+        if (dynamicGeometry != nullptr) {
+            // geometry refers to one of buffers of dynamic geometry
+            delete dynamicGeometry;
+            dynamicGeometry = nullptr;
+            geometry = GlGeometry();
+        } else if (sharedGeometry != nullptr) {
+            // Other meshes may still refer to it
+            GeometryCache::Get().Release(sharedGeometry);
+            sharedGeometry = nullptr;
+            geometry = GlGeometry();
+        } else {
+            geometry.Free();
+        }
+    }
+
 private:
 
     // bounding box info
@@ -79,6 +138,12 @@ private:
     BoundingSphereInfo boundingSphereInfo;
 
     GlGeometry geometry;
+    DynamicGeometry * dynamicGeometry;
+    SharedGeometry * sharedGeometry;
+    unsigned int boundsVersion;
+
+    // Vertices for static batching. Read only when this mesh is merged.
+    GeometrySource source;
 };
 }
 #endif
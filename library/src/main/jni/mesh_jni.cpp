@@ -15,8 +15,39 @@
 
 #include "includes.h"
 #include "Mesh.h"
+#include "VertexLayout.h"
+#include "GeometryCache.h"
 
 namespace mgn {
+
+// Quad facing +Z. Same as the one built from arrays before quads were cached.
+static SharedGeometry * InsertQuad(const GeometryKey & key, float width, float height) {
+    VertexAttribs attribs;
+    attribs.position.PushBack(Vector3f(width * -0.5f, height * 0.5f, 0.0f));  // Left Top
+    attribs.position.PushBack(Vector3f(width * -0.5f, height * -0.5f, 0.0f)); // Left Bottom
+    attribs.position.PushBack(Vector3f(width * 0.5f, height * 0.5f, 0.0f));   // Right Top
+    attribs.position.PushBack(Vector3f(width * 0.5f, height * -0.5f, 0.0f));  // Right Bottom
+
+    attribs.uv0.PushBack(Vector2f(0.0f, 0.0f));
+    attribs.uv0.PushBack(Vector2f(0.0f, 1.0f));
+    attribs.uv0.PushBack(Vector2f(1.0f, 0.0f));
+    attribs.uv0.PushBack(Vector2f(1.0f, 1.0f));
+
+    for (int i = 0; i < 4; ++i) {
+        attribs.color.PushBack(Vector4f(1.0f, 1.0f, 1.0f, 1.0f));
+    }
+
+    Array<TriangleIndex> indices;
+    indices.PushBack(0);
+    indices.PushBack(1);
+    indices.PushBack(2);
+    indices.PushBack(1);
+    indices.PushBack(3);
+    indices.PushBack(2);
+
+    return GeometryCache::Get().Insert(key, GlGeometry(attribs, indices));
+}
+
 #ifdef __cplusplus
 extern "C" {
 #endif
@@ -103,17 +134,89 @@ Java_com_eje_1c_meganekko_Mesh_build(JNIEnv * env, jobject obj, jlong jmesh,
     mesh->SetBoundingBox(mins, maxs);
 }
 
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Mesh_buildFromBuffers(JNIEnv * env, jobject obj, jlong jmesh,
+        jobject jvertices, jint vertexOffset, jint vertexCount, jintArray jlayout, jint stride,
+        jobject jindices, jint indexOffset, jint indexCount) {
+
+    const uint8_t * vertices = static_cast<const uint8_t*>(env->GetDirectBufferAddress(jvertices)) + vertexOffset;
+    const uint8_t * indices = static_cast<const uint8_t*>(env->GetDirectBufferAddress(jindices)) + indexOffset;
+
+    // layout is small. Values per attribute: attribute, components, type, offset
+    const jsize layoutSize = Alg::Min(env->GetArrayLength(jlayout), static_cast<jsize>(VertexLayout::MAX_ATTRIBUTES * 4));
+    jint values[VertexLayout::MAX_ATTRIBUTES * 4];
+    env->GetIntArrayRegion(jlayout, 0, layoutSize, values);
+    const VertexLayout layout(values, layoutSize, stride);
+
+    GlGeometry geometry;
+    geometry.vertexCount = vertexCount;
+    geometry.indexCount = indexCount;
+
+    glGenVertexArrays(1, &geometry.vertexArrayObject);
+    glBindVertexArray(geometry.vertexArrayObject);
+
+    // Upload straight from Java buffers
+    glGenBuffers(1, &geometry.vertexBuffer);
+    glBindBuffer(GL_ARRAY_BUFFER, geometry.vertexBuffer);
+    glBufferData(GL_ARRAY_BUFFER, static_cast<GLsizeiptr>(vertexCount) * stride, vertices, GL_STATIC_DRAW);
+    layout.SetAttribPointers();
+
+    // Bounding box is computed by reading positions in place
+    Vector3f mins(FLT_MAX, FLT_MAX, FLT_MAX);
+    Vector3f maxs(-FLT_MAX, -FLT_MAX, -FLT_MAX);
+    layout.MergeBounds(vertices, vertexCount, mins, maxs);
+
+    glGenBuffers(1, &geometry.indexBuffer);
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, geometry.indexBuffer);
+    glBufferData(GL_ELEMENT_ARRAY_BUFFER, static_cast<GLsizeiptr>(indexCount) * sizeof(uint16_t), indices, GL_STATIC_DRAW);
+
+    glBindVertexArray(0);
+    glBindBuffer(GL_ARRAY_BUFFER, 0);
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+
+    if (vertexCount == 0) {
+        mins = Vector3f();
+        maxs = Vector3f();
+    }
+
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    mesh->SetGeometry(geometry);
+    mesh->SetBoundingBox(mins, maxs);
+}
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Mesh_buildQuad(JNIEnv * env, jobject obj, jlong jmesh, jfloat width, jfloat height) {
+    Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
+    const GeometryKey key(GeometryKey::QUAD, width, height);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = InsertQuad(key, width, height);
+    }
+    mesh->SetSharedGeometry(shared);
+    mesh->SetBoundingBox(Vector3f(width * -0.5f, height * -0.5f, 0.0f), Vector3f(width * 0.5f, height * 0.5f, 0.0f));
+}
+
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildTesselatedQuad(JNIEnv * env, jobject obj, jlong jmesh, jint horizontal, jint vertical, jboolean twoSided) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildTesselatedQuad(horizontal, vertical, twoSided));
+    const GeometryKey key(GeometryKey::TESSELATED_QUAD, horizontal, vertical, twoSided);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildTesselatedQuad(horizontal, vertical, twoSided));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-1.0f, -1.0f, 0.0f), Vector3f(1.0f, 1.0f, 0.0f));
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildVignette(JNIEnv * env, jobject obj, jlong jmesh, jfloat xFraction, jfloat yFraction) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildVignette(xFraction, yFraction));
+    const GeometryKey key(GeometryKey::VIGNETTE, xFraction, yFraction);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildVignette(xFraction, yFraction));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-1.0f, -1.0f, 0.0f), Vector3f(1.0f, 1.0f, 0.0f));
 }
 
@@ -121,42 +224,72 @@ JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildTesselatedCylinder(JNIEnv * env, jobject obj, jlong jmesh,
         jfloat radius, jfloat height, jint horizontal, jint vertical, jfloat uScale, jfloat vScale) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildTesselatedCylinder(radius, height, horizontal, vertical, uScale, vScale));
+    const GeometryKey key(GeometryKey::TESSELATED_CYLINDER, radius, height, horizontal, vertical, uScale, vScale);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildTesselatedCylinder(radius, height, horizontal, vertical, uScale, vScale));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-radius, -radius, -height), Vector3f(radius, radius, height)); // TODO Help! Could you calculate right value?
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildDome(JNIEnv * env, jobject obj, jlong jmesh, jfloat latRads, jfloat uScale, jfloat vScale) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildDome(latRads, uScale, vScale));
+    const GeometryKey key(GeometryKey::DOME, latRads, uScale, vScale);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildDome(latRads, uScale, vScale));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-100, -100, -100), Vector3f(100, 100, 100)); // TODO Help! Could you calculate right value?
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildGlobe(JNIEnv * env, jobject obj, jlong jmesh, jfloat uScale, jfloat vScale) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildGlobe(uScale, vScale));
+    const GeometryKey key(GeometryKey::GLOBE, uScale, vScale);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildGlobe(uScale, vScale));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-100, -100, -100), Vector3f(100, 100, 100)); // TODO Help! Could you calculate right value?
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildSpherePatch(JNIEnv * env, jobject obj, jlong jmesh, jfloat fov) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildSpherePatch(fov));
+    const GeometryKey key(GeometryKey::SPHERE_PATCH, fov);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildSpherePatch(fov));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-100, -100, -100), Vector3f(100, 100, 100)); // TODO Help! Could you calculate right value?
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildCalibrationLines(JNIEnv * env, jobject obj, jlong jmesh, jint extraLines, jboolean fullGrid) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildCalibrationLines(extraLines, fullGrid));
+    const GeometryKey key(GeometryKey::CALIBRATION_LINES, extraLines, fullGrid);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildCalibrationLines(extraLines, fullGrid));
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(-1.0f, -1.0f, -1.0f), Vector3f(1.0f, 1.0f, 1.0f));
 }
 
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Mesh_buildUnitCubeLines(JNIEnv * env, jobject obj, jlong jmesh) {
     Mesh* mesh = reinterpret_cast<Mesh*>(jmesh);
-    mesh->SetGeometry(BuildUnitCubeLines());
+    const GeometryKey key(GeometryKey::UNIT_CUBE_LINES);
+    SharedGeometry * shared = GeometryCache::Get().Acquire(key);
+    if (shared == nullptr) {
+        shared = GeometryCache::Get().Insert(key, BuildUnitCubeLines());
+    }
+    mesh->SetSharedGeometry(shared);
     mesh->SetBoundingBox(Vector3f(0.0f, 0.0f, 0.0f), Vector3f(1.0f, 1.0f, 1.0f));
 }
 
@@ -23,54 +23,225 @@
 #include "Material.h"
 #include "Scene.h"
 #include "RenderData.h"
+#include "StaticBatch.h"
+#include "FrameStats.h"
 
 using namespace OVR;
 
 namespace mgn {
 
-void Renderer::RenderEyeView(const Scene* scene, const Array<SceneObject*> & scene_objects, const OESShader* oesShader,
-        const Matrix4f &eyeViewMatrix, const Matrix4f &eyeProjectionMatrix, const Matrix4f &eyeViewProjection, const int eye) {
-    // there is no need to flat and sort every frame.
-    // however let's keep it as is and assume we are not changed
-    // This is not right way to do data conversion. However since GVRF doesn't support
-    // bone/weight/joint and other assimp data, we will put general model conversion
-    // on hold and do this kind of conversion fist
-
-    Array<RenderData*> render_data_vector;
-
-    // do occlusion culling, if enabled
-    OcclusionCull(scene, scene_objects);
-
-    // do frustum culling, if enabled
-    FrustumCull(scene, eyeViewMatrix.GetTranslation(), scene_objects, render_data_vector,
-            eyeViewProjection, oesShader);
-
-    // do sorting based on render order
-    if (!scene->GetFrustumCulling()) {
-        Alg::QuickSort(render_data_vector, compareRenderData);
-    } else {
-        Alg::QuickSort(render_data_vector, compareRenderDataWithFrustumCulling);
+void Renderer::PrepareRenderQueue(Scene* scene, const Array<SceneObject*> & scene_objects, RenderQueue & render_queue,
+        const Matrix4f &centerViewMatrix, const Matrix4f &eyeViewMatrix, const Matrix4f &eyeProjectionMatrix) {
+
+    {
+        FRAME_STATS_SCOPE(FrameStats::QUEUE_REBUILD);
+
+        // Regrouping batches replaces render data in queue
+        if (scene->UpdateStaticBatches()) {
+            render_queue.Invalidate();
+        }
+
+        if (render_queue.NeedsRebuild()) {
+            render_queue.Rebuild(scene_objects, scene->GetStaticBatches());
+        }
     }
 
-    glEnable (GL_DEPTH_TEST);
+    {
+        FRAME_STATS_SCOPE(FrameStats::CULL);
+
+        // do occlusion culling, if enabled
+        OcclusionCull(scene, scene_objects);
+
+        // Build world space frustum from center eye once per frame.
+        // Planes are pushed outward by the distance between center and eye so that it contains both eye frustums.
+        const Vector3f camera_position = centerViewMatrix.Inverted().GetTranslation();
+        const float eye_offset = (eyeViewMatrix.Inverted().GetTranslation() - camera_position).Length();
+
+        float frustum[6][4];
+        float vp_matrix_array[16];
+        const Matrix4f vp_matrix_transposed = (eyeProjectionMatrix * centerViewMatrix).Transposed(); // BuildFrustum expects column major
+        memcpy(vp_matrix_array, vp_matrix_transposed.M[0], sizeof(float) * 16);
+        BuildFrustum(frustum, vp_matrix_array);
+
+        for (int p = 0; p < 6; ++p) {
+            frustum[p][3] += eye_offset;
+        }
+
+        // do frustum culling, if enabled
+        Array<bool> & in_frustum = scene->GetInFrustumFlags();
+        if (scene->GetFrustumCulling()) {
+            scene->CullBounds(frustum);
+        } else {
+            scene->ClearCullingStats();
+        }
+
+        for (int b = 0; b < RenderQueue::BUCKET_COUNT; ++b) {
+            FrustumCull(scene, camera_position, render_queue.GetBucket(b), in_frustum, frustum);
+        }
+    }
+
+    FRAME_STATS_SCOPE(FrameStats::SORT);
+
+    // opaque buckets keep their order, transparent one is nearly sorted
+    render_queue.SortTransparent();
+
+    PrepareInstances(scene, render_queue);
+}
+
+bool Renderer::IsInstanceable(const RenderQueueItem & item) {
+    if (item.culled || item.batch != nullptr) return false;
+
+    const RenderData * render_data = item.renderData;
+    return render_data->IsVisible()
+            && render_data->GetMesh() != nullptr
+            && render_data->GetMaterial() != nullptr
+            && render_data->GetDrawMode() == GL_TRIANGLES;
+}
+
+bool Renderer::CanDrawAsInstances(const RenderData * first, const RenderData * other) {
+    const Material * first_material = first->GetMaterial();
+    const Material * other_material = other->GetMaterial();
+
+    // Color, opacity and UV rect may differ because they are per instance data
+    return first->GetMesh()->GetGeometryId() == other->GetMesh()->GetGeometryId()
+            && first_material->GetTextureId() == other_material->GetTextureId()
+            && first_material->GetStereoMode() == other_material->GetStereoMode()
+            && first_material->GetSide() == other_material->GetSide()
+            && first->GetOffset() == other->GetOffset()
+            && first->GetOffsetFactor() == other->GetOffsetFactor()
+            && first->GetOffsetUnits() == other->GetOffsetUnits()
+            && first->GetDepthTest() == other->GetDepthTest()
+            && first->GetAlphaBlend() == other->GetAlphaBlend();
+}
+
+void Renderer::PrepareInstances(const Scene * scene, RenderQueue & render_queue) {
+    Array<float> & data = render_queue.GetInstanceData();
+    data.Clear();
+
+    for (int b = 0; b < RenderQueue::BUCKET_COUNT; ++b) {
+        Array<RenderQueueItem> & bucket = render_queue.GetBucket(b);
+        const int size = bucket.GetSizeI();
+
+        for (int i = 0; i < size; ++i) {
+            bucket[i].instanceCount = 0;
+        }
+
+        if (!scene->GetInstancing()) continue;
+
+        for (int i = 0; i < size; ) {
+            RenderQueueItem & first = bucket[i];
+            if (!IsInstanceable(first)) {
+                ++i;
+                continue;
+            }
+
+            // Culled items don't break a run. Any other item does, to keep drawing order.
+            int count = 1;
+            int end = i + 1;
+            for (; end < size; ++end) {
+                const RenderQueueItem & item = bucket[end];
+                if (item.culled) continue;
+                if (!IsInstanceable(item) || !CanDrawAsInstances(first.renderData, item.renderData)) break;
+                ++count;
+            }
+
+            if (count >= MIN_INSTANCE_COUNT) {
+                first.instanceCount = count;
+                first.firstInstance = data.GetSizeI() / OESShader::INSTANCE_FLOATS;
+
+                for (int k = i; k < end; ++k) {
+                    RenderQueueItem & item = bucket[k];
+                    if (item.culled) continue;
+                    if (k != i) {
+                        item.instanceCount = -1;
+                    }
+
+                    const Matrix4f & model_matrix = item.renderData->GetOwnerObject()->GetMatrixWorld();
+                    for (int row = 0; row < 4; ++row) {
+                        for (int column = 0; column < 4; ++column) {
+                            data.PushBack(model_matrix.M[row][column]);
+                        }
+                    }
+
+                    const Material * material = item.renderData->GetMaterial();
+                    const Vector4f & color = material->GetColor();
+                    const float opacity = material->GetOpacity();
+                    data.PushBack(color.x * opacity);
+                    data.PushBack(color.y * opacity);
+                    data.PushBack(color.z * opacity);
+                    data.PushBack(color.w * opacity);
+
+                    const Vector4f uv_rect = material->GetUvRect();
+                    data.PushBack(uv_rect.x);
+                    data.PushBack(uv_rect.y);
+                    data.PushBack(uv_rect.z);
+                    data.PushBack(uv_rect.w);
+                }
+            }
+
+            i = end;
+        }
+    }
+
+    // Uploaded once and shared by both eyes
+    render_queue.UploadInstanceData();
+}
+
+void Renderer::RenderEyeView(const Scene* scene, const RenderQueue & render_queue, GLStateCache & gl_state,
+        DrawCallStats & draw_call_stats, const OESShader* oesShader,
+        const Matrix4f &eyeViewMatrix, const Matrix4f &eyeProjectionMatrix, const Matrix4f &eyeViewProjection, const int eye) {
+
+    FRAME_STATS_SCOPE(eye == 0 ? FrameStats::DRAW_LEFT_EYE : FrameStats::DRAW_RIGHT_EYE);
+
+    // GL state may be changed outside of Meganekko between eyes
+    gl_state.Invalidate();
+
+    gl_state.SetDepthTest(true);
     glDepthFunc (GL_LEQUAL);
-    glEnable (GL_CULL_FACE);
     glFrontFace (GL_CCW);
-    glCullFace (GL_BACK);
-    glEnable (GL_BLEND);
+    gl_state.SetBlend(true);
     glBlendEquation (GL_FUNC_ADD);
     glBlendFunc(GL_ONE, GL_ONE_MINUS_SRC_ALPHA);
-    glDisable (GL_POLYGON_OFFSET_FILL);
+    gl_state.SetPolygonOffsetFill(false);
 
     // TODO background color as parameter
     glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
     glClear(GL_DEPTH_BUFFER_BIT | GL_COLOR_BUFFER_BIT);
 
-    for (auto it = render_data_vector.Begin();
-            it != render_data_vector.End(); ++it) {
-        RenderRenderData(*it, eyeViewMatrix, eyeProjectionMatrix, oesShader, eye);
+    for (int b = 0; b < RenderQueue::BUCKET_COUNT; ++b) {
+        const Array<RenderQueueItem> & bucket = render_queue.GetBucket(b);
+        for (auto it = bucket.Begin(); it != bucket.End(); ++it) {
+            if (it->culled || it->instanceCount < 0) continue;
+
+            if (it->instanceCount > 0) {
+                const RenderData * render_data = it->renderData;
+                const Material * material = render_data->GetMaterial();
+                SetRenderState(gl_state, render_data, material);
+                oesShader->RenderInstanced(gl_state, eyeViewProjection, render_data->GetMesh()->GetGeometry(), material,
+                        render_queue.GetInstanceBuffer(), it->firstInstance, it->instanceCount, eye);
+                ++draw_call_stats.drawCalls;
+                draw_call_stats.unbatchedDrawCalls += it->instanceCount;
+                continue;
+            }
+
+            // Vertices of static batch are already in world space
+            const Matrix4f & model_matrix = it->batch != nullptr
+                    ? Matrix4f::Identity()
+                    : it->renderData->GetOwnerObject()->GetMatrixWorld();
+
+            if (RenderRenderData(it->renderData, model_matrix, eyeViewMatrix, eyeProjectionMatrix, gl_state, oesShader, eye)) {
+                ++draw_call_stats.drawCalls;
+                draw_call_stats.unbatchedDrawCalls += it->batch != nullptr ? it->batch->GetDrawnMemberCount() : 1;
+            }
+        }
     }
 
+    // Restoring to Default for following renderers.
+    SetFaceCulling(gl_state, Material::FrontSide);
+    gl_state.SetPolygonOffsetFill(false);
+    gl_state.SetDepthTest(true);
+    gl_state.SetBlend(true);
+    gl_state.BindTexture(GL_TEXTURE_EXTERNAL_OES, 0);
 }
 
 void Renderer::OcclusionCull(const Scene * scene, const Array<SceneObject*> & scene_objects) {
@@ -110,67 +281,44 @@ void Renderer::OcclusionCull(const Scene * scene, const Array<SceneObject*> & sc
 }
 
 void Renderer::FrustumCull(const Scene * scene, const Vector3f& camera_position,
-        const Array<SceneObject*> & scene_objects,
-        Array<RenderData*> & render_data_vector, const Matrix4f &vp_matrix,
-        const OESShader * oesShader) {
-    for (auto it = scene_objects.Begin(); it != scene_objects.End(); ++it) {
-        SceneObject *scene_object = (*it);
-        RenderData* render_data = scene_object->GetRenderData();
-        if (render_data == nullptr || render_data->GetMaterial() == nullptr) {
+        Array<RenderQueueItem> & bucket, const Array<bool> & in_frustum, float frustum[6][4]) {
+    for (auto it = bucket.Begin(); it != bucket.End(); ++it) {
+        if (it->batch != nullptr) {
+            FrustumCullBatch(scene, camera_position, *it, frustum);
             continue;
         }
 
-        // Check for frustum culling flag
-        if (!scene->GetFrustumCulling()) {
-            //No occlusion or frustum tests enabled
-            render_data_vector.PushBack(render_data);
-            continue;
-        }
+        RenderData* render_data = it->renderData;
+        it->culled = true;
 
-        // Frustum culling setup
         Mesh* currentMesh = render_data->GetMesh();
-        if (currentMesh == nullptr) {
+        if (currentMesh == nullptr || render_data->GetMaterial() == nullptr) {
             continue;
         }
 
-        BoundingBoxInfo bounding_box_info = currentMesh->GetBoundingBoxInfo();
-
-        Matrix4f modelMatrixTmp = render_data->GetOwnerObject()->GetMatrixWorld();
-        Matrix4f mvpMatrixTmp(vp_matrix * modelMatrixTmp);
+        SceneObject *scene_object = render_data->GetOwnerObject();
+        const Matrix4f & model_matrix = scene_object->GetMatrixWorld();
 
-        // Frustum
-        float frustum[6][4];
-
-        // Matrix to array
-        float mvp_matrix_array[16] = { 0.0 };
-        const float *mat_to_array = (const float*)mvpMatrixTmp.Transposed().M[0]; // TODO this is originally glm::mat4 so transposed
-        memcpy(mvp_matrix_array, mat_to_array, sizeof(float) * 16);
-
-        // Build the frustum
-        BuildFrustum(frustum, mvp_matrix_array);
+        // Calculate distance from camera.
+        // This distance will be used when sorting transparent objects
+        const Vector3f sphere_center = model_matrix.Transform(currentMesh->GetBoundingSphereInfo().center);
+        const float distance = (sphere_center - camera_position).LengthSq();
+        render_data->SetCameraDistance(distance);
 
-        // Check for being inside or outside frustum
-        bool is_inside = IsCubeInFrustum(frustum, bounding_box_info);
+        // Check for frustum culling flag
+        if (!scene->GetFrustumCulling()) {
+            //No occlusion or frustum tests enabled
+            it->culled = false;
+            continue;
+        }
 
         // Only push those scene objects that are inside of the frustum
-        if (!is_inside) {
+        const int index = scene_object->GetRenderableIndex();
+        if (index < 0 || index >= in_frustum.GetSizeI() || !in_frustum[index]) {
             scene_object->SetInFrustum(false);
             continue;
         }
 
-        // Transform the bounding sphere
-        const BoundingSphereInfo sphereInfo = currentMesh->GetBoundingSphereInfo();
-        Vector4f sphere_center(sphereInfo.center, 1.0f);
-        Vector4f transformed_sphere_center = mvpMatrixTmp.Transform(sphere_center);
-
-        // Calculate distance from camera
-        Vector4f position(camera_position, 1.0f);
-        Vector4f difference = transformed_sphere_center - position;
-        float distance = difference.Dot(difference);
-
-        // this distance will be used when sorting transparent objects
-        render_data->SetCameraDistance(distance);
-
         // Check if this is the correct LOD level
         if (!scene_object->InLODRange(distance)) {
             // not in range, don't add it to the list
@@ -178,17 +326,33 @@ void Renderer::FrustumCull(const Scene * scene, const Vector3f& camera_position,
         }
 
         scene_object->SetInFrustum();
-        bool visible = scene_object->IsVisible();
 
         //If visibility flag was set by an earlier occlusion query,
         //turn visibility on for the object
-        if (visible) {
-            render_data_vector.PushBack(render_data);
-        }
+        it->culled = !scene_object->IsVisible();
+    }
+}
 
-        if (render_data->GetMaterial() == nullptr
-                || !scene->GetOcclusionCulling()) {
-            continue;
+void Renderer::FrustumCullBatch(const Scene * scene, const Vector3f& camera_position,
+        RenderQueueItem & item, float frustum[6][4]) {
+    const BoundingBoxInfo & bounds = item.batch->GetBounds();
+    const Vector3f center = (bounds.mins + bounds.maxs) * 0.5f;
+    item.renderData->SetCameraDistance((center - camera_position).LengthSq());
+    item.culled = item.batch->GetDrawnMemberCount() == 0;
+
+    if (item.culled || !scene->GetFrustumCulling()) {
+        return;
+    }
+
+    // Batch is culled only if its box is entirely outside of a plane
+    for (int p = 0; p < 6; ++p) {
+        const Vector3f positive(
+                frustum[p][0] >= 0.0f ? bounds.maxs.x : bounds.mins.x,
+                frustum[p][1] >= 0.0f ? bounds.maxs.y : bounds.mins.y,
+                frustum[p][2] >= 0.0f ? bounds.maxs.z : bounds.mins.z);
+        if (frustum[p][0] * positive.x + frustum[p][1] * positive.y + frustum[p][2] * positive.z + frustum[p][3] < 0.0f) {
+            item.culled = true;
+            return;
         }
     }
 }
@@ -287,111 +451,60 @@ void Renderer::BuildFrustum(float frustum[6][4], float mvp_matrix[16]) {
     frustum[5][3] /= t;
 }
 
-bool Renderer::IsCubeInFrustum(float frustum[6][4], const BoundingBoxInfo & vertex_limit) {
-    int p;
-
-    for (p = 0; p < 6; p++) {
-        if (frustum[p][0] * (vertex_limit.mins.x) + frustum[p][1] * (vertex_limit.mins.y)
-                + frustum[p][2] * (vertex_limit.mins.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.maxs.x) + frustum[p][1] * (vertex_limit.mins.y)
-                + frustum[p][2] * (vertex_limit.mins.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.mins.x) + frustum[p][1] * (vertex_limit.maxs.y)
-                + frustum[p][2] * (vertex_limit.mins.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.maxs.x) + frustum[p][1] * (vertex_limit.maxs.y)
-                + frustum[p][2] * (vertex_limit.mins.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.mins.x) + frustum[p][1] * (vertex_limit.mins.y)
-                + frustum[p][2] * (vertex_limit.maxs.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.maxs.x) + frustum[p][1] * (vertex_limit.mins.y)
-                + frustum[p][2] * (vertex_limit.maxs.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.mins.x) + frustum[p][1] * (vertex_limit.maxs.y)
-                + frustum[p][2] * (vertex_limit.maxs.z) + frustum[p][3] > 0)
-            continue;
-        if (frustum[p][0] * (vertex_limit.maxs.x) + frustum[p][1] * (vertex_limit.maxs.y)
-                + frustum[p][2] * (vertex_limit.maxs.z) + frustum[p][3] > 0)
-            continue;
-        return false;
-    }
-    return true;
-}
-
-void Renderer::RenderRenderData(RenderData* renderData,
+bool Renderer::RenderRenderData(RenderData* renderData, const Matrix4f& model_matrix,
         const Matrix4f& view_matrix, const Matrix4f& projection_matrix,
-        const OESShader * oesShader, const int eye) {
+        GLStateCache & gl_state, const OESShader * oesShader, const int eye) {
 
-    if (!renderData->IsVisible()) return;
+    if (!renderData->IsVisible()) return false;
 
     Mesh * mesh = renderData->GetMesh();
-    if (mesh == nullptr) return;
+    if (mesh == nullptr) return false;
 
     Material* material = renderData->GetMaterial();
-    if (material == nullptr) return;
-
-    if (renderData->GetOffset()) {
-        glEnable (GL_POLYGON_OFFSET_FILL);
-        glPolygonOffset(renderData->GetOffsetFactor(), renderData->GetOffsetUnits());
-    }
-
-    if (!renderData->GetDepthTest()) {
-        glDisable (GL_DEPTH_TEST);
-    }
+    if (material == nullptr) return false;
 
-    if (!renderData->GetAlphaBlend()) {
-        glDisable (GL_BLEND);
-    }
-
-    SetFaceCulling(material->GetSide());
+    SetRenderState(gl_state, renderData, material);
 
-    Matrix4f model_matrix = renderData->GetOwnerObject()->GetMatrixWorld();
     Matrix4f mv_matrix(view_matrix * model_matrix);
     Matrix4f mvp_matrix = projection_matrix * mv_matrix;
     try {
-        oesShader->Render(mvp_matrix, mesh->GetGeometry(), material, eye);
+        oesShader->Render(gl_state, mvp_matrix, mesh->GetGeometry(), material, eye);
     } catch (String error) {
         __android_log_print(ANDROID_LOG_ERROR, "mgn", "Error detected in Renderer::renderRenderData; error : %s", error.ToCStr());
+        return false;
     }
+    return true;
+}
 
-    // Restoring to Default.
-    // TODO: There's a lot of redundant state changes. If on every render face culling is being set there's no need to
-    // restore defaults. Possibly later we could add a OpenGL state wrapper to avoid redundant api calls.
-    if (renderData->GetMaterial()->GetSide() != Material::FrontSide) {
-        glEnable (GL_CULL_FACE);
-        glCullFace (GL_BACK);
-    }
-
+void Renderer::SetRenderState(GLStateCache & gl_state, const RenderData * renderData, const Material * material) {
+    // Every draw sets the state it needs. GLStateCache drops calls which change nothing,
+    // so no need to restore defaults after drawing.
+    gl_state.SetPolygonOffsetFill(renderData->GetOffset());
     if (renderData->GetOffset()) {
-        glDisable (GL_POLYGON_OFFSET_FILL);
+        gl_state.PolygonOffset(renderData->GetOffsetFactor(), renderData->GetOffsetUnits());
     }
 
-    if (!renderData->GetDepthTest()) {
-        glEnable (GL_DEPTH_TEST);
-    }
+    gl_state.SetDepthTest(renderData->GetDepthTest());
+    gl_state.SetBlend(renderData->GetAlphaBlend());
 
-    if (!renderData->GetAlphaBlend()) {
-        glEnable (GL_BLEND);
-    }
+    SetFaceCulling(gl_state, material->GetSide());
 }
 
-void Renderer::SetFaceCulling(int cull_face) {
+void Renderer::SetFaceCulling(GLStateCache & gl_state, int cull_face) {
     switch (cull_face) {
     case Material::BackSide:
-        glEnable (GL_CULL_FACE);
-        glCullFace (GL_FRONT);
+        gl_state.SetCullFace(true);
+        gl_state.CullFace(GL_FRONT);
         break;
 
     case Material::DoubleSide:
-        glDisable(GL_CULL_FACE);
+        gl_state.SetCullFace(false);
         break;
 
         // FrontSide as Default
     default:
-        glEnable(GL_CULL_FACE);
-        glCullFace (GL_BACK);
+        gl_state.SetCullFace(true);
+        gl_state.CullFace(GL_BACK);
         break;
     }
 }
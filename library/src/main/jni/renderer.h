@@ -24,6 +24,8 @@
 #include "util/GL.h"
 #include "mesh.h"
 #include "OESShader.h"
+#include "RenderQueue.h"
+#include "GLStateCache.h"
 
 namespace mgn
 {
@@ -31,6 +33,11 @@ class Scene;
 class SceneObject;
 class RenderData;
 
+struct DrawCallStats {
+    int drawCalls;          // issued draw calls
+    int unbatchedDrawCalls; // draw calls which would be issued without static batching and instancing
+};
+
 class Renderer
 {
 private:
@@ -38,7 +45,16 @@ private:
 
 public:
 
-    static void RenderEyeView(const Scene * scene, const Array<SceneObject*> &,
+    // Cull and sort once per frame. Result is shared by both eyes.
+    static void PrepareRenderQueue(Scene * scene, const Array<SceneObject*> & sceneObjects,
+            RenderQueue & renderQueue,
+            const OVR::Matrix4f &centerViewMatrix,
+            const OVR::Matrix4f &eyeViewMatrix,
+            const OVR::Matrix4f &eyeProjectionMatrix);
+
+    static void RenderEyeView(const Scene * scene, const RenderQueue & renderQueue,
+            GLStateCache & glState,
+            DrawCallStats & drawCallStats,
             const OESShader * oesShader,
             const OVR::Matrix4f &eyeViewMatrix,
             const OVR::Matrix4f &eyeProjectionMatrix,
@@ -46,20 +62,31 @@ public:
             const int eye);
 
 private:
-    static void RenderRenderData(RenderData* renderData,
+    // Returns true if draw call is issued.
+    static bool RenderRenderData(RenderData* renderData,
+            const OVR::Matrix4f& modelMatrix,
             const OVR::Matrix4f& viewMatrix,
             const OVR::Matrix4f& projectionMatrix,
+            GLStateCache & glState,
             const OESShader * oesShader, const int eye);
 
+    // Group consecutive items sharing mesh, texture and render state into instanced draws.
+    static void PrepareInstances(const Scene * scene, RenderQueue & renderQueue);
+    static bool IsInstanceable(const RenderQueueItem & item);
+    static bool CanDrawAsInstances(const RenderData * first, const RenderData * other);
+
+    static void SetRenderState(GLStateCache & glState, const RenderData * renderData, const Material * material);
+
     static void OcclusionCull(const Scene * scene, const Array<SceneObject*> & sceneObjects);
     static void FrustumCull(const Scene * scene, const OVR::Vector3f& cameraPosition,
-            const Array<SceneObject*> & sceneObjects,
-            Array<RenderData*> & renderDataVector, const OVR::Matrix4f &vpMatrix,
-            const OESShader * oesShader);
+            Array<RenderQueueItem> & bucket, const Array<bool> & inFrustum, float frustum[6][4]);
+    static void FrustumCullBatch(const Scene * scene, const OVR::Vector3f& cameraPosition,
+            RenderQueueItem & item, float frustum[6][4]);
     static void BuildFrustum(float frustum[6][4], float mvpMatrix[16]);
-    static bool IsCubeInFrustum(float frustum[6][4], const BoundingBoxInfo & vertexLimit);
 
-    static void SetFaceCulling(int cull_face);
+    static void SetFaceCulling(GLStateCache & glState, int cull_face);
+
+    static const int MIN_INSTANCE_COUNT = 2;
 
     Renderer(const Renderer& renderEngine);
     Renderer(Renderer&& renderEngine);
@@ -22,37 +22,94 @@
 
 #include "SceneObject.h"
 #include "RenderData.h"
+#include "FrameStats.h"
 
 namespace mgn {
     Scene::Scene() : SceneObject(),
         frustumFlag(false),
-        occlusionFlag(false) {
+        occlusionFlag(false),
+        instancingFlag(true),
+        touchedNodeCount(0),
+        lastTouchedNodeCount(0),
+        renderQueuePrepared(false),
+        lastGLStateIssuedCount(0),
+        lastGLStateSkippedCount(0) {
     oesShader = new OESShader();
+    scene = this;
+    ClearCullingStats();
+    memset(&drawCallStats, 0, sizeof(drawCallStats));
+    memset(&lastDrawCallStats, 0, sizeof(lastDrawCallStats));
 }
 
 Scene::~Scene() {
     delete oesShader;
 }
 
-Array<SceneObject*> Scene::GetWholeSceneObjects() {
-    Array<SceneObject*> sceneObjects(GetChildren());
-    for (int i = 0; i < sceneObjects.GetSize(); ++i) {
-        Array<SceneObject*> children(sceneObjects[i]->GetChildren());
-        for (auto it = children.Begin(); it != children.End(); ++it) {
-            sceneObjects.PushBack(*it);
-        }
+void Scene::PrepareForRendering() {
+    FRAME_STATS_SCOPE(FrameStats::PREPARE_FOR_RENDERING);
+
+    // sceneObjects is already up to date. Just publish statistics of this frame.
+    lastTouchedNodeCount = touchedNodeCount;
+    touchedNodeCount = 0;
+
+    renderQueuePrepared = false;
+
+    lastGLStateIssuedCount = glState.GetIssuedCount();
+    lastGLStateSkippedCount = glState.GetSkippedCount();
+    glState.ResetCounters();
+
+    lastDrawCallStats = drawCallStats;
+    memset(&drawCallStats, 0, sizeof(drawCallStats));
+}
+
+void Scene::AddRenderable(SceneObject * object) {
+    // Scene itself is not rendered
+    if (object == this) return;
+
+    object->renderableIndex = sceneObjects.GetSize();
+    sceneObjects.PushBack(object);
+    renderQueue.Invalidate();
+    bvh.Invalidate();
+
+    if (object->IsStaticBatching()) {
+        staticBatcher.Invalidate();
     }
+}
+
+void Scene::RemoveRenderable(SceneObject * object) {
+    const int index = object->renderableIndex;
+    const int lastIndex = sceneObjects.GetSize() - 1;
 
-    return sceneObjects;
+    // Swap with last one to remove in constant time. Rendering order is decided by sorting.
+    if (index != lastIndex) {
+        SceneObject * last = sceneObjects[lastIndex];
+        sceneObjects[index] = last;
+        last->renderableIndex = index;
+    }
+
+    sceneObjects.PopBack();
+    object->renderableIndex = -1;
+    renderQueue.Invalidate();
+    bvh.Invalidate();
+    staticBatcher.Remove(object);
 }
 
-void Scene::PrepareForRendering() {
-    sceneObjects = GetWholeSceneObjects();
+void Scene::InvalidateBounds(SceneObject * object) {
+    if (object->renderableIndex >= 0) {
+        bvh.InvalidateBounds(object->renderableIndex);
+    }
 }
 
 Matrix4f Scene::Render(const int eye) {
     const Matrix4f viewProjectionM = projectionM * viewM;
-    Renderer::RenderEyeView(this, sceneObjects, oesShader, viewM, projectionM, viewProjectionM, eye);
+
+    // Culling and sorting are done once for both eyes
+    if (!renderQueuePrepared) {
+        Renderer::PrepareRenderQueue(this, sceneObjects, renderQueue, centerViewM, viewM, projectionM);
+        renderQueuePrepared = true;
+    }
+
+    Renderer::RenderEyeView(this, renderQueue, glState, drawCallStats, oesShader, viewM, projectionM, viewProjectionM, eye);
     return viewProjectionM;
 }
 
@@ -87,4 +144,12 @@ IntersectRayBoundsResult Scene::IntersectRayBounds(SceneObject *target, bool axi
     return result;
 }
 
+void Scene::Raycast(int maxHits, Array<RaycastHit> & hits) {
+    Matrix4f invertedCenterViewM = centerViewM.Inverted();
+    const Vector3f origin = invertedCenterViewM.GetTranslation();
+    const Vector3f direction = Quatf(invertedCenterViewM).Rotate(Vector3f(0.0f, 0.0f, -1.0f));
+
+    bvh.Raycast(sceneObjects, origin, direction, maxHits, hits);
+}
+
 }
@@ -24,6 +24,9 @@
 
 #include "SceneObject.h"
 #include "Renderer.h"
+#include "RenderQueue.h"
+#include "SceneBVH.h"
+#include "StaticBatch.h"
 
 using namespace OVR;
 
@@ -41,7 +44,6 @@ class Scene: public SceneObject {
 public:
     Scene();
     virtual ~Scene();
-    Array<SceneObject*> GetWholeSceneObjects();
 
     void SetFrustumCulling( bool frustumFlag) {
         this->frustumFlag = frustumFlag;
@@ -55,6 +57,15 @@ public:
         return frustumFlag;
     }
 
+    // Draw consecutive objects sharing mesh and texture with one instanced draw call.
+    void SetInstancing(bool instancingFlag) {
+        this->instancingFlag = instancingFlag;
+    }
+
+    bool GetInstancing() const {
+        return instancingFlag;
+    }
+
     void SetOcclusionCulling(bool occlusionFlag) {
         this->occlusionFlag = occlusionFlag;
     }
@@ -89,10 +100,81 @@ public:
 
     void PrepareForRendering();
 
+    // Called from SceneObject when structure of this scene is changed.
+    void AddRenderable(SceneObject * object);
+    void RemoveRenderable(SceneObject * object);
+    void InvalidateBounds(SceneObject * object);
+
+    void CountTouchedNode() {
+        ++touchedNodeCount;
+    }
+
+    // Number of nodes touched by structural changes in the last frame.
+    int GetTouchedNodeCount() const {
+        return lastTouchedNodeCount;
+    }
+
+    // Number of GL state changes issued in the last frame.
+    int GetGLStateIssuedCount() const {
+        return lastGLStateIssuedCount;
+    }
+
+    // Number of redundant GL state changes skipped in the last frame.
+    int GetGLStateSkippedCount() const {
+        return lastGLStateSkippedCount;
+    }
+
+    // Number of draw calls issued in the last frame.
+    int GetDrawCallCount() const {
+        return lastDrawCallStats.drawCalls;
+    }
+
+    // Number of draw calls which would be issued in the last frame without static batching.
+    int GetUnbatchedDrawCallCount() const {
+        return lastDrawCallStats.unbatchedDrawCalls;
+    }
+
+    // Call when objects marked for static batching or their render state are changed.
+    void InvalidateStaticBatches() {
+        staticBatcher.Invalidate();
+    }
+
+    // Bring static batches up to date. Returns true if set of batches is changed.
+    bool UpdateStaticBatches() {
+        return staticBatcher.Update(sceneObjects);
+    }
+
+    const Array<StaticBatch*> & GetStaticBatches() const {
+        return staticBatcher.GetBatches();
+    }
+
     Matrix4f Render(const int eye);
 
     IntersectRayBoundsResult IntersectRayBounds(SceneObject * target, bool axisInWorld);
 
+    // Update in frustum flags of renderable objects using bounding volume hierarchy.
+    void CullBounds(float frustum[6][4]) {
+        bvh.Cull(sceneObjects, frustum, inFrustumFlags, cullingStats);
+    }
+
+    // Indexed same as renderable objects. Updated by CullBounds.
+    Array<bool> & GetInFrustumFlags() {
+        return inFrustumFlags;
+    }
+
+    void ClearCullingStats() {
+        memset(&cullingStats, 0, sizeof(cullingStats));
+    }
+
+    // Frustum culling statistics of the last frame.
+    const CullingStats & GetCullingStats() const {
+        return cullingStats;
+    }
+
+    // Cast a ray from center eye to view direction against all renderable objects.
+    // Must be called on GL thread. See SceneBVH::Raycast.
+    void Raycast(int maxHits, Array<RaycastHit> & hits);
+
     void SetViewPosition(const Vector3f & pos) {
         viewPosition = pos;
     }
@@ -118,10 +200,28 @@ private:
     Matrix4f centerViewM;
     Matrix4f viewM;
     Matrix4f projectionM;
-    Array<SceneObject*> sceneObjects; // will be rendererd
+    Array<SceneObject*> sceneObjects; // will be rendererd. Maintained incrementally by SceneObject.
+    int touchedNodeCount;
+    int lastTouchedNodeCount;
+
+    RenderQueue renderQueue;
+    bool renderQueuePrepared; // false until first eye of the frame is rendered
+
+    SceneBVH bvh;
+    Array<bool> inFrustumFlags;
+    CullingStats cullingStats;
+
+    GLStateCache glState;
+    int lastGLStateIssuedCount;
+    int lastGLStateSkippedCount;
+
+    StaticBatcher staticBatcher;
+    DrawCallStats drawCallStats;
+    DrawCallStats lastDrawCallStats;
 
     bool frustumFlag;
     bool occlusionFlag;
+    bool instancingFlag;
 
 };
 
@@ -55,6 +55,46 @@ Java_com_eje_1c_meganekko_Scene_getLookingPoint(JNIEnv * env, jobject obj, jlong
     FillElementsUnSafe(env, values, result.first);
 }
 
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Scene_getCullingStats(JNIEnv * env, jobject obj, jlong jscene, jlongArray jvalues) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    const CullingStats & stats = scene->GetCullingStats();
+    jlong values[4] = {
+        stats.tested,
+        stats.culled,
+        stats.accepted,
+        static_cast<jlong>(stats.time * 1e9)
+    };
+    env->SetLongArrayRegion(jvalues, 0, 4, values);
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_Scene_raycast(JNIEnv * env, jobject obj, jlong jscene, jint maxHits, jlongArray jobjects, jfloatArray jvalues) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+
+    Array<RaycastHit> hits;
+    scene->Raycast(maxHits, hits);
+
+    const int count = hits.GetSizeI();
+    if (count == 0) return 0;
+
+    jlong* objects = static_cast<jlong*>(env->GetPrimitiveArrayCritical(jobjects, nullptr));
+    jfloat* values = static_cast<jfloat*>(env->GetPrimitiveArrayCritical(jvalues, nullptr));
+
+    for (int i = 0; i < count; ++i) {
+        objects[i] = reinterpret_cast<jlong>(hits[i].object);
+        values[i * 4] = hits[i].distance;
+        values[i * 4 + 1] = hits[i].point.x;
+        values[i * 4 + 2] = hits[i].point.y;
+        values[i * 4 + 3] = hits[i].point.z;
+    }
+
+    env->ReleasePrimitiveArrayCritical(jvalues, values, 0);
+    env->ReleasePrimitiveArrayCritical(jobjects, objects, 0);
+
+    return count;
+}
+
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Scene_setViewMatrix(JNIEnv * jni, jobject obj, jlong jscene, jfloatArray jarray) {
     Scene* scene = reinterpret_cast<Scene*>(jscene);
@@ -89,6 +129,12 @@ Java_com_eje_1c_meganekko_Scene_render(JNIEnv * jni, jobject obj, jlong jscene,
     scene->Render(eye);
 }
 
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Scene_prepareForRendering(JNIEnv * jni, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    scene->PrepareForRendering();
+}
+
 JNIEXPORT void JNICALL
 Java_com_eje_1c_meganekko_Scene_setViewPosition(JNIEnv * jni, jobject obj, jlong jscene, jfloat x, jfloat y, jfloat z) {
     Scene* scene = reinterpret_cast<Scene*>(jscene);
@@ -109,6 +155,48 @@ Java_com_eje_1c_meganekko_Scene_getViewOrientation(JNIEnv * jni, jobject obj, jl
     FillElementsUnSafe(jni, values, orientation);
 }
 
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_Scene_getTouchedNodeCount(JNIEnv * jni, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    return scene->GetTouchedNodeCount();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_Scene_getGLStateIssuedCount(JNIEnv * jni, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    return scene->GetGLStateIssuedCount();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_Scene_getGLStateSkippedCount(JNIEnv * jni, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    return scene->GetGLStateSkippedCount();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_Scene_getDrawCallCount(JNIEnv * jni, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    return scene->GetDrawCallCount();
+}
+
+JNIEXPORT jint JNICALL
+Java_com_eje_1c_meganekko_Scene_getUnbatchedDrawCallCount(JNIEnv * jni, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    return scene->GetUnbatchedDrawCallCount();
+}
+
+JNIEXPORT void JNICALL
+Java_com_eje_1c_meganekko_Scene_setInstancing(JNIEnv * env, jobject obj, jlong jscene, jboolean flag) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    scene->SetInstancing(static_cast<bool>(flag));
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_eje_1c_meganekko_Scene_getInstancing(JNIEnv * env, jobject obj, jlong jscene) {
+    Scene* scene = reinterpret_cast<Scene*>(jscene);
+    return scene->GetInstancing();
+}
+
 #ifdef __cplusplus 
 } // extern C
 #endif
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import com.eje_c.meganekko.GlTaskScheduler.Priority;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link GlTaskScheduler} driven by fake clock and frames. Display period is 1/60 seconds,
+ * so budget per frame is about 3.3 ms with default fraction.
+ */
+public class GlTaskSchedulerTest {
+
+    private static final long MILLIS = 1000000L;
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    private final FakeClock mClock = new FakeClock();
+    private final List<String> mLog = new ArrayList<>();
+    private GlTaskScheduler mScheduler;
+    private int mFrameNumber;
+
+    private static class FakeClock implements GlTaskScheduler.Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    private static class FakeFrame implements Frame {
+        private final int mFrameNumber;
+
+        FakeFrame(int frameNumber) {
+            mFrameNumber = frameNumber;
+        }
+
+        @Override
+        public double getPredictedDisplayTimeInSeconds() {
+            return mFrameNumber / 60.0;
+        }
+
+        @Override
+        public float getDeltaSeconds() {
+            return 1.0f / 60.0f;
+        }
+
+        @Override
+        public int getFrameNumber() {
+            return mFrameNumber;
+        }
+
+        @Override
+        public float getSwipeFraction() {
+            return 0;
+        }
+
+        @Override
+        public int getButtonState() {
+            return 0;
+        }
+
+        @Override
+        public int getButtonPressed() {
+            return 0;
+        }
+
+        @Override
+        public int getButtonReleased() {
+            return 0;
+        }
+    }
+
+    /**
+     * Logs its name and advances clock as if it took {@code costMillis}.
+     */
+    private Runnable task(final String name, final long costMillis) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mLog.add(name + "@" + mFrameNumber);
+                mClock.now += costMillis * MILLIS;
+            }
+        };
+    }
+
+    private void runFrame() {
+        ++mFrameNumber;
+        mClock.now = mFrameNumber * FRAME_NANOS;
+        mScheduler.run(new FakeFrame(mFrameNumber));
+    }
+
+    @Before
+    public void setUp() {
+        mScheduler = new GlTaskScheduler(mClock);
+    }
+
+    @Test
+    public void higherPriorityRunsFirst() {
+        mScheduler.post(task("low", 0), Priority.LOW);
+        mScheduler.post(task("normal", 0), Priority.NORMAL);
+        mScheduler.post(task("high", 0), Priority.HIGH);
+        mScheduler.post(task("normal2", 0));
+        runFrame();
+
+        assertEquals(Arrays.asList("high@1", "normal@1", "normal2@1", "low@1"), mLog);
+        assertEquals(4, mScheduler.getLastRunCount());
+        assertEquals(0, mScheduler.getQueueDepth());
+    }
+
+    @Test
+    public void tasksOverBudgetSpillToNextFrames() {
+        for (int i = 0; i < 10; ++i) {
+            mScheduler.post(task("t" + i, 1));
+        }
+
+        // Tasks start while spent time is under 3.3 ms
+        runFrame();
+        assertEquals(4, mScheduler.getLastRunCount());
+        assertEquals(6, mScheduler.getQueueDepth());
+        runFrame();
+        assertEquals(4, mScheduler.getLastRunCount());
+        runFrame();
+        assertEquals(2, mScheduler.getLastRunCount());
+        assertEquals(0, mScheduler.getQueueDepth());
+
+        assertEquals("t0@1", mLog.get(0));
+        assertEquals("t4@2", mLog.get(4));
+        assertEquals("t9@3", mLog.get(9));
+        assertEquals(2, mScheduler.getOverBudgetFrames());
+    }
+
+    @Test
+    public void atLeastOneTaskRunsEveryFrame() {
+        mScheduler.post(task("heavy1", 20));
+        mScheduler.post(task("heavy2", 20));
+        runFrame();
+        runFrame();
+
+        assertEquals(Arrays.asList("heavy1@1", "heavy2@2"), mLog);
+    }
+
+    @Test
+    public void waitingTaskIsPromotedEvery30Frames() {
+        mScheduler.post(task("low", 0), Priority.LOW);
+
+        // A heavy high priority task every frame uses up the budget
+        for (int frame = 1; frame <= 62; ++frame) {
+            mScheduler.post(task("high", 5), Priority.HIGH);
+            runFrame();
+
+            if (frame == 30) {
+                assertEquals(1, mScheduler.getReadyCount(Priority.LOW));
+            } else if (frame == 31) {
+                assertEquals(0, mScheduler.getReadyCount(Priority.LOW));
+                assertEquals(1, mScheduler.getReadyCount(Priority.NORMAL));
+            } else if (frame == 60) {
+                assertEquals(1, mScheduler.getReadyCount(Priority.NORMAL));
+            }
+        }
+
+        // Promoted to HIGH on frame 61 behind that frame's task, then runs first on frame 62
+        assertEquals("low@62", mLog.get(mLog.size() - 2));
+        assertEquals("high@62", mLog.get(mLog.size() - 1));
+    }
+
+    @Test
+    public void promotionFramesCanBeChanged() {
+        mScheduler.setPromotionFrames(2);
+        mScheduler.post(task("low", 0), Priority.LOW);
+        for (int frame = 1; frame <= 6; ++frame) {
+            mScheduler.post(task("high", 5), Priority.HIGH);
+            runFrame();
+        }
+
+        // LOW on frame 1, NORMAL on frame 3, HIGH on frame 5
+        assertTrue(mLog.toString(), mLog.contains("low@6"));
+    }
+
+    @Test
+    public void frameDelayedTaskRunsAfterFrames() {
+        runFrame();
+        mScheduler.postDelayedFrames(task("delayed", 0), 3, Priority.NORMAL);
+        mScheduler.postDelayedFrames(task("next", 0), 0, Priority.NORMAL);
+        for (int i = 0; i < 5; ++i) {
+            runFrame();
+        }
+
+        assertEquals(Arrays.asList("next@2", "delayed@5"), mLog);
+    }
+
+    @Test
+    public void timeDelayedTaskRunsOnFirstFrameAfterDelay() {
+        runFrame();
+        mScheduler.postDelayed(task("delayed", 0), 40, Priority.NORMAL);
+        assertEquals(1, mScheduler.getQueueDepth());
+
+        // Posted at 16.7 ms and due at 56.7 ms. Next frame is frame 4 at 66.7 ms
+        for (int i = 0; i < 5; ++i) {
+            runFrame();
+        }
+
+        assertEquals(Arrays.asList("delayed@4"), mLog);
+    }
+
+    @Test
+    public void deadlineTaskRunsOnLastFrameBeforeDeadlineRegardlessOfBudget() {
+        mScheduler.post(task("heavy", 10), Priority.HIGH);
+        mScheduler.post(task("heavy", 10), Priority.HIGH);
+        mScheduler.post(task("heavy", 10), Priority.HIGH);
+        mScheduler.post(task("heavy", 10), Priority.HIGH);
+        mScheduler.post(task("heavy", 10), Priority.HIGH);
+
+        // Frame 3 is displayed at 50 ms, frame 4 would be after deadline
+        mScheduler.postWithDeadline(task("deadline", 0), 3.5 / 60.0, Priority.LOW);
+        for (int i = 0; i < 5; ++i) {
+            runFrame();
+        }
+
+        assertEquals(Arrays.asList("heavy@1", "heavy@2", "deadline@3", "heavy@3", "heavy@4", "heavy@5"), mLog);
+    }
+
+    @Test
+    public void deadlineTaskRunsEarlyWhenBudgetRemains() {
+        mScheduler.postWithDeadline(task("deadline", 0), 100.0, Priority.LOW);
+        runFrame();
+
+        assertEquals(Arrays.asList("deadline@1"), mLog);
+    }
+
+    @Test
+    public void latencyIsMeasuredFromReadyTime() {
+        mScheduler.post(task("heavy1", 20));
+        mScheduler.post(task("heavy2", 20));
+        runFrame();
+        runFrame();
+
+        assertEquals(FRAME_NANOS, mScheduler.getMaxLatencyNanos());
+        mScheduler.resetMetrics();
+        assertEquals(0, mScheduler.getMaxLatencyNanos());
+        assertEquals(0, mScheduler.getOverBudgetFrames());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.eje_c.meganekko;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Construction time of {@link HybridObject}s registered by native pointer. "before" is the linear scan
+ * which {@link NativeReference#get(HybridObject, long)} used to do, "after" is the current registry.
+ * Run with {@code ./gradlew test -Pbenchmark}.
+ */
+public class NativeReferenceBenchmark {
+
+    private static final int[] SIZES = {10000, 50000, 100000};
+
+    // Native pointers are aligned, so low bits are always zero
+    private static final long BASE_POINTER = 0x7f00000000L;
+    private static final long POINTER_STEP = 64;
+
+    private static class TestObject extends HybridObject {
+        TestObject(long nativePointer) {
+            super(nativePointer);
+        }
+    }
+
+    /**
+     * Registry before O(1) lookup.
+     */
+    private static class LinearScanRegistry {
+        private final Set<Reference> mReferences = new HashSet<>();
+        private final ReferenceQueue<Object> mQueue = new ReferenceQueue<>();
+
+        private static class Reference extends WeakReference<Object> {
+            final long mNativePointer;
+
+            Reference(Object referent, long nativePointer, ReferenceQueue<Object> q) {
+                super(referent, q);
+                mNativePointer = nativePointer;
+            }
+        }
+
+        Reference get(Object object, long nativePointer) {
+            for (Reference ref : mReferences) {
+                if (ref.mNativePointer == nativePointer) {
+                    return ref;
+                }
+            }
+
+            Reference ref = new Reference(object, nativePointer, mQueue);
+            mReferences.add(ref);
+            return ref;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("meganekko.benchmark"));
+    }
+
+    @Test
+    public void construction() {
+        for (int size : SIZES) {
+            final long before = before(size);
+            final long after = after(size);
+            System.out.printf("NativeReference construction of %d objects: before %.1f ms, after %.1f ms%n",
+                    size, before / 1e6, after / 1e6);
+        }
+    }
+
+    private static long before(int size) {
+        final LinearScanRegistry registry = new LinearScanRegistry();
+        final List<Object> objects = new ArrayList<>(size);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < size; ++i) {
+            final Object object = new Object();
+            registry.get(object, BASE_POINTER + i * POINTER_STEP);
+            objects.add(object);
+        }
+        final long time = System.nanoTime() - start;
+
+        assertEquals(size, registry.mReferences.size());
+        return time;
+    }
+
+    private static long after(int size) {
+        final List<TestObject> objects = new ArrayList<>(size);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < size; ++i) {
+            objects.add(new TestObject(BASE_POINTER + i * POINTER_STEP));
+        }
+        final long time = System.nanoTime() - start;
+
+        // Same pointer resolves to same reference, then unregister all
+        for (TestObject object : objects) {
+            final NativeReference ref = NativeReference.get(object, object.getNative());
+            assertSame(ref, NativeReference.get(null, object.getNative()));
+            assertEquals(object.getNative(), ref.release());
+        }
+        return time;
+    }
+}
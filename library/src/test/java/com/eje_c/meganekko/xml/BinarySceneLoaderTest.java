@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko.xml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static com.eje_c.meganekko.xml.BinarySceneLoader.HEADER_SIZE;
+import static com.eje_c.meganekko.xml.BinarySceneLoader.NODE_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Broken compiled scene must be reported as {@link IOException}, because
+ * {@link XmlSceneParser#parse(int, com.eje_c.meganekko.Scene)} falls back to XML only on it.
+ */
+public class BinarySceneLoaderTest {
+
+    private static final String[] STRINGS = {"root", "child"};
+
+    // Scene with object "root" and its child "child"
+    private static byte[] compiledScene() {
+        int stringsSize = 0;
+        for (String s : STRINGS) stringsSize += 4 + s.length();
+        final int nodesOffset = HEADER_SIZE + stringsSize;
+        final ByteBuffer data = ByteBuffer.allocate(nodesOffset + 2 * NODE_SIZE);
+
+        data.putInt(BinarySceneLoader.MAGIC).putInt(BinarySceneLoader.VERSION)
+                .putInt(STRINGS.length).putInt(0).putInt(2).putInt(-1)
+                .putInt(HEADER_SIZE).putInt(nodesOffset);
+        for (String s : STRINGS) {
+            data.putInt(s.length()).put(s.getBytes());
+        }
+        for (int i = 0; i < 2; ++i) {
+            final int o = nodesOffset + i * NODE_SIZE;
+            data.putInt(o, i - 1);
+            data.putShort(o + 4, (short) BinarySceneLoader.CLASS_OBJECT);
+            data.putInt(o + 8, -1);
+            data.putInt(o + 12, i);
+            data.putInt(o + 72, -1);
+            data.putInt(o + 76, -1);
+        }
+        return data.array();
+    }
+
+    private static void assertBroken(byte[] bytes, int length) {
+        try {
+            BinarySceneLoader.validate(ByteBuffer.wrap(bytes, 0, length).slice());
+            fail("Broken scene of " + length + " bytes was accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void validSceneIsAccepted() throws IOException {
+        final byte[] bytes = compiledScene();
+        assertArrayEquals(STRINGS, BinarySceneLoader.validate(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void truncatedSceneThrowsIOException() {
+        final byte[] bytes = compiledScene();
+        for (int length = 0; length < bytes.length; ++length) {
+            assertBroken(bytes, length);
+        }
+    }
+
+    @Test
+    public void overflowingHeaderThrowsIOException() {
+        final byte[] bytes = compiledScene();
+
+        // HEADER_SIZE + classCount * 4 overflows to HEADER_SIZE
+        ByteBuffer.wrap(bytes).putInt(12, 0x40000000);
+        assertBroken(bytes, bytes.length);
+
+        // string length reaching beyond Integer.MAX_VALUE
+        final byte[] longString = compiledScene();
+        ByteBuffer.wrap(longString).putInt(HEADER_SIZE, Integer.MAX_VALUE - 2);
+        assertBroken(longString, longString.length);
+
+        // string count far more than strings section can hold
+        final byte[] manyStrings = compiledScene();
+        ByteBuffer.wrap(manyStrings).putInt(8, Integer.MAX_VALUE);
+        assertBroken(manyStrings, manyStrings.length);
+    }
+
+    @Test
+    public void garbledSceneThrowsOnlyIOException() {
+        final byte[] original = compiledScene();
+        final Random random = new Random(1);
+
+        for (int i = 0; i < 10000; ++i) {
+            final byte[] bytes = original.clone();
+            for (int n = 1 + random.nextInt(4); n > 0; --n) {
+                bytes[random.nextInt(bytes.length)] = (byte) random.nextInt();
+            }
+            try {
+                BinarySceneLoader.validate(ByteBuffer.wrap(bytes));
+            } catch (IOException expected) {
+                // Other exceptions fail the test
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko.xml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Throughput of reading "x y z" attributes in elements per second. "before" is split and
+ * {@link Float#parseFloat(String)} which attribute parsers used to do, "after" is
+ * {@link FloatTokenizer}. Run with {@code ./gradlew test -Pbenchmark}.
+ */
+public class FloatTokenizerBenchmark {
+
+    private static final int VALUES = 100000;
+    private static final int RUNS = 10;
+
+    private final String[] mValues = new String[VALUES];
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("meganekko.benchmark"));
+
+        final Random random = new Random(1);
+        for (int i = 0; i < VALUES; ++i) {
+            mValues[i] = (random.nextInt(2000) - 1000) / 100.0f + " "
+                    + random.nextInt(10) + " " + -random.nextInt(100000) / 1000.0f;
+        }
+    }
+
+    @Test
+    public void elementsPerSecond() {
+        long before = Long.MAX_VALUE;
+        long after = Long.MAX_VALUE;
+        float sumBefore = 0;
+        float sumAfter = 0;
+
+        // First runs are warm up of JIT
+        for (int run = 0; run < RUNS; ++run) {
+            long start = System.nanoTime();
+            sumBefore = before(mValues);
+            before = Math.min(before, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sumAfter = after(mValues);
+            after = Math.min(after, System.nanoTime() - start);
+        }
+
+        assertEquals(sumBefore, sumAfter, 0);
+        System.out.printf("FloatTokenizer %d elements: before %.0f elements/s, after %.0f elements/s%n",
+                VALUES, VALUES / (before / 1e9), VALUES / (after / 1e9));
+    }
+
+    private static float before(String[] values) {
+        float sum = 0;
+        for (String value : values) {
+            final String[] arr = value.split("\\s+");
+            sum += Float.parseFloat(arr[0]) + Float.parseFloat(arr[1]) + Float.parseFloat(arr[2]);
+        }
+        return sum;
+    }
+
+    private static float after(String[] values) {
+        final float[] dest = new float[3];
+        float sum = 0;
+        for (String value : values) {
+            FloatTokenizer.parse(value, dest);
+            sum += dest[0] + dest[1] + dest[2];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.eje_c.meganekko.xml;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link FloatTokenizer} must give bit for bit same result as {@link Float#parseFloat(String)}.
+ */
+public class FloatTokenizerTest {
+
+    private static final int SAMPLES = 1000000;
+
+    private static void assertSameAsParseFloat(String value) {
+        final float expected;
+        try {
+            expected = Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            try {
+                FloatTokenizer.parseFloat(value);
+                fail("\"" + value + "\" was accepted");
+            } catch (NumberFormatException expectedException) {
+            }
+            return;
+        }
+        assertEquals("\"" + value + "\"",
+                Float.floatToRawIntBits(expected), Float.floatToRawIntBits(FloatTokenizer.parseFloat(value)));
+    }
+
+    @Test
+    public void edgeCases() {
+        final String[] values = {
+                "0", "-0", "+0", "0.0", "-0.0", "00000", ".5", "-.5", "5.", "-5.", "1.0000000000",
+                "16777215", "16777216", "16777217", "-16777217", "99999999", "2147483647", "2147483648",
+                "0.1", "0.3", "0.7", "1.1", "3.14159265358979", "0.0000000001", "0.00000000001",
+                "123456.789", "1234567.8", "1e3", "1E-3", "-2.5e+2", "1e39", "1e-46", "3.4028235e38",
+                "NaN", "-NaN", "Infinity", "-Infinity", "0x1p3", "1f", "1d",
+                "", "-", "+", ".", "-.", "1.2.3", "--1", "+-1", "1-", "abc", "1,5", " 1", "1 "
+        };
+        for (String value : values) {
+            assertSameAsParseFloat(value);
+        }
+    }
+
+    @Test
+    public void randomDecimals() {
+        final Random random = new Random(1);
+        final StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < SAMPLES; ++i) {
+            value.setLength(0);
+            switch (random.nextInt(4)) {
+                case 0:
+                    value.append('-');
+                    break;
+                case 1:
+                    value.append('+');
+                    break;
+            }
+
+            final int integerDigits = random.nextInt(10);
+            for (int d = 0; d < integerDigits; ++d) value.append((char) ('0' + random.nextInt(10)));
+            if (integerDigits == 0 || random.nextBoolean()) {
+                value.append('.');
+                final int fractionDigits = 1 + random.nextInt(12);
+                for (int d = 0; d < fractionDigits; ++d) value.append((char) ('0' + random.nextInt(10)));
+            }
+
+            assertSameAsParseFloat(value.toString());
+        }
+    }
+
+    @Test
+    public void randomFloats() {
+        final Random random = new Random(2);
+        for (int i = 0; i < SAMPLES; ++i) {
+            final float f = Float.intBitsToFloat(random.nextInt());
+            assertSameAsParseFloat(Float.toString(f));
+            assertSameAsParseFloat(String.format(Locale.US, "%.4f", random.nextFloat() * 1000 - 500));
+        }
+    }
+
+    @Test
+    public void tokenize() {
+        final float[] dest = new float[3];
+
+        assertEquals(3, FloatTokenizer.parse(" 1.5\t-2\n0.25  ", dest));
+        assertEquals(1.5f, dest[0], 0);
+        assertEquals(-2f, dest[1], 0);
+        assertEquals(0.25f, dest[2], 0);
+
+        assertEquals(0, FloatTokenizer.parse("", dest));
+        assertEquals(0, FloatTokenizer.parse(" \r\n", dest));
+        assertEquals(2, FloatTokenizer.parse("7 8", dest));
+
+        // More values than dest
+        dest[2] = 0;
+        assertEquals(4, FloatTokenizer.parse("1 2 3 4 5", dest));
+        assertEquals(3f, dest[2], 0);
+
+        try {
+            FloatTokenizer.parse("1 x 3", dest);
+            fail();
+        } catch (NumberFormatException expected) {
+        }
+    }
+}
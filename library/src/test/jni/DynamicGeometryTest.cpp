@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * DynamicGeometry against fake GPU buffers, with 100k vertices updated
+ * every frame.
+ ***************************************************************************/
+
+#include "HostTest.h"
+#include "DynamicGeometry.h"
+
+#include "FakeGL.h"
+
+#include <chrono>
+
+using namespace mgn;
+using namespace mgn::fake;
+
+namespace {
+
+// float3 position and unsigned byte4 color, as Java VertexLayout.getValues()
+const int LAYOUT_VALUES[] = {
+        0, 3, 0, 0,
+        2, 4, 2, 12
+};
+const int STRIDE = 16;
+const int VERTEX_COUNT = 100000;
+const int INDEX_COUNT = 150000;
+const int FRAMES = 120;
+
+struct Vertex {
+    float x, y, z;
+    uint8_t color[4];
+};
+
+VertexLayout Layout() {
+    return VertexLayout(LAYOUT_VALUES, 8, STRIDE);
+}
+
+// Waveform whose amplitude changes every frame, so bounds change too.
+void FillWave(std::vector<Vertex> & vertices, int frame) {
+    const float amplitude = 1.0f + (frame % 10) * 0.1f;
+    for (int i = 0, n = static_cast<int>(vertices.size()); i < n; ++i) {
+        Vertex & v = vertices[i];
+        v.x = i * 0.001f;
+        v.y = amplitude * std::sin(i * 0.01f + frame * 0.1f);
+        v.z = -static_cast<float>(frame);
+        v.color[0] = v.color[1] = v.color[2] = v.color[3] = static_cast<uint8_t>(frame);
+    }
+}
+
+}
+
+TEST(HundredThousandVerticesPerFrame) {
+    DynamicGeometry geometry(Layout(), VERTEX_COUNT, INDEX_COUNT);
+
+    std::vector<uint16_t> indices(INDEX_COUNT);
+    for (int i = 0; i < INDEX_COUNT; ++i) {
+        indices[i] = static_cast<uint16_t>((i / 3 * 2 + i % 3) % 65536);
+    }
+    geometry.UpdateIndices(0, INDEX_COUNT, indices.data());
+    geometry.SetCounts(65536, INDEX_COUNT);
+
+    std::vector<Vertex> vertices(VERTEX_COUNT);
+    GLuint previous[2] = {0, 0};
+    int wrongContents = 0;
+    int reusedBuffers = 0;
+    int wrongBounds = 0;
+    std::chrono::steady_clock::duration elapsed(0);
+    uploadedBytes = 0;
+
+    for (int frame = 0; frame < FRAMES; ++frame) {
+        FillWave(vertices, frame);
+
+        const std::chrono::steady_clock::time_point start = std::chrono::steady_clock::now();
+        geometry.UpdateVertices(0, VERTEX_COUNT, reinterpret_cast<const uint8_t*>(vertices.data()));
+        const GlGeometry & drawn = geometry.Flush();
+        elapsed += std::chrono::steady_clock::now() - start;
+
+        // GPU may still read buffers of two previous frames
+        if (drawn.vertexBuffer == previous[0] || drawn.vertexBuffer == previous[1]) ++reusedBuffers;
+        previous[1] = previous[0];
+        previous[0] = drawn.vertexBuffer;
+
+        if (!SameBytes(drawn.vertexBuffer, vertices.data(), VERTEX_COUNT * sizeof(Vertex))) ++wrongContents;
+
+        // Only first 65536 vertices are in use
+        Vector3f mins, maxs;
+        geometry.GetBounds(mins, maxs);
+        float minY = FLT_MAX, maxY = -FLT_MAX;
+        for (int i = 0; i < 65536; ++i) {
+            minY = Alg::Min(minY, vertices[i].y);
+            maxY = Alg::Max(maxY, vertices[i].y);
+        }
+        if (mins.x != 0.0f || maxs.x != vertices[65535].x || mins.y != minY || maxs.y != maxY
+                || mins.z != vertices[0].z || maxs.z != vertices[0].z) {
+            ++wrongBounds;
+        }
+    }
+
+    EXPECT_EQ(0, wrongContents);
+    EXPECT_EQ(0, reusedBuffers);
+    EXPECT_EQ(0, wrongBounds);
+    EXPECT_EQ(static_cast<long long>(FRAMES) * VERTEX_COUNT * STRIDE + 3 * INDEX_COUNT * 2, uploadedBytes);
+
+    const double ms = std::chrono::duration<double, std::milli>(elapsed).count() / FRAMES;
+    std::printf("     %d vertices per frame: %.3f ms/frame for update, refit and upload\n", VERTEX_COUNT, ms);
+}
+
+TEST(SubRangesCatchUpEveryBuffer) {
+    const int count = 1000;
+    DynamicGeometry geometry(Layout(), count, 3);
+    std::vector<Vertex> vertices(count);
+    FillWave(vertices, 0);
+    geometry.UpdateVertices(0, count, reinterpret_cast<const uint8_t*>(vertices.data()));
+    geometry.SetCounts(count, 3);
+    geometry.Flush();
+
+    // Each buffer must receive ranges written while other buffers were current
+    std::vector<Vertex> expected(vertices);
+    int wrongContents = 0;
+    for (int frame = 1; frame <= 10; ++frame) {
+        const int first = (frame * 137) % (count - 50);
+        FillWave(vertices, frame);
+        memcpy(&expected[first], &vertices[first], 50 * sizeof(Vertex));
+        geometry.UpdateVertices(first, 50, reinterpret_cast<const uint8_t*>(&vertices[first]));
+
+        const GlGeometry & drawn = geometry.Flush();
+        if (!SameBytes(drawn.vertexBuffer, expected.data(), count * sizeof(Vertex))) ++wrongContents;
+    }
+    EXPECT_EQ(0, wrongContents);
+}
+
+TEST(FlushWithoutChangesKeepsBuffer) {
+    DynamicGeometry geometry(Layout(), 10, 3);
+    std::vector<Vertex> vertices(10);
+    FillWave(vertices, 1);
+    geometry.UpdateVertices(0, 10, reinterpret_cast<const uint8_t*>(vertices.data()));
+    const GLuint first = geometry.Flush().vertexBuffer;
+
+    uploadedBytes = 0;
+    geometry.SetCounts(10, 3);
+    EXPECT_TRUE(geometry.IsDirty());
+    EXPECT_EQ(first, geometry.Flush().vertexBuffer);
+    EXPECT_EQ(0, uploadedBytes);
+    EXPECT_TRUE(!geometry.IsDirty());
+}
+
+TEST(MaxIndex) {
+    DynamicGeometry geometry(Layout(), 10, 6);
+    const uint16_t indices[] = {0, 1, 2, 2, 9, 3};
+    geometry.UpdateIndices(0, 6, indices);
+
+    EXPECT_EQ(-1, geometry.GetMaxIndex(0));
+    EXPECT_EQ(2, geometry.GetMaxIndex(3));
+    EXPECT_EQ(9, geometry.GetMaxIndex(6));
+}
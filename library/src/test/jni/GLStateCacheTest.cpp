@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * GLStateCache against a recording backend, driven by OESShader.
+ ***************************************************************************/
+
+#include "HostTest.h"
+#include "FakeGL.h"
+#include "GLStateCache.h"
+#include "OESShader.h"
+#include "RenderData.h"
+
+using namespace mgn;
+
+namespace {
+
+class RecordingBackend: public GLStateCache::Backend {
+public:
+    int calls = 0;
+    int enables = 0;
+    int disables = 0;
+    int cullFaces = 0;
+    int polygonOffsets = 0;
+    int programs = 0;
+    int activeTextures = 0;
+    int textureBinds = 0;
+
+    void Enable(GLenum cap) {
+        ++calls;
+        ++enables;
+    }
+
+    void Disable(GLenum cap) {
+        ++calls;
+        ++disables;
+    }
+
+    void CullFace(GLenum mode) {
+        ++calls;
+        ++cullFaces;
+    }
+
+    void PolygonOffset(GLfloat factor, GLfloat units) {
+        ++calls;
+        ++polygonOffsets;
+    }
+
+    void UseProgram(GLuint program) {
+        ++calls;
+        ++programs;
+    }
+
+    void ActiveTexture(GLenum unit) {
+        ++calls;
+        ++activeTextures;
+    }
+
+    void BindTexture(GLenum target, GLuint texture) {
+        ++calls;
+        ++textureBinds;
+    }
+};
+
+// Same calls as private Renderer::SetFaceCulling and Renderer::SetRenderState.
+// Renderer needs Scene and RenderQueue, so the drawing itself is left to the real OESShader.
+void SetFaceCulling(GLStateCache & state, int side) {
+    switch (side) {
+    case Material::BackSide:
+        state.SetCullFace(true);
+        state.CullFace(GL_FRONT);
+        break;
+    case Material::DoubleSide:
+        state.SetCullFace(false);
+        break;
+    default:
+        state.SetCullFace(true);
+        state.CullFace(GL_BACK);
+        break;
+    }
+}
+
+void SetRenderState(GLStateCache & state, const RenderData & renderData) {
+    state.SetPolygonOffsetFill(renderData.GetOffset());
+    if (renderData.GetOffset()) {
+        state.PolygonOffset(renderData.GetOffsetFactor(), renderData.GetOffsetUnits());
+    }
+    state.SetDepthTest(renderData.GetDepthTest());
+    state.SetBlend(renderData.GetAlphaBlend());
+    SetFaceCulling(state, renderData.GetMaterial()->GetSide());
+}
+
+const int OBJECT_COUNT = 1000;
+const int TEXTURE_COUNT = 10;
+
+// Per eye part of Renderer::RenderEyeView around OESShader::Render
+class Scene {
+public:
+    // Render queue sorts by material, so objects sharing a texture are drawn in a row
+    Scene() {
+        for (int i = 0; i < TEXTURE_COUNT; ++i) {
+            materials[i].SetTextureId(1 + i);
+        }
+        for (int i = 0; i < OBJECT_COUNT; ++i) {
+            objects[i].SetMaterial(&materials[i * TEXTURE_COUNT / OBJECT_COUNT]);
+        }
+    }
+
+    void RenderEye(GLStateCache & state, int eye) {
+        state.Invalidate();
+        state.SetDepthTest(true);
+        state.SetBlend(true);
+        state.SetPolygonOffsetFill(false);
+
+        for (int i = 0; i < OBJECT_COUNT; ++i) {
+            const RenderData & renderData = objects[i];
+            SetRenderState(state, renderData);
+            shader.Render(state, Matrix4f::Identity(), geometry, renderData.GetMaterial(), eye);
+        }
+
+        SetFaceCulling(state, Material::FrontSide);
+        state.SetPolygonOffsetFill(false);
+        state.SetDepthTest(true);
+        state.SetBlend(true);
+        state.BindTexture(GL_TEXTURE_EXTERNAL_OES, 0);
+    }
+
+    Material materials[TEXTURE_COUNT];
+    RenderData objects[OBJECT_COUNT];
+
+private:
+    OESShader shader;
+    GlGeometry geometry;
+};
+
+// Calls made to the cache by RenderEye, whether they are issued or not
+const int CALLS_PER_OBJECT = 8;
+const int CALLS_PER_EYE = 3 + CALLS_PER_OBJECT * OBJECT_COUNT + 6;
+
+}
+
+TEST(UniformSceneIssuesOnlyChanges) {
+    Scene scene;
+
+    RecordingBackend backend;
+    GLStateCache state(&backend);
+
+    const int drawCalls = fake::drawCalls;
+    scene.RenderEye(state, 0);
+
+    // Initial depth, blend and offset; cull face and mode, program, unit and texture
+    // of first draw; a bind for each other texture; unbinding at end
+    EXPECT_EQ(3 + 5 + (TEXTURE_COUNT - 1) + 1, backend.calls);
+    EXPECT_EQ(backend.calls, state.GetIssuedCount());
+    EXPECT_EQ(CALLS_PER_EYE - backend.calls, state.GetSkippedCount());
+    EXPECT_EQ(1, backend.programs);
+    EXPECT_EQ(1, backend.activeTextures);
+    EXPECT_EQ(TEXTURE_COUNT + 1, backend.textureBinds);
+    EXPECT_EQ(OBJECT_COUNT, fake::drawCalls - drawCalls);
+}
+
+TEST(EachEyeStartsFromUnknownState) {
+    Scene scene;
+
+    RecordingBackend backend;
+    GLStateCache state(&backend);
+
+    scene.RenderEye(state, 0);
+    const int firstEye = backend.calls;
+    scene.RenderEye(state, 1);
+
+    EXPECT_EQ(2 * firstEye, backend.calls);
+    EXPECT_EQ(2 * CALLS_PER_EYE, state.GetIssuedCount() + state.GetSkippedCount());
+
+    state.ResetCounters();
+    EXPECT_EQ(0, state.GetIssuedCount());
+    EXPECT_EQ(0, state.GetSkippedCount());
+}
+
+TEST(MixedStatesIssueTransitionsOnly) {
+    Scene scene;
+
+    // A run of double sided objects with polygon offset and without blending.
+    // They use a material of their own in the middle of texture 6.
+    Material doubleSided;
+    doubleSided.SetTextureId(6);
+    doubleSided.SetSide(Material::DoubleSide);
+    for (int i = 500; i < 600; ++i) {
+        RenderData & renderData = scene.objects[i];
+        renderData.SetMaterial(&doubleSided);
+        renderData.SetOffset(true);
+        renderData.SetOffsetFactor(1.0f);
+        renderData.SetOffsetUnits(1.0f);
+        renderData.SetAlphaBlend(false);
+    }
+
+    RecordingBackend backend;
+    GLStateCache state(&backend);
+
+    scene.RenderEye(state, 0);
+
+    // Entering the run: offset on, offset values, blend off, cull face off.
+    // Leaving it: offset off, blend on, cull face on. Cull mode is still known.
+    EXPECT_EQ(3 + 5 + (TEXTURE_COUNT - 1) + 1 + 4 + 3, backend.calls);
+    EXPECT_EQ(1, backend.polygonOffsets);
+    EXPECT_EQ(1, backend.cullFaces);
+}
+
+TEST(ActiveTextureForgetsBinding) {
+    RecordingBackend backend;
+    GLStateCache state(&backend);
+
+    state.ActiveTexture(GL_TEXTURE0);
+    state.BindTexture(GL_TEXTURE_2D, 7);
+    state.BindTexture(GL_TEXTURE_2D, 7);
+    EXPECT_EQ(2, backend.calls);
+
+    // Binding is per texture unit
+    state.ActiveTexture(GL_TEXTURE0 + 1);
+    state.BindTexture(GL_TEXTURE_2D, 7);
+    EXPECT_EQ(4, backend.calls);
+
+    // Same target and other texture, or other target and same texture
+    state.BindTexture(GL_TEXTURE_2D, 8);
+    state.BindTexture(GL_TEXTURE_EXTERNAL_OES, 8);
+    EXPECT_EQ(6, backend.calls);
+}
+
+TEST(InvalidateReissuesState) {
+    RecordingBackend backend;
+    GLStateCache state(&backend);
+
+    state.SetBlend(false);
+    state.UseProgram(3);
+    state.PolygonOffset(1.0f, 2.0f);
+    state.SetBlend(false);
+    state.UseProgram(3);
+    state.PolygonOffset(1.0f, 2.0f);
+    EXPECT_EQ(3, backend.calls);
+    EXPECT_EQ(3, state.GetSkippedCount());
+
+    state.Invalidate();
+    state.SetBlend(false);
+    state.UseProgram(3);
+    state.PolygonOffset(1.0f, 2.0f);
+    EXPECT_EQ(6, backend.calls);
+    EXPECT_EQ(2, backend.disables);
+}
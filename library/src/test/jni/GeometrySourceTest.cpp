@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/***************************************************************************
+ * GeometrySource reading static batch vertices back from fake GPU buffers.
+ ***************************************************************************/
+
+#include "HostTest.h"
+#include "GeometrySource.h"
+
+#include "FakeGL.h"
+
+using namespace mgn;
+using namespace mgn::fake;
+
+namespace {
+
+// float3 position, unsigned byte4 color and float2 uv, interleaved
+struct Vertex {
+    float x, y, z;
+    uint8_t color[4];
+    float u, v;
+};
+
+const uint16_t QUAD_INDICES[] = {0, 1, 2, 2, 1, 3};
+
+GLuint Upload(GLenum target, const void * data, size_t size) {
+    GLuint buffer;
+    glGenBuffers(1, &buffer);
+    glBindBuffer(target, buffer);
+    glBufferData(target, size, data, GL_STATIC_DRAW);
+    return buffer;
+}
+
+GlGeometry Geometry(GLuint indexBuffer, int vertexCount, int indexCount) {
+    GlGeometry geometry;
+    geometry.indexBuffer = indexBuffer;
+    geometry.vertexCount = vertexCount;
+    geometry.indexCount = indexCount;
+    return geometry;
+}
+
+GlGeometry InterleavedQuad(const uint16_t * indices) {
+    const Vertex vertices[] = {
+            {0, 0, 0, {255, 0, 0, 255}, 0, 1},
+            {1, 0, 0, {0, 255, 0, 255}, 1, 1},
+            {0, 1, 0, {0, 0, 255, 255}, 0, 0},
+            {1, 1, 0, {255, 255, 255, 255}, 1, 0}
+    };
+
+    GLuint vertexArray;
+    glGenVertexArrays(1, &vertexArray);
+    glBindVertexArray(vertexArray);
+    const GLuint vertexBuffer = Upload(GL_ARRAY_BUFFER, vertices, sizeof(vertices));
+    const GLuint indexBuffer = Upload(GL_ELEMENT_ARRAY_BUFFER, indices, sizeof(QUAD_INDICES));
+
+    glEnableVertexAttribArray(VERTEX_ATTRIBUTE_LOCATION_POSITION);
+    glVertexAttribPointer(VERTEX_ATTRIBUTE_LOCATION_POSITION, 3, GL_FLOAT, GL_FALSE, sizeof(Vertex), reinterpret_cast<GLvoid*>(0));
+    glEnableVertexAttribArray(VERTEX_ATTRIBUTE_LOCATION_COLOR);
+    glVertexAttribPointer(VERTEX_ATTRIBUTE_LOCATION_COLOR, 4, GL_UNSIGNED_BYTE, GL_TRUE, sizeof(Vertex), reinterpret_cast<GLvoid*>(12));
+    glEnableVertexAttribArray(VERTEX_ATTRIBUTE_LOCATION_UV0);
+    glVertexAttribPointer(VERTEX_ATTRIBUTE_LOCATION_UV0, 2, GL_FLOAT, GL_FALSE, sizeof(Vertex), reinterpret_cast<GLvoid*>(16));
+    glBindVertexArray(0);
+
+    GlGeometry geometry = Geometry(indexBuffer, 4, 6);
+    geometry.vertexBuffer = vertexBuffer;
+    geometry.vertexArrayObject = vertexArray;
+    return geometry;
+}
+
+}
+
+TEST(ReadInterleavedAttributes) {
+    const GlGeometry geometry = InterleavedQuad(QUAD_INDICES);
+
+    GeometrySource source;
+    EXPECT_TRUE(source.Read(geometry));
+
+    const VertexAttribs & attribs = source.GetAttribs();
+    EXPECT_EQ(4, attribs.position.GetSizeI());
+    EXPECT_EQ(4, attribs.uv0.GetSizeI());
+    EXPECT_TRUE(attribs.position[3].x == 1.0f && attribs.position[3].y == 1.0f && attribs.position[3].z == 0.0f);
+    EXPECT_TRUE(attribs.uv0[0].x == 0.0f && attribs.uv0[0].y == 1.0f);
+    EXPECT_TRUE(attribs.uv0[3].x == 1.0f && attribs.uv0[3].y == 0.0f);
+
+    EXPECT_EQ(6, source.GetIndices().GetSizeI());
+    EXPECT_TRUE(memcmp(source.GetIndices().GetDataPtr(), QUAD_INDICES, sizeof(QUAD_INDICES)) == 0);
+}
+
+TEST(ReadSeparateArraysWithoutUv) {
+    const float positions[] = {0, 0, 0, 2, 0, 0, 0, 2, 0};
+    const uint16_t indices[] = {0, 1, 2};
+
+    GLuint vertexArray;
+    glGenVertexArrays(1, &vertexArray);
+    glBindVertexArray(vertexArray);
+    Upload(GL_ARRAY_BUFFER, positions, sizeof(positions));
+    glEnableVertexAttribArray(VERTEX_ATTRIBUTE_LOCATION_POSITION);
+    glVertexAttribPointer(VERTEX_ATTRIBUTE_LOCATION_POSITION, 3, GL_FLOAT, GL_FALSE, 0, reinterpret_cast<GLvoid*>(0));
+    GlGeometry geometry = Geometry(Upload(GL_ELEMENT_ARRAY_BUFFER, indices, sizeof(indices)), 3, 3);
+    geometry.vertexArrayObject = vertexArray;
+    glBindVertexArray(0);
+
+    GeometrySource source;
+    EXPECT_TRUE(source.Read(geometry));
+    EXPECT_EQ(3, source.GetAttribs().position.GetSizeI());
+    EXPECT_EQ(0, source.GetAttribs().uv0.GetSizeI());
+    EXPECT_TRUE(source.GetAttribs().position[1].x == 2.0f && source.GetAttribs().position[2].y == 2.0f);
+}
+
+TEST(HalfFloatPositionIsUnavailable) {
+    const uint16_t positions[] = {0, 0, 0, 0x3C00, 0, 0, 0, 0x3C00, 0};
+    const uint16_t indices[] = {0, 1, 2};
+
+    GLuint vertexArray;
+    glGenVertexArrays(1, &vertexArray);
+    glBindVertexArray(vertexArray);
+    Upload(GL_ARRAY_BUFFER, positions, sizeof(positions));
+    glEnableVertexAttribArray(VERTEX_ATTRIBUTE_LOCATION_POSITION);
+    glVertexAttribPointer(VERTEX_ATTRIBUTE_LOCATION_POSITION, 3, GL_HALF_FLOAT, GL_FALSE, 0, reinterpret_cast<GLvoid*>(0));
+    GlGeometry geometry = Geometry(Upload(GL_ELEMENT_ARRAY_BUFFER, indices, sizeof(indices)), 3, 3);
+    geometry.vertexArrayObject = vertexArray;
+    glBindVertexArray(0);
+
+    GeometrySource source;
+    EXPECT_TRUE(!source.Read(geometry));
+    EXPECT_EQ(0, source.GetAttribs().position.GetSizeI());
+
+    // Not inspected again
+    const int maps = mapCount;
+    EXPECT_TRUE(!source.Read(geometry));
+    EXPECT_EQ(maps, mapCount);
+}
+
+TEST(IndexOutOfRangeIsUnavailable) {
+    const uint16_t indices[] = {0, 1, 2, 2, 1, 4};
+    const GlGeometry geometry = InterleavedQuad(indices);
+
+    GeometrySource source;
+    EXPECT_TRUE(!source.Read(geometry));
+    EXPECT_EQ(0, source.GetAttribs().position.GetSizeI());
+    EXPECT_EQ(0, source.GetIndices().GetSizeI());
+}
+
+TEST(ReadOnlyOnceUntilCleared) {
+    const GlGeometry geometry = InterleavedQuad(QUAD_INDICES);
+
+    GeometrySource source;
+    const int maps = mapCount;
+    EXPECT_TRUE(source.Read(geometry));
+    EXPECT_EQ(maps + 3, mapCount);
+
+    EXPECT_TRUE(source.Read(geometry));
+    EXPECT_EQ(maps + 3, mapCount);
+
+    source.Clear();
+    EXPECT_EQ(0, source.GetAttribs().position.GetSizeI());
+    EXPECT_TRUE(source.Read(geometry));
+    EXPECT_EQ(maps + 6, mapCount);
+}
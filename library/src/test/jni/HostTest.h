@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Minimal assertions for host tests.
+ ***************************************************************************/
+
+#ifndef HOST_TEST_H_
+#define HOST_TEST_H_
+
+#include <cstdio>
+
+namespace mgn {
+namespace test {
+
+extern int failures;
+
+// Registers test function from static initializer.
+struct TestCase {
+    typedef void (*Function)();
+    TestCase(const char * name, Function function);
+};
+
+}
+}
+
+#define TEST(name) \
+    static void name(); \
+    static mgn::test::TestCase name##_case(#name, name); \
+    static void name()
+
+#define EXPECT_TRUE(condition) \
+    do { \
+        if (!(condition)) { \
+            std::printf("%s:%d: expected %s\n", __FILE__, __LINE__, #condition); \
+            ++mgn::test::failures; \
+        } \
+    } while (0)
+
+#define EXPECT_EQ(expected, actual) \
+    do { \
+        const long long e_ = static_cast<long long>(expected); \
+        const long long a_ = static_cast<long long>(actual); \
+        if (e_ != a_) { \
+            std::printf("%s:%d: %s expected %lld but was %lld\n", __FILE__, __LINE__, #actual, e_, a_); \
+            ++mgn::test::failures; \
+        } \
+    } while (0)
+
+#endif
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Runs all registered host tests.
+ ***************************************************************************/
+
+#include "HostTest.h"
+
+#include <vector>
+
+namespace mgn {
+namespace test {
+
+int failures = 0;
+
+struct Entry {
+    const char * name;
+    TestCase::Function function;
+};
+
+static std::vector<Entry> & Registry() {
+    static std::vector<Entry> registry;
+    return registry;
+}
+
+TestCase::TestCase(const char * name, Function function) {
+    Entry entry = {name, function};
+    Registry().push_back(entry);
+}
+
+}
+}
+
+int main() {
+    using namespace mgn::test;
+
+    for (const Entry & entry : Registry()) {
+        const int before = failures;
+        entry.function();
+        std::printf("%s %s\n", failures == before ? "ok  " : "FAIL", entry.name);
+    }
+
+    std::printf("%d tests, %d failures\n", static_cast<int>(Registry().size()), failures);
+    return failures == 0 ? 0 : 1;
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/***************************************************************************
+ * SceneBVH against brute force over every object, with fake scene objects
+ * whose world matrices are set directly.
+ ***************************************************************************/
+
+#include "HostTest.h"
+#include "SceneBVH.h"
+#include "SceneObject.h"
+
+#include <chrono>
+#include <random>
+
+using namespace mgn;
+
+namespace {
+
+const int RAYS = 1000;
+const int MAX_HITS = 8;
+
+// 50k buildings on 10m blocks, viewed from street level in 36 directions
+const int BLOCKS_X = 250;
+const int BLOCKS_Z = 200;
+const float BLOCK_SIZE = 10.0f;
+const int DIRECTIONS = 36;
+
+// Objects which share a unit cube mesh
+struct TestScene {
+    Mesh cube;
+    RenderData renderData;
+    std::vector<SceneObject> storage;
+    Array<SceneObject*> objects;
+
+    explicit TestScene(int count) : storage(count) {
+        cube.SetBoundingBox(Vector3f(-0.5f, -0.5f, -0.5f), Vector3f(0.5f, 0.5f, 0.5f));
+        renderData.SetMesh(&cube);
+        for (int i = 0; i < count; ++i) {
+            storage[i].SetRenderData(&renderData);
+            objects.PushBack(&storage[i]);
+        }
+    }
+};
+
+// Cubes of random size scattered in volume whose density doesn't depend on count
+void Scatter(TestScene & scene, std::mt19937 & random) {
+    const float extent = 2.5f * std::cbrt(static_cast<float>(scene.objects.GetSizeI()));
+    std::uniform_real_distribution<float> position(-extent, extent);
+    std::uniform_real_distribution<float> size(0.5f, 2.0f);
+
+    for (int i = 0; i < scene.objects.GetSizeI(); ++i) {
+        const float s = size(random);
+        scene.objects[i]->SetMatrixWorld(Matrix4f::Translation(position(random), position(random), position(random))
+                * Matrix4f::Scaling(s, s, s));
+    }
+}
+
+bool CompareDistance(const RaycastHit & a, const RaycastHit & b) {
+    return a.distance < b.distance;
+}
+
+// Same exact test as SceneBVH::Raycast for every object
+void RaycastAll(const Array<SceneObject*> & objects, const Vector3f & origin, const Vector3f & direction,
+        int maxHits, Array<RaycastHit> & hits) {
+    hits.Clear();
+    for (int i = 0; i < objects.GetSizeI(); ++i) {
+        SceneObject * object = objects[i];
+        const Matrix4f & modelToWorldM = object->GetMatrixWorld();
+        const Matrix4f worldToModelM = modelToWorldM.Inverted();
+        const Vector3f rayStart = worldToModelM.Transform(origin);
+        const Vector3f rayDir = worldToModelM.Transform(origin + direction) - rayStart;
+        const BoundingBoxInfo & box = object->GetRenderData()->GetMesh()->GetBoundingBoxInfo();
+
+        float t0 = 0.0f;
+        float t1 = 0.0f;
+        if (!Intersect_RayBounds(rayStart, rayDir, box.mins, box.maxs, t0, t1) || t0 <= 0) {
+            continue;
+        }
+
+        RaycastHit hit;
+        hit.object = object;
+        hit.point = modelToWorldM.Transform(rayStart + t0 * rayDir);
+        hit.distance = (hit.point - origin).Length();
+        hits.PushBack(hit);
+    }
+
+    Alg::QuickSort(hits, CompareDistance);
+    if (hits.GetSizeI() > maxHits) {
+        hits.Resize(maxHits);
+    }
+}
+
+// Buildings of random height, which fill most of their blocks
+void BuildCity(TestScene & scene, std::mt19937 & random) {
+    std::uniform_real_distribution<float> height(5.0f, 50.0f);
+    const float footprint = BLOCK_SIZE * 0.8f;
+
+    for (int z = 0; z < BLOCKS_Z; ++z) {
+        for (int x = 0; x < BLOCKS_X; ++x) {
+            const float h = height(random);
+            scene.objects[z * BLOCKS_X + x]->SetMatrixWorld(Matrix4f::Translation(x * BLOCK_SIZE, h * 0.5f, z * BLOCK_SIZE)
+                    * Matrix4f::Scaling(footprint, h, footprint));
+        }
+    }
+}
+
+// Planes of 90 degrees frustum from eye, turned by yaw from -Z. Normals point inward.
+void Frustum(const Vector3f & eye, float yaw, float frustum[6][4]) {
+    const float planes[6][3] = {
+            {0, 0, -1}, {0, 0, 1},  // near, far
+            {1, 0, -1}, {-1, 0, -1}, // left, right
+            {0, 1, -1}, {0, -1, -1}  // bottom, top
+    };
+    const float distances[6] = {-0.1f, 1000.0f, 0, 0, 0, 0};
+
+    const float c = std::cos(yaw);
+    const float s = std::sin(yaw);
+    for (int p = 0; p < 6; ++p) {
+        const Vector3f n(c * planes[p][0] + s * planes[p][2], planes[p][1], -s * planes[p][0] + c * planes[p][2]);
+        frustum[p][0] = n.x;
+        frustum[p][1] = n.y;
+        frustum[p][2] = n.z;
+        frustum[p][3] = distances[p] - (n.x * eye.x + n.y * eye.y + n.z * eye.z);
+    }
+}
+
+// Same box-frustum test as SceneBVH::Cull for every object
+void CullAll(const Array<SceneObject*> & objects, float frustum[6][4], Array<bool> & inFrustum) {
+    inFrustum.Resize(objects.GetSizeI());
+    for (int i = 0; i < objects.GetSizeI(); ++i) {
+        const Matrix4f & m = objects[i]->GetMatrixWorld();
+        const BoundingBoxInfo & local = objects[i]->GetRenderData()->GetMesh()->GetBoundingBoxInfo();
+        BoundingBoxInfo box;
+        for (int a = 0; a < 3; ++a) {
+            box.mins[a] = box.maxs[a] = m.M[a][3];
+            for (int b = 0; b < 3; ++b) {
+                const float lo = m.M[a][b] * local.mins[b];
+                const float hi = m.M[a][b] * local.maxs[b];
+                box.mins[a] += lo < hi ? lo : hi;
+                box.maxs[a] += lo < hi ? hi : lo;
+            }
+        }
+
+        bool inside = true;
+        for (int p = 0; inside && p < 6; ++p) {
+            const float * plane = frustum[p];
+            const float far = plane[0] * (plane[0] > 0 ? box.maxs.x : box.mins.x)
+                    + plane[1] * (plane[1] > 0 ? box.maxs.y : box.mins.y)
+                    + plane[2] * (plane[2] > 0 ? box.maxs.z : box.mins.z) + plane[3];
+            inside = far > 0;
+        }
+        inFrustum[i] = inside;
+    }
+}
+
+double Seconds(std::chrono::steady_clock::time_point start) {
+    return std::chrono::duration<double>(std::chrono::steady_clock::now() - start).count();
+}
+
+void RaycastBenchmark(int count) {
+    std::mt19937 random(count);
+    TestScene scene(count);
+    Scatter(scene, random);
+
+    // Rays from near center in random directions
+    std::normal_distribution<float> normal;
+    std::vector<Vector3f> origins(RAYS);
+    std::vector<Vector3f> directions(RAYS);
+    for (int i = 0; i < RAYS; ++i) {
+        origins[i] = Vector3f(normal(random), normal(random), normal(random));
+        const Vector3f d(normal(random), normal(random), normal(random));
+        directions[i] = d * (1.0f / d.Length());
+    }
+
+    SceneBVH bvh;
+    Array<RaycastHit> hits;
+    Array<RaycastHit> expected;
+
+    // Build hierarchy, and check same hits as brute force
+    int hitRays = 0;
+    for (int i = 0; i < RAYS; ++i) {
+        bvh.Raycast(scene.objects, origins[i], directions[i], MAX_HITS, hits);
+        RaycastAll(scene.objects, origins[i], directions[i], MAX_HITS, expected);
+        EXPECT_EQ(expected.GetSizeI(), hits.GetSizeI());
+        if (expected.GetSizeI() == hits.GetSizeI() && !hits.IsEmpty()) {
+            EXPECT_TRUE(hits[0].object == expected[0].object);
+            ++hitRays;
+        }
+    }
+
+    auto start = std::chrono::steady_clock::now();
+    for (int i = 0; i < RAYS; ++i) {
+        RaycastAll(scene.objects, origins[i], directions[i], MAX_HITS, hits);
+    }
+    const double before = Seconds(start);
+
+    start = std::chrono::steady_clock::now();
+    for (int i = 0; i < RAYS; ++i) {
+        bvh.Raycast(scene.objects, origins[i], directions[i], MAX_HITS, hits);
+    }
+    const double after = Seconds(start);
+
+    std::printf("     Raycast in %d objects (%d of %d rays hit): before %.0f queries/s, after %.0f queries/s\n",
+            count, hitRays, RAYS, RAYS / before, RAYS / after);
+}
+
+}
+
+TEST(RaycastQueriesPerSecond) {
+    RaycastBenchmark(1000);
+    RaycastBenchmark(10000);
+}
+
+TEST(CullFiftyThousandCityGrid) {
+    const int count = BLOCKS_X * BLOCKS_Z;
+    std::mt19937 random(count);
+    TestScene scene(count);
+    BuildCity(scene, random);
+
+    // Street between blocks in middle of city
+    const Vector3f eye(BLOCKS_X * BLOCK_SIZE * 0.5f - BLOCK_SIZE * 0.5f, 1.7f, BLOCKS_Z * BLOCK_SIZE * 0.5f);
+
+    SceneBVH bvh;
+    Array<bool> inFrustum;
+    Array<bool> expected;
+    CullingStats stats;
+    float frustum[6][4];
+
+    // Build hierarchy, and check same result as brute force
+    long long accepted = 0;
+    long long tested = 0;
+    for (int d = 0; d < DIRECTIONS; ++d) {
+        Frustum(eye, d * 2.0f * static_cast<float>(M_PI) / DIRECTIONS, frustum);
+        bvh.Cull(scene.objects, frustum, inFrustum, stats);
+        CullAll(scene.objects, frustum, expected);
+
+        int mismatches = 0;
+        for (int i = 0; i < count; ++i) {
+            if (inFrustum[i] != expected[i]) ++mismatches;
+        }
+        EXPECT_EQ(0, mismatches);
+        EXPECT_EQ(count, stats.accepted + stats.culled);
+        accepted += stats.accepted;
+        tested += stats.tested;
+    }
+
+    auto start = std::chrono::steady_clock::now();
+    for (int d = 0; d < DIRECTIONS; ++d) {
+        Frustum(eye, d * 2.0f * static_cast<float>(M_PI) / DIRECTIONS, frustum);
+        CullAll(scene.objects, frustum, expected);
+    }
+    const double before = Seconds(start);
+
+    start = std::chrono::steady_clock::now();
+    for (int d = 0; d < DIRECTIONS; ++d) {
+        Frustum(eye, d * 2.0f * static_cast<float>(M_PI) / DIRECTIONS, frustum);
+        bvh.Cull(scene.objects, frustum, inFrustum, stats);
+    }
+    const double after = Seconds(start);
+
+    std::printf("     Cull %d objects (%lld visible, %lld tests per frame): before %.3f ms, after %.3f ms per frame\n",
+            count, accepted / DIRECTIONS, tested / DIRECTIONS, before * 1000.0 / DIRECTIONS, after * 1000.0 / DIRECTIONS);
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/***************************************************************************
+ * Fake GL buffer and vertex array objects which keep uploaded bytes in
+ * memory, and programs and draw calls which are only counted. There is no
+ * GL context on host.
+ ***************************************************************************/
+
+#include "FakeGL.h"
+
+#include <cstdio>
+
+namespace mgn {
+namespace fake {
+
+std::map<GLuint, std::vector<uint8_t>> buffers;
+long long uploadedBytes = 0;
+int mapCount = 0;
+int drawCalls = 0;
+
+bool SameBytes(GLuint buffer, const void * data, size_t size) {
+    const std::vector<uint8_t> & bytes = buffers.at(buffer);
+    return bytes.size() >= size && memcmp(bytes.data(), data, size) == 0;
+}
+
+}
+}
+
+using namespace mgn::fake;
+
+namespace {
+
+const int MAX_ATTRIBUTES = 16;
+
+struct VertexAttrib {
+    GLint enabled = 0;
+    GLint size = 4;
+    GLint type = GL_FLOAT;
+    GLint stride = 0;
+    GLint buffer = 0;
+    const GLvoid * pointer = nullptr;
+};
+
+// Element array binding belongs to vertex array, as in GLES 3
+struct VertexArray {
+    VertexAttrib attribs[MAX_ATTRIBUTES];
+    GLuint elementArrayBuffer = 0;
+};
+
+std::map<GLuint, VertexArray> vertexArrays;
+GLuint nextName = 1;
+GLuint arrayBuffer = 0;
+GLuint vertexArray = 0;
+
+GLuint & Binding(GLenum target) {
+    return target == GL_ARRAY_BUFFER ? arrayBuffer : vertexArrays[vertexArray].elementArrayBuffer;
+}
+
+VertexAttrib & Attrib(GLuint index) {
+    if (index >= MAX_ATTRIBUTES) {
+        std::printf("vertex attribute out of range: %u\n", index);
+        abort();
+    }
+    return vertexArrays[vertexArray].attribs[index];
+}
+
+}
+
+void glGenBuffers(GLsizei n, GLuint * names) {
+    for (int i = 0; i < n; ++i) {
+        names[i] = nextName++;
+        buffers[names[i]];
+    }
+}
+
+void glDeleteBuffers(GLsizei n, const GLuint * names) {
+    for (int i = 0; i < n; ++i) {
+        buffers.erase(names[i]);
+    }
+}
+
+void glBindBuffer(GLenum target, GLuint buffer) {
+    Binding(target) = buffer;
+}
+
+void glBufferData(GLenum target, GLsizeiptr size, const GLvoid * data, GLenum usage) {
+    std::vector<uint8_t> & buffer = buffers.at(Binding(target));
+    if (data != nullptr) {
+        const uint8_t * bytes = static_cast<const uint8_t*>(data);
+        buffer.assign(bytes, bytes + size);
+    } else {
+        buffer.assign(size, 0);
+    }
+    uploadedBytes += size;
+}
+
+void glBufferSubData(GLenum target, GLintptr offset, GLsizeiptr size, const GLvoid * data) {
+    std::vector<uint8_t> & buffer = buffers.at(Binding(target));
+    if (offset < 0 || offset + size > static_cast<GLsizeiptr>(buffer.size())) {
+        std::printf("glBufferSubData out of range: %ld + %ld > %ld\n",
+                static_cast<long>(offset), static_cast<long>(size), static_cast<long>(buffer.size()));
+        abort();
+    }
+    memcpy(&buffer[offset], data, size);
+    uploadedBytes += size;
+}
+
+void glGetBufferParameteriv(GLenum target, GLenum pname, GLint * params) {
+    if (pname == GL_BUFFER_SIZE) {
+        *params = static_cast<GLint>(buffers.at(Binding(target)).size());
+    }
+}
+
+void * glMapBufferRange(GLenum target, GLintptr offset, GLsizeiptr length, GLenum access) {
+    std::vector<uint8_t> & buffer = buffers.at(Binding(target));
+    if (offset < 0 || offset + length > static_cast<GLsizeiptr>(buffer.size())) {
+        std::printf("glMapBufferRange out of range: %ld + %ld > %ld\n",
+                static_cast<long>(offset), static_cast<long>(length), static_cast<long>(buffer.size()));
+        abort();
+    }
+    ++mapCount;
+    return buffer.data() + offset;
+}
+
+GLboolean glUnmapBuffer(GLenum target) {
+    return GL_TRUE;
+}
+
+void glGenVertexArrays(GLsizei n, GLuint * arrays) {
+    for (int i = 0; i < n; ++i) {
+        arrays[i] = nextName++;
+        vertexArrays[arrays[i]];
+    }
+}
+
+void glDeleteVertexArrays(GLsizei n, const GLuint * arrays) {
+    for (int i = 0; i < n; ++i) {
+        if (arrays[i] != 0) vertexArrays.erase(arrays[i]);
+    }
+}
+
+void glBindVertexArray(GLuint array) {
+    vertexArray = array;
+}
+
+void glEnableVertexAttribArray(GLuint index) {
+    Attrib(index).enabled = 1;
+}
+
+void glVertexAttribPointer(GLuint index, GLint size, GLenum type, GLboolean normalized, GLsizei stride, const GLvoid * pointer) {
+    VertexAttrib & attrib = Attrib(index);
+    attrib.size = size;
+    attrib.type = type;
+    attrib.stride = stride;
+    attrib.buffer = arrayBuffer;
+    attrib.pointer = pointer;
+}
+
+void glGetVertexAttribiv(GLuint index, GLenum pname, GLint * params) {
+    const VertexAttrib & attrib = Attrib(index);
+    switch (pname) {
+        case GL_VERTEX_ATTRIB_ARRAY_ENABLED:
+            *params = attrib.enabled;
+            break;
+        case GL_VERTEX_ATTRIB_ARRAY_SIZE:
+            *params = attrib.size;
+            break;
+        case GL_VERTEX_ATTRIB_ARRAY_TYPE:
+            *params = attrib.type;
+            break;
+        case GL_VERTEX_ATTRIB_ARRAY_STRIDE:
+            *params = attrib.stride;
+            break;
+        case GL_VERTEX_ATTRIB_ARRAY_BUFFER_BINDING:
+            *params = attrib.buffer;
+            break;
+    }
+}
+
+void glGetVertexAttribPointerv(GLuint index, GLenum pname, GLvoid ** pointer) {
+    *pointer = const_cast<GLvoid*>(Attrib(index).pointer);
+}
+
+void glDisableVertexAttribArray(GLuint index) {
+    Attrib(index).enabled = 0;
+}
+
+void glVertexAttribDivisor(GLuint index, GLuint divisor) {
+}
+
+OVR::GlProgram OVR::BuildProgram(const char * vertexDirectives, const char * vertexSrc,
+        const char * fragmentDirectives, const char * fragmentSrc) {
+    // Uniform locations are distinct from ones returned by glGetUniformLocation
+    OVR::GlProgram program;
+    program.Program = nextName++;
+    program.uMvp = 0;
+    program.uTexm = 1;
+    program.uColor = 2;
+    return program;
+}
+
+void OVR::DeleteProgram(OVR::GlProgram & program) {
+    program = OVR::GlProgram();
+}
+
+GLint glGetUniformLocation(GLuint program, const char * name) {
+    return 3;
+}
+
+// Shaders are not compiled, so no attribute is active
+GLint glGetAttribLocation(GLuint program, const char * name) {
+    return -1;
+}
+
+void glUniformMatrix4fv(GLint location, GLsizei count, GLboolean transpose, const GLfloat * value) {
+}
+
+void glUniform4f(GLint location, GLfloat x, GLfloat y, GLfloat z, GLfloat w) {
+}
+
+void glUniform1f(GLint location, GLfloat x) {
+}
+
+void glDrawElements(GLenum mode, GLsizei count, GLenum type, const GLvoid * indices) {
+    ++drawCalls;
+}
+
+void glDrawElementsInstanced(GLenum mode, GLsizei count, GLenum type, const GLvoid * indices, GLsizei instanceCount) {
+    ++drawCalls;
+}
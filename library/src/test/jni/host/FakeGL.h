@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/***************************************************************************
+ * Fake GL buffer and vertex array objects which keep uploaded bytes in
+ * memory, and programs and draw calls which are only counted. There is no
+ * GL context on host.
+ ***************************************************************************/
+
+#ifndef FAKE_GL_H_
+#define FAKE_GL_H_
+
+#include "includes.h"
+
+#include <map>
+
+namespace mgn {
+namespace fake {
+
+// Contents of buffer objects by name.
+extern std::map<GLuint, std::vector<uint8_t>> buffers;
+
+// Bytes passed to glBufferData and glBufferSubData.
+extern long long uploadedBytes;
+
+// Number of glMapBufferRange calls.
+extern int mapCount;
+
+// Number of glDrawElements and glDrawElementsInstanced calls.
+extern int drawCalls;
+
+// True if buffer starts with size bytes of data.
+bool SameBytes(GLuint buffer, const void * data, size_t size);
+
+}
+}
+
+#endif
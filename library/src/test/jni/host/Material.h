@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+#include "includes.h"
+
+/***************************************************************************
+ * Replaces Material.h for host tests. No SurfaceTexture, the texture name
+ * is set directly.
+ ***************************************************************************/
+
+#ifndef MATERIAL_H_
+#define MATERIAL_H_
+
+using namespace OVR;
+
+namespace mgn {
+
+class Material {
+public:
+
+    enum Side: int {
+        FrontSide = 0, BackSide, DoubleSide
+    };
+
+    enum StereoMode {
+        NORMAL = 0, TOP_BOTTOM, BOTTOM_TOP, LEFT_RIGHT, RIGHT_LEFT,
+        TOP_ONLY, BOTTOM_ONLY, LEFT_ONLY, RIGHT_ONLY
+    };
+
+    Material() : textureId(0), hasUvRect(false), color(1.0f, 1.0f, 1.0f, 1.0f), opacity(1.0f), Mode(NORMAL), side(FrontSide) {
+    }
+
+    GLuint GetTextureId() const {
+        return textureId;
+    }
+
+    void SetTextureId(GLuint textureId) {
+        this->textureId = textureId;
+    }
+
+    bool HasUvRect() const {
+        return hasUvRect;
+    }
+
+    const Matrix4f & GetUvTransform() const {
+        return uvTransform;
+    }
+
+    StereoMode GetStereoMode() const {
+        return Mode;
+    }
+
+    const Vector4f & GetColor() const {
+        return color;
+    }
+
+    float GetOpacity() const {
+        return opacity;
+    }
+
+    int GetSide() const {
+        return side;
+    }
+
+    void SetSide(int side) {
+        this->side = side;
+    }
+
+private:
+    GLuint textureId;
+    Matrix4f uvTransform;
+    bool hasUvRect;
+    Vector4f color;
+    float opacity;
+    StereoMode Mode;
+    int side;
+};
+
+}
+#endif
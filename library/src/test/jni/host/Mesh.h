@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "includes.h"
+
+/***************************************************************************
+ * Replaces Mesh.h for host tests of sources which only read bounds of
+ * meshes.
+ ***************************************************************************/
+
+#ifndef MESH_H_
+#define MESH_H_
+
+using namespace OVR;
+
+namespace mgn {
+
+struct BoundingBoxInfo {
+    Vector3f mins;
+    Vector3f maxs;
+};
+
+class DynamicGeometry;
+
+class Mesh {
+public:
+    Mesh() : boundsVersion(0) {
+    }
+
+    void SetBoundingBox(const Vector3f & mins, const Vector3f & maxs) {
+        boundingBoxInfo.mins = mins;
+        boundingBoxInfo.maxs = maxs;
+        ++boundsVersion;
+    }
+
+    const BoundingBoxInfo & GetBoundingBoxInfo() const {
+        return boundingBoxInfo;
+    }
+
+    DynamicGeometry * GetDynamicGeometry() const {
+        return nullptr;
+    }
+
+    unsigned int GetBoundsVersion() const {
+        return boundsVersion;
+    }
+
+private:
+    BoundingBoxInfo boundingBoxInfo;
+    unsigned int boundsVersion;
+};
+
+}
+#endif
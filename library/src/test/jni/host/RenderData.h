@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "includes.h"
+
+/***************************************************************************
+ * Replaces RenderData.h for host tests. Only mesh, material, visibility
+ * and render state.
+ ***************************************************************************/
+
+#ifndef RENDER_DATA_H_
+#define RENDER_DATA_H_
+
+#include "Mesh.h"
+#include "Material.h"
+
+namespace mgn {
+
+class RenderData {
+public:
+    RenderData() : mesh(nullptr), material(nullptr), visible(true),
+        offset(false), offsetFactor(0.0f), offsetUnits(0.0f), depthTest(true), alphaBlend(true) {
+    }
+
+    void SetMesh(Mesh * mesh) {
+        this->mesh = mesh;
+    }
+
+    Mesh * GetMesh() const {
+        return mesh;
+    }
+
+    void SetMaterial(Material * material) {
+        this->material = material;
+    }
+
+    Material * GetMaterial() const {
+        return material;
+    }
+
+    void SetVisible(bool visible) {
+        this->visible = visible;
+    }
+
+    bool IsVisible() const {
+        return visible;
+    }
+
+    bool GetOffset() const {
+        return offset;
+    }
+
+    void SetOffset(bool offset) {
+        this->offset = offset;
+    }
+
+    float GetOffsetFactor() const {
+        return offsetFactor;
+    }
+
+    void SetOffsetFactor(float offsetFactor) {
+        this->offsetFactor = offsetFactor;
+    }
+
+    float GetOffsetUnits() const {
+        return offsetUnits;
+    }
+
+    void SetOffsetUnits(float offsetUnits) {
+        this->offsetUnits = offsetUnits;
+    }
+
+    bool GetDepthTest() const {
+        return depthTest;
+    }
+
+    void SetDepthTest(bool depthTest) {
+        this->depthTest = depthTest;
+    }
+
+    bool GetAlphaBlend() const {
+        return alphaBlend;
+    }
+
+    void SetAlphaBlend(bool alphaBlend) {
+        this->alphaBlend = alphaBlend;
+    }
+
+private:
+    Mesh * mesh;
+    Material * material;
+    bool visible;
+    bool offset;
+    float offsetFactor;
+    float offsetUnits;
+    bool depthTest;
+    bool alphaBlend;
+};
+
+}
+#endif
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "includes.h"
+
+/***************************************************************************
+ * Replaces SceneObject.h for host tests. World matrix is set directly
+ * instead of computed from hierarchy.
+ ***************************************************************************/
+
+#ifndef SCENE_OBJECT_H_
+#define SCENE_OBJECT_H_
+
+#include "RenderData.h"
+
+namespace mgn {
+
+class SceneObject {
+public:
+    SceneObject() : renderData(nullptr) {
+    }
+
+    void SetRenderData(RenderData * renderData) {
+        this->renderData = renderData;
+    }
+
+    RenderData * GetRenderData() const {
+        return renderData;
+    }
+
+    void SetMatrixWorld(const Matrix4f & matrixWorld) {
+        this->matrixWorld = matrixWorld;
+    }
+
+    const Matrix4f & GetMatrixWorld() const {
+        return matrixWorld;
+    }
+
+private:
+    RenderData * renderData;
+    Matrix4f matrixWorld;
+};
+
+}
+#endif
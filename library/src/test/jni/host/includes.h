@@ -0,0 +1,441 @@
+/*
+ * Copyright 2016 eje inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/***************************************************************************
+ * Replaces includes.h for host tests. Only platform independent sources
+ * are compiled with this, so OpenGL ES is reduced to types, constants and
+ * fakes, and OVR SDK to the small part these sources use.
+ ***************************************************************************/
+
+#ifndef HOST_INCLUDES_H_
+#define HOST_INCLUDES_H_
+
+#include <cstddef>
+#include <cstdint>
+#include <cstdlib>
+#include <cstring>
+#include <cmath>
+#include <cfloat>
+#include <climits>
+#include <algorithm>
+#include <chrono>
+#include <vector>
+
+typedef unsigned int GLenum;
+typedef unsigned int GLuint;
+typedef int GLint;
+typedef int GLsizei;
+typedef float GLfloat;
+typedef unsigned char GLboolean;
+typedef void GLvoid;
+typedef ptrdiff_t GLintptr;
+typedef ptrdiff_t GLsizeiptr;
+
+#define GL_FALSE                    0
+#define GL_TRUE                     1
+#define GL_TRIANGLES                0x0004
+#define GL_MAP_READ_BIT             0x0001
+#define GL_FRONT                    0x0404
+#define GL_BACK                     0x0405
+#define GL_CULL_FACE                0x0B44
+#define GL_DEPTH_TEST               0x0B71
+#define GL_BLEND                    0x0BE2
+#define GL_TEXTURE_2D               0x0DE1
+#define GL_BYTE                     0x1400
+#define GL_UNSIGNED_BYTE            0x1401
+#define GL_UNSIGNED_SHORT           0x1403
+#define GL_UNSIGNED_INT             0x1405
+#define GL_FLOAT                    0x1406
+#define GL_HALF_FLOAT               0x140B
+#define GL_POLYGON_OFFSET_FILL      0x8037
+#define GL_TEXTURE0                 0x84C0
+#define GL_VERTEX_ATTRIB_ARRAY_ENABLED 0x8622
+#define GL_VERTEX_ATTRIB_ARRAY_SIZE 0x8623
+#define GL_VERTEX_ATTRIB_ARRAY_STRIDE 0x8624
+#define GL_VERTEX_ATTRIB_ARRAY_TYPE 0x8625
+#define GL_VERTEX_ATTRIB_ARRAY_POINTER 0x8645
+#define GL_BUFFER_SIZE              0x8764
+#define GL_ARRAY_BUFFER             0x8892
+#define GL_ELEMENT_ARRAY_BUFFER     0x8893
+#define GL_VERTEX_ATTRIB_ARRAY_BUFFER_BINDING 0x889F
+#define GL_STATIC_DRAW              0x88E4
+#define GL_DYNAMIC_DRAW             0x88E8
+#define GL_TEXTURE_EXTERNAL_OES     0x8D65
+
+// There is no GL context on host. Tests replace backends which call these.
+inline void glEnable(GLenum) { abort(); }
+inline void glDisable(GLenum) { abort(); }
+inline void glCullFace(GLenum) { abort(); }
+inline void glPolygonOffset(GLfloat, GLfloat) { abort(); }
+inline void glUseProgram(GLuint) { abort(); }
+inline void glActiveTexture(GLenum) { abort(); }
+inline void glBindTexture(GLenum, GLuint) { abort(); }
+
+// Buffer functions are defined by host/FakeGL.cpp.
+void glGenBuffers(GLsizei n, GLuint * buffers);
+void glDeleteBuffers(GLsizei n, const GLuint * buffers);
+void glBindBuffer(GLenum target, GLuint buffer);
+void glBufferData(GLenum target, GLsizeiptr size, const GLvoid * data, GLenum usage);
+void glBufferSubData(GLenum target, GLintptr offset, GLsizeiptr size, const GLvoid * data);
+void glGenVertexArrays(GLsizei n, GLuint * arrays);
+void glDeleteVertexArrays(GLsizei n, const GLuint * arrays);
+void glBindVertexArray(GLuint array);
+void glEnableVertexAttribArray(GLuint index);
+void glVertexAttribPointer(GLuint index, GLint size, GLenum type, GLboolean normalized, GLsizei stride, const GLvoid * pointer);
+void glGetVertexAttribiv(GLuint index, GLenum pname, GLint * params);
+void glGetVertexAttribPointerv(GLuint index, GLenum pname, GLvoid ** pointer);
+void glGetBufferParameteriv(GLenum target, GLenum pname, GLint * params);
+void * glMapBufferRange(GLenum target, GLintptr offset, GLsizeiptr length, GLenum access);
+GLboolean glUnmapBuffer(GLenum target);
+void glDisableVertexAttribArray(GLuint index);
+void glVertexAttribDivisor(GLuint index, GLuint divisor);
+
+// Shader and draw functions are defined by host/FakeGL.cpp.
+GLint glGetUniformLocation(GLuint program, const char * name);
+GLint glGetAttribLocation(GLuint program, const char * name);
+void glUniformMatrix4fv(GLint location, GLsizei count, GLboolean transpose, const GLfloat * value);
+void glUniform4f(GLint location, GLfloat x, GLfloat y, GLfloat z, GLfloat w);
+void glUniform1f(GLint location, GLfloat x);
+void glDrawElements(GLenum mode, GLsizei count, GLenum type, const GLvoid * indices);
+void glDrawElementsInstanced(GLenum mode, GLsizei count, GLenum type, const GLvoid * indices, GLsizei instanceCount);
+
+// Monotonic time like VrApi
+inline double vrapi_GetTimeInSeconds() {
+    return std::chrono::duration<double>(std::chrono::steady_clock::now().time_since_epoch()).count();
+}
+
+namespace OVR {
+
+namespace Alg {
+
+template<typename T>
+inline T Min(T a, T b) {
+    return a < b ? a : b;
+}
+
+template<typename T>
+inline T Max(T a, T b) {
+    return a > b ? a : b;
+}
+
+template<typename A, typename Less>
+inline void QuickSort(A & array, Less less) {
+    std::sort(array.GetDataPtr(), array.GetDataPtr() + array.GetSizeI(), less);
+}
+
+}
+
+// Elements are wrapped so that Array<bool> is not std::vector<bool> and can return references.
+template<typename T>
+class Array {
+public:
+    int GetSize() const {
+        return static_cast<int>(data.size());
+    }
+
+    int GetSizeI() const {
+        return GetSize();
+    }
+
+    void PushBack(const T & value) {
+        data.push_back(Element{value});
+    }
+
+    void Resize(int size) {
+        data.resize(size);
+    }
+
+    void Clear() {
+        data.clear();
+    }
+
+    bool IsEmpty() const {
+        return data.empty();
+    }
+
+    void RemoveAt(int index) {
+        data.erase(data.begin() + index);
+    }
+
+    T * GetDataPtr() {
+        return data.empty() ? nullptr : &data[0].value;
+    }
+
+    const T * GetDataPtr() const {
+        return data.empty() ? nullptr : &data[0].value;
+    }
+
+    T & operator[](int index) {
+        return data[index].value;
+    }
+
+    const T & operator[](int index) const {
+        return data[index].value;
+    }
+
+private:
+    struct Element {
+        T value;
+    };
+    static_assert(sizeof(Element) == sizeof(T), "elements must be contiguous");
+
+    std::vector<Element> data;
+};
+
+class Vector3f {
+public:
+    float x, y, z;
+
+    Vector3f() : x(0.0f), y(0.0f), z(0.0f) {
+    }
+
+    Vector3f(float x, float y, float z) : x(x), y(y), z(z) {
+    }
+
+    static Vector3f Min(const Vector3f & a, const Vector3f & b) {
+        return Vector3f(Alg::Min(a.x, b.x), Alg::Min(a.y, b.y), Alg::Min(a.z, b.z));
+    }
+
+    static Vector3f Max(const Vector3f & a, const Vector3f & b) {
+        return Vector3f(Alg::Max(a.x, b.x), Alg::Max(a.y, b.y), Alg::Max(a.z, b.z));
+    }
+
+    float & operator[](int index) {
+        return (&x)[index];
+    }
+
+    const float & operator[](int index) const {
+        return (&x)[index];
+    }
+
+    Vector3f operator+(const Vector3f & b) const {
+        return Vector3f(x + b.x, y + b.y, z + b.z);
+    }
+
+    Vector3f operator-(const Vector3f & b) const {
+        return Vector3f(x - b.x, y - b.y, z - b.z);
+    }
+
+    Vector3f operator*(float s) const {
+        return Vector3f(x * s, y * s, z * s);
+    }
+
+    float Length() const {
+        return std::sqrt(x * x + y * y + z * z);
+    }
+};
+
+inline Vector3f operator*(float s, const Vector3f & v) {
+    return v * s;
+}
+
+class Vector4f {
+public:
+    float x, y, z, w;
+
+    Vector4f() : x(0.0f), y(0.0f), z(0.0f), w(0.0f) {
+    }
+
+    Vector4f(float x, float y, float z, float w) : x(x), y(y), z(z), w(w) {
+    }
+};
+
+// Row major like OVR. Translation is in M[i][3].
+class Matrix4f {
+public:
+    float M[4][4];
+
+    Matrix4f() {
+        for (int i = 0; i < 4; ++i) {
+            for (int j = 0; j < 4; ++j) {
+                M[i][j] = i == j ? 1.0f : 0.0f;
+            }
+        }
+    }
+
+    Matrix4f(float m11, float m12, float m13, float m14,
+            float m21, float m22, float m23, float m24,
+            float m31, float m32, float m33, float m34,
+            float m41, float m42, float m43, float m44) {
+        M[0][0] = m11; M[0][1] = m12; M[0][2] = m13; M[0][3] = m14;
+        M[1][0] = m21; M[1][1] = m22; M[1][2] = m23; M[1][3] = m24;
+        M[2][0] = m31; M[2][1] = m32; M[2][2] = m33; M[2][3] = m34;
+        M[3][0] = m41; M[3][1] = m42; M[3][2] = m43; M[3][3] = m44;
+    }
+
+    static const Matrix4f & Identity() {
+        static const Matrix4f identity;
+        return identity;
+    }
+
+    static Matrix4f Translation(float x, float y, float z) {
+        Matrix4f m;
+        m.M[0][3] = x;
+        m.M[1][3] = y;
+        m.M[2][3] = z;
+        return m;
+    }
+
+    static Matrix4f Scaling(float x, float y, float z) {
+        Matrix4f m;
+        m.M[0][0] = x;
+        m.M[1][1] = y;
+        m.M[2][2] = z;
+        return m;
+    }
+
+    Matrix4f operator*(const Matrix4f & b) const {
+        Matrix4f m;
+        for (int i = 0; i < 4; ++i) {
+            for (int j = 0; j < 4; ++j) {
+                m.M[i][j] = M[i][0] * b.M[0][j] + M[i][1] * b.M[1][j] + M[i][2] * b.M[2][j] + M[i][3] * b.M[3][j];
+            }
+        }
+        return m;
+    }
+
+    Vector3f Transform(const Vector3f & v) const {
+        return Vector3f(M[0][0] * v.x + M[0][1] * v.y + M[0][2] * v.z + M[0][3],
+                M[1][0] * v.x + M[1][1] * v.y + M[1][2] * v.z + M[1][3],
+                M[2][0] * v.x + M[2][1] * v.y + M[2][2] * v.z + M[2][3]);
+    }
+
+    // Gauss-Jordan elimination with partial pivoting
+    Matrix4f Inverted() const {
+        float a[4][8];
+        for (int i = 0; i < 4; ++i) {
+            for (int j = 0; j < 4; ++j) {
+                a[i][j] = M[i][j];
+                a[i][j + 4] = i == j ? 1.0f : 0.0f;
+            }
+        }
+
+        for (int c = 0; c < 4; ++c) {
+            int pivot = c;
+            for (int r = c + 1; r < 4; ++r) {
+                if (std::fabs(a[r][c]) > std::fabs(a[pivot][c])) pivot = r;
+            }
+            for (int j = 0; j < 8; ++j) std::swap(a[c][j], a[pivot][j]);
+
+            const float inv = 1.0f / a[c][c];
+            for (int j = 0; j < 8; ++j) a[c][j] *= inv;
+            for (int r = 0; r < 4; ++r) {
+                if (r == c) continue;
+                const float f = a[r][c];
+                for (int j = 0; j < 8; ++j) a[r][j] -= f * a[c][j];
+            }
+        }
+
+        Matrix4f m;
+        for (int i = 0; i < 4; ++i) {
+            for (int j = 0; j < 4; ++j) {
+                m.M[i][j] = a[i][j + 4];
+            }
+        }
+        return m;
+    }
+};
+
+// Slab test like OVR. t0 and t1 are distances along rayDir to entry and exit points.
+inline bool Intersect_RayBounds(const Vector3f & rayStart, const Vector3f & rayDir,
+        const Vector3f & mins, const Vector3f & maxs, float & t0, float & t1) {
+    t0 = -FLT_MAX;
+    t1 = FLT_MAX;
+    for (int i = 0; i < 3; ++i) {
+        if (rayDir[i] == 0.0f) {
+            if (rayStart[i] < mins[i] || rayStart[i] > maxs[i]) return false;
+            continue;
+        }
+        float near = (mins[i] - rayStart[i]) / rayDir[i];
+        float far = (maxs[i] - rayStart[i]) / rayDir[i];
+        if (near > far) std::swap(near, far);
+        t0 = Alg::Max(t0, near);
+        t1 = Alg::Min(t1, far);
+    }
+    return t0 <= t1;
+}
+
+class Vector2f {
+public:
+    float x, y;
+
+    Vector2f() : x(0.0f), y(0.0f) {
+    }
+
+    Vector2f(float x, float y) : x(x), y(y) {
+    }
+};
+
+typedef uint16_t TriangleIndex;
+
+// Attributes used by static batching
+struct VertexAttribs {
+    Array<Vector3f> position;
+    Array<Vector2f> uv0;
+};
+
+enum VertexAttributeLocation {
+    VERTEX_ATTRIBUTE_LOCATION_POSITION = 0,
+    VERTEX_ATTRIBUTE_LOCATION_NORMAL = 1,
+    VERTEX_ATTRIBUTE_LOCATION_TANGENT = 2,
+    VERTEX_ATTRIBUTE_LOCATION_BINORMAL = 3,
+    VERTEX_ATTRIBUTE_LOCATION_COLOR = 4,
+    VERTEX_ATTRIBUTE_LOCATION_UV0 = 5
+};
+
+struct GlGeometry {
+    GlGeometry() : vertexBuffer(0), indexBuffer(0), vertexArrayObject(0), vertexCount(0), indexCount(0) {
+    }
+
+    void Free() {
+        glDeleteVertexArrays(1, &vertexArrayObject);
+        glDeleteBuffers(1, &indexBuffer);
+        glDeleteBuffers(1, &vertexBuffer);
+        vertexBuffer = indexBuffer = vertexArrayObject = 0;
+        vertexCount = indexCount = 0;
+    }
+
+    void Draw() const {
+        glBindVertexArray(vertexArrayObject);
+        glDrawElements(GL_TRIANGLES, indexCount, sizeof(TriangleIndex) == 2 ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT, nullptr);
+    }
+
+    GLuint vertexBuffer;
+    GLuint indexBuffer;
+    GLuint vertexArrayObject;
+    int vertexCount;
+    int indexCount;
+};
+
+// Uniform locations are looked up by BuildProgram like OVR.
+struct GlProgram {
+    GlProgram() : Program(0), uMvp(-1), uTexm(-1), uColor(-1) {
+    }
+
+    GLuint Program;
+    GLint uMvp;
+    GLint uTexm;
+    GLint uColor;
+};
+
+// Defined by host/FakeGL.cpp. Shaders are not compiled.
+GlProgram BuildProgram(const char * vertexDirectives, const char * vertexSrc,
+        const char * fragmentDirectives, const char * fragmentSrc);
+void DeleteProgram(GlProgram & program);
+
+}
+
+#endif